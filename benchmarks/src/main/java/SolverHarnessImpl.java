@@ -0,0 +1,305 @@
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.PriorityBlockingQueue;
+
+import benchmarks.SolverHarness;
+import models.RoutingMode;
+
+/**
+ * Default-package side of {@link SolverHarness}: owns the loaded graph and
+ * the sample inputs, and calls straight into the solver.
+ * <p>
+ * With {@link SolverHarness#DATASET} the graph is read by
+ * {@link BidirectionalAstar#loadGraphFromDisk} from
+ * {@code -Dflexroute.dataset.dir} when set, otherwise from a grid written to a
+ * temporary directory in the dataset layout. Label samples come from one
+ * reference query whose destination sits several hundred bound-tree entries
+ * away from its source, with three times the fastest time as budget; tighter
+ * budgets leave too few intersection nodes on a grid to merge anything.
+ */
+public final class SolverHarnessImpl implements SolverHarness {
+
+    private static final int SAMPLES = 1024;
+    private static final int CONTENDED_NODES = 64;
+    private static final int REFERENCE_DEPTH = 800;
+    private static final double BUDGET_SLACK = 3.0;
+    private static final double REFERENCE_DEPARTURE = 480;
+    private static final double REFERENCE_INTERVAL = 30;
+
+    private final Edge[] edges = new Edge[SAMPLES];
+    private final double[] times = new double[SAMPLES];
+    private final Label[] labels = new Label[SAMPLES];
+    private final int[] labelDepartures = new int[SAMPLES];
+    private final BidirectionalLabeling[] expansions = new BidirectionalLabeling[SAMPLES];
+    private final Label[] expandedLabels = new Label[SAMPLES];
+    private final Node[][] turns = new Node[SAMPLES][];
+    private final int[] sources = new int[SAMPLES];
+    private final int[] contendedNodes = new int[SAMPLES];
+    private final Label[] contendedLabels = new Label[SAMPLES];
+
+    private BidirectionalDriver referenceDriver;
+    private BidirectionalDriver.SharedState reference;
+    private BidirectionalDriver.SharedState contended;
+    private double budget;
+
+    @Override
+    public void setUp(String graph, int side, long seed) throws Exception {
+        BidirectionalAstar.THRESHOLD = 10;
+        BidirectionalAstar.SHARP_THRESHOLD = 60;
+        BidirectionalAstar.WIDENESS_THRESHOLD = 12.8;
+        if (BidirectionalAstar.pool == null) {
+            BidirectionalAstar.pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        }
+        loadGraph(graph, side, seed);
+
+        Random random = new Random(seed);
+        List<Integer> nodeIds = new ArrayList<>(Graph.get_nodes().keySet());
+        runReferenceQuery(nodeIds, random);
+        sampleEdges(nodeIds, random);
+        sampleTurns(nodeIds, random);
+        sampleLabels(random);
+        for (int i = 0; i < SAMPLES; i++) {
+            sources[i] = nodeIds.get(random.nextInt(nodeIds.size()));
+        }
+        resetLabelSets();
+    }
+
+    private static void loadGraph(String graph, int side, long seed) throws Exception {
+        SyntheticGrid grid = new SyntheticGrid(side, seed);
+        if (SYNTHETIC.equals(graph)) {
+            grid.buildInto();
+            return;
+        }
+        if (!DATASET.equals(graph)) {
+            throw new IllegalArgumentException("Unknown graph source: " + graph);
+        }
+        Graph.clear();
+        String configured = System.getProperty("flexroute.dataset.dir");
+        boolean loaded;
+        if (configured != null && !configured.isBlank()) {
+            loaded = BidirectionalAstar.loadGraphFromDisk(configured, null);
+        } else {
+            Path directory = Files.createTempDirectory("flexroute-bench");
+            grid.writeDataset(directory);
+            loaded = BidirectionalAstar.loadGraphFromDisk(directory.toString(), grid.nodeCount());
+        }
+        if (!loaded) {
+            throw new IllegalStateException("Dataset could not be loaded");
+        }
+    }
+
+    /** Pick a source with a deep enough bound tree and solve one query from it. */
+    private void runReferenceQuery(List<Integer> nodeIds, Random random) throws Exception {
+        for (int attempt = 0; attempt < 50; attempt++) {
+            int source = nodeIds.get(random.nextInt(nodeIds.size()));
+            BoundTree tree = BoundTreeCache.forward(Graph.snapshot(), source, 240);
+            if (tree.size() <= REFERENCE_DEPTH) {
+                continue;
+            }
+            int destination = tree.nodeAt(REFERENCE_DEPTH);
+            budget = tree.timeAt(REFERENCE_DEPTH) * BUDGET_SLACK;
+            Query query = new Query(source, destination, REFERENCE_DEPARTURE,
+                    REFERENCE_DEPARTURE + REFERENCE_INTERVAL, budget, RoutingMode.ALL_OBJECTIVES);
+            BidirectionalDriver driver = new BidirectionalDriver(query, budget);
+            driver.driver();
+            BidirectionalDriver.SharedState shared = driver.getSharedState();
+            if (shared != null && !shared.intersectionNodes.isEmpty()) {
+                referenceDriver = driver;
+                reference = shared;
+                return;
+            }
+        }
+        throw new IllegalStateException("No feasible reference query found; try a larger graph");
+    }
+
+    private void sampleEdges(List<Integer> nodeIds, Random random) {
+        int filled = 0;
+        while (filled < SAMPLES) {
+            Map<Integer, Edge> out = Graph.get_node(nodeIds.get(random.nextInt(nodeIds.size()))).get_outgoing_edges();
+            if (out.isEmpty()) {
+                continue;
+            }
+            List<Edge> candidates = new ArrayList<>(out.values());
+            edges[filled] = candidates.get(random.nextInt(candidates.size()));
+            // Stay clear of the wrap-around at midnight that get_departure_time does not handle
+            times[filled] = 30 + random.nextDouble() * 1300;
+            filled++;
+        }
+    }
+
+    private void sampleTurns(List<Integer> nodeIds, Random random) {
+        int filled = 0;
+        while (filled < SAMPLES) {
+            int current = nodeIds.get(random.nextInt(nodeIds.size()));
+            Node node = Graph.get_node(current);
+            List<Integer> in = new ArrayList<>(node.get_incoming_edges().keySet());
+            List<Integer> out = new ArrayList<>(node.get_outgoing_edges().keySet());
+            if (in.isEmpty() || out.isEmpty()) {
+                continue;
+            }
+            turns[filled++] = new Node[]{
+                    Graph.get_node(in.get(random.nextInt(in.size()))),
+                    node,
+                    Graph.get_node(out.get(random.nextInt(out.size())))};
+        }
+    }
+
+    private void sampleLabels(Random random) {
+        List<Label> forward = new ArrayList<>();
+        List<Label> backward = new ArrayList<>();
+        for (PriorityBlockingQueue<Label> set : reference.forwardVisited.values()) {
+            forward.addAll(set);
+        }
+        for (PriorityBlockingQueue<Label> set : reference.backwardVisited.values()) {
+            backward.addAll(set);
+        }
+
+        List<Label> timed = new ArrayList<>();
+        List<Integer> departures = new ArrayList<>();
+        for (Label label : forward) {
+            List<BreakPoint> points = label.get_arrivalTime().getBreakpoints();
+            int from = (int) Math.ceil(points.get(0).getX());
+            int to = (int) Math.floor(points.get(points.size() - 1).getX());
+            if (from <= to) {
+                timed.add(label);
+                departures.add(from + random.nextInt(to - from + 1));
+            }
+        }
+        if (timed.isEmpty() || forward.isEmpty() || backward.isEmpty()) {
+            throw new IllegalStateException("Reference query produced no usable labels");
+        }
+
+        List<Label> nodesWithLabels = new ArrayList<>(forward);
+        List<Integer> contendedPool = new ArrayList<>();
+        for (Label label : nodesWithLabels) {
+            if (contendedPool.size() == CONTENDED_NODES) {
+                break;
+            }
+            if (!contendedPool.contains(label.get_nodeID())) {
+                contendedPool.add(label.get_nodeID());
+            }
+        }
+
+        for (int i = 0; i < SAMPLES; i++) {
+            int pick = random.nextInt(timed.size());
+            labels[i] = timed.get(pick);
+            labelDepartures[i] = departures.get(pick);
+
+            boolean isForward = random.nextBoolean();
+            Label label = pickExpandable(isForward ? forward : backward, random);
+            if (label == null) {
+                isForward = !isForward;
+                label = pickExpandable(isForward ? forward : backward, random);
+            }
+            expandedLabels[i] = label;
+            expansions[i] = label != null ? parentExpansion(label, isForward) : null;
+
+            contendedNodes[i] = contendedPool.get(random.nextInt(contendedPool.size()));
+            contendedLabels[i] = forward.get(random.nextInt(forward.size()));
+        }
+    }
+
+    private static Label pickExpandable(List<Label> labels, Random random) {
+        for (int attempt = 0; attempt < 32; attempt++) {
+            Label label = labels.get(random.nextInt(labels.size()));
+            Integer predecessor = label.getVisitedList().get(label.get_nodeID());
+            if (predecessor != null && predecessor != -1) {
+                return label;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * A labeling task positioned on {@code label}'s predecessor, which is the
+     * state {@code computeAndUpdateBreakpoints} runs in when it produced
+     * {@code label}. The predecessor label is rebuilt from the recorded path.
+     */
+    private BidirectionalLabeling parentExpansion(Label label, boolean isForward) {
+        int predecessor = label.getVisitedList().get(label.get_nodeID());
+        Label parent = new Label(predecessor, label.get_arrivalTime(), label.get_wide_distance(),
+                label.getRightTurns(), label.getDistance());
+        parent.copyLists(label.getVisitedList());
+        parent.getVisitedList().remove(label.get_nodeID());
+        return new BidirectionalLabeling(isForward ? -1 : -2, budget / 2, parent, reference, isForward);
+    }
+
+    @Override
+    public int sampleCount() {
+        return SAMPLES;
+    }
+
+    @Override
+    public double edgeArrivalTime(int sample) {
+        return edges[sample].get_arrival_time(times[sample]);
+    }
+
+    @Override
+    public double edgeDepartureTime(int sample) {
+        return edges[sample].get_departure_time(times[sample]);
+    }
+
+    @Override
+    public double labelArrivalTime(int sample) {
+        return labels[sample].get_arrivalTime(labelDepartures[sample]);
+    }
+
+    @Override
+    public int computeAndUpdateBreakpoints(int sample) {
+        BidirectionalLabeling expansion = expansions[sample];
+        if (expansion == null) {
+            return 0;
+        }
+        Label label = expandedLabels[sample];
+        List<BreakPoint> arrival = copy(label.get_arrivalTime().getBreakpoints());
+        List<BreakPoint> width = copy(label.get_wide_distance().getBreakpoints());
+        expansion.computeAndUpdateBreakpoints(arrival, width, label.get_nodeID(), label.get_wide_distance().getMaxValue());
+        return arrival.size();
+    }
+
+    // The merge updates breakpoints in place, so each run gets its own copies.
+    private static List<BreakPoint> copy(List<BreakPoint> points) {
+        List<BreakPoint> copy = new ArrayList<>(points.size());
+        for (BreakPoint point : points) {
+            copy.add(new BreakPoint(point.getX(), point.getY()));
+        }
+        return copy;
+    }
+
+    @Override
+    public boolean isSharpRightTurn(int sample) {
+        Node[] turn = turns[sample];
+        return Graph.isSharpRightTurn(turn[0], turn[1], turn[2]);
+    }
+
+    @Override
+    public int forwardAstar(int sample, boolean cold) {
+        if (cold) {
+            BoundTreeCache.invalidate();
+        }
+        QueryBounds bounds = new QueryBounds(budget);
+        Graph.forwardAstar(sources[sample], -1, bounds);
+        return bounds.forwardReachableCount();
+    }
+
+    @Override
+    public void resetLabelSets() {
+        contended = new BidirectionalDriver.SharedState(Graph.snapshot(), reference.bounds, QueryProgress.NONE, new SearchStats());
+    }
+
+    @Override
+    public void addForwardLabel(int sample) {
+        contended.addForwardLabel(contendedNodes[sample], contendedLabels[sample]);
+    }
+
+    @Override
+    public Object formOutputLabels(String routingMode) {
+        return referenceDriver.formOutputLabels(reference.intersectionNodes, reference.forwardVisited,
+                reference.backwardVisited, RoutingMode.valueOf(routingMode));
+    }
+}
@@ -0,0 +1,174 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Seeded street-grid generator for the benchmarks.
+ * <p>
+ * Produces a {@code side x side} grid of two-way streets roughly 100 m apart,
+ * with jittered node positions (so turn angles vary), a time-dependent travel
+ * cost with morning and evening peaks, and a mix of narrow and wide streets.
+ * The same network can be built straight into {@link Graph} or written out in
+ * the dataset layout read by {@link BidirectionalAstar#loadGraphFromDisk}.
+ */
+final class SyntheticGrid {
+
+    private static final int[] TIME_SERIES = {0, 240, 480, 720, 960, 1200};
+    private static final double[] PEAK_FACTOR = {1.0, 1.1, 1.8, 1.2, 1.7, 1.1};
+    private static final double[] WIDTHS = {3.5, 6.0, 9.0, 13.5, 16.0};
+    private static final double BASE_LAT = 40.70;
+    private static final double BASE_LON = -74.01;
+    private static final double STEP_LAT = 0.0009;
+    private static final double STEP_LON = 0.0012;
+
+    private final int side;
+    private final double[] lat;
+    private final double[] lon;
+    private final double[] width;       // per street segment, indexed by edgeIndex
+    private final double[] speedKmh;
+
+    SyntheticGrid(int side, long seed) {
+        this.side = side;
+        int n = side * side;
+        Random random = new Random(seed);
+        lat = new double[n];
+        lon = new double[n];
+        for (int r = 0; r < side; r++) {
+            for (int c = 0; c < side; c++) {
+                int id = r * side + c;
+                lat[id] = BASE_LAT + r * STEP_LAT + (random.nextDouble() - 0.5) * STEP_LAT * 0.3;
+                lon[id] = BASE_LON + c * STEP_LON + (random.nextDouble() - 0.5) * STEP_LON * 0.3;
+            }
+        }
+        width = new double[n * 4];
+        speedKmh = new double[n * 4];
+        for (int i = 0; i < width.length; i++) {
+            width[i] = WIDTHS[random.nextInt(WIDTHS.length)];
+            speedKmh[i] = width[i] >= 12.8 ? 40 + random.nextInt(15) : 20 + random.nextInt(15);
+        }
+    }
+
+    int nodeCount() {
+        return side * side;
+    }
+
+    /** Replace the current graph with this grid. */
+    void buildInto() {
+        Graph.clear();
+        Graph.set_vertex_count(nodeCount());
+        String[] series = series();
+        Graph.updateArrivalTimeSeries(series);
+        Graph.updateWidthTimeSeries(series);
+        for (int id = 0; id < nodeCount(); id++) {
+            Graph.add_node(id, new Node(lat[id], lon[id]));
+        }
+        forEachStreet((src, dst, segment) -> {
+            Edge edge = new Edge(src, dst);
+            edge.setBaseWidth(width[segment]);
+            edge.setRushWidth(width[segment] * 0.7);
+            edge.setWidth(width[segment]);
+            edge.setDistance(distanceKm(src, dst));
+            double[] costs = costs(src, dst, segment);
+            for (int i = 0; i < TIME_SERIES.length; i++) {
+                edge.add_time_property(TIME_SERIES[i], new Properties(costs[i]));
+            }
+            Graph.get_node(src).insert_outgoing_edge(edge);
+            Graph.get_node(dst).insert_incoming_edge(edge);
+        });
+        Graph.markReloaded();
+    }
+
+    /**
+     * Write {@code nodes_N.txt} and {@code edges_N.txt} in the merged dataset
+     * format (node cluster ids and edge widths/distances included).
+     */
+    void writeDataset(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        int n = nodeCount();
+        try (BufferedWriter out = Files.newBufferedWriter(directory.resolve("nodes_" + n + ".txt"), StandardCharsets.UTF_8)) {
+            for (int id = 0; id < n; id++) {
+                int cluster = (id / side / 10) * 100 + (id % side) / 10;
+                out.write(String.format(Locale.ROOT, "%d %.7f %.7f %d%n", id, lat[id], lon[id], cluster));
+            }
+        }
+        try (BufferedWriter out = Files.newBufferedWriter(directory.resolve("edges_" + n + ".txt"), StandardCharsets.UTF_8)) {
+            String series = String.join(" ", series());
+            out.write(series);
+            out.newLine();
+            out.write(series);
+            out.newLine();
+            IOException[] failure = new IOException[1];
+            forEachStreet((src, dst, segment) -> {
+                if (failure[0] != null) {
+                    return;
+                }
+                double[] costs = costs(src, dst, segment);
+                StringBuilder line = new StringBuilder();
+                line.append(src).append(' ').append(dst).append(' ');
+                for (int i = 0; i < costs.length; i++) {
+                    if (i > 0) {
+                        line.append(',');
+                    }
+                    line.append(String.format(Locale.ROOT, "%.4f", costs[i]));
+                }
+                line.append(String.format(Locale.ROOT, " %.2f %.2f %.5f",
+                        width[segment], width[segment] * 0.7, distanceKm(src, dst)));
+                try {
+                    out.write(line.toString());
+                    out.newLine();
+                } catch (IOException e) {
+                    failure[0] = e;
+                }
+            });
+            if (failure[0] != null) {
+                throw failure[0];
+            }
+        }
+    }
+
+    private interface StreetVisitor {
+        void visit(int src, int dst, int segment);
+    }
+
+    /** Both directions of every street; a street keeps one width and speed class. */
+    private void forEachStreet(StreetVisitor visitor) {
+        for (int r = 0; r < side; r++) {
+            for (int c = 0; c < side; c++) {
+                int id = r * side + c;
+                if (c + 1 < side) {
+                    visitor.visit(id, id + 1, id * 4);
+                    visitor.visit(id + 1, id, id * 4);
+                }
+                if (r + 1 < side) {
+                    visitor.visit(id, id + side, id * 4 + 1);
+                    visitor.visit(id + side, id, id * 4 + 1);
+                }
+            }
+        }
+    }
+
+    private double[] costs(int src, int dst, int segment) {
+        double freeFlow = distanceKm(src, dst) / speedKmh[segment] * 60.0;
+        double[] costs = new double[TIME_SERIES.length];
+        for (int i = 0; i < costs.length; i++) {
+            costs[i] = freeFlow * PEAK_FACTOR[i];
+        }
+        return costs;
+    }
+
+    private double distanceKm(int a, int b) {
+        return SpatialIndex.distanceMeters(lat[a], lon[a], lat[b], lon[b]) / 1000.0;
+    }
+
+    private static String[] series() {
+        String[] series = new String[TIME_SERIES.length];
+        for (int i = 0; i < series.length; i++) {
+            series[i] = Integer.toString(TIME_SERIES[i]);
+        }
+        return series;
+    }
+}
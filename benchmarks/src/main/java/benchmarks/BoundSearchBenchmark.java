@@ -0,0 +1,36 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Forward lower-bound pass. {@code cache=warm} measures the bound tree cache
+ * hit path once every sampled source has been seen; {@code cache=cold} drops
+ * the cache before every call and so measures the full Dijkstra.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BoundSearchBenchmark {
+
+    @Param({"warm", "cold"})
+    public String cache;
+
+    @Benchmark
+    public int forwardAstar(HarnessState state, Cursor cursor) {
+        return state.harness.forwardAstar(cursor.next(state), "cold".equals(cache));
+    }
+}
@@ -0,0 +1,15 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/** Per-thread position in the sample arrays, so threads do not share a counter. */
+@State(Scope.Thread)
+public class Cursor {
+
+    private int position;
+
+    int next(HarnessState state) {
+        return position++ & state.mask;
+    }
+}
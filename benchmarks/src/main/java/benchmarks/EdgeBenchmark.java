@@ -0,0 +1,30 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Time-dependent edge cost lookups, the innermost call of both searches. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EdgeBenchmark {
+
+    @Benchmark
+    public double arrivalTime(HarnessState state, Cursor cursor) {
+        return state.harness.edgeArrivalTime(cursor.next(state));
+    }
+
+    @Benchmark
+    public double departureTime(HarnessState state, Cursor cursor) {
+        return state.harness.edgeDepartureTime(cursor.next(state));
+    }
+}
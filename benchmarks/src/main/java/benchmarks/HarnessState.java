@@ -0,0 +1,35 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Loaded graph plus sample inputs, shared by every thread of a trial.
+ * {@code graph=dataset} goes through the dataset loader; point
+ * {@code -Dflexroute.dataset.dir} at a real dataset to benchmark on it.
+ */
+@State(Scope.Benchmark)
+public class HarnessState {
+
+    @Param({SolverHarness.SYNTHETIC, SolverHarness.DATASET})
+    public String graph;
+
+    @Param({"40"})
+    public int side;
+
+    @Param({"42"})
+    public long seed;
+
+    public SolverHarness harness;
+    int mask;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        harness = SolverHarness.create();
+        harness.setUp(graph, side, seed);
+        mask = harness.sampleCount() - 1;
+    }
+}
@@ -0,0 +1,42 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Concurrent inserts into the shared per-node label sets, with several
+ * threads landing on the same few dozen nodes as the labeling tasks do.
+ * The sets are bounded, so after the first inserts this measures
+ * insert-and-evict rather than unbounded growth.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class LabelSetBenchmark {
+
+    @Setup(Level.Iteration)
+    public void reset(HarnessState state) {
+        state.harness.resetLabelSets();
+    }
+
+    @Benchmark
+    public void addForwardLabel(HarnessState state, Cursor cursor) {
+        state.harness.addForwardLabel(cursor.next(state));
+    }
+}
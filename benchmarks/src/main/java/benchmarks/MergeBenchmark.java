@@ -0,0 +1,32 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Joining the reference query's forward and backward label sets into routes. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MergeBenchmark {
+
+    @Param({"WIDENESS_ONLY", "MIN_TURNS_ONLY", "WIDENESS_AND_TURNS", "ALL_OBJECTIVES"})
+    public String mode;
+
+    @Benchmark
+    public Object formOutputLabels(HarnessState state) {
+        return state.harness.formOutputLabels(mode);
+    }
+}
@@ -0,0 +1,63 @@
+package benchmarks;
+
+/**
+ * Entry points into the solver for the JMH harnesses in this package.
+ * <p>
+ * JMH refuses benchmark classes in the default package, and classes in a
+ * named package cannot refer to the default-package solver at all. The
+ * implementation, {@code SolverHarnessImpl}, therefore lives in the default
+ * package and is reached through this interface; with a single implementation
+ * loaded the calls are monomorphic and inline like direct calls.
+ * <p>
+ * Every {@code int} argument selects one of {@link #sampleCount()}
+ * pre-built inputs, so a benchmark cycles through varied edges, labels and
+ * nodes instead of hitting one warm cache line.
+ */
+public interface SolverHarness {
+
+    /** Synthetic grid built directly in memory. */
+    String SYNTHETIC = "synthetic";
+    /** Graph read through the dataset loader from {@code nodes_N.txt} / {@code edges_N.txt}. */
+    String DATASET = "dataset";
+
+    static SolverHarness create() {
+        try {
+            return (SolverHarness) Class.forName("SolverHarnessImpl").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Solver harness is not on the classpath", e);
+        }
+    }
+
+    /**
+     * Load the graph and build every sample set. {@code graph} is
+     * {@link #SYNTHETIC} or {@link #DATASET}; {@code side} is the grid side
+     * used when the graph has to be generated. Runs one reference query so
+     * label-level samples come from real label sets.
+     */
+    void setUp(String graph, int side, long seed) throws Exception;
+
+    /** Number of samples per kind; always a power of two. */
+    int sampleCount();
+
+    double edgeArrivalTime(int sample);
+
+    double edgeDepartureTime(int sample);
+
+    double labelArrivalTime(int sample);
+
+    /** Re-run breakpoint merging on a copy of a recorded label's functions; returns the merged size. */
+    int computeAndUpdateBreakpoints(int sample);
+
+    boolean isSharpRightTurn(int sample);
+
+    /** Forward bound pass for a sampled query; {@code cold} drops the bound tree cache first. */
+    int forwardAstar(int sample, boolean cold);
+
+    /** Start over with empty label sets for {@link #addForwardLabel(int)}. */
+    void resetLabelSets();
+
+    void addForwardLabel(int sample);
+
+    /** Merge the reference query's label sets under {@code routingMode}. */
+    Object formOutputLabels(String routingMode);
+}
@@ -4,17 +4,40 @@ import maplibregl from 'maplibre-gl';
 import 'maplibre-gl/dist/maplibre-gl.css';
 import { useRouteStore } from '../hooks/useRouteStore';
 import { useQuery } from '@tanstack/react-query';
-import { fetchGraphPreview, fetchNetworkMetadata } from '../lib/api';
+import { fetchNetworkMetadata, fetchTile } from '../lib/api';
+// Tiles at the server's index zoom already hold every edge, so deeper zooms reuse them.
+const TILE_MAX_ZOOM = 16;
+const MAX_VISIBLE_TILES = 64;
+function lonToTileX(lon, z) {
+    const n = 2 ** z;
+    return Math.min(n - 1, Math.max(0, Math.floor(((lon + 180) / 360) * n)));
+}
+function latToTileY(lat, z) {
+    const n = 2 ** z;
+    const rad = (Math.max(-85.05112878, Math.min(85.05112878, lat)) * Math.PI) / 180;
+    const y = ((1 - Math.log(Math.tan(rad) + 1 / Math.cos(rad)) / Math.PI) / 2) * n;
+    return Math.min(n - 1, Math.max(0, Math.floor(y)));
+}
+function tileFeatures(tile) {
+    return [
+        ...tile.edges.map(([from, to, wide, lon1, lat1, lon2, lat2]) => ({
+            type: 'Feature',
+            geometry: { type: 'LineString', coordinates: [[lon1, lat1], [lon2, lat2]] },
+            properties: { from, to, wide: wide === 1 }
+        })),
+        ...tile.nodes.map(([id, lon, lat]) => ({
+            type: 'Feature',
+            geometry: { type: 'Point', coordinates: [lon, lat] },
+            properties: { id }
+        }))
+    ];
+}
 export default function MapCanvas() {
     const containerRef = useRef(null);
     const mapRef = useRef(null);
     const current = useRouteStore((s) => s.current);
+    const tilesRef = useRef({});
     const { data: meta } = useQuery({ queryKey: ['network-meta'], queryFn: fetchNetworkMetadata });
-    const { data: graph } = useQuery({
-        queryKey: ['graph-preview', 800],
-        queryFn: () => fetchGraphPreview(800),
-        enabled: !!meta
-    });
     useEffect(() => {
         if (!containerRef.current || mapRef.current || !meta)
             return;
@@ -76,26 +99,14 @@ export default function MapCanvas() {
             updateRoute();
         }
     }, [current]);
+    // Load the graph tile by tile for the current viewport; the server prunes
+    // each tile to the zoom level and the browser revalidates them by ETag.
     useEffect(() => {
         const map = mapRef.current;
-        if (!map || !graph)
+        if (!map || !meta)
             return;
-        const featureCollection = {
-            type: 'FeatureCollection',
-            features: [
-                ...graph.edges.map((edge) => ({
-                    type: 'Feature',
-                    geometry: { type: 'LineString', coordinates: edge.line },
-                    properties: { from: edge.from, to: edge.to }
-                })),
-                ...graph.nodes.map((node) => ({
-                    type: 'Feature',
-                    geometry: { type: 'Point', coordinates: node.coord },
-                    properties: { id: node.id }
-                }))
-            ]
-        };
-        const updateGraph = () => {
+        let controller = null;
+        const updateGraph = (featureCollection) => {
             const sourceId = 'graph-preview';
             if (!map.getSource(sourceId)) {
                 map.addSource(sourceId, { type: 'geojson', data: featureCollection, lineMetrics: true });
@@ -155,12 +166,60 @@ export default function MapCanvas() {
                 map.getSource(sourceId).setData(featureCollection);
             }
         };
+        const loadVisibleTiles = async () => {
+            controller?.abort();
+            const current = new AbortController();
+            controller = current;
+            const z = Math.max(0, Math.min(TILE_MAX_ZOOM, Math.floor(map.getZoom())));
+            const bounds = map.getBounds();
+            const x0 = lonToTileX(bounds.getWest(), z);
+            const x1 = lonToTileX(bounds.getEast(), z);
+            const y0 = latToTileY(bounds.getNorth(), z);
+            const y1 = latToTileY(bounds.getSouth(), z);
+            const keys = [];
+            for (let x = x0; x <= x1 && keys.length < MAX_VISIBLE_TILES; x++) {
+                for (let y = y0; y <= y1 && keys.length < MAX_VISIBLE_TILES; y++) {
+                    keys.push([`${z}/${x}/${y}`, x, y]);
+                }
+            }
+            const cache = tilesRef.current;
+            try {
+                await Promise.all(keys
+                    .filter(([key]) => !cache[key])
+                    .map(async ([key, x, y]) => {
+                    cache[key] = tileFeatures(await fetchTile(z, x, y, current.signal));
+                }));
+            }
+            catch (err) {
+                if (current.signal.aborted)
+                    return;
+                throw err;
+            }
+            if (current.signal.aborted)
+                return;
+            // Only the visible tiles stay in memory; revisits are cheap 304s.
+            const visible = new Set(keys.map(([key]) => key));
+            Object.keys(cache).forEach((key) => {
+                if (!visible.has(key))
+                    delete cache[key];
+            });
+            updateGraph({ type: 'FeatureCollection', features: keys.flatMap(([key]) => cache[key] ?? []) });
+        };
+        const refresh = () => {
+            loadVisibleTiles().catch((err) => console.error('Failed to load graph tiles', err));
+        };
+        map.on('moveend', refresh);
         if (!map.isStyleLoaded()) {
-            map.once('load', updateGraph);
+            map.once('load', refresh);
         }
         else {
-            updateGraph();
+            refresh();
         }
-    }, [graph]);
+        return () => {
+            controller?.abort();
+            map.off('moveend', refresh);
+            map.off('load', refresh);
+        };
+    }, [meta]);
     return _jsx("div", { ref: containerRef, className: "absolute inset-0" });
 }
@@ -1,10 +1,12 @@
 import { jsx as _jsx, jsxs as _jsxs } from "react/jsx-runtime";
 import dayjs from 'dayjs';
+import { useLiveMetrics } from '../hooks/useLiveMetrics';
 import { useRouteStore } from '../hooks/useRouteStore';
 export default function RouteStats() {
     const current = useRouteStore((s) => s.current);
+    const { data: live } = useLiveMetrics(Boolean(current));
     if (!current)
         return null;
     const { result, diagnostics } = current.response;
-    return (_jsx("div", { className: "rounded-2xl bg-slate-900/80 p-4 shadow-panel", children: _jsxs("dl", { className: "grid grid-cols-2 gap-4 text-sm", children: [_jsxs("div", { children: [_jsx("dt", { className: "text-slate-400", children: "Departure" }), _jsx("dd", { className: "text-lg font-semibold", children: dayjs().startOf('day').add(result.departureTime, 'minute').format('HH:mm') })] }), _jsxs("div", { children: [_jsx("dt", { className: "text-slate-400", children: "Score" }), _jsx("dd", { className: "text-lg font-semibold", children: result.score.toFixed(1) })] }), _jsxs("div", { children: [_jsx("dt", { className: "text-slate-400", children: "Right turns" }), _jsx("dd", { className: "text-lg font-semibold", children: result.rightTurns })] }), _jsxs("div", { children: [_jsx("dt", { className: "text-slate-400", children: "Runtime" }), _jsxs("dd", { className: "text-lg font-semibold", children: [diagnostics.elapsedSeconds.toFixed(2), "s"] })] })] }) }));
+    return (_jsx("div", { className: "rounded-2xl bg-slate-900/80 p-4 shadow-panel", children: _jsxs("dl", { className: "grid grid-cols-2 gap-4 text-sm", children: [_jsxs("div", { children: [_jsx("dt", { className: "text-slate-400", children: "Departure" }), _jsx("dd", { className: "text-lg font-semibold", children: dayjs().startOf('day').add(result.departureTime, 'minute').format('HH:mm') })] }), _jsxs("div", { children: [_jsx("dt", { className: "text-slate-400", children: "Score" }), _jsx("dd", { className: "text-lg font-semibold", children: result.score.toFixed(1) })] }), _jsxs("div", { children: [_jsx("dt", { className: "text-slate-400", children: "Right turns" }), _jsx("dd", { className: "text-lg font-semibold", children: result.rightTurns })] }), _jsxs("div", { children: [_jsx("dt", { className: "text-slate-400", children: "Runtime" }), _jsxs("dd", { className: "text-lg font-semibold", children: [diagnostics.elapsedSeconds.toFixed(2), "s"] })] }), _jsxs("div", { children: [_jsx("dt", { className: "text-slate-400", children: "Result cache" }), _jsxs("dd", { className: "text-lg font-semibold", children: [diagnostics.cacheHit ? 'Hit' : 'Miss', live && (_jsxs("span", { className: "ml-2 text-sm font-normal text-slate-400", children: [(live.resultCache.hitRate * 100).toFixed(0), "% overall"] }))] })] })] }) }));
 }
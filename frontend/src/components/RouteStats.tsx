@@ -1,8 +1,10 @@
 import dayjs from 'dayjs';
+import { useLiveMetrics } from '../hooks/useLiveMetrics';
 import { useRouteStore } from '../hooks/useRouteStore';
 
 export default function RouteStats() {
   const current = useRouteStore((s) => s.current);
+  const { data: live } = useLiveMetrics(Boolean(current));
   if (!current) return null;
   const { result, diagnostics } = current.response;
 
@@ -27,6 +29,17 @@ export default function RouteStats() {
           <dt className="text-slate-400">Runtime</dt>
           <dd className="text-lg font-semibold">{diagnostics.elapsedSeconds.toFixed(2)}s</dd>
         </div>
+        <div>
+          <dt className="text-slate-400">Result cache</dt>
+          <dd className="text-lg font-semibold">
+            {diagnostics.cacheHit ? 'Hit' : 'Miss'}
+            {live && (
+              <span className="ml-2 text-sm font-normal text-slate-400">
+                {(live.resultCache.hitRate * 100).toFixed(0)}% overall
+              </span>
+            )}
+          </dd>
+        </div>
       </dl>
     </div>
   );
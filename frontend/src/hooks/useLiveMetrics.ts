@@ -1,9 +1,34 @@
 import { useQuery } from '@tanstack/react-query';
 import { API_BASE } from '../lib/api';
 
-interface LiveMetrics {
-  elapsedSeconds: number;
+export interface CacheStats {
+  hits: number;
+  misses: number;
+  evictions: number;
+  entries: number;
+  hitRate: number;
+}
+
+export interface SolverStats {
+  concurrency: number;
+  queueDepth: number;
+  active: number;
+  queued: number;
+  completed: number;
+  rejected: number;
+  expired: number;
+  avgQueueWaitMs: number;
+  maxQueueWaitMs: number;
+  avgSolveMs: number;
+}
+
+export interface LiveMetrics {
   memoryMb: number;
+  timestamp: number;
+  graphGeneration: number;
+  boundCache: CacheStats;
+  resultCache: CacheStats & { coalesced: number };
+  solver: SolverStats;
 }
 
 export function useLiveMetrics(enabled: boolean) {
@@ -24,3 +24,6 @@ export function fetchGraphPreview(maxEdges = 800) {
     const params = new URLSearchParams({ maxEdges: String(maxEdges) });
     return request(`${API_BASE}/network/graph?${params.toString()}`);
 }
+export function fetchTile(z, x, y, signal) {
+    return request(`${API_BASE}/tiles/${z}/${x}/${y}`, { signal });
+}
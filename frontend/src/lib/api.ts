@@ -1,4 +1,4 @@
-import type { GraphPreview, NodeSummary, QueryPayload, QueryResponse } from '../types';
+import type { GraphPreview, GraphTile, NodeSummary, QueryPayload, QueryResponse } from '../types';
 
 export const API_BASE = import.meta.env.VITE_API_BASE ?? '/api';
 
@@ -34,3 +34,7 @@ export function fetchGraphPreview(maxEdges = 800) {
   const params = new URLSearchParams({ maxEdges: String(maxEdges) });
   return request<GraphPreview>(`${API_BASE}/network/graph?${params.toString()}`);
 }
+
+export function fetchTile(z: number, x: number, y: number, signal?: AbortSignal) {
+  return request<GraphTile>(`${API_BASE}/tiles/${z}/${x}/${y}`, { signal });
+}
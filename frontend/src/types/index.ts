@@ -28,10 +28,37 @@ export interface QueryResponse {
   geometry: RouteGeometry;
   diagnostics: {
     elapsedSeconds: number;
-    memoryMb: number;
+    queueWaitSeconds?: number;
+    solveSeconds?: number;
+    allocatedMb?: number;
+    peakLiveLabels?: number;
+    cacheHit?: boolean;
+    searchStats?: SearchStats | null;
   };
 }
 
+/** Per-query solver work counters, as reported in query diagnostics. */
+export interface SearchStats {
+  nodesExplored: number;
+  forwardBoundSettled: number;
+  backwardBoundSettled: number;
+  forwardLabeledNodes: number;
+  backwardLabeledNodes: number;
+  forwardLabelsCreated: number;
+  backwardLabelsCreated: number;
+  forwardLabelsPruned: number;
+  backwardLabelsPruned: number;
+  forwardLabelsEvicted: number;
+  backwardLabelsEvicted: number;
+  breakpointsCreated: number;
+  breakpointsMerged: number;
+  functionSplits: number;
+  intersectionNodes: number;
+  candidateJoins: number;
+  allocatedBytes: number;
+  peakLiveLabels: number;
+}
+
 export interface NodeSummary {
   id: number;
   latitude: number;
@@ -43,3 +70,14 @@ export interface GraphPreview {
   nodes: { id: number; coord: [number, number] }[];
   edges: { from: number; to: number; line: [number, number][] }[];
 }
+
+/** Tile from /api/tiles/{z}/{x}/{y}; edges are [from, to, wide, lon1, lat1, lon2, lat2], nodes [id, lon, lat]. */
+export interface GraphTile {
+  z: number;
+  x: number;
+  y: number;
+  generation: number;
+  edges: [number, number, number, number, number, number, number][];
+  nodes: [number, number, number][];
+  truncated: boolean;
+}
@@ -19,18 +19,24 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.DoubleSummaryStatistics;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
-import java.util.Set;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
 import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+import models.RoutingMode;
 
 /**
  * Lightweight HTTP facade that exposes node search, metadata, query execution,
@@ -40,11 +46,38 @@ import java.util.stream.Stream;
  */
 public class ApiServer {
     private static final int DEFAULT_PORT = 8080;
+    private static final int RESULT_CACHE_SIZE = 512;
+    private static final long RESULT_CACHE_TTL_MS = 10 * 60 * 1000L;
+
+    private static final long DEFAULT_SOLVER_MAX_QUEUE_WAIT_MS = 30_000L;
+    private static final int MAX_BATCH_SIZE = 1000;
+    private static final long JOB_RETENTION_MS = 10 * 60 * 1000L;
+    private static final long JOB_EVENT_INTERVAL_MS = 250L;
+    private static final int MAX_NEAREST_NODES = 100;
+    private static final int DEFAULT_WITHIN_LIMIT = 5000;
+    private static final int MAX_WITHIN_LIMIT = 50_000;
+    private static final double DEFAULT_INTERVAL_MINUTES = 360.0;
+    private static final double DEFAULT_ISOCHRONE_STEP_MINUTES = 15.0;
+    private static final double MAX_ISOCHRONE_BUDGET_MINUTES = 240.0;
+    private static final double MAX_ISOCHRONE_SEARCH_MINUTES = 24 * 60.0; // sampled departures x budget
+    private static final Pattern FLAT_JSON_OBJECT = Pattern.compile("\\{[^{}]*\\}");
+
+    private static final QueryResultCache resultCache = new QueryResultCache(RESULT_CACHE_SIZE, RESULT_CACHE_TTL_MS);
+    private static final QueryJobRegistry queryJobs = new QueryJobRegistry(JOB_RETENTION_MS);
+    private static SolverExecutor solverExecutor;
+    private static volatile TileIndex tileIndex;
+    private static final AtomicBoolean reloading = new AtomicBoolean();
+    private static volatile String reloadState = "idle";
+    private static volatile String reloadError;
 
     public static void main(String[] args) throws Exception {
         int port = resolvePort(args);
 
         initializeGraph();
+        DatasetRegistry.registerConfigured();
+        solverExecutor = createSolverExecutor();
+        precomputeTiles();
+        watchTrafficDrops();
 
         HttpServer server;
         try {
@@ -55,15 +88,89 @@ public class ApiServer {
             port = server.getAddress().getPort();
         }
         server.createContext("/api/nodes", ApiServer::handleNodes);
+        server.createContext("/api/nodes/nearest", ApiServer::handleNearestNodes);
+        server.createContext("/api/nodes/within", ApiServer::handleNodesWithin);
         server.createContext("/api/network/meta", ApiServer::handleNetworkMeta);
         server.createContext("/api/network/graph", ApiServer::handleGraphPreview);
+        server.createContext("/api/network/reload", ApiServer::handleNetworkReload);
+        server.createContext("/api/traffic/updates", ApiServer::handleTrafficUpdates);
         server.createContext("/api/queries/run", ApiServer::handleRunQuery);
+        server.createContext("/api/queries/batch", ApiServer::handleBatchQueries);
+        server.createContext("/api/queries/one-to-many", ApiServer::handleOneToManyQuery);
+        server.createContext("/api/queries", ApiServer::handleQueryJobs);
+        server.createContext("/api/isochrone", ApiServer::handleIsochrone);
         server.createContext("/api/metrics/live", ApiServer::handleMetrics);
-        server.setExecutor(ForkJoinPool.commonPool());
+        server.createContext("/api/tiles", ApiServer::handleTile);
+        server.createContext("/api/datasets", ApiServer::handleDatasets);
+        server.createContext("/api/", ApiServer::handleDatasetRoute);
+        server.createContext("/metrics", ApiServer::handlePrometheusMetrics);
+        // Requests are cheap to park: give each one a virtual thread and let the
+        // solver executor decide how many actually solve at once.
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
         System.out.println("API server started on port " + port);
         server.start();
     }
 
+    /**
+     * Size the solver executor from the environment. {@code SOLVER_CONCURRENCY}
+     * defaults to half the cores (each solve already fans out over the labeling
+     * pool), {@code SOLVER_QUEUE_DEPTH} to four waiting queries per slot, and
+     * {@code SOLVER_MAX_QUEUE_WAIT_MS} to 30 seconds.
+     */
+    private static SolverExecutor createSolverExecutor() {
+        int cores = Runtime.getRuntime().availableProcessors();
+        int concurrency = readIntEnv("SOLVER_CONCURRENCY", Math.max(1, cores / 2));
+        int queueDepth = readIntEnv("SOLVER_QUEUE_DEPTH", concurrency * 4);
+        long maxWait = readIntEnv("SOLVER_MAX_QUEUE_WAIT_MS", (int) DEFAULT_SOLVER_MAX_QUEUE_WAIT_MS);
+        System.out.println("[Init] Solver executor: concurrency=" + concurrency + ", queueDepth=" + queueDepth
+                + ", maxQueueWaitMs=" + maxWait);
+        return new SolverExecutor(concurrency, queueDepth, maxWait);
+    }
+
+    /**
+     * With {@code TILE_PRECOMPUTE_MAX_ZOOM} set, render every non-empty tile up
+     * to that zoom in the background so the first map loads hit the cache.
+     */
+    private static void precomputeTiles() {
+        int maxZoom = readIntEnv("TILE_PRECOMPUTE_MAX_ZOOM", -1);
+        if (maxZoom < 0) {
+            return;
+        }
+        Thread.ofVirtual().name("tile-precompute").start(() -> {
+            long start = System.currentTimeMillis();
+            int rendered = currentTileIndex().precompute(maxZoom);
+            System.out.println("[Init] Precomputed " + rendered + " tiles up to zoom " + maxZoom + " in "
+                    + (System.currentTimeMillis() - start) + " ms");
+        });
+    }
+
+    /**
+     * With {@code TRAFFIC_DROP_DIR} set, apply traffic update files dropped
+     * there, checking every {@code TRAFFIC_DROP_POLL_MS} (default 5 seconds).
+     */
+    private static void watchTrafficDrops() {
+        String dir = System.getenv("TRAFFIC_DROP_DIR");
+        if (dir == null || dir.isBlank()) {
+            return;
+        }
+        Path path = Path.of(dir.trim());
+        if (!Files.isDirectory(path)) {
+            System.err.println("[Init] TRAFFIC_DROP_DIR " + path + " is not a directory; traffic drops disabled.");
+            return;
+        }
+        TrafficFeed.watch(path, Math.max(100, readIntEnv("TRAFFIC_DROP_POLL_MS", 5000)));
+    }
+
+    private static int readIntEnv(String name, int fallback) {
+        String value = System.getenv(name);
+        if (value != null && !value.isBlank()) {
+            try {
+                return Integer.parseInt(value.trim());
+            } catch (NumberFormatException ignored) { }
+        }
+        return fallback;
+    }
+
     private static int resolvePort(String[] args) {
         int port = DEFAULT_PORT;
         String envPort = System.getenv("BACKEND_PORT");
@@ -107,6 +214,7 @@ public class ApiServer {
         addDemoEdge(1, 2, 0.6, false, 10.0, 10.0, 5.5);
         addDemoEdge(2, 3, 0.7, false, 9.0, 9.0, 6.5);
         addDemoEdge(0, 3, 0.9, false, 12.0, 12.0, 8.0);
+        Graph.markReloaded();
     }
 
     /**
@@ -125,6 +233,10 @@ public class ApiServer {
             System.err.println("Unable to load road network from disk; starting demo graph instead.");
             bootstrapGraph();
         }
+        long start = System.currentTimeMillis();
+        SpatialIndex index = SpatialIndex.current();
+        System.out.println("[Init] Spatial index over " + index.size() + " nodes built in "
+                + (System.currentTimeMillis() - start) + " ms");
     }
 
     private static void configureSolverDefaults() {
@@ -338,10 +450,92 @@ public class ApiServer {
         Graph.get_node(dest).insert_incoming_edge(edge);
     }
 
+    /**
+     * What one request runs against: a snapshot pinned for the whole request,
+     * plus the result cache and spatial index of its network. {@code dataset}
+     * is {@code null} for the network behind {@link Graph}.
+     */
+    private static final class Scope {
+        final GraphSnapshot graph;
+        final QueryResultCache results;
+        final DatasetRegistry.Dataset dataset;
+
+        Scope(GraphSnapshot graph, QueryResultCache results, DatasetRegistry.Dataset dataset) {
+            this.graph = graph;
+            this.results = results;
+            this.dataset = dataset;
+        }
+
+        SpatialIndex spatialIndex() {
+            return dataset != null ? dataset.spatialIndex(graph) : SpatialIndex.forSnapshot(graph);
+        }
+    }
+
+    private static Scope defaultScope() {
+        return new Scope(Graph.snapshot(), resultCache, null);
+    }
+
+    /** {@code GET /api/datasets} lists the hosted datasets, whether each is loaded, and its estimated size. */
+    private static void handleDatasets(HttpExchange exchange) throws IOException {
+        if (!"GET".equalsIgnoreCase(exchange.getRequestMethod())) {
+            exchange.sendResponseHeaders(405, -1);
+            return;
+        }
+        writeJson(exchange, DatasetRegistry.toJson());
+    }
+
+    /**
+     * Routes {@code /api/{dataset}/queries/run}, {@code .../queries/one-to-many},
+     * {@code .../isochrone}, {@code .../network/meta} and
+     * {@code .../nodes/nearest} to the regular
+     * handlers, scoped to a {@link DatasetRegistry} dataset, which is loaded
+     * first if needed. Any other path under {@code /api/} is a 404.
+     */
+    private static void handleDatasetRoute(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        String[] parts = path.substring("/api/".length()).split("/", 2);
+        DatasetRegistry.Dataset dataset = parts.length == 2 ? DatasetRegistry.get(parts[0]) : null;
+        if (dataset == null) {
+            writeError(exchange, 404, "No such endpoint or dataset: " + path);
+            return;
+        }
+        String route = parts[1];
+        if (!route.equals("queries/run") && !route.equals("queries/one-to-many") && !route.equals("isochrone")
+                && !route.equals("network/meta") && !route.equals("nodes/nearest")) {
+            writeError(exchange, 404, "Dataset '" + dataset.id + "' does not serve " + route);
+            return;
+        }
+        Scope scope;
+        try {
+            scope = new Scope(DatasetRegistry.acquire(dataset), dataset.results, dataset);
+        } catch (IOException | RuntimeException e) {
+            writeError(exchange, 503, "Dataset '" + dataset.id + "' could not be loaded: " + e.getMessage());
+            return;
+        }
+        switch (route) {
+            case "queries/run":
+                handleRunQuery(exchange, scope);
+                break;
+            case "queries/one-to-many":
+                handleOneToManyQuery(exchange, scope);
+                break;
+            case "isochrone":
+                handleIsochrone(exchange, scope);
+                break;
+            case "network/meta":
+                handleNetworkMeta(exchange, scope);
+                break;
+            default:
+                handleNearestNodes(exchange, scope);
+                break;
+        }
+    }
+
     /**
      * Responds with a small list of node summaries. Filtering is intentionally
      * lightweight (ID substring match) so the endpoint remains responsive even
      * without a spatial index. The frontend debounces calls before hitting this.
+     * Nodes are streamed as they are matched rather than collected first.
      */
     private static void handleNodes(HttpExchange exchange) throws IOException {
         if (!"GET".equalsIgnoreCase(exchange.getRequestMethod())) {
@@ -352,46 +546,258 @@ public class ApiServer {
         Map<String, String> queryParams = parseQueryParams(Optional.ofNullable(uri.getQuery()).orElse(""));
         String search = queryParams.getOrDefault("search", "").toLowerCase(Locale.ROOT);
 
-        List<Map<String, Object>> nodes = new ArrayList<>();
-        for (Map.Entry<Integer, Node> entry : Graph.get_nodes().entrySet()) {
-            int id = entry.getKey();
-            Node node = entry.getValue();
-            if (search.length() > 1) {
-                String idStr = Integer.toString(id);
-                if (!idStr.contains(search)) continue;
+        GraphSnapshot graph = defaultScope().graph;
+        try (JsonStreamWriter json = openJsonStream(exchange)) {
+            json.beginArray();
+            for (Map.Entry<Integer, Node> entry : graph.get_nodes().entrySet()) {
+                int id = graph.toExternal(entry.getKey());
+                Node node = entry.getValue();
+                if (search.length() > 1 && !Integer.toString(id).contains(search)) {
+                    continue;
+                }
+                json.beginObject();
+                writeNodeFields(json, id, node);
+                json.endObject();
             }
-            Map<String, Object> payload = new HashMap<>();
-            payload.put("id", id);
-            payload.put("latitude", node.get_latitude());
-            payload.put("longitude", node.get_longitude());
-            payload.put("degree", node.get_outgoing_edges().size());
-            nodes.add(payload);
+            json.endArray();
         }
+    }
 
-        writeJson(exchange, toJsonArray(nodes));
+    /**
+     * {@code GET /api/nodes/nearest?lat=&lon=[&k=][&maxMeters=]} snaps a
+     * position to the closest nodes through the {@link SpatialIndex}, nearest
+     * first.
+     */
+    private static void handleNearestNodes(HttpExchange exchange) throws IOException {
+        handleNearestNodes(exchange, defaultScope());
+    }
+
+    private static void handleNearestNodes(HttpExchange exchange, Scope scope) throws IOException {
+        if (!"GET".equalsIgnoreCase(exchange.getRequestMethod())) {
+            exchange.sendResponseHeaders(405, -1);
+            return;
+        }
+        Map<String, String> params = parseQueryParams(Optional.ofNullable(exchange.getRequestURI().getQuery()).orElse(""));
+        double lat;
+        double lon;
+        int k;
+        double maxMeters;
+        try {
+            lat = Double.parseDouble(params.getOrDefault("lat", ""));
+            lon = Double.parseDouble(params.getOrDefault("lon", ""));
+            k = Integer.parseInt(params.getOrDefault("k", "1"));
+            maxMeters = Double.parseDouble(params.getOrDefault("maxMeters", "Infinity"));
+        } catch (NumberFormatException e) {
+            writeError(exchange, 400, "Expected numeric lat and lon, and optionally k and maxMeters.");
+            return;
+        }
+        if (Double.isNaN(lat) || Double.isNaN(lon) || Double.isNaN(maxMeters)) {
+            writeError(exchange, 400, "lat, lon and maxMeters must be numbers.");
+            return;
+        }
+        k = Math.max(1, Math.min(k, MAX_NEAREST_NODES));
+
+        GraphSnapshot graph = scope.graph;
+        int[] ids = scope.spatialIndex().nearest(lat, lon, k, maxMeters);
+        try (JsonStreamWriter json = openJsonStream(exchange)) {
+            json.beginArray();
+            for (int id : ids) {
+                Node node = graph.get_node(id);
+                if (node == null) continue;
+                json.beginObject();
+                writeNodeFields(json, graph.toExternal(id), node);
+                json.name("distanceMeters")
+                        .value(SpatialIndex.distanceMeters(lat, lon, node.get_latitude(), node.get_longitude()), 1);
+                json.endObject();
+            }
+            json.endArray();
+        }
+    }
+
+    /**
+     * {@code GET /api/nodes/within?bbox=west,south,east,north[&limit=]} lists
+     * the nodes inside a box, in the same corner order as the bounds in
+     * {@code /api/network/meta}. The response is capped at {@code limit}
+     * nodes and flags when more were available.
+     */
+    private static void handleNodesWithin(HttpExchange exchange) throws IOException {
+        if (!"GET".equalsIgnoreCase(exchange.getRequestMethod())) {
+            exchange.sendResponseHeaders(405, -1);
+            return;
+        }
+        Map<String, String> params = parseQueryParams(Optional.ofNullable(exchange.getRequestURI().getQuery()).orElse(""));
+        double[] box = new double[4];
+        int limit;
+        try {
+            String[] parts = params.getOrDefault("bbox", "").split(",");
+            if (parts.length != 4) {
+                throw new NumberFormatException();
+            }
+            for (int i = 0; i < 4; i++) {
+                box[i] = Double.parseDouble(parts[i].trim());
+            }
+            limit = Integer.parseInt(params.getOrDefault("limit", Integer.toString(DEFAULT_WITHIN_LIMIT)));
+        } catch (NumberFormatException e) {
+            writeError(exchange, 400, "Expected bbox=west,south,east,north and optionally a numeric limit.");
+            return;
+        }
+        limit = Math.max(1, Math.min(limit, MAX_WITHIN_LIMIT));
+
+        Scope scope = defaultScope();
+        GraphSnapshot graph = scope.graph;
+        // Ask for one extra node to tell a full page from a truncated one.
+        int[] ids = scope.spatialIndex().within(box[1], box[0], box[3], box[2], limit + 1);
+        boolean truncated = ids.length > limit;
+        try (JsonStreamWriter json = openJsonStream(exchange)) {
+            json.beginObject();
+            json.name("nodes").beginArray();
+            for (int i = 0; i < Math.min(ids.length, limit); i++) {
+                Node node = graph.get_node(ids[i]);
+                if (node == null) continue;
+                json.beginObject();
+                writeNodeFields(json, graph.toExternal(ids[i]), node);
+                json.endObject();
+            }
+            json.endArray();
+            json.name("truncated").value(truncated);
+            json.endObject();
+        }
+    }
+
+    private static void writeNodeFields(JsonStreamWriter json, int id, Node node) throws IOException {
+        json.name("id").value(id)
+                .name("latitude").value(node.get_latitude(), 6)
+                .name("longitude").value(node.get_longitude(), 6)
+                .name("degree").value(node.get_outgoing_edges().size());
+    }
+
+    /**
+     * {@code POST /api/traffic/updates} takes a JSON array of flat objects,
+     * each naming an edge by {@code source} and {@code destination} plus any
+     * of {@code slot} with {@code cost} (minutes), {@code width} and
+     * {@code rushWidth}. The whole array is published as one update; the
+     * response reports the new network version and what was applied.
+     */
+    private static void handleTrafficUpdates(HttpExchange exchange) throws IOException {
+        if (!"POST".equalsIgnoreCase(exchange.getRequestMethod())) {
+            exchange.sendResponseHeaders(405, -1);
+            return;
+        }
+        List<TrafficFeed.EdgeChange> changes = new ArrayList<>();
+        Matcher matcher = FLAT_JSON_OBJECT.matcher(readBody(exchange.getRequestBody()));
+        try {
+            while (matcher.find()) {
+                Map<String, Double> fields = parseNumericJson(matcher.group());
+                Double source = fields.get("source");
+                Double destination = fields.get("destination");
+                if (source == null || destination == null) {
+                    throw new IllegalArgumentException("Every update needs a source and a destination.");
+                }
+                int from = source.intValue();
+                int to = destination.intValue();
+                int before = changes.size();
+                if (fields.containsKey("cost")) {
+                    Double slot = fields.get("slot");
+                    if (slot == null) {
+                        throw new IllegalArgumentException("A cost update needs the slot it applies to.");
+                    }
+                    changes.add(TrafficFeed.EdgeChange.cost(from, to, slot.intValue(), fields.get("cost")));
+                }
+                if (fields.containsKey("width")) {
+                    changes.add(TrafficFeed.EdgeChange.width(from, to, fields.get("width")));
+                }
+                if (fields.containsKey("rushWidth")) {
+                    changes.add(TrafficFeed.EdgeChange.rushWidth(from, to, fields.get("rushWidth")));
+                }
+                if (changes.size() == before) {
+                    throw new IllegalArgumentException("Update for " + from + " -> " + to + " changes nothing.");
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            writeError(exchange, 400, e.getMessage());
+            return;
+        }
+        if (changes.isEmpty()) {
+            writeError(exchange, 400, "Expected a JSON array of edge updates.");
+            return;
+        }
+        writeJson(exchange, TrafficFeed.apply(changes).toJson());
     }
 
     /**
      * Emits bounding box metadata for the currently loaded network so the
-     * frontend can fit the map view and display the vertex count.
+     * frontend can fit the map view and display the vertex count. The network
+     * version and the state of the last reload let clients notice a swap.
      */
     private static void handleNetworkMeta(HttpExchange exchange) throws IOException {
+        handleNetworkMeta(exchange, defaultScope());
+    }
+
+    private static void handleNetworkMeta(HttpExchange exchange, Scope scope) throws IOException {
         if (!"GET".equalsIgnoreCase(exchange.getRequestMethod())) {
             exchange.sendResponseHeaders(405, -1);
             return;
         }
-        DoubleSummaryStatistics latStats = Graph.get_nodes().values().stream()
+        GraphSnapshot graph = scope.graph;
+        DoubleSummaryStatistics latStats = graph.get_nodes().values().stream()
                 .collect(Collectors.summarizingDouble(Node::get_latitude));
-        DoubleSummaryStatistics lonStats = Graph.get_nodes().values().stream()
+        DoubleSummaryStatistics lonStats = graph.get_nodes().values().stream()
                 .collect(Collectors.summarizingDouble(Node::get_longitude));
 
+        String error = reloadError;
+        String reload = scope.dataset != null ? "" : String.format(Locale.ROOT, ",\"reload\":{\"state\":\"%s\"%s}",
+                reloadState, error == null ? "" : ",\"error\":" + JsonStreamWriter.quote(error));
         String body = String.format(Locale.ROOT,
-                "{\"vertexCount\":%d,\"bounds\":[%.6f,%.6f,%.6f,%.6f]}",
-                Graph.get_vertex_count(),
-                lonStats.getMin(), latStats.getMin(), lonStats.getMax(), latStats.getMax());
+                "{\"vertexCount\":%d,\"bounds\":[%.6f,%.6f,%.6f,%.6f],\"version\":%d%s}",
+                graph.get_vertex_count(),
+                lonStats.getMin(), latStats.getMin(), lonStats.getMax(), latStats.getMax(),
+                graph.getVersion(), reload);
         writeJson(exchange, body);
     }
 
+    /**
+     * {@code POST /api/network/reload} re-reads the road network, optionally
+     * from {@code {"directory": "..."}}, on a background thread and answers
+     * 202 straight away. Queries keep running on the current network until the
+     * new one is published; {@code /api/network/meta} reports the new version,
+     * or the error if the load failed and the old network stayed in place. A
+     * second reload while one is running gets 409.
+     */
+    private static void handleNetworkReload(HttpExchange exchange) throws IOException {
+        if (!"POST".equalsIgnoreCase(exchange.getRequestMethod())) {
+            exchange.sendResponseHeaders(405, -1);
+            return;
+        }
+        String directory = parseStringField(readBody(exchange.getRequestBody()), "directory");
+        if (!reloading.compareAndSet(false, true)) {
+            writeError(exchange, 409, "A network reload is already running.");
+            return;
+        }
+        long previousVersion = Graph.getGeneration();
+        reloadState = "loading";
+        reloadError = null;
+        // A platform thread: the load holds the loader's monitor for its whole duration.
+        Thread.ofPlatform().name("network-reload").daemon(true).start(() -> {
+            try {
+                if (BidirectionalAstar.loadGraphFromDisk(directory, null)) {
+                    reloadState = "idle";
+                    precomputeTiles();
+                } else {
+                    reloadError = "Network could not be loaded" + (directory != null ? " from " + directory : "")
+                            + "; still serving version " + previousVersion + ".";
+                    reloadState = "failed";
+                }
+            } catch (RuntimeException e) {
+                reloadError = String.valueOf(e.getMessage());
+                reloadState = "failed";
+            } finally {
+                reloading.set(false);
+            }
+        });
+        exchange.getResponseHeaders().set("Location", "/api/network/meta");
+        writeJson(exchange, 202, String.format(Locale.ROOT, "{\"state\":\"loading\",\"version\":%d}", previousVersion));
+    }
+
     /**
      * Returns a lightweight snapshot of the currently loaded graph so the
      * frontend can render a preview without waiting for user input. The
@@ -412,57 +818,125 @@ public class ApiServer {
             } catch (NumberFormatException ignored) { }
         }
 
-        StringBuilder json = new StringBuilder();
-        json.append('{');
-
-        json.append("\"nodes\":[");
-        boolean first = true;
-        for (Map.Entry<Integer, Node> entry : Graph.get_nodes().entrySet()) {
-            Node node = entry.getValue();
-            if (!first) json.append(',');
-            first = false;
-            json.append('{')
-                    .append("\"id\":").append(entry.getKey()).append(',')
-                    .append("\"coord\":[")
-                    .append(String.format(Locale.ROOT, "%.6f,%.6f", node.get_longitude(), node.get_latitude()))
-                    .append("]}");
-        }
-        json.append(']');
-
-        json.append(",\"edges\":[");
-        Set<String> seenEdges = new HashSet<>();
-        int edgeCount = 0;
-        boolean firstEdge = true;
-        for (Map.Entry<Integer, Node> entry : Graph.get_nodes().entrySet()) {
-            if (edgeCount >= maxEdges) break;
-            int from = entry.getKey();
-            Node source = entry.getValue();
-            for (Edge edge : source.get_outgoing_edges().values()) {
+        GraphSnapshot graph = Graph.snapshot();
+        try (JsonStreamWriter json = openJsonStream(exchange)) {
+            json.beginObject();
+            json.name("nodes").beginArray();
+            for (Map.Entry<Integer, Node> entry : graph.get_nodes().entrySet()) {
+                Node node = entry.getValue();
+                json.beginObject()
+                        .name("id").value(graph.toExternal(entry.getKey()))
+                        .name("coord").beginArray()
+                        .value(node.get_longitude(), 6).value(node.get_latitude(), 6)
+                        .endArray()
+                        .endObject();
+            }
+            json.endArray();
+
+            json.name("edges").beginArray();
+            JsonStreamWriter.LongHashSet seenEdges = new JsonStreamWriter.LongHashSet(Math.min(maxEdges, 1 << 16));
+            int edgeCount = 0;
+            for (Map.Entry<Integer, Node> entry : graph.get_nodes().entrySet()) {
                 if (edgeCount >= maxEdges) break;
-                int to = edge.get_destination();
-                Node dest = Graph.get_node(to);
-                if (dest == null) continue;
+                int from = entry.getKey();
+                Node source = entry.getValue();
+                for (Edge edge : source.get_outgoing_edges().values()) {
+                    if (edgeCount >= maxEdges) break;
+                    int to = edge.get_destination();
+                    Node dest = graph.get_node(to);
+                    if (dest == null) continue;
+                    if (!seenEdges.add(((long) from << 32) | (to & 0xFFFFFFFFL))) continue;
+
+                    edgeCount++;
+                    json.beginObject()
+                            .name("from").value(graph.toExternal(from))
+                            .name("to").value(graph.toExternal(to))
+                            .name("line").beginArray()
+                            .beginArray().value(source.get_longitude(), 6).value(source.get_latitude(), 6).endArray()
+                            .beginArray().value(dest.get_longitude(), 6).value(dest.get_latitude(), 6).endArray()
+                            .endArray()
+                            .endObject();
+                }
+            }
+            json.endArray();
+            json.endObject();
+        }
+    }
 
-                String key = from + "->" + to;
-                if (!seenEdges.add(key)) continue;
+    /**
+     * Tile index for the current graph generation, rebuilt after a reload.
+     */
+    private static TileIndex currentTileIndex() {
+        TileIndex index = tileIndex;
+        if (index == null || index.getGeneration() != Graph.getGeneration()) {
+            synchronized (ApiServer.class) {
+                index = tileIndex;
+                if (index == null || index.getGeneration() != Graph.getGeneration()) {
+                    index = TileIndex.build();
+                    tileIndex = index;
+                }
+            }
+        }
+        return index;
+    }
 
-                if (!firstEdge) json.append(',');
-                firstEdge = false;
-                edgeCount++;
-                json.append('{')
-                        .append("\"from\":").append(from).append(',')
-                        .append("\"to\":").append(to).append(',')
-                        .append("\"line\":[")
-                        .append(String.format(Locale.ROOT, "[%.6f,%.6f],[%.6f,%.6f]",
-                                source.get_longitude(), source.get_latitude(),
-                                dest.get_longitude(), dest.get_latitude()))
-                        .append("]}");
+    /**
+     * Serves {@code /api/tiles/{z}/{x}/{y}} (an optional {@code .json} suffix is
+     * accepted) from the {@link TileIndex}. Tiles carry an ETag so panning back
+     * over a region costs a 304 instead of a payload.
+     */
+    private static void handleTile(HttpExchange exchange) throws IOException {
+        if (!"GET".equalsIgnoreCase(exchange.getRequestMethod())) {
+            exchange.sendResponseHeaders(405, -1);
+            return;
+        }
+        String path = exchange.getRequestURI().getPath();
+        String[] parts = path.substring(Math.min(path.length(), "/api/tiles/".length())).split("/");
+        int z;
+        int x;
+        int y;
+        try {
+            if (parts.length != 3) {
+                throw new NumberFormatException();
             }
+            z = Integer.parseInt(parts[0]);
+            x = Integer.parseInt(parts[1]);
+            y = Integer.parseInt(parts[2].endsWith(".json") ? parts[2].substring(0, parts[2].length() - 5) : parts[2]);
+        } catch (NumberFormatException e) {
+            writeError(exchange, 400, "Expected /api/tiles/{z}/{x}/{y}.");
+            return;
+        }
+        if (z < 0 || z > TileIndex.MAX_ZOOM || x < 0 || y < 0 || x >= (1 << z) || y >= (1 << z)) {
+            writeError(exchange, 404, "Tile is outside the valid range for its zoom level.");
+            return;
         }
-        json.append(']');
 
-        json.append('}');
-        writeJson(exchange, json.toString());
+        TileIndex.Tile tile = currentTileIndex().tile(z, x, y);
+        Headers headers = exchange.getResponseHeaders();
+        headers.set("ETag", tile.getEtag());
+        headers.set("Cache-Control", "no-cache");
+        headers.set("Access-Control-Allow-Origin", "*");
+        headers.set("Access-Control-Expose-Headers", "ETag");
+        String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+        if (ifNoneMatch != null && ifNoneMatch.contains(tile.getEtag())) {
+            exchange.sendResponseHeaders(304, -1);
+            exchange.close();
+            return;
+        }
+        headers.set("Content-Type", "application/json; charset=utf-8");
+        headers.set("Vary", "Accept-Encoding");
+        if (acceptsGzip(exchange)) {
+            headers.set("Content-Encoding", "gzip");
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream os = new GZIPOutputStream(exchange.getResponseBody(), 8192)) {
+                os.write(tile.getBody());
+            }
+        } else {
+            exchange.sendResponseHeaders(200, tile.getBody().length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(tile.getBody());
+            }
+        }
     }
 
     /**
@@ -472,37 +946,44 @@ public class ApiServer {
      * JSON payload so the UI can render feedback instead of failing silently.
      */
     private static void handleRunQuery(HttpExchange exchange) throws IOException {
+        handleRunQuery(exchange, defaultScope());
+    }
+
+    private static void handleRunQuery(HttpExchange exchange, Scope scope) throws IOException {
         if (!"POST".equalsIgnoreCase(exchange.getRequestMethod())) {
             exchange.sendResponseHeaders(405, -1);
             return;
         }
+        GraphSnapshot graph = scope.graph;
         String body = readBody(exchange.getRequestBody());
-        Map<String, Double> payload = parseNumericJson(body);
+        Query query = parseQuery(graph, body);
+        int source = query.get_source();
+        int destination = query.get_destination();
+        double departure = query.get_start_departure_time();
+        double budget = query.get_budget();
 
-        int source = payload.getOrDefault("source", 0.0).intValue();
-        int destination = payload.getOrDefault("destination", 0.0).intValue();
-        double departure = payload.getOrDefault("startDepartureMinutes", 0.0);
-        double budget = payload.getOrDefault("budgetMinutes", 60.0);
-        double intervalDuration = payload.getOrDefault(
-                "intervalDurationMinutes",
-                BidirectionalAstar.interval_duration > 0 ? BidirectionalAstar.interval_duration : 360.0
-        );
-
-        if (!Graph.contains_node(source) || !Graph.contains_node(destination)) {
+        if (!graph.contains_node(source) || !graph.contains_node(destination)) {
             writeError(exchange, 400, "Source or destination node is not present in the current graph.");
             return;
         }
 
         Result result = null;
+        Solved solved = null;
         long start = System.currentTimeMillis();
         try {
-            result = BidirectionalAstar.runSingleQuery(source, destination, departure, intervalDuration, budget);
-        } catch (InterruptedException | ExecutionException e) {
+            solved = solve(scope, query);
+            result = solved.result;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            e.printStackTrace();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SolverExecutor.OverloadedException) {
+                writeOverloaded(exchange, (SolverExecutor.OverloadedException) e.getCause());
+                return;
+            }
             e.printStackTrace();
         }
         long elapsed = System.currentTimeMillis() - start;
-        Runtime runtime = Runtime.getRuntime();
-        double memoryMb = (runtime.totalMemory() - runtime.freeMemory()) / (1024.0 * 1024.0);
 
         if (result == null) {
             result = new Result(
@@ -515,16 +996,17 @@ public class ApiServer {
                     Collections.emptyList());
         }
 
-        Node sourceNode = Graph.get_node(source);
-        Node destinationNode = Graph.get_node(destination);
+        Node sourceNode = graph.get_node(source);
+        Node destinationNode = graph.get_node(destination);
         double[][] coordinates = new double[][]{
                 {sourceNode != null ? sourceNode.get_longitude() : 0.0, sourceNode != null ? sourceNode.get_latitude() : 0.0},
                 {destinationNode != null ? destinationNode.get_longitude() : 0.0, destinationNode != null ? destinationNode.get_latitude() : 0.0}
         };
-        double widthValue = Graph.get_node(source) != null && !Graph.get_node(source).get_outgoing_edges().isEmpty()
-                ? Graph.get_node(source).get_outgoing_edges().values().iterator().next().get_width(departure)
+        double widthValue = sourceNode != null && !sourceNode.get_outgoing_edges().isEmpty()
+                ? sourceNode.get_outgoing_edges().values().iterator().next().get_width(departure)
                 : 6.0;
 
+        SearchStats stats = result.getSearchStats();
         StringBuilder coordBuilder = new StringBuilder();
         coordBuilder.append("[");
         for (int i = 0; i < coordinates.length; i++) {
@@ -534,17 +1016,750 @@ public class ApiServer {
         coordBuilder.append("]");
 
         String responseJson = String.format(Locale.ROOT,
-                "{\"result\":{\"departureTime\":%.2f,\"score\":%.2f,\"rightTurns\":%d},\"geometry\":{\"type\":\"Feature\",\"geometry\":{\"type\":\"LineString\",\"coordinates\":%s},\"properties\":{\"widthMeters\":[%.2f,%.2f],\"clearway\":[false,false],\"timeSeries\":[%.2f,%.2f],\"width\":%.2f}},\"diagnostics\":{\"elapsedSeconds\":%.3f,\"memoryMb\":%.3f}}",
+                "{\"result\":{\"departureTime\":%.2f,\"score\":%.2f,\"rightTurns\":%d},\"geometry\":{\"type\":\"Feature\",\"geometry\":{\"type\":\"LineString\",\"coordinates\":%s},\"properties\":{\"widthMeters\":[%.2f,%.2f],\"clearway\":[false,false],\"timeSeries\":[%.2f,%.2f],\"width\":%.2f}},\"diagnostics\":{\"elapsedSeconds\":%.3f,\"queueWaitSeconds\":%.3f,\"solveSeconds\":%.3f,\"allocatedMb\":%.3f,\"peakLiveLabels\":%d,\"cacheHit\":%b,\"searchStats\":%s}}",
                 result.get_departureTime(), result.get_score(), result.get_right_turns(),
                 coordBuilder.toString(),
                 widthValue, widthValue,
                 departure, departure + budget,
                 widthValue,
-                elapsed / 1000.0, memoryMb);
+                elapsed / 1000.0,
+                solved != null ? solved.queueWaitMillis / 1000.0 : 0.0,
+                solved != null ? solved.solveMillis / 1000.0 : 0.0,
+                stats != null ? stats.getAllocatedBytes() / (1024.0 * 1024.0) : 0.0,
+                stats != null ? stats.getPeakLiveLabels() : 0L,
+                solved != null && solved.cacheHit,
+                stats != null ? stats.toJson() : "null");
 
         writeJson(exchange, responseJson);
     }
 
+    /**
+     * Build the normalized {@link Query} for a flat JSON request object,
+     * defaulting missing fields. The interval is normalized exactly as
+     * {@link BidirectionalAstar#runSingleQuery} does so equivalent requests
+     * share a result cache key. Request ids are dataset ids; the query carries
+     * internal ids of {@code graph}, -1 for nodes it lacks.
+     */
+    private static Query parseQuery(GraphSnapshot graph, String body) {
+        Map<String, Double> payload = parseNumericJson(body);
+        int source = graph.toInternal(payload.getOrDefault("source", 0.0).intValue());
+        int destination = graph.toInternal(payload.getOrDefault("destination", 0.0).intValue());
+        double departure = payload.getOrDefault("startDepartureMinutes", 0.0);
+        double budget = payload.getOrDefault("budgetMinutes", 60.0);
+        double intervalDuration = payload.getOrDefault("intervalDurationMinutes", DEFAULT_INTERVAL_MINUTES);
+        RoutingMode routingMode = parseRoutingMode(parseStringField(body, "routingMode"));
+        double interval = intervalDuration > 0 ? intervalDuration : budget;
+        return new Query(source, destination, departure, departure + interval, budget, routingMode);
+    }
+
+    /**
+     * Outcome of {@link #solve(Scope, Query)}: the result plus where the time went.
+     * Queue wait and solve time are zero when the result came from the cache.
+     */
+    private static final class Solved {
+        final Result result;
+        final boolean cacheHit;
+        final long queueWaitMillis;
+        final long solveMillis;
+
+        Solved(Result result, boolean cacheHit, long queueWaitMillis, long solveMillis) {
+            this.result = result;
+            this.cacheHit = cacheHit;
+            this.queueWaitMillis = queueWaitMillis;
+            this.solveMillis = solveMillis;
+        }
+    }
+
+    /**
+     * Answer {@code query} from the result cache of {@code scope}, or run it
+     * on the solver executor against {@code scope.graph} and cache the result.
+     * Blocks the calling thread until done.
+     */
+    private static Solved solve(Scope scope, Query query) throws InterruptedException, ExecutionException {
+        long[] timing = new long[2]; // queue wait, solve time of the run this call triggered
+        SolverEvents.CacheLookupEvent event = new SolverEvents.CacheLookupEvent();
+        event.begin();
+        QueryResultCache.Outcome outcome = scope.results.getOrCompute(query, scope.graph.getVersion(), () -> {
+            SolverExecutor.Execution<Result> run = solverExecutor.execute(
+                    () -> BidirectionalAstar.runSingleQuery(scope.graph, query.get_source(), query.get_destination(),
+                            query.get_start_departure_time(),
+                            query.get_end_departure_time() - query.get_start_departure_time(),
+                            query.get_budget(), query.getRoutingMode(), QueryProgress.NONE));
+            timing[0] = run.getQueueWaitMillis();
+            timing[1] = run.getSolveMillis();
+            return run.getResult();
+        });
+        event.end();
+        if (event.shouldCommit()) {
+            event.cache = "result";
+            event.key = scope.graph.toExternal(query.get_source()) + "->" + scope.graph.toExternal(query.get_destination());
+            event.outcome = outcome.isCoalesced() ? "coalesced" : outcome.isHit() ? "hit" : "miss";
+            event.commit();
+        }
+        return new Solved(outcome.getResult(), outcome.isHit(), timing[0], timing[1]);
+    }
+
+    /**
+     * Asynchronous query jobs, so long wide-window queries do not hold an HTTP
+     * exchange open while they solve:
+     * <ul>
+     *   <li>{@code POST /api/queries} queues a job and answers 202 with its id;</li>
+     *   <li>{@code GET /api/queries/{id}} returns the current status or outcome;</li>
+     *   <li>{@code GET /api/queries/{id}/events} streams server-sent
+     *   {@code progress} events and a final {@code result} or {@code error};</li>
+     *   <li>{@code DELETE /api/queries/{id}} cancels the job.</li>
+     * </ul>
+     */
+    private static void handleQueryJobs(HttpExchange exchange) throws IOException {
+        String method = exchange.getRequestMethod();
+        String[] segments = exchange.getRequestURI().getPath().replaceAll("/+$", "").split("/");
+        // ["", "api", "queries", id?, "events"?]
+        if (segments.length == 3) {
+            if ("OPTIONS".equalsIgnoreCase(method)) {
+                writeCorsPreflight(exchange);
+            } else if ("POST".equalsIgnoreCase(method)) {
+                submitQueryJob(exchange);
+            } else {
+                exchange.sendResponseHeaders(405, -1);
+            }
+            return;
+        }
+        if (segments.length > 5 || (segments.length == 5 && !"events".equals(segments[4]))) {
+            writeError(exchange, 404, "Unknown query job resource.");
+            return;
+        }
+        if ("OPTIONS".equalsIgnoreCase(method)) {
+            writeCorsPreflight(exchange);
+            return;
+        }
+        QueryJobRegistry.Job job = queryJobs.get(segments[3]);
+        if (job == null) {
+            writeError(exchange, 404, "Unknown or expired query job.");
+            return;
+        }
+        if (segments.length == 5) {
+            if ("GET".equalsIgnoreCase(method)) {
+                streamQueryJobEvents(exchange, job);
+            } else {
+                exchange.sendResponseHeaders(405, -1);
+            }
+        } else if ("GET".equalsIgnoreCase(method)) {
+            writeJson(exchange, job.isFinished() ? queryJobOutcomeJson(job) : queryJobProgressJson(job));
+        } else if ("DELETE".equalsIgnoreCase(method)) {
+            if (!queryJobs.cancel(job)) {
+                writeError(exchange, 409, "Query job has already finished.");
+                return;
+            }
+            writeJson(exchange, "{\"id\":\"" + job.getId() + "\",\"cancelled\":true}");
+        } else {
+            exchange.sendResponseHeaders(405, -1);
+        }
+    }
+
+    private static void submitQueryJob(HttpExchange exchange) throws IOException {
+        GraphSnapshot graph = defaultScope().graph;
+        Query query = parseQuery(graph, readBody(exchange.getRequestBody()));
+        if (!graph.contains_node(query.get_source()) || !graph.contains_node(query.get_destination())) {
+            writeError(exchange, 400, "Source or destination node is not present in the current graph.");
+            return;
+        }
+        QueryJobRegistry.Job job;
+        try {
+            job = queryJobs.submit(query, graph, solverExecutor, resultCache);
+        } catch (SolverExecutor.OverloadedException e) {
+            writeOverloaded(exchange, e);
+            return;
+        }
+        String location = "/api/queries/" + job.getId();
+        String body = String.format(Locale.ROOT,
+                "{\"id\":\"%s\",\"status\":\"%s\",\"location\":\"%s\",\"events\":\"%s/events\"}",
+                job.getId(), job.getStatus().name().toLowerCase(Locale.ROOT), location, location);
+        Headers headers = exchange.getResponseHeaders();
+        headers.set("Content-Type", "application/json; charset=utf-8");
+        headers.set("Access-Control-Allow-Origin", "*");
+        headers.set("Location", location);
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(202, bytes.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(bytes);
+        }
+    }
+
+    /**
+     * Stream the job as server-sent events. A {@code progress} event is sent
+     * whenever the snapshot changes, checked on every phase change and at
+     * least every {@value #JOB_EVENT_INTERVAL_MS} ms, and the stream ends with
+     * one {@code result} or {@code error} event. Closing the stream does not
+     * cancel the job.
+     */
+    private static void streamQueryJobEvents(HttpExchange exchange, QueryJobRegistry.Job job) throws IOException {
+        Headers headers = exchange.getResponseHeaders();
+        headers.set("Content-Type", "text/event-stream; charset=utf-8");
+        headers.set("Cache-Control", "no-cache");
+        headers.set("Access-Control-Allow-Origin", "*");
+        exchange.sendResponseHeaders(200, 0);
+        try (OutputStream os = exchange.getResponseBody()) {
+            long phaseVersion = -1;
+            String lastSnapshot = null;
+            while (true) {
+                boolean finished = job.isFinished();
+                String snapshot = queryJobProgressJson(job);
+                if (!snapshot.equals(lastSnapshot)) {
+                    writeSseEvent(os, "progress", snapshot);
+                    lastSnapshot = snapshot;
+                }
+                if (finished) {
+                    writeSseEvent(os, job.getStatus() == QueryJobRegistry.Status.DONE ? "result" : "error",
+                            queryJobOutcomeJson(job));
+                    return;
+                }
+                phaseVersion = job.getProgress().awaitPhaseChange(phaseVersion, JOB_EVENT_INTERVAL_MS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void writeSseEvent(OutputStream os, String event, String data) throws IOException {
+        os.write(("event: " + event + "\ndata: " + data + "\n\n").getBytes(StandardCharsets.UTF_8));
+        os.flush();
+    }
+
+    private static String queryJobProgressJson(QueryJobRegistry.Job job) {
+        QueryProgress progress = job.getProgress();
+        return String.format(Locale.ROOT,
+                "{\"id\":\"%s\",\"status\":\"%s\",\"phase\":\"%s\",\"forwardReachable\":%d,\"feasible\":%d,"
+                        + "\"forwardLabels\":%d,\"backwardLabels\":%d,\"intersections\":%d,"
+                        + "\"bestScore\":%s,\"bestRightTurns\":%s}",
+                job.getId(), job.getStatus().name().toLowerCase(Locale.ROOT), progress.getPhase().name(),
+                progress.getForwardReachable(), progress.getFeasible(),
+                progress.getForwardLabels(), progress.getBackwardLabels(), progress.getIntersections(),
+                formatJsonNumber(progress.getBestScore()),
+                progress.getBestRightTurns() >= 0 ? Integer.toString(progress.getBestRightTurns()) : "null");
+    }
+
+    private static String queryJobOutcomeJson(QueryJobRegistry.Job job) {
+        StringBuilder json = new StringBuilder(256);
+        json.append("{\"id\":\"").append(job.getId()).append('"')
+                .append(",\"status\":\"").append(job.getStatus().name().toLowerCase(Locale.ROOT)).append('"');
+        if (job.getStatus() == QueryJobRegistry.Status.DONE) {
+            json.append(",\"cacheHit\":").append(job.isCacheHit()).append(",\"result\":");
+            appendResultJson(json, job.getGraph(), job.getResult());
+        } else {
+            json.append(",\"code\":").append(job.getErrorStatus())
+                    .append(",\"error\":").append(JsonStreamWriter.quote(String.valueOf(job.getError())));
+        }
+        json.append(",\"timing\":{\"queueWaitMs\":").append(job.getQueueWaitMillis())
+                .append(",\"solveMs\":").append(job.getSolveMillis())
+                .append(",\"elapsedMs\":").append(job.getElapsedMillis())
+                .append("}}");
+        return json.toString();
+    }
+
+    private static void writeCorsPreflight(HttpExchange exchange) throws IOException {
+        Headers headers = exchange.getResponseHeaders();
+        headers.set("Access-Control-Allow-Origin", "*");
+        headers.set("Access-Control-Allow-Methods", "GET, POST, DELETE, OPTIONS");
+        headers.set("Access-Control-Allow-Headers", "Content-Type");
+        exchange.sendResponseHeaders(204, -1);
+    }
+
+    /**
+     * Runs an array of queries and streams one NDJSON line per query as each
+     * completes, followed by a summary line. Accepts either a bare array of
+     * query objects or {@code {"queries":[...]}}; every object takes the same
+     * fields as {@code /api/queries/run} plus an optional {@code id} that is
+     * echoed back. A batch holds at most {@code SOLVER_CONCURRENCY} queries on
+     * the solver at once so it cannot crowd interactive requests out of the
+     * queue, and each query is still answered from the result cache when
+     * possible.
+     */
+    private static void handleBatchQueries(HttpExchange exchange) throws IOException {
+        if (!"POST".equalsIgnoreCase(exchange.getRequestMethod())) {
+            exchange.sendResponseHeaders(405, -1);
+            return;
+        }
+        String body = readBody(exchange.getRequestBody());
+        List<String> objects = new ArrayList<>();
+        Matcher matcher = FLAT_JSON_OBJECT.matcher(body);
+        while (matcher.find()) {
+            objects.add(matcher.group());
+        }
+        if (objects.isEmpty()) {
+            writeError(exchange, 400, "Expected a JSON array of query objects.");
+            return;
+        }
+        if (objects.size() > MAX_BATCH_SIZE) {
+            writeError(exchange, 413, "Batch holds " + objects.size() + " queries; the limit is " + MAX_BATCH_SIZE + ".");
+            return;
+        }
+
+        Headers headers = exchange.getResponseHeaders();
+        headers.set("Content-Type", "application/x-ndjson; charset=utf-8");
+        headers.set("Access-Control-Allow-Origin", "*");
+        headers.set("Cache-Control", "no-cache");
+        exchange.sendResponseHeaders(200, 0); // chunked: lines go out as queries finish
+
+        long batchStart = System.currentTimeMillis();
+        BlockingQueue<BatchLine> lines = new LinkedBlockingQueue<>();
+        Semaphore slots = new Semaphore(solverExecutor.getConcurrency(), true);
+        AtomicBoolean abandoned = new AtomicBoolean();
+        Scope scope = defaultScope(); // one network for the whole batch
+        for (int i = 0; i < objects.size(); i++) {
+            int index = i;
+            String object = objects.get(i);
+            Thread.ofVirtual().name("batch-query-" + index).start(() ->
+                    lines.add(runBatchEntry(scope, index, object, slots, abandoned, batchStart)));
+        }
+
+        int succeeded = 0;
+        try (OutputStream os = exchange.getResponseBody()) {
+            for (int written = 0; written < objects.size(); written++) {
+                BatchLine line = lines.take();
+                if (line.succeeded) {
+                    succeeded++;
+                }
+                os.write(line.json.getBytes(StandardCharsets.UTF_8));
+                os.write('\n');
+                os.flush();
+            }
+            String summary = String.format(Locale.ROOT,
+                    "{\"done\":true,\"total\":%d,\"succeeded\":%d,\"failed\":%d,\"elapsedMs\":%d}\n",
+                    objects.size(), succeeded, objects.size() - succeeded, System.currentTimeMillis() - batchStart);
+            os.write(summary.getBytes(StandardCharsets.UTF_8));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            abandoned.set(true);
+        } catch (IOException e) {
+            // Client went away; let queued entries skip their solves.
+            abandoned.set(true);
+            throw e;
+        }
+    }
+
+    /** One rendered NDJSON line of a batch and whether its query found a route. */
+    private static final class BatchLine {
+        final String json;
+        final boolean succeeded;
+
+        BatchLine(String json, boolean succeeded) {
+            this.json = json;
+            this.succeeded = succeeded;
+        }
+    }
+
+    /**
+     * Solve one batch entry and render its NDJSON line. Never throws: failures
+     * become {@code "status":"error"} lines carrying the HTTP status the single
+     * query endpoint would have answered with.
+     */
+    private static BatchLine runBatchEntry(Scope scope, int index, String object, Semaphore slots,
+            AtomicBoolean abandoned, long batchStart) {
+        StringBuilder line = new StringBuilder(256);
+        line.append("{\"index\":").append(index);
+        String id = parseStringField(object, "id");
+        Double numericId = parseNumericJson(object).get("id");
+        if (id != null) {
+            line.append(",\"id\":").append(JsonStreamWriter.quote(id));
+        } else if (numericId != null) {
+            line.append(",\"id\":").append(formatJsonNumber(numericId));
+        }
+
+        GraphSnapshot graph = scope.graph;
+        Query query = parseQuery(graph, object);
+        line.append(",\"source\":").append(graph.toExternal(query.get_source()))
+                .append(",\"destination\":").append(graph.toExternal(query.get_destination()))
+                .append(",\"routingMode\":\"").append(query.getRoutingMode().name()).append('"');
+        if (!graph.contains_node(query.get_source()) || !graph.contains_node(query.get_destination())) {
+            return appendBatchError(line, 400, "Source or destination node is not present in the current graph.",
+                    0, batchStart);
+        }
+
+        long waitStart = System.currentTimeMillis();
+        try {
+            slots.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return appendBatchError(line, 503, "Interrupted before solving.", 0, batchStart);
+        }
+        long batchWait = System.currentTimeMillis() - waitStart;
+        try {
+            if (abandoned.get()) {
+                return appendBatchError(line, 499, "Client disconnected.", batchWait, batchStart);
+            }
+            Solved solved = solve(scope, query);
+            Result result = solved.result;
+            line.append(",\"status\":\"").append(result != null ? "ok" : "no_route").append('"')
+                    .append(",\"cacheHit\":").append(solved.cacheHit)
+                    .append(",\"result\":");
+            appendResultJson(line, graph, result);
+            appendBatchTiming(line, batchWait, solved.queueWaitMillis, solved.solveMillis, batchStart);
+            return new BatchLine(line.append('}').toString(), result != null);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return appendBatchError(line, 503, "Interrupted while solving.", batchWait, batchStart);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            int status = cause instanceof SolverExecutor.OverloadedException
+                    ? ((SolverExecutor.OverloadedException) cause).getStatusCode() : 500;
+            return appendBatchError(line, status, String.valueOf(cause.getMessage()), batchWait, batchStart);
+        } catch (RuntimeException e) {
+            int status = e instanceof SolverExecutor.OverloadedException
+                    ? ((SolverExecutor.OverloadedException) e).getStatusCode() : 500;
+            return appendBatchError(line, status, String.valueOf(e.getMessage()), batchWait, batchStart);
+        } finally {
+            slots.release();
+        }
+    }
+
+    private static BatchLine appendBatchError(StringBuilder line, int status, String message, long batchWait,
+            long batchStart) {
+        line.append(",\"status\":\"error\",\"code\":").append(status)
+                .append(",\"error\":").append(JsonStreamWriter.quote(message));
+        appendBatchTiming(line, batchWait, 0, 0, batchStart);
+        return new BatchLine(line.append('}').toString(), false);
+    }
+
+    /**
+     * Per-query timing: time spent waiting for one of the batch's solver
+     * slots, time queued in the shared solver executor, the solve itself, and
+     * when the entry finished relative to the start of the batch.
+     */
+    private static void appendBatchTiming(StringBuilder line, long batchWait, long queueWait, long solve,
+            long batchStart) {
+        line.append(",\"timing\":{\"batchWaitMs\":").append(batchWait)
+                .append(",\"queueWaitMs\":").append(queueWait)
+                .append(",\"solveMs\":").append(solve)
+                .append(",\"completedAtMs\":").append(System.currentTimeMillis() - batchStart)
+                .append('}');
+    }
+
+    /**
+     * {@code POST /api/queries/one-to-many}: one source, a {@code destinations}
+     * array, and the usual departure, interval, budget and routing mode fields.
+     * The forward search is shared between the destinations (see
+     * {@link OneToManyDriver}) and runs as one job on the solver executor;
+     * results come back in the order of the array and bypass the result cache.
+     */
+    private static void handleOneToManyQuery(HttpExchange exchange) throws IOException {
+        handleOneToManyQuery(exchange, defaultScope());
+    }
+
+    private static void handleOneToManyQuery(HttpExchange exchange, Scope scope) throws IOException {
+        if (!"POST".equalsIgnoreCase(exchange.getRequestMethod())) {
+            exchange.sendResponseHeaders(405, -1);
+            return;
+        }
+        GraphSnapshot graph = scope.graph;
+        String body = readBody(exchange.getRequestBody());
+        Matcher array = Pattern.compile("\"destinations\"\\s*:\\s*\\[([^\\]]*)\\]").matcher(body);
+        if (!array.find()) {
+            writeError(exchange, 400, "Expected a \"destinations\" array of node ids.");
+            return;
+        }
+        List<Integer> destinations = new ArrayList<>();
+        try {
+            for (String id : array.group(1).split(",")) {
+                if (!id.isBlank()) {
+                    destinations.add(Integer.parseInt(id.trim()));
+                }
+            }
+        } catch (NumberFormatException e) {
+            writeError(exchange, 400, "Destinations must be integer node ids.");
+            return;
+        }
+        if (destinations.isEmpty()) {
+            writeError(exchange, 400, "Expected at least one destination.");
+            return;
+        }
+        if (destinations.size() > MAX_BATCH_SIZE) {
+            writeError(exchange, 413, "Request holds " + destinations.size() + " destinations; the limit is "
+                    + MAX_BATCH_SIZE + ".");
+            return;
+        }
+        Query query = parseQuery(graph, body.substring(0, array.start()) + body.substring(array.end()));
+        int source = query.get_source();
+        if (!graph.contains_node(source)) {
+            writeError(exchange, 400, "Source node is not present in the current graph.");
+            return;
+        }
+        List<Integer> targets = new ArrayList<>(destinations.size());
+        for (int destination : destinations) {
+            int target = graph.toInternal(destination);
+            if (!graph.contains_node(target)) {
+                writeError(exchange, 400, "Destination " + destination + " is not present in the current graph.");
+                return;
+            }
+            targets.add(target);
+        }
+
+        long start = System.currentTimeMillis();
+        SolverExecutor.Execution<List<Result>> run;
+        try {
+            run = solverExecutor.execute(() -> BidirectionalAstar.runOneToManyQuery(graph, source, targets,
+                    query.get_start_departure_time(),
+                    query.get_end_departure_time() - query.get_start_departure_time(),
+                    query.get_budget(), query.getRoutingMode()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            writeError(exchange, 503, "Interrupted while solving.");
+            return;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SolverExecutor.OverloadedException) {
+                writeOverloaded(exchange, (SolverExecutor.OverloadedException) e.getCause());
+                return;
+            }
+            writeError(exchange, 500, String.valueOf(e.getCause() != null ? e.getCause().getMessage() : e.getMessage()));
+            return;
+        }
+
+        List<Result> results = run.getResult();
+        StringBuilder json = new StringBuilder(256 + 256 * results.size());
+        json.append("{\"source\":").append(graph.toExternal(source))
+                .append(",\"routingMode\":\"").append(query.getRoutingMode().name()).append('"')
+                .append(",\"results\":[");
+        int found = 0;
+        for (int i = 0; i < results.size(); i++) {
+            Result result = results.get(i);
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"destination\":").append(destinations.get(i))
+                    .append(",\"status\":\"").append(result != null ? "ok" : "no_route").append('"')
+                    .append(",\"result\":");
+            appendResultJson(json, graph, result);
+            json.append('}');
+            if (result != null) {
+                found++;
+            }
+        }
+        json.append("],\"diagnostics\":{\"destinations\":").append(results.size())
+                .append(",\"found\":").append(found)
+                .append(",\"elapsedMs\":").append(System.currentTimeMillis() - start)
+                .append(",\"queueWaitMs\":").append(run.getQueueWaitMillis())
+                .append(",\"solveMs\":").append(run.getSolveMillis())
+                .append("}}");
+        writeJson(exchange, json.toString());
+    }
+
+    /**
+     * {@code POST /api/isochrone}: everything reachable from {@code source},
+     * or from the node nearest {@code lat}/{@code lon}, within
+     * {@code budgetMinutes} of leaving at {@code startDepartureMinutes}. With
+     * {@code intervalDurationMinutes}, departures every {@code stepMinutes}
+     * (default 15) over the interval are tried and each node keeps its
+     * fastest one (see {@link Isochrone}). Runs as one job on the solver
+     * executor. Budgets above {@link #MAX_ISOCHRONE_BUDGET_MINUTES} are
+     * refused with 400, and a request whose sampled departures times budget
+     * exceeds {@link #MAX_ISOCHRONE_SEARCH_MINUTES} with 413.
+     * <p>
+     * Nodes come back column-wise in travel-time order: external id, index of
+     * the parent (-1 at the source), arrival, fastest departure, wide-distance
+     * share and sharp right turns. A node's parent is its predecessor under
+     * that node's own fastest departure, which the parent itself need not
+     * share, so with several departures a chain of parents can switch
+     * departures part way. {@code edges} lists the edges that fit the
+     * budget end to end as flat pairs of node indexes. {@code "detail":"nodes"}
+     * leaves out the edges and {@code "detail":"none"} the nodes as well;
+     * {@code "shape":"hull"} adds the convex hull of the nodes within each of
+     * the {@code bands} (minutes, default the budget) as a closed
+     * longitude/latitude ring.
+     */
+    private static void handleIsochrone(HttpExchange exchange) throws IOException {
+        handleIsochrone(exchange, defaultScope());
+    }
+
+    private static void handleIsochrone(HttpExchange exchange, Scope scope) throws IOException {
+        if (!"POST".equalsIgnoreCase(exchange.getRequestMethod())) {
+            exchange.sendResponseHeaders(405, -1);
+            return;
+        }
+        GraphSnapshot graph = scope.graph;
+        String body = readBody(exchange.getRequestBody());
+        List<Double> bands = new ArrayList<>();
+        Matcher array = Pattern.compile("\"bands\"\\s*:\\s*\\[([^\\]]*)\\]").matcher(body);
+        if (array.find()) {
+            try {
+                for (String minutes : array.group(1).split(",")) {
+                    if (!minutes.isBlank()) {
+                        bands.add(Double.parseDouble(minutes.trim()));
+                    }
+                }
+            } catch (NumberFormatException e) {
+                writeError(exchange, 400, "Bands must be numbers of minutes.");
+                return;
+            }
+            body = body.substring(0, array.start()) + body.substring(array.end());
+        }
+        Map<String, Double> payload = parseNumericJson(body);
+        int source;
+        if (payload.containsKey("source")) {
+            source = graph.toInternal(payload.get("source").intValue());
+        } else if (payload.containsKey("lat") && payload.containsKey("lon")) {
+            int[] nearest = scope.spatialIndex().nearest(payload.get("lat"), payload.get("lon"), 1,
+                    Double.POSITIVE_INFINITY);
+            source = nearest.length > 0 ? nearest[0] : -1;
+        } else {
+            writeError(exchange, 400, "Expected a source node id, or lat and lon.");
+            return;
+        }
+        if (!graph.contains_node(source)) {
+            writeError(exchange, 400, "Source node is not present in the current graph.");
+            return;
+        }
+        double departure = payload.getOrDefault("startDepartureMinutes", 0.0);
+        double interval = payload.getOrDefault("intervalDurationMinutes", 0.0);
+        double step = payload.getOrDefault("stepMinutes", DEFAULT_ISOCHRONE_STEP_MINUTES);
+        double budget = payload.getOrDefault("budgetMinutes", 60.0);
+        if (!(budget > 0) || Double.isInfinite(budget) || !(interval >= 0) || Double.isInfinite(interval)) {
+            writeError(exchange, 400, "budgetMinutes must be positive and intervalDurationMinutes not negative.");
+            return;
+        }
+        if (budget > MAX_ISOCHRONE_BUDGET_MINUTES) {
+            writeError(exchange, 400, String.format(Locale.ROOT, "budgetMinutes may be at most %.0f.",
+                    MAX_ISOCHRONE_BUDGET_MINUTES));
+            return;
+        }
+        int departures = Isochrone.departureCount(departure, departure + interval, step);
+        if (departures * budget > MAX_ISOCHRONE_SEARCH_MINUTES) {
+            writeError(exchange, 413, String.format(Locale.ROOT,
+                    "Isochrone samples %d departures of %.1f minutes; the limit is %.0f departure-minutes. "
+                            + "Raise stepMinutes, shorten the interval or lower the budget.",
+                    departures, budget, MAX_ISOCHRONE_SEARCH_MINUTES));
+            return;
+        }
+        String detail = Optional.ofNullable(parseStringField(body, "detail")).orElse("edges");
+        boolean hulls = "hull".equalsIgnoreCase(parseStringField(body, "shape"));
+        if (bands.isEmpty()) {
+            bands.add(budget);
+        }
+
+        long start = System.currentTimeMillis();
+        SolverExecutor.Execution<Isochrone> run;
+        try {
+            run = solverExecutor.execute(() -> Isochrone.compute(graph, source, departure, departure + interval,
+                    step, budget));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            writeError(exchange, 503, "Interrupted while solving.");
+            return;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SolverExecutor.OverloadedException) {
+                writeOverloaded(exchange, (SolverExecutor.OverloadedException) e.getCause());
+                return;
+            }
+            writeError(exchange, 500, String.valueOf(e.getCause() != null ? e.getCause().getMessage() : e.getMessage()));
+            return;
+        }
+
+        Isochrone isochrone = run.getResult();
+        int size = isochrone.size();
+        int[] edges = isochrone.getEdges();
+        try (JsonStreamWriter json = openJsonStream(exchange)) {
+            json.beginObject();
+            json.name("source").value(graph.toExternal(source));
+            json.name("budgetMinutes").value(budget, 2);
+            json.name("departures").beginArray();
+            for (double sampled : isochrone.getDepartures()) {
+                json.value(sampled, 2);
+            }
+            json.endArray();
+            json.name("reachable").value(size);
+            if (!"none".equalsIgnoreCase(detail)) {
+                json.name("nodes").beginObject();
+                json.name("id").beginArray();
+                for (int i = 0; i < size; i++) {
+                    json.value(graph.toExternal(isochrone.node(i)));
+                }
+                json.endArray().name("parent").beginArray();
+                for (int i = 0; i < size; i++) {
+                    json.value(isochrone.parent(i));
+                }
+                json.endArray().name("arrival").beginArray();
+                for (int i = 0; i < size; i++) {
+                    json.value(isochrone.arrival(i), 2);
+                }
+                json.endArray().name("departure").beginArray();
+                for (int i = 0; i < size; i++) {
+                    json.value(isochrone.departure(i), 2);
+                }
+                json.endArray().name("wideShare").beginArray();
+                for (int i = 0; i < size; i++) {
+                    json.value(isochrone.wideShare(i), 3);
+                }
+                json.endArray().name("rightTurns").beginArray();
+                for (int i = 0; i < size; i++) {
+                    json.value(isochrone.rightTurns(i));
+                }
+                json.endArray().endObject();
+                if (!"nodes".equalsIgnoreCase(detail)) {
+                    json.name("edges").beginArray();
+                    for (int index : edges) {
+                        json.value(index);
+                    }
+                    json.endArray();
+                }
+            }
+            if (hulls) {
+                json.name("hulls").beginArray();
+                for (double minutes : bands) {
+                    json.beginObject();
+                    json.name("minutes").value(minutes, 2);
+                    json.name("reachable").value(isochrone.within(minutes));
+                    json.name("ring").beginArray();
+                    for (double coordinate : isochrone.hull(minutes)) {
+                        json.value(coordinate, 6);
+                    }
+                    json.endArray().endObject();
+                }
+                json.endArray();
+            }
+            json.name("diagnostics").beginObject();
+            json.name("edges").value(edges.length / 2);
+            json.name("elapsedMs").value(System.currentTimeMillis() - start);
+            json.name("queueWaitMs").value(run.getQueueWaitMillis());
+            json.name("solveMs").value(run.getSolveMillis());
+            json.endObject();
+            json.endObject();
+        }
+    }
+
+    /**
+     * Compact result object shared by the batch, one-to-many and job endpoints, or
+     * {@code null} when no route was found. Path ids are translated through
+     * {@code graph}, the snapshot the result was solved against.
+     */
+    private static void appendResultJson(StringBuilder json, GraphSnapshot graph, Result result) {
+        if (result == null) {
+            json.append("null");
+            return;
+        }
+        json.append("{\"departureTime\":").append(formatJsonNumber(result.get_departureTime()))
+                .append(",\"score\":").append(formatJsonNumber(result.get_score()))
+                .append(",\"rightTurns\":").append(result.get_right_turns())
+                .append(",\"sharpTurns\":").append(result.get_sharp_turns())
+                .append(",\"travelTime\":").append(formatJsonNumber(result.get_travel_time()))
+                .append(",\"pathNodes\":").append(result.get_pathNodes() != null
+                        ? graph.toExternal(result.get_pathNodes()).toString().replace(" ", "") : "[]")
+                .append(",\"searchStats\":").append(result.getSearchStats() != null
+                        ? result.getSearchStats().toJson() : "null")
+                .append('}');
+    }
+
+    /**
+     * JSON has no literal for infinities or NaN, which the solver uses for
+     * unreachable scores, so those are written as {@code null}.
+     */
+    private static String formatJsonNumber(double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            return "null";
+        }
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            return Long.toString((long) value);
+        }
+        return Double.toString(value);
+    }
+
     /**
      * Provides a tiny slice of JVM metrics for the live stats panel without
      * requiring JMX or external probes.
@@ -556,10 +1771,105 @@ public class ApiServer {
         }
         Runtime runtime = Runtime.getRuntime();
         double memoryMb = (runtime.totalMemory() - runtime.freeMemory()) / (1024.0 * 1024.0);
-        String json = String.format(Locale.ROOT, "{\"memoryMb\":%.2f,\"timestamp\":%d}", memoryMb, System.currentTimeMillis());
+        TileIndex tiles = tileIndex;
+        String json = String.format(Locale.ROOT,
+                "{\"memoryMb\":%.2f,\"timestamp\":%d,\"graphGeneration\":%d,"
+                        + "\"boundCache\":{\"hits\":%d,\"misses\":%d,\"coalesced\":%d,\"evictions\":%d,\"entries\":%d,\"hitRate\":%.4f},"
+                        + "\"resultCache\":{\"hits\":%d,\"misses\":%d,\"coalesced\":%d,\"evictions\":%d,\"entries\":%d,\"hitRate\":%.4f},"
+                        + "\"solver\":{\"concurrency\":%d,\"queueDepth\":%d,\"active\":%d,\"queued\":%d,\"completed\":%d,"
+                        + "\"rejected\":%d,\"expired\":%d,\"avgQueueWaitMs\":%.2f,\"maxQueueWaitMs\":%d,\"avgSolveMs\":%.2f},"
+                        + "\"jobs\":{\"active\":%d,\"retained\":%d},"
+                        + "\"tiles\":{\"hits\":%d,\"misses\":%d,\"entries\":%d,\"bytes\":%d},"
+                        + "\"latency\":%s}",
+                memoryMb, System.currentTimeMillis(), Graph.getGeneration(),
+                BoundTreeCache.getHits(), BoundTreeCache.getMisses(), BoundTreeCache.getCoalesced(),
+                BoundTreeCache.getEvictions(),
+                BoundTreeCache.size(), BoundTreeCache.getHitRate(),
+                resultCache.getHits(), resultCache.getMisses(), resultCache.getCoalesced(),
+                resultCache.getEvictions(), resultCache.size(), resultCache.getHitRate(),
+                solverExecutor.getConcurrency(), solverExecutor.getQueueDepth(), solverExecutor.getActiveCount(),
+                solverExecutor.getQueuedCount(), solverExecutor.getCompletedCount(), solverExecutor.getRejectedCount(),
+                solverExecutor.getExpiredCount(), solverExecutor.getAverageQueueWaitMillis(),
+                solverExecutor.getMaxQueueWaitMillis(), solverExecutor.getAverageSolveMillis(),
+                queryJobs.getActiveCount(), queryJobs.size(),
+                tiles != null ? tiles.getHits() : 0L, tiles != null ? tiles.getMisses() : 0L,
+                tiles != null ? tiles.cachedTileCount() : 0, tiles != null ? tiles.cachedBytes() : 0L,
+                latencyJson());
         writeJson(exchange, json);
     }
 
+    /**
+     * Percentile summary of the solver histograms for the live metrics view,
+     * in milliseconds.
+     */
+    private static String latencyJson() {
+        StringBuilder json = new StringBuilder("{");
+        appendLatencyJson(json, "query", SolverMetrics.getQueryHistogram());
+        appendLatencyJson(json.append(','), "queueWait", SolverMetrics.getQueueWaitHistogram());
+        for (SolverMetrics.Phase phase : SolverMetrics.Phase.values()) {
+            appendLatencyJson(json.append(','), phase.getLabel(), phase.getHistogram());
+        }
+        return json.append('}').toString();
+    }
+
+    private static void appendLatencyJson(StringBuilder json, String name, LatencyHistogram histogram) {
+        json.append(String.format(Locale.ROOT,
+                "\"%s\":{\"count\":%d,\"p50Ms\":%.3f,\"p90Ms\":%.3f,\"p99Ms\":%.3f,\"maxMs\":%.3f}",
+                name, histogram.getCount(), histogram.percentileMicros(50) / 1000.0,
+                histogram.percentileMicros(90) / 1000.0, histogram.percentileMicros(99) / 1000.0,
+                histogram.getMaxMicros() / 1000.0));
+    }
+
+    /**
+     * {@code GET /metrics} in Prometheus text exposition format: solver phase
+     * histograms and work counters from {@link SolverMetrics}, plus cache,
+     * admission and JVM figures already tracked elsewhere.
+     */
+    private static void handlePrometheusMetrics(HttpExchange exchange) throws IOException {
+        if (!"GET".equalsIgnoreCase(exchange.getRequestMethod())) {
+            exchange.sendResponseHeaders(405, -1);
+            return;
+        }
+        StringBuilder out = new StringBuilder(16 * 1024);
+        SolverMetrics.appendPrometheus(out);
+
+        SolverMetrics.help(out, "result_cache_requests_total", "counter", "Result cache lookups by outcome.");
+        out.append("result_cache_requests_total{outcome=\"hit\"} ").append(resultCache.getHits()).append('\n');
+        out.append("result_cache_requests_total{outcome=\"miss\"} ").append(resultCache.getMisses()).append('\n');
+        out.append("result_cache_requests_total{outcome=\"coalesced\"} ").append(resultCache.getCoalesced()).append('\n');
+        SolverMetrics.counter(out, "result_cache_evictions_total", "Result cache evictions.", resultCache.getEvictions());
+        SolverMetrics.help(out, "bound_cache_requests_total", "counter", "Bound tree cache lookups by outcome.");
+        out.append("bound_cache_requests_total{outcome=\"hit\"} ").append(BoundTreeCache.getHits()).append('\n');
+        out.append("bound_cache_requests_total{outcome=\"miss\"} ").append(BoundTreeCache.getMisses()).append('\n');
+        out.append("bound_cache_requests_total{outcome=\"coalesced\"} ").append(BoundTreeCache.getCoalesced()).append('\n');
+
+        SolverMetrics.gauge(out, "solver_active_queries", "Queries currently being solved.", solverExecutor.getActiveCount());
+        SolverMetrics.gauge(out, "solver_queued_queries", "Queries waiting for a solver slot.", solverExecutor.getQueuedCount());
+        SolverMetrics.counter(out, "solver_completed_total", "Queries solved by the executor.", solverExecutor.getCompletedCount());
+        SolverMetrics.counter(out, "solver_rejected_total", "Queries refused because the queue was full.", solverExecutor.getRejectedCount());
+        SolverMetrics.counter(out, "solver_expired_total", "Queries dropped after waiting too long.", solverExecutor.getExpiredCount());
+        SolverMetrics.gauge(out, "query_jobs_active", "Asynchronous query jobs not yet finished.", queryJobs.getActiveCount());
+
+        Runtime runtime = Runtime.getRuntime();
+        SolverMetrics.gauge(out, "jvm_heap_used_bytes", "Used heap.", runtime.totalMemory() - runtime.freeMemory());
+        SolverMetrics.gauge(out, "graph_generation", "Generation of the loaded graph.", Graph.getGeneration());
+        SolverMetrics.gauge(out, "datasets_loaded_bytes", "Estimated heap held by loaded hosted datasets.",
+                DatasetRegistry.getLoadedBytes());
+        SolverMetrics.counter(out, "traffic_batches_total", "Traffic update batches published.", TrafficFeed.getBatches());
+        SolverMetrics.counter(out, "traffic_edges_updated_total", "Edges changed by traffic updates.", TrafficFeed.getEdgesUpdated());
+        SolverMetrics.counter(out, "traffic_changes_rejected_total", "Traffic changes naming an unknown edge or slot.",
+                TrafficFeed.getChangesRejected());
+        SolverMetrics.counter(out, "bound_cache_carried_over_total", "Bound trees kept across traffic updates.",
+                BoundTreeCache.getCarriedOver());
+
+        byte[] bytes = out.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(bytes);
+        }
+    }
+
     private static Map<String, String> parseQueryParams(String query) {
         Map<String, String> params = new HashMap<>();
         if (query.isEmpty()) return params;
@@ -572,6 +1882,62 @@ public class ApiServer {
         return params;
     }
 
+    /**
+     * Pull a single string-valued field out of a flat JSON object. The request
+     * bodies are tiny and flat, so a pattern match keeps us free of a JSON
+     * library just like {@link #parseNumericJson(String)}.
+     */
+    private static String parseStringField(String body, String field) {
+        Matcher m = Pattern.compile("\"" + Pattern.quote(field) + "\"\\s*:\\s*\"((?:[^\"\\\\]|\\\\.)*)\"").matcher(body);
+        return m.find() ? unescapeJson(m.group(1)) : null;
+    }
+
+    /** Decode the backslash escapes of a JSON string body, four-digit unicode ones included. */
+    private static String unescapeJson(String raw) {
+        if (raw.indexOf('\\') < 0) {
+            return raw;
+        }
+        StringBuilder decoded = new StringBuilder(raw.length());
+        for (int i = 0; i < raw.length(); i++) {
+            char c = raw.charAt(i);
+            if (c != '\\' || i + 1 == raw.length()) {
+                decoded.append(c);
+                continue;
+            }
+            char escaped = raw.charAt(++i);
+            switch (escaped) {
+                case 'n': decoded.append('\n'); break;
+                case 't': decoded.append('\t'); break;
+                case 'r': decoded.append('\r'); break;
+                case 'b': decoded.append('\b'); break;
+                case 'f': decoded.append('\f'); break;
+                case 'u':
+                    if (i + 4 < raw.length()) {
+                        try {
+                            decoded.append((char) Integer.parseInt(raw.substring(i + 1, i + 5), 16));
+                            i += 4;
+                            break;
+                        } catch (NumberFormatException ignored) { }
+                    }
+                    decoded.append(escaped);
+                    break;
+                default: decoded.append(escaped); break;
+            }
+        }
+        return decoded.toString();
+    }
+
+    private static RoutingMode parseRoutingMode(String value) {
+        if (value == null || value.isBlank()) {
+            return RoutingMode.ALL_OBJECTIVES;
+        }
+        try {
+            return RoutingMode.valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException ignored) {
+            return RoutingMode.ALL_OBJECTIVES;
+        }
+    }
+
     private static Map<String, Double> parseNumericJson(String body) {
         Map<String, Double> values = new HashMap<>();
         String sanitized = body.trim();
@@ -602,16 +1968,57 @@ public class ApiServer {
     }
 
     private static void writeJson(HttpExchange exchange, String body) throws IOException {
+        writeJson(exchange, 200, body);
+    }
+
+    private static void writeJson(HttpExchange exchange, int statusCode, String body) throws IOException {
         Headers headers = exchange.getResponseHeaders();
         headers.set("Content-Type", "application/json; charset=utf-8");
         headers.set("Access-Control-Allow-Origin", "*");
         byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
-        exchange.sendResponseHeaders(200, bytes.length);
+        exchange.sendResponseHeaders(statusCode, bytes.length);
         try (OutputStream os = exchange.getResponseBody()) {
             os.write(bytes);
         }
     }
 
+    /**
+     * Start a streamed JSON response: chunked transfer, gzip when the client
+     * accepts it, and a {@link JsonStreamWriter} over the exchange body.
+     * Closing the writer ends the response.
+     */
+    private static JsonStreamWriter openJsonStream(HttpExchange exchange) throws IOException {
+        Headers headers = exchange.getResponseHeaders();
+        headers.set("Content-Type", "application/json; charset=utf-8");
+        headers.set("Access-Control-Allow-Origin", "*");
+        headers.set("Vary", "Accept-Encoding");
+        boolean gzip = acceptsGzip(exchange);
+        if (gzip) {
+            headers.set("Content-Encoding", "gzip");
+        }
+        exchange.sendResponseHeaders(200, 0);
+        OutputStream body = exchange.getResponseBody();
+        return new JsonStreamWriter(gzip ? new GZIPOutputStream(body, 8192) : body);
+    }
+
+    private static boolean acceptsGzip(HttpExchange exchange) {
+        List<String> values = exchange.getRequestHeaders().get("Accept-Encoding");
+        if (values == null) {
+            return false;
+        }
+        for (String value : values) {
+            for (String coding : value.split(",")) {
+                String[] parts = coding.trim().split(";");
+                if (!parts[0].trim().equalsIgnoreCase("gzip")) {
+                    continue;
+                }
+                // honour an explicit "gzip;q=0" refusal
+                return parts.length < 2 || !parts[1].trim().replace(" ", "").matches("q=0(\\.0*)?");
+            }
+        }
+        return false;
+    }
+
     /**
      * Minimal JSON error helper to keep handler logic focused on validation
      * rather than response formatting.
@@ -620,7 +2027,7 @@ public class ApiServer {
         Headers headers = exchange.getResponseHeaders();
         headers.set("Content-Type", "application/json; charset=utf-8");
         headers.set("Access-Control-Allow-Origin", "*");
-        String body = String.format(Locale.ROOT, "{\"error\":\"%s\"}", message.replace('"', '\''));
+        String body = "{\"error\":" + JsonStreamWriter.quote(message) + "}";
         byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
         exchange.sendResponseHeaders(statusCode, bytes.length);
         try (OutputStream os = exchange.getResponseBody()) {
@@ -628,28 +2035,12 @@ public class ApiServer {
         }
     }
 
-    private static String toJsonArray(List<Map<String, Object>> items) {
-        StringBuilder sb = new StringBuilder();
-        sb.append('[');
-        for (int i = 0; i < items.size(); i++) {
-            Map<String, Object> item = items.get(i);
-            sb.append('{');
-            int idx = 0;
-            for (Map.Entry<String, Object> ent : item.entrySet()) {
-                sb.append('\"').append(ent.getKey()).append('\"').append(':');
-                Object value = ent.getValue();
-                if (value instanceof String) {
-                    sb.append('\"').append(value).append('\"');
-                } else {
-                    sb.append(String.format(Locale.ROOT, "%s", value));
-                }
-                if (idx < item.size() - 1) sb.append(',');
-                idx++;
-            }
-            sb.append('}');
-            if (i < items.size() - 1) sb.append(',');
-        }
-        sb.append(']');
-        return sb.toString();
+    /**
+     * Answer a request the solver executor refused. A {@code Retry-After} hint
+     * lets well-behaved clients back off instead of retrying in a tight loop.
+     */
+    private static void writeOverloaded(HttpExchange exchange, SolverExecutor.OverloadedException e) throws IOException {
+        exchange.getResponseHeaders().set("Retry-After", "1");
+        writeError(exchange, e.getStatusCode(), e.getMessage());
     }
 }
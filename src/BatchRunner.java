@@ -0,0 +1,502 @@
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import models.RoutingMode;
+
+/**
+ * Concurrent, resumable batch execution of independent queries.
+ * <p>
+ * {@code concurrency} worker threads take queries from the pending list in
+ * {@link BatchSchedule#locality locality order} unless input order is asked
+ * for, so queries that share a source or destination also share its bound
+ * search. Each solve still fans out over the shared labeling pool, so a handful
+ * of workers is usually enough to keep every core busy. Workers hand finished
+ * rows to a single writer thread, which appends them to a TSV or CSV file.
+ * It flushes every {@value #FLUSH_ROWS} rows or {@value #FLUSH_INTERVAL_MS} ms,
+ * never per line.
+ * <p>
+ * After every flush the writer replaces the checkpoint file atomically. The
+ * checkpoint records the output length at that point, the ids written so
+ * far and a fingerprint of the workload. A rerun with the same workload
+ * truncates the output back to that length, dropping any torn or
+ * unacknowledged tail, and skips the recorded ids. A killed run therefore
+ * loses at most the rows written since the last flush. The checkpoint is
+ * removed once the batch completes. An output that cannot be resumed, with
+ * no checkpoint or one for another workload, is left alone and the run
+ * refuses to start unless {@code --fresh} or {@link #setReplaceOutput} says
+ * to overwrite it. If writing fails, the workers stop
+ * taking queries, the checkpoint stays, and {@link #run()} rethrows the
+ * failure.
+ * <p>
+ * <pre>
+ * java -cp target/classes BatchRunner --queries FILE [--data DIR] [--out FILE] [--format tsv|csv]
+ *         [--concurrency N] [--mode MODE] [--interval MIN] [--overhead PCT] [--order locality|input]
+ *         [--fresh] [--shards K | --workers HOST:PORT,...]
+ * </pre>
+ * With {@code --shards K} the network in {@code --data} is split across
+ * {@code K} {@link ShardWorker} JVMs started for the run, and with
+ * {@code --workers} across workers already running; each query is then
+ * solved on its corridor (see {@link ShardCoordinator}) and this JVM never
+ * loads the whole network.
+ */
+public final class BatchRunner {
+
+    static final int FLUSH_ROWS = 256;
+    static final long FLUSH_INTERVAL_MS = 2_000;
+    private static final long PROGRESS_INTERVAL_MS = 10_000;
+    private static final String[] COLUMNS = {
+            "id", "source", "destination", "departure", "budget", "mode", "status",
+            "best_departure", "score", "right_turns", "sharp_turns", "travel_time",
+            "solve_ms", "allocated_mb", "peak_labels", "labels"
+    };
+
+    private final List<Query> workload;
+    private final Path output;
+    private final Path checkpoint;
+    private final char separator;
+    private final int concurrency;
+
+    private final BitSet done = new BitSet();
+    private final AtomicInteger cursor = new AtomicInteger();
+    private final AtomicLong ok = new AtomicLong();
+    private final AtomicLong infeasible = new AtomicLong();
+    private final AtomicLong fallbacks = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final BlockingQueue<Row> rows = new LinkedBlockingQueue<>();
+    private volatile boolean solving;
+    private volatile IOException writeFailure;
+    private List<Integer> pending;
+    private List<Integer> order;
+    private boolean locality = true;
+    private boolean replaceOutput;
+    private Function<Query, GraphSnapshot> network = query -> Graph.snapshot();
+
+    /**
+     * @param workload queries in id order; an id is the position in this list
+     * @param output result file; the checkpoint sits next to it as {@code <output>.checkpoint}
+     * @param separator column separator, tab or comma
+     * @param concurrency queries in flight at once
+     */
+    public BatchRunner(List<Query> workload, Path output, char separator, int concurrency) {
+        this.workload = workload;
+        this.output = output;
+        this.checkpoint = output.resolveSibling(output.getFileName() + ".checkpoint");
+        this.separator = separator;
+        this.concurrency = Math.max(1, concurrency);
+    }
+
+    /**
+     * Solve each query on the snapshot {@code network} returns for it, such
+     * as a {@link ShardCoordinator#corridor corridor} fetched from shard
+     * workers, instead of the published network.
+     */
+    public void setNetwork(Function<Query, GraphSnapshot> network) {
+        this.network = network;
+    }
+
+    /** Solve in input order instead of {@link BatchSchedule#locality locality order}. */
+    public void setLocalityOrder(boolean locality) {
+        this.locality = locality;
+    }
+
+    /**
+     * Replace an existing output that has no matching checkpoint instead of
+     * refusing to run, for callers that always write to the same file.
+     */
+    public void setReplaceOutput(boolean replaceOutput) {
+        this.replaceOutput = replaceOutput;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = MacroBenchmark.parseOptions(args, 0);
+        String queries = options.get("queries");
+        if (queries == null) {
+            System.err.println("Usage: BatchRunner --queries FILE [--data DIR] [--out FILE] [--format tsv|csv]");
+            System.err.println("                   [--concurrency N] [--mode MODE] [--interval MIN] [--overhead PCT]");
+            System.err.println("                   [--order locality|input] [--fresh] [--shards K | --workers HOST:PORT,...]");
+            System.exit(2);
+        }
+        double interval = Double.parseDouble(options.getOrDefault("interval", "60"));
+        double overhead = Double.parseDouble(options.getOrDefault("overhead", "0"));
+        RoutingMode mode = RoutingMode.valueOf(options.getOrDefault("mode", RoutingMode.ALL_OBJECTIVES.name())
+                .trim().toUpperCase(Locale.ROOT));
+        String format = options.getOrDefault("format", "tsv");
+        Path out = Path.of(options.getOrDefault("out", "batch_results." + format));
+        int concurrency = Integer.parseInt(options.getOrDefault("concurrency",
+                String.valueOf(Math.max(1, Runtime.getRuntime().availableProcessors() / 2))));
+
+        ShardCoordinator shards = ShardCoordinator.fromOptions(options);
+        List<Query> read;
+        if (shards == null) {
+            MacroBenchmark.loadGraph(options);
+            read = BidirectionalAstar.readQueryFile(Path.of(queries), interval);
+        } else {
+            MacroBenchmark.configureSolver();
+            read = BidirectionalAstar.readQueryFile(Path.of(queries), interval, id -> id >= 0);
+        }
+        List<Query> workload = new ArrayList<>();
+        for (Query query : read) {
+            workload.add(new Query(query.get_source(), query.get_destination(), query.get_start_departure_time(),
+                    query.get_end_departure_time(), query.get_budget() * (1 + overhead / 100), mode));
+        }
+        BatchRunner runner = new BatchRunner(workload, out, "csv".equalsIgnoreCase(format) ? ',' : '\t', concurrency);
+        runner.setLocalityOrder(!"input".equalsIgnoreCase(options.getOrDefault("order", "locality")));
+        if (options.containsKey("fresh")) {
+            runner.discardCheckpoint();
+        }
+        if (shards != null) {
+            runner.setNetwork(shards::corridor);
+        }
+        try {
+            runner.run();
+        } finally {
+            if (shards != null) {
+                System.out.println("[Batch] Shards: " + shards.describe());
+                shards.close();
+            }
+        }
+        System.exit(0);
+    }
+
+    /** Forget an earlier interrupted run so the next {@link #run()} starts over. */
+    public void discardCheckpoint() throws IOException {
+        Files.deleteIfExists(checkpoint);
+        Files.deleteIfExists(output);
+    }
+
+    /**
+     * Solve every query not yet recorded in the checkpoint; blocks until the
+     * batch is done. Throws when results could not be written, keeping the
+     * checkpoint so a rerun resumes from the last flush.
+     */
+    public void run() throws IOException, InterruptedException {
+        long started = System.nanoTime();
+        boolean resumed = restore();
+        pending = new ArrayList<>();
+        for (int id = done.nextClearBit(0); id < workload.size(); id = done.nextClearBit(id + 1)) {
+            pending.add(id);
+        }
+        System.out.println("[Batch] " + workload.size() + " queries, " + pending.size() + " to run"
+                + (resumed ? " (resumed, " + done.cardinality() + " already done)" : "")
+                + ", concurrency " + concurrency + ", writing " + output);
+        BatchSchedule schedule = locality ? BatchSchedule.locality(workload, pending)
+                : BatchSchedule.inputOrder(workload, pending);
+        System.out.println("[Batch] Schedule " + schedule.describe());
+        order = pendingOrder(schedule);
+        if (locality) {
+            schedule.hintBudgets();
+        }
+        long hitsBefore = BoundTreeCache.getHits();
+        long missesBefore = BoundTreeCache.getMisses();
+        long coalescedBefore = BoundTreeCache.getCoalesced();
+        long evictionsBefore = BoundTreeCache.getEvictions();
+
+        boolean writeHeader = !Files.exists(output) || Files.size(output) == 0;
+        try (FileOutputStream stream = new FileOutputStream(output.toFile(), true);
+             Writer writer = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8), 1 << 16)) {
+            if (writeHeader) {
+                writer.write(String.join(String.valueOf(separator), COLUMNS));
+                writer.write('\n');
+            }
+            solving = true;
+            Thread writerThread = new Thread(() -> drain(stream, writer), "batch-writer");
+            writerThread.start();
+
+            ExecutorService workers = Executors.newFixedThreadPool(concurrency, r -> {
+                Thread t = new Thread(r, "batch-worker");
+                t.setDaemon(true);
+                return t;
+            });
+            for (int i = 0; i < concurrency; i++) {
+                workers.execute(this::work);
+            }
+            workers.shutdown();
+            workers.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+            solving = false;
+            writerThread.join();
+        } finally {
+            if (locality) {
+                BoundTreeCache.clearBudgetHints();
+            }
+        }
+        if (writeFailure != null) {
+            throw new IOException("Writing " + output + " failed; rerun to resume from " + checkpoint, writeFailure);
+        }
+        for (int id : order) {
+            if (!done.get(id)) {
+                throw new IOException("Batch stopped before query " + id + " was written; rerun to resume from "
+                        + checkpoint);
+            }
+        }
+        Files.deleteIfExists(checkpoint);
+
+        double seconds = (System.nanoTime() - started) / 1e9;
+        System.out.println(String.format(Locale.ROOT,
+                "[Batch] Done: %d solved in %.1f s (%.2f q/s): %d ok, %d fallback, %d infeasible, %d errors",
+                pending.size(), seconds, pending.size() / Math.max(seconds, 1e-9),
+                ok.get(), fallbacks.get(), infeasible.get(), errors.get()));
+        long searches = BoundTreeCache.getMisses() - missesBefore;
+        long reused = BoundTreeCache.getHits() - hitsBefore + BoundTreeCache.getCoalesced() - coalescedBefore;
+        System.out.println(String.format(Locale.ROOT,
+                "[Batch] Bound trees: %d searches for %d lookups (%.1f%% reused, %d waited on a concurrent search,"
+                        + " %d evicted)",
+                searches, searches + reused, 100.0 * reused / Math.max(1, searches + reused),
+                BoundTreeCache.getCoalesced() - coalescedBefore, BoundTreeCache.getEvictions() - evictionsBefore));
+    }
+
+    /**
+     * Order in which pending ids are handed to workers; {@link BatchSchedule#order()} by default.
+     */
+    List<Integer> pendingOrder(BatchSchedule schedule) {
+        return schedule.order();
+    }
+
+    private void work() {
+        int next;
+        while (writeFailure == null && (next = cursor.getAndIncrement()) < order.size()) {
+            int id = order.get(next);
+            rows.add(solve(id, workload.get(id)));
+        }
+    }
+
+    private Row solve(int id, Query query) {
+        long start = System.nanoTime();
+        GraphSnapshot graph;
+        try {
+            graph = network.apply(query);
+        } catch (RuntimeException e) {
+            errors.incrementAndGet();
+            System.err.println("[Batch] Query " + id + " (" + Graph.toExternal(query.get_source()) + " -> "
+                    + Graph.toExternal(query.get_destination()) + ") failed: " + e);
+            return new Row(id, format(id, query, "error", null, new SearchStats(), System.nanoTime() - start));
+        }
+        BidirectionalDriver driver = new BidirectionalDriver(query, query.get_budget(), graph);
+        Result result = null;
+        String status;
+        try {
+            result = driver.driver();
+            if (result == null) {
+                status = "infeasible";
+                infeasible.incrementAndGet();
+            } else if (driver.isFallbackUsed()) {
+                status = "fallback";
+                fallbacks.incrementAndGet();
+            } else {
+                status = "ok";
+                ok.incrementAndGet();
+            }
+        } catch (Exception e) {
+            status = "error";
+            errors.incrementAndGet();
+            System.err.println("[Batch] Query " + id + " (" + Graph.toExternal(query.get_source()) + " -> "
+                    + Graph.toExternal(query.get_destination()) + ") failed: " + e);
+        }
+        return new Row(id, format(id, query, status, result, driver.getSearchStats(), System.nanoTime() - start));
+    }
+
+    private String format(int id, Query query, String status, Result result, SearchStats stats, long nanos) {
+        StringBuilder line = new StringBuilder(160);
+        char s = separator;
+        line.append(id).append(s).append(Graph.toExternal(query.get_source())).append(s)
+                .append(Graph.toExternal(query.get_destination())).append(s)
+                .append(number(query.get_start_departure_time())).append(s).append(number(query.get_budget())).append(s)
+                .append(query.getRoutingMode().name()).append(s).append(status).append(s);
+        if (result != null) {
+            line.append(number(result.get_departureTime())).append(s).append(number(result.get_score())).append(s)
+                    .append(result.get_right_turns()).append(s).append(result.get_sharp_turns()).append(s)
+                    .append(number(result.get_travel_time())).append(s);
+        } else {
+            line.append(s).append(s).append(s).append(s).append(s);
+        }
+        line.append(number(nanos / 1e6)).append(s)
+                .append(number(stats.getAllocatedBytes() / (1024.0 * 1024.0))).append(s)
+                .append(stats.getPeakLiveLabels()).append(s)
+                .append(stats.getLabelsCreated(true) + stats.getLabelsCreated(false))
+                .append('\n');
+        return line.toString();
+    }
+
+    private static String number(double value) {
+        return String.format(Locale.ROOT, "%.3f", value);
+    }
+
+    private static final class Row {
+        final int id;
+        final String line;
+
+        Row(int id, String line) {
+            this.id = id;
+            this.line = line;
+        }
+    }
+
+    /** Writer thread: batch rows into the file, flush, then checkpoint what was flushed. */
+    private void drain(FileOutputStream stream, Writer writer) {
+        List<Integer> unflushed = new ArrayList<>();
+        long lastFlush = System.currentTimeMillis();
+        long lastProgress = lastFlush;
+        long started = lastFlush;
+        int total = pending.size();
+        int written = 0;
+        try {
+            while (solving || !rows.isEmpty()) {
+                Row row = rows.poll(200, TimeUnit.MILLISECONDS);
+                if (row != null) {
+                    writer.write(row.line);
+                    unflushed.add(row.id);
+                    written++;
+                }
+                long now = System.currentTimeMillis();
+                if (unflushed.size() >= FLUSH_ROWS || (!unflushed.isEmpty() && now - lastFlush >= FLUSH_INTERVAL_MS)) {
+                    flush(stream, writer, unflushed);
+                    lastFlush = now;
+                }
+                if (now - lastProgress >= PROGRESS_INTERVAL_MS) {
+                    lastProgress = now;
+                    double rate = written / Math.max(1e-3, (now - started) / 1000.0);
+                    System.out.println(String.format(Locale.ROOT, "[Batch] %d/%d (%.2f q/s, ~%.0f s left)",
+                            written, total, rate, (total - written) / Math.max(rate, 1e-9)));
+                }
+            }
+            flush(stream, writer, unflushed);
+        } catch (IOException e) {
+            System.err.println("[Batch] Writing results failed, stopping: " + e.getMessage());
+            writeFailure = e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void flush(FileOutputStream stream, Writer writer, List<Integer> unflushed) throws IOException {
+        if (unflushed.isEmpty()) {
+            return;
+        }
+        writer.flush();
+        for (int id : unflushed) {
+            done.set(id);
+        }
+        unflushed.clear();
+        writeCheckpoint(stream.getChannel().size());
+    }
+
+    private void writeCheckpoint(long outputBytes) throws IOException {
+        int watermark = done.nextClearBit(0);
+        StringBuilder text = new StringBuilder();
+        text.append("# Batch checkpoint for ").append(output.getFileName()).append('\n');
+        text.append("workload=").append(fingerprint()).append('\n');
+        text.append("bytes=").append(outputBytes).append('\n');
+        text.append("watermark=").append(watermark).append('\n');
+        text.append("done=");
+        boolean first = true;
+        for (int id = done.nextSetBit(watermark); id >= 0; id = done.nextSetBit(id + 1)) {
+            if (!first) {
+                text.append(',');
+            }
+            text.append(id);
+            first = false;
+        }
+        text.append('\n');
+        Path temp = checkpoint.resolveSibling(checkpoint.getFileName() + ".tmp");
+        Files.writeString(temp, text, StandardCharsets.UTF_8);
+        Files.move(temp, checkpoint, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Load the checkpoint of an interrupted run over the same workload and cut
+     * the output back to what it covers. Returns false when starting over.
+     */
+    private boolean restore() throws IOException {
+        if (!Files.exists(checkpoint)) {
+            if (Files.exists(output) && Files.size(output) > 0) {
+                replaceOutput(output + " exists without a checkpoint");
+            }
+            return false;
+        }
+        long bytes = -1;
+        int watermark = 0;
+        String doneIds = "";
+        String workloadPrint = "";
+        for (String line : Files.readAllLines(checkpoint, StandardCharsets.UTF_8)) {
+            int eq = line.indexOf('=');
+            if (line.startsWith("#") || eq < 0) {
+                continue;
+            }
+            String key = line.substring(0, eq);
+            String value = line.substring(eq + 1).trim();
+            switch (key) {
+                case "workload": workloadPrint = value; break;
+                case "bytes": bytes = Long.parseLong(value); break;
+                case "watermark": watermark = Integer.parseInt(value); break;
+                case "done": doneIds = value; break;
+                default: break;
+            }
+        }
+        if (!workloadPrint.equals(fingerprint()) && Files.exists(output) && Files.size(output) > 0) {
+            replaceOutput("The checkpoint of " + output + " belongs to a different workload");
+            Files.deleteIfExists(checkpoint);
+            return false;
+        }
+        if (!Files.exists(output) || Files.size(output) < bytes || bytes < 0) {
+            System.out.println("[Batch] Checkpoint does not match " + output + "; starting over.");
+            discardCheckpoint();
+            return false;
+        }
+        try (RandomAccessFile file = new RandomAccessFile(output.toFile(), "rw")) {
+            file.setLength(bytes);
+        }
+        done.set(0, Math.min(watermark, workload.size()));
+        if (!doneIds.isEmpty()) {
+            for (String id : doneIds.split(",")) {
+                done.set(Integer.parseInt(id));
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Delete the output that {@code reason} explains cannot be resumed, or
+     * refuse when {@link #setReplaceOutput replacing} was not asked for, so
+     * a mistyped rerun does not throw away finished results.
+     */
+    private void replaceOutput(String reason) throws IOException {
+        if (!replaceOutput) {
+            throw new IOException(reason + "; pass --fresh to overwrite it, or choose another --out.");
+        }
+        System.out.println("[Batch] " + reason + "; replacing it.");
+        Files.delete(output);
+    }
+
+    /** Identifies the workload so a checkpoint is never applied to a different query list. */
+    String fingerprint() {
+        long hash = 1125899906842597L;
+        for (Query query : workload) {
+            hash = 31 * hash + Graph.toExternal(query.get_source());
+            hash = 31 * hash + Graph.toExternal(query.get_destination());
+            hash = 31 * hash + Double.hashCode(query.get_start_departure_time());
+            hash = 31 * hash + Double.hashCode(query.get_budget());
+            hash = 31 * hash + query.getRoutingMode().ordinal();
+        }
+        return workload.size() + "-" + Long.toHexString(hash);
+    }
+}
@@ -26,6 +26,7 @@ import java.util.Set;
 import java.util.Map.Entry;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntPredicate;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Stream;
@@ -50,8 +51,6 @@ public class BidirectionalAstar {
 	public static ForkJoinPool pool;// = new ForkJoinPool(16);
 	public static long start;
 	public static Runtime runtime;
-	private static long memory_after;
-	private static boolean updated_memory;
         public static double TIME_LIMIT;
         private static double overhead;
         private static int density;
@@ -71,7 +70,7 @@ public class BidirectionalAstar {
 //	private static HashMap<Integer, Integer> subgraphIndexes = new HashMap<Integer, Integer>(); 
 //	public static int subgraphSize = 0;
 	
-	public static void driver () throws IOException, InterruptedException, ExecutionException{
+	public static synchronized void driver () throws IOException, InterruptedException, ExecutionException{
 		//currentDirectory = args[0];
 		//String s = "6105";//args[0];
 		int n = 21048;//Integer.parseInt(args[1]);
@@ -83,9 +82,12 @@ public class BidirectionalAstar {
 		THRESHOLD = 10;//Integer.parseInt(args[7]);
 		Optimization = true;
 		pool = new ForkJoinPool(no_of_core);
-		Graph.set_vertex_count(n);
-		extract_nodes();
-		extract_edges();
+		GraphSnapshot graph = new GraphSnapshot();
+		graph.set_vertex_count(n);
+		extract_nodes(graph, dataDirectory);
+		extract_edges(graph, dataDirectory);
+		NodeOrdering.apply(graph, NodeOrdering.configured());
+		Graph.publish(graph);
 		//if(n==23947347)
 			//create_query_file();
 		//create_query_bucket();
@@ -198,8 +200,8 @@ public class BidirectionalAstar {
 		String line = null;
 		while ((line = br.readLine()) != null) {
 			String[] entries = line.split("\t");
-			int source = Integer.parseInt(entries[0]);
-			int destination = Integer.parseInt(entries[1]);
+			int source = Graph.toInternal(Integer.parseInt(entries[0]));
+			int destination = Graph.toInternal(Integer.parseInt(entries[1]));
 
 			// Check if source and destination meet the cluster criteria
 			Node sourceNode = Graph.get_node(source);
@@ -219,8 +221,8 @@ public class BidirectionalAstar {
 		br.close();
 	}
 
-	private static void extract_nodes() throws NumberFormatException, IOException{
-		String node_file = dataDirectory + "/" + "nodes_" + Graph.get_vertex_count() +".txt";
+	private static void extract_nodes(GraphSnapshot graph, String directory) throws NumberFormatException, IOException{
+		String node_file = directory + "/" + "nodes_" + graph.get_vertex_count() +".txt";
 		File fin = new File(node_file);
 		BufferedReader br = new BufferedReader(new FileReader(fin));
 		String line = null;
@@ -245,10 +247,10 @@ public class BidirectionalAstar {
 					int clusterId = Integer.parseInt(entries[3]);
 					node.setClusterId(clusterId);
 					// Add node to cluster
-					Cluster cluster = Graph.getCluster(clusterId);
+					Cluster cluster = graph.getCluster(clusterId);
 					if (cluster == null) {
 						cluster = new Cluster(clusterId);
-						Graph.addCluster(cluster);
+						graph.addCluster(cluster);
 					}
 					cluster.addNode(node);
 				} catch (NumberFormatException nfe) {
@@ -256,13 +258,13 @@ public class BidirectionalAstar {
 				}
 			}
 
-			Graph.add_node(nodeId, node);
+			graph.add_node(nodeId, node);
 		}
 		br.close();
 	}
 
-	private static void extract_edges() throws NumberFormatException, IOException{
-		String edge_file = dataDirectory + "/" + "edges_" + Graph.get_vertex_count()+ ".txt";
+	private static void extract_edges(GraphSnapshot graph, String directory) throws NumberFormatException, IOException{
+		String edge_file = directory + "/" + "edges_" + graph.get_vertex_count()+ ".txt";
 		File fin = new File(edge_file);
 		BufferedReader br = new BufferedReader(new FileReader(fin));
 		String line;
@@ -277,8 +279,8 @@ public class BidirectionalAstar {
 			width_time_series = line.trim().split(" ");
 		}
         
-		Graph.updateArrivalTimeSeries(arrival_time_series);
-		Graph.updateWidthTimeSeries(width_time_series);
+		graph.updateArrivalTimeSeries(arrival_time_series);
+		graph.updateWidthTimeSeries(width_time_series);
 
 		while((line = br.readLine()) != null){
 			line = line.trim();
@@ -286,106 +288,78 @@ public class BidirectionalAstar {
 				continue;
 			}
 
-			// Supported formats:
-			// src dst travelCosts
-			// src dst travelCosts baseWidth rushWidth distance
-			String[] entries = line.split(" ");
-
-			int source = Integer.parseInt(entries[0]);
-			int destination = Integer.parseInt(entries[1]);
-			String travel_cost = entries[2];
-
-			double baseWidth = 3.5;
-			double rushWidth = 2.5;
-			double distance = -1;
-			if (entries.length >= 6) {
-				baseWidth = Double.parseDouble(entries[3]);
-				rushWidth = Double.parseDouble(entries[4]);
-				distance = Double.parseDouble(entries[5]);
+			Edge edge = parse_edge(line, arrival_time_series);
+			if (Graph.isCompactStorage()) {
+				edge.compact();
 			}
 
-			Edge edge = new Edge(source, destination);
-			edge.setBaseWidth(baseWidth);
-			edge.setRushWidth(rushWidth);
-			edge.setWidth(baseWidth);
-			if (distance >= 0) {
-				edge.setDistance(distance);
-			}
+			// Insert edge into graph
+			graph.get_node(edge.get_source()).insert_outgoing_edge(edge);
+			graph.get_node(edge.get_destination()).insert_incoming_edge(edge);
+		}
+		br.close();
+	}
 
-			String[] travel_costs = travel_cost.split(",");
+	/**
+	 * One line of an edges file, with travel costs at the slot times of
+	 * {@code arrival_time_series}. Also reads edges a {@link ShardWorker}
+	 * sends in the same format.
+	 */
+	static Edge parse_edge(String line, String[] arrival_time_series) {
+		// Supported formats:
+		// src dst travelCosts
+		// src dst travelCosts baseWidth rushWidth distance
+		String[] entries = line.split(" ");
+
+		int source = Integer.parseInt(entries[0]);
+		int destination = Integer.parseInt(entries[1]);
+		String travel_cost = entries[2];
+
+		double baseWidth = 3.5;
+		double rushWidth = 2.5;
+		double distance = -1;
+		if (entries.length >= 6) {
+			baseWidth = Double.parseDouble(entries[3]);
+			rushWidth = Double.parseDouble(entries[4]);
+			distance = Double.parseDouble(entries[5]);
+		}
 
-			// Add time-dependent travel costs
-			for(int i=0;i<travel_costs.length;i++){
-				Properties properties = new Properties(Double.parseDouble(travel_costs[i]));
-				edge.add_time_property(Integer.parseInt(arrival_time_series[i]), properties);
-			}
+		Edge edge = new Edge(source, destination);
+		edge.setBaseWidth(baseWidth);
+		edge.setRushWidth(rushWidth);
+		edge.setWidth(baseWidth);
+		if (distance >= 0) {
+			edge.setDistance(distance);
+		}
 
-			// Insert edge into graph
-			Graph.get_node(source).insert_outgoing_edge(edge);
-			Graph.get_node(destination).insert_incoming_edge(edge);
+		String[] travel_costs = travel_cost.split(",");
+
+		// Add time-dependent travel costs
+		for(int i=0;i<travel_costs.length;i++){
+			Properties properties = new Properties(Double.parseDouble(travel_costs[i]));
+			edge.add_time_property(Integer.parseInt(arrival_time_series[i]), properties);
 		}
-		br.close();
+		return edge;
 	}
 
+	/**
+	 * Solve the bucketed queries with {@link BatchRunner}: {@code no_of_core}
+	 * queries in flight, results in {@code Output_BiTDCPO_N.txt} as TSV, and a
+	 * checkpoint so an interrupted run resumes where it stopped.
+	 */
 	private static void query_processing() throws IOException, InterruptedException, ExecutionException{
-		String output_file = "Output_BiTDCPO_" + Graph.get_vertex_count() + ".txt";
-		FileWriter fout = new FileWriter(output_file);
-		BufferedWriter writer = new BufferedWriter(fout);
-		
-		
-		runtime = Runtime.getRuntime();
-		//int index=0;
-		while(!queries.isEmpty()){
-			forceStop=false;
-			double start_departure_time = queries.peek().get_start_departure_time();
-			
-			runtime.gc();
-			long memory_before = runtime.totalMemory() - runtime.freeMemory();
-			double budget = queries.peek().get_budget()*(1+overhead/100);
-			
-			start = System.currentTimeMillis();
-			BidirectionalDriver driver = new BidirectionalDriver(queries.peek(), budget);
-			Result output = driver.driver();
-			
-			long end = System.currentTimeMillis();
-			long memory_used = memory_after - memory_before;
-			
-			if(output != null) {
-//					if (output.get_departureTime()==-1 && optimization) {
-//						optimization = false;
-//						Graph.reset_blabeling();
-//						continue;
-//					}
-				writer.write(queries.peek().get_source() + "\t" + queries.peek().get_destination() + "\t" + start_departure_time
-						+ "\t" + queries.peek().get_budget() + "\t" + output.get_departureTime() + "\t" + output.get_score() + "\t" + (end - start) / 1000F +
-						"\t" + (memory_used/(1024*1024)) +  " " + forceStop + "\n");
-				writer.flush();
-					System.out.println(queries.peek().get_source() + "\t" + queries.peek().get_destination() + "\t" + start_departure_time
-							+ "\t" + queries.peek().get_budget() + "\t" + output.get_departureTime() + "\t" + output.get_score() + "\t" + (end - start) / 1000F +
-							"\t" + (memory_used/(1024*1024)) +  "\t" + forceStop);
-				
-			}
-			else {
-				System.out.println(queries.peek().get_source() + "\t" + queries.peek().get_destination() + "\t" + queries.peek().get_start_departure_time()
-						+ "\t" + Graph.get_node(queries.peek().get_destination()).get_forward_hTime() + "\t" + 0 + "\t" + 0 + "\t" + (end - start) / 1000F +
-						"\t" + (memory_used/(1024*1024)) +  "\t" + forceStop);
-			}
-//				writer2.close();
-//				fanalysis.close();
-//				writer3.close();
-//				fpath.close();
-			Graph.reset();
-			//clearSubgraph();
-			
-			queries.poll();
+		List<Query> workload = new ArrayList<Query>();
+		for(Query query : queries) {
+			double budget = query.get_budget()*(1+overhead/100);
+			workload.add(new Query(query.get_source(), query.get_destination(), query.get_start_departure_time(),
+					query.get_end_departure_time(), budget, query.getRoutingMode()));
 		}
-//			if(!optimization)
-//				optimization = true;
-//			
-		
-			
-		writer.close();
-		fout.close();
+		queries.clear();
+		runtime = Runtime.getRuntime();
+		Path output = Path.of("Output_BiTDCPO_" + Graph.get_vertex_count() + ".txt");
+		BatchRunner runner = new BatchRunner(workload, output, '\t', Math.max(1, no_of_core / 4));
+		runner.setReplaceOutput(true); // the file name is fixed, so every run rewrites it
+		runner.run();
 		System.out.println("All query processing is done.");
 	}
 
@@ -417,8 +391,15 @@ public class BidirectionalAstar {
      * Load the graph from disk using the parsing routines in this class. The
      * directory and vertex count may be overridden; otherwise the configured
      * static defaults are used, falling back to the built-in default path.
+     * <p>
+     * The network is parsed into a fresh {@link GraphSnapshot} and published
+     * only once it is complete, so queries keep running against the previous
+     * network during the load. If loading fails, the previous network stays
+     * in place. Loads are serialized.
      */
-    public static boolean loadGraphFromDisk(String directoryOverride, Integer vertexCountOverride) {
+    public static synchronized boolean loadGraphFromDisk(String directoryOverride, Integer vertexCountOverride) {
+        String previousDirectory = dataDirectory;
+        boolean published = false;
         try {
             String dir = resolveDataDirectory(directoryOverride);
             if (dir == null) {
@@ -433,14 +414,12 @@ public class BidirectionalAstar {
                 System.err.println("Unable to determine vertex count in " + dataDirectory);
                 return false;
             }
-            // Ensure vertex count is propagated to Graph before parsing files
-            Graph.set_vertex_count(vertexCount);
             System.out.println("[Load] Resolved vertex count: " + vertexCount);
-
-            extract_nodes();
-            System.out.println("[Load] Nodes extracted: " + Graph.get_nodes().size());
-            extract_edges();
-            System.out.println("[Load] Edges extracted.");
+            GraphSnapshot graph = readNetwork(dataDirectory, vertexCount);
+            Graph.publish(graph);
+            published = true;
+            System.out.println("[Load] Published network version " + graph.getVersion() + ".");
+            System.out.println("[Load] Spatial index built over " + SpatialIndex.current().size() + " nodes.");
             System.out.println("[Load] Using merged format - clusters and widths included in nodes/edges files");
 
             System.out.println("Loaded graph from " + dataDirectory + " with " + Graph.get_nodes().size() + " nodes.");
@@ -449,9 +428,36 @@ public class BidirectionalAstar {
             System.err.println("Error loading graph from files: " + e.getMessage());
             e.printStackTrace();
             return false;
+        } finally {
+            if (!published) {
+                dataDirectory = previousDirectory; // query files still belong to the network being served
+            }
         }
     }
 
+    /**
+     * Parse the network in {@code directory} into a new, unpublished
+     * snapshot, renumbered in the configured {@link NodeOrdering} and in
+     * compact storage if {@link Graph#isCompactStorage()} is set. Touches no
+     * static state, so several networks can be read side by side (see
+     * {@link DatasetRegistry}).
+     */
+    static GraphSnapshot readNetwork(String directory, int vertexCount) throws IOException {
+        GraphSnapshot graph = new GraphSnapshot();
+        graph.set_vertex_count(vertexCount);
+        extract_nodes(graph, directory);
+        System.out.println("[Load] Nodes extracted: " + graph.get_nodes().size());
+        extract_edges(graph, directory);
+        System.out.println("[Load] Edges extracted.");
+        NodeOrdering.apply(graph, NodeOrdering.configured());
+        return graph;
+    }
+
+    /** Vertex count of the dataset in {@code directory}, from its {@code nodes_N.txt}. */
+    static int detectVertexCount(String directory) throws IOException {
+        return resolveVertexCount(directory, null);
+    }
+
     private static String resolveDataDirectory(String override) {
         if (override != null && !override.isBlank()) {
             Path p = Path.of(override);
@@ -540,17 +546,57 @@ public class BidirectionalAstar {
     public static Result runSingleQuery(int source, int destination, double departureMinutes, 
             double intervalMinutes, double budgetMinutes, RoutingMode routingMode)
             throws InterruptedException, ExecutionException {
-        start = System.currentTimeMillis();  // Initialize timer for query execution
+        return runSingleQuery(source, destination, departureMinutes, intervalMinutes, budgetMinutes, routingMode,
+                QueryProgress.NONE);
+    }
+
+    /**
+     * Run a single query and report its phases and label counts to
+     * {@code progress}. Cancelling {@code progress} makes the run stop early
+     * with a {@link java.util.concurrent.CancellationException}.
+     */
+    public static Result runSingleQuery(int source, int destination, double departureMinutes,
+            double intervalMinutes, double budgetMinutes, RoutingMode routingMode, QueryProgress progress)
+            throws InterruptedException, ExecutionException {
+        return runSingleQuery(Graph.snapshot(), source, destination, departureMinutes, intervalMinutes,
+                budgetMinutes, routingMode, progress);
+    }
+
+    /**
+     * Run a single query against {@code graph}, which need not be the
+     * published network; ids are internal ids of {@code graph}.
+     */
+    static Result runSingleQuery(GraphSnapshot graph, int source, int destination, double departureMinutes,
+            double intervalMinutes, double budgetMinutes, RoutingMode routingMode, QueryProgress progress)
+            throws InterruptedException, ExecutionException {
+        // Interval and timer stay with the query and its driver; queries run concurrently on the executor
         double interval = intervalMinutes > 0 ? intervalMinutes : budgetMinutes;
-        interval_duration = interval;
         Query query = new Query(source, destination, departureMinutes, departureMinutes + interval, budgetMinutes, routingMode);
-        System.out.println("[Query] Running with mode: " + routingMode.getDisplayName());
-        BidirectionalDriver driver = new BidirectionalDriver(query, budgetMinutes);
-        try {
-            return driver.driver();
-        } finally {
-            Graph.reset();
-        }
+        BidirectionalDriver driver = new BidirectionalDriver(query, budgetMinutes, graph);
+        driver.getTrace().log("[Query] Running with mode: " + routingMode.getDisplayName());
+        driver.setProgress(progress);
+        return driver.driver();
+    }
+
+    /**
+     * Routes from {@code source} to each of {@code destinations} with one
+     * departure window and budget, sharing the forward search between them.
+     * See {@link OneToManyDriver}.
+     *
+     * @return one result per destination in the given order, {@code null} where no route fits the budget
+     */
+    public static List<Result> runOneToManyQuery(int source, List<Integer> destinations, double departureMinutes,
+            double intervalMinutes, double budgetMinutes, RoutingMode routingMode) {
+        return runOneToManyQuery(Graph.snapshot(), source, destinations, departureMinutes, intervalMinutes,
+                budgetMinutes, routingMode);
+    }
+
+    /** {@link #runOneToManyQuery(int, List, double, double, double, RoutingMode)} against {@code graph}. */
+    static List<Result> runOneToManyQuery(GraphSnapshot graph, int source, List<Integer> destinations,
+            double departureMinutes, double intervalMinutes, double budgetMinutes, RoutingMode routingMode) {
+        double interval = intervalMinutes > 0 ? intervalMinutes : budgetMinutes;
+        return new OneToManyDriver(graph, source, destinations, departureMinutes, departureMinutes + interval,
+                budgetMinutes, routingMode).solve();
     }
 
     public static void setIntervalDuration(double intervalMinutes) {
@@ -561,15 +607,74 @@ public class BidirectionalAstar {
         return interval_duration;
     }
 
-	public static void updateMemory() {
-		//runtime.gc();
-		memory_after = runtime.totalMemory() - runtime.freeMemory();
-		updated_memory = true;
-	}
+    /**
+     * Read a {@code Src-dest_N.txt} query file: tab-separated source,
+     * destination, departure time and budget per line, as read by
+     * {@code create_query_bucket}. Unlike the bucket, no cluster filter is
+     * applied and unknown nodes are skipped. File ids are dataset ids; the
+     * queries carry {@link Graph#toInternal internal} ids.
+     */
+    static List<Query> readQueryFile(Path file, double intervalMinutes) throws IOException {
+        return readQueryFile(file, intervalMinutes, id -> Graph.get_node(id) != null);
+    }
+
+    /**
+     * {@link #readQueryFile(Path, double)} keeping the queries whose source
+     * and destination pass {@code known}, for callers without the network in
+     * this process.
+     */
+    static List<Query> readQueryFile(Path file, double intervalMinutes, IntPredicate known) throws IOException {
+        List<Query> workload = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] entries = line.trim().split("\\s+");
+                if (entries.length < 4) {
+                    continue;
+                }
+                try {
+                    int source = Graph.toInternal(Integer.parseInt(entries[0]));
+                    int destination = Graph.toInternal(Integer.parseInt(entries[1]));
+                    double departure = Double.parseDouble(entries[2]);
+                    double budget = Double.parseDouble(entries[3]);
+                    if (known.test(source) && known.test(destination)) {
+                        workload.add(new Query(source, destination, departure, departure + intervalMinutes, budget));
+                    }
+                } catch (NumberFormatException ignored) { }
+            }
+        }
+        return workload;
+    }
+
+    /**
+     * Seeded counterpart of {@code create_query_file}: departures between
+     * 7:30 and 9:00, a random 1-59 minute reach from the source picks the
+     * destination, and the budget is the fastest time to it plus
+     * {@code overheadPercent}, like {@code query_processing} adds to file
+     * budgets. Sources whose reachable network runs out first are redrawn.
+     */
+    static List<Query> generateQueries(int count, long seed, double intervalMinutes, double overheadPercent) {
+        Random rand = new Random(seed);
+        List<Integer> nodeIds = new ArrayList<>(Graph.get_nodes().keySet());
+        // Dataset order, so a seed draws the same workload whatever the node order.
+        nodeIds.sort(Comparator.comparingInt(Graph::toExternal));
+        List<Query> workload = new ArrayList<>(count);
+        int attempts = 0;
+        while (workload.size() < count && attempts++ < count * 20) {
+            int source = nodeIds.get(rand.nextInt(nodeIds.size()));
+            int departure = rand.nextInt(7 * 60 + 30, 9 * 60);
+            double reach = rand.nextDouble(1, 59);
+            List<Double> destinationAndCost = dijkstra(source, departure, reach);
+            if (destinationAndCost == null) {
+                continue;
+            }
+            int destination = (int) Math.round(destinationAndCost.get(0));
+            double budget = destinationAndCost.get(1) * (1 + overheadPercent / 100);
+            workload.add(new Query(source, destination, departure, departure + intervalMinutes, budget));
+        }
+        return workload;
+    }
 
-	public static boolean isMemoryUpdated() {
-		return updated_memory;
-	}
 //	public static void updateSubgraph(int n) {
 //		subgraphNodes.put(n, subgraphSize);
 //		subgraphSize++;
@@ -5,6 +5,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -24,8 +25,26 @@ public class BidirectionalDriver {
 	private double end_departure_time;
 	private double budget;
 	private RoutingMode routingMode;
+	private QueryBounds bounds;
+	private QueryProgress progress = QueryProgress.NONE;
+	private SearchStats stats = new SearchStats();
+	private final QueryTrace trace = new QueryTrace();
+	private SharedState shared;
+	private boolean fallbackUsed;
+	private PruningConfig pruning = PruningConfig.defaults();
+	private final GraphSnapshot graph;
+	private static final int INITIAL_JOIN_CAPACITY = 10;
 	
 	public BidirectionalDriver(Query query, double budget) {
+		this(query, budget, Graph.snapshot());
+	}
+
+	/**
+	 * Driver that resolves every node through {@code graph}, so the query
+	 * sees one network version even if another is published meanwhile.
+	 */
+	BidirectionalDriver(Query query, double budget, GraphSnapshot graph) {
+		this.graph = graph;
 		this.source = query.get_source();
 		this.destination = query.get_destination();
 		this.start_departure_time = query.get_start_departure_time();
@@ -35,7 +54,35 @@ public class BidirectionalDriver {
 	}
 
 	static class SharedState {
-	    private static final int MAX_LABELS_PER_NODE = 10; // Increased for Pareto paths
+	    private static final int INITIAL_LABEL_CAPACITY = 10;
+
+	    final GraphSnapshot graph;
+	    final QueryBounds bounds;
+	    final QueryProgress progress;
+	    final SearchStats stats;
+	    final PruningConfig pruning;
+
+	    // Pruning caches used by BidirectionalLabeling#shouldPrune. They live here rather than in
+	    // static fields so concurrent queries never prune against each other's scores.
+	    final ConcurrentHashMap<Integer, Double> forwardBestScore = new ConcurrentHashMap<>();
+	    final ConcurrentHashMap<Integer, Double> backwardBestScore = new ConcurrentHashMap<>();
+	    final ConcurrentHashMap<Integer, Double> forwardMinCost = new ConcurrentHashMap<>();
+	    final ConcurrentHashMap<Integer, Double> backwardMinCost = new ConcurrentHashMap<>();
+	    final ConcurrentHashMap<Integer, Integer> forwardFrontierCount = new ConcurrentHashMap<>();
+	    final ConcurrentHashMap<Integer, Integer> backwardFrontierCount = new ConcurrentHashMap<>();
+
+	    SharedState(GraphSnapshot graph, QueryBounds bounds, QueryProgress progress, SearchStats stats) {
+	        this(graph, bounds, progress, stats, PruningConfig.defaults());
+	    }
+
+	    SharedState(GraphSnapshot graph, QueryBounds bounds, QueryProgress progress, SearchStats stats,
+	            PruningConfig pruning) {
+	        this.graph = graph;
+	        this.bounds = bounds;
+	        this.progress = progress;
+	        this.stats = stats;
+	        this.pruning = pruning;
+	    }
 
 	    ConcurrentHashMap<Integer, PriorityBlockingQueue<Label>> forwardVisited = new ConcurrentHashMap<>();
 	    ConcurrentHashMap<Integer, PriorityBlockingQueue<Label>> backwardVisited = new ConcurrentHashMap<>();
@@ -54,21 +101,44 @@ public class BidirectionalDriver {
 	    public void addForwardLabel(int nodeId, Label label) {
 	        forwardVisited.computeIfAbsent(
 	            nodeId,
-	            k -> new PriorityBlockingQueue<>(MAX_LABELS_PER_NODE, worstFirstComparator)
+	            k -> new PriorityBlockingQueue<>(INITIAL_LABEL_CAPACITY, worstFirstComparator)
 	        );
-	        boundedAdd(forwardVisited.get(nodeId), label);
+	        boundedAdd(forwardVisited.get(nodeId), label, true);
 	    }
 
 	    public void addBackwardLabel(int nodeId, Label label) {
 	        backwardVisited.computeIfAbsent(
 	            nodeId,
-	            k -> new PriorityBlockingQueue<>(MAX_LABELS_PER_NODE, worstFirstComparator)
+	            k -> new PriorityBlockingQueue<>(INITIAL_LABEL_CAPACITY, worstFirstComparator)
 	        );
-	        boundedAdd(backwardVisited.get(nodeId), label);
+	        boundedAdd(backwardVisited.get(nodeId), label, false);
 	    }
 
 	    public void addIntersectionNode(int nodeId) {
-	        intersectionNodes.add(nodeId);
+	        if (intersectionNodes.add(nodeId)) {
+	            stats.intersectionNode();
+	            progress.intersectionFound();
+	        }
+	    }
+
+	    /**
+	     * Score {@code label} against the labels already stored on the other side
+	     * of its node and report the best combination as a progress candidate.
+	     * Only runs when someone is watching the query.
+	     */
+	    void offerMeeting(Label label, boolean forward) {
+	        if (!progress.isTracking()) {
+	            return;
+	        }
+	        PriorityBlockingQueue<Label> others = (forward ? backwardVisited : forwardVisited).get(label.get_nodeID());
+	        if (others == null) {
+	            return;
+	        }
+	        for (Label other : others) {
+	            Label f = forward ? label : other;
+	            Label b = forward ? other : label;
+	            progress.offerCandidate(bestDeparture(f, b)[1], f.getRightTurns() + b.getRightTurns());
+	        }
 	    }
 
 	    public boolean isIntersection(int nodeId) {
@@ -76,19 +146,22 @@ public class BidirectionalDriver {
 	    }
 
 	    /**
-	     * Efficient bounded insert:
+	     * Efficient bounded insert, up to {@link PruningConfig#maxLabelsPerNode} labels:
 	     * - If heap not full → add directly
 	     * - If full → only replace if new label has higher score than min in heap
+	     * Either way one label loses out once the heap is full; that counts as dominated.
 	     */
-	    private void boundedAdd(PriorityBlockingQueue<Label> heap, Label label) {
-	        if (heap.size() < MAX_LABELS_PER_NODE) {
+	    private void boundedAdd(PriorityBlockingQueue<Label> heap, Label label, boolean forward) {
+	        if (heap.size() < pruning.maxLabelsPerNode) {
 	            heap.offer(label);
+	            stats.labelRetained();
 	        } else {
 	            Label worst = heap.peek(); // worst element
 	            if (worst != null && betterThan(label, worst)) {
 	                heap.poll();
 	                heap.offer(label);
 	            }
+	            stats.labelEvicted(forward);
 	        }
 	    }
 
@@ -103,80 +176,74 @@ public class BidirectionalDriver {
 	}
 
 
+	/**
+	 * Report phase changes and label counts to {@code progress} and honour its
+	 * cancellation flag. Defaults to {@link QueryProgress#NONE}.
+	 */
+	public void setProgress(QueryProgress progress) {
+		this.progress = progress != null ? progress : QueryProgress.NONE;
+	}
+
+	/**
+	 * Buffered JFR events and log lines of this driver's query; see
+	 * {@link QueryTrace} for when they are emitted.
+	 */
+	QueryTrace getTrace() {
+		return trace;
+	}
+
 	public Result driver() throws InterruptedException, ExecutionException {
-		System.out.println("[Query] Starting driver for " + source + " -> " + destination + " budget=" + budget);
-		Graph.forwardAstar(source, destination, budget);
-		System.out.println("[Query] Forward A* finished");
-		Graph.backwardAstar(source, destination, budget);
-		System.out.println("[Query] Backward A* finished");
+		trace.log("[Query] Starting driver for " + source + " -> " + destination + " budget=" + budget);
+		long queryStart = System.nanoTime();
+		long allocStart = SearchStats.threadAllocatedBytes();
+		stats = new SearchStats();
+		bounds = new QueryBounds(budget);
+		progress.checkCancelled();
+		progress.enterPhase(QueryProgress.Phase.FORWARD_ASTAR);
+		long phaseStart = System.nanoTime();
+		SolverEvents.BoundSearchEvent boundEvent = trace.beginBoundSearch(true, source);
+		graph.forwardAstar(source, destination, bounds);
+		trace.endBoundSearch(boundEvent, bounds.forwardSettledCount());
+		SolverMetrics.recordPhase(SolverMetrics.Phase.FORWARD_BOUND, System.nanoTime() - phaseStart);
+		trace.log("[Query] Forward A* finished");
+		progress.checkCancelled();
+		progress.enterPhase(QueryProgress.Phase.BACKWARD_ASTAR);
+		phaseStart = System.nanoTime();
+		boundEvent = trace.beginBoundSearch(false, destination);
+		graph.backwardAstar(source, destination, bounds);
+		trace.endBoundSearch(boundEvent, bounds.backwardSettledCount());
+		SolverMetrics.recordPhase(SolverMetrics.Phase.BACKWARD_BOUND, System.nanoTime() - phaseStart);
+		trace.log("[Query] Backward A* finished");
+		progress.boundsComputed(bounds.forwardReachableCount(), bounds.feasibleCount());
+		stats.boundsSettled(bounds.forwardSettledCount(), bounds.backwardSettledCount());
+		progress.checkCancelled();
 
-		if(Graph.get_node(source).isFeasible()) {
-			SharedState shared = new SharedState();
+		if(bounds.isFeasible(source)) {
+			progress.enterPhase(QueryProgress.Phase.LABELING);
+			SharedState shared = new SharedState(graph, bounds, progress, stats, pruning);
+			this.shared = shared;
 
 			shared.backwardVisited.clear();
 			shared.forwardVisited.clear();
 			shared.intersectionNodes.clear();
 			
 			//creating forward task
-			List<Double> forward_arrival_time_series = new ArrayList<Double>();
-			forward_arrival_time_series.add(start_departure_time);
-			
-			List<Double> forward_tmp_time_series = Graph.getArrivalTimeSeries(start_departure_time, end_departure_time);
-			
-			forward_arrival_time_series.addAll(forward_tmp_time_series);
-			forward_arrival_time_series.add(end_departure_time);
-			
-			List<BreakPoint> forward_arrival_break_points = createArrivalBreakpoints(forward_arrival_time_series);
-			
-			List<Double> forward_wide_distance_time_series = new ArrayList<Double>();
-			forward_wide_distance_time_series.add(start_departure_time);
-			
-			List<Double> forward_tmp_wide_distance_time_series = Graph.getWidthTimeSeries(start_departure_time, end_departure_time);
-			
-			forward_wide_distance_time_series.addAll(forward_tmp_wide_distance_time_series);
-			forward_wide_distance_time_series.add(end_departure_time);
-			List<BreakPoint> forward_wide_distance_break_points = createScoreBreakpoints(forward_wide_distance_time_series);
-			
-			Function forward_arrival_time = new Function(forward_arrival_break_points, -1);
-			Function forward_wide_distance = new Function(forward_wide_distance_break_points, 0);
-			
-			Label sourceLabel = new Label(source, forward_arrival_time, forward_wide_distance, 0, 0.0);
-			//sourceLabel.initializeLists();
-			sourceLabel.setVisited(source, -1);
+			Label sourceLabel = sourceLabel(graph, source, start_departure_time, end_departure_time);
 			
 			BidirectionalLabeling forward_task = new BidirectionalLabeling(destination, budget/2, sourceLabel, shared, true);
 			//forward_task.run();
 			
 			
 			//creating backward task
-			List<Double> backward_arrival_time_series = new ArrayList<Double>();
-			double fastest_path_cost = Graph.get_node(destination).get_forward_hTime();
-			backward_arrival_time_series.add(start_departure_time+fastest_path_cost);
-			
-			List<Double> backward_tmp_time_series = Graph.getArrivalTimeSeries(start_departure_time+fastest_path_cost, end_departure_time+budget);
-			
-			backward_arrival_time_series.addAll(backward_tmp_time_series);
-			backward_arrival_time_series.add(end_departure_time);
-			
-			List<BreakPoint> backward_arrival_break_points = createArrivalBreakpoints(backward_arrival_time_series);
-			
-			List<Double> backward_wide_distance_time_series = new ArrayList<Double>();
-			backward_wide_distance_time_series.add(start_departure_time+fastest_path_cost);
-			
-			List<Double> backward_tmp_wide_distance_time_series = Graph.getWidthTimeSeries(start_departure_time+fastest_path_cost, end_departure_time+budget);
-			
-			backward_wide_distance_time_series.addAll(backward_tmp_wide_distance_time_series);
-			backward_wide_distance_time_series.add(end_departure_time);
-			List<BreakPoint> backward_wide_distance_break_points = createScoreBreakpoints(backward_wide_distance_time_series);
-			
-			Function backward_arrival_time = new Function(backward_arrival_break_points, -1);
-			Function backward_wide_distance = new Function(backward_wide_distance_break_points, 0);
-			
-			Label destinationLabel = new Label(destination, backward_arrival_time, backward_wide_distance, 0, 0.0);
-			//sourceLabel.initializeLists();
-			destinationLabel.setVisited(destination, -1);
+			Label destinationLabel = destinationLabel(graph, destination, start_departure_time, end_departure_time, budget,
+					bounds.forwardTime(destination));
 			BidirectionalLabeling backward_task = new BidirectionalLabeling(source, budget/2, destinationLabel, shared, false);
 			//backward_task.run();
+			phaseStart = System.nanoTime();
+			SolverEvents.LabelingEvent forwardEvent = trace.beginLabeling(true);
+			SolverEvents.LabelingEvent backwardEvent = trace.beginLabeling(false);
+			stats.labelRetained();
+			stats.labelRetained();
 			ForkJoinTask<?> forwardFuture = BidirectionalAstar.pool.submit(forward_task);
 			ForkJoinTask<?> backwardFuture = BidirectionalAstar.pool.submit(backward_task);
 			try {
@@ -185,15 +252,21 @@ public class BidirectionalDriver {
 				System.out.println("[ERROR] Forward task exception: " + e.getMessage());
 				e.printStackTrace();
 			}
+			trace.endLabeling(forwardEvent);
 			try {
 				backwardFuture.join();
 			} catch(Exception e) {
 				System.out.println("[ERROR] Backward task exception: " + e.getMessage());
 				e.printStackTrace();
 			}
-			System.out.println("[Query] Labeling tasks joined. Intersections=" + shared.intersectionNodes.size());
-			System.out.println("[Query] Forward labels generated at " + shared.forwardVisited.size() + " nodes");
-			System.out.println("[Query] Backward labels generated at " + shared.backwardVisited.size() + " nodes");
+			trace.endLabeling(backwardEvent);
+			SolverMetrics.recordPhase(SolverMetrics.Phase.LABELING, System.nanoTime() - phaseStart);
+			stats.labeledNodes(shared.forwardVisited.size(), shared.backwardVisited.size());
+			trace.labelingDone(forwardEvent, backwardEvent, stats, shared.forwardVisited.size(), shared.backwardVisited.size());
+			trace.log("[Query] Labeling tasks joined. Intersections=" + shared.intersectionNodes.size());
+			trace.log("[Query] Forward labels generated at " + shared.forwardVisited.size() + " nodes");
+			trace.log("[Query] Backward labels generated at " + shared.backwardVisited.size() + " nodes");
+			progress.checkCancelled();
 //			String analysis_file = "Analysis"+index+"_" + Graph.get_vertex_count() +".txt";
 //			FileWriter fanalysis = new FileWriter(analysis_file);
 //			BufferedWriter writer2 = new BufferedWriter(fanalysis);
@@ -215,24 +288,227 @@ public class BidirectionalDriver {
 //			Map<Integer,List<Label>> backward_labels = backwardSolver.call();
 			//Map<Integer,Result> pruned_backward_labels = pruneDomination(backward_labels);
 			
-			// Use routing mode to determine output strategy
-			System.out.println("[Query] Processing labels with routing mode: " + routingMode);
-			Result result = formOutputLabels(shared.intersectionNodes, shared.forwardVisited, shared.backwardVisited, routingMode);
-			if (result == null) {
-				// Fallback: return the fastest path found by plain time Dijkstra when labeling yields nothing
-				result = fallbackFastestPath(source, destination, budget, start_departure_time);
-				if (result != null) {
-					System.out.println("[Query] Fallback fastest-path returned due to empty label merge.");
+			return merge(shared, queryStart, allocStart);
+		}
+		trace.log("[Query] Source not feasible after A*; returning null.");
+		stats.allocatedSince(allocStart);
+		SolverMetrics.recordQuery(System.nanoTime() - queryStart);
+		trace.finish(source, destination, budget, String.valueOf(routingMode), stats, false, false);
+		return null;
+	}
+
+	/**
+	 * Merge the joined label sets of a finished labeling run, fall back to the
+	 * fastest path when the merge finds nothing, and close the query's trace
+	 * and metrics. Shared by {@link #driver()} and {@link #completeFromForward}.
+	 */
+	private Result merge(SharedState shared, long queryStart, long allocStart) {
+		// Use routing mode to determine output strategy
+		trace.log("[Query] Processing labels with routing mode: " + routingMode);
+		progress.enterPhase(QueryProgress.Phase.MERGING);
+		long phaseStart = System.nanoTime();
+		SolverEvents.MergeEvent mergeEvent = trace.beginMerge(String.valueOf(routingMode));
+		// Run the merge inside the solver pool so its parallel streams fork there instead of
+		// competing with request handling on the common pool.
+		Result result = BidirectionalAstar.pool.submit(
+				() -> formOutputLabels(shared.intersectionNodes, shared.forwardVisited, shared.backwardVisited, routingMode)).join();
+		SolverMetrics.recordPhase(SolverMetrics.Phase.MERGE, System.nanoTime() - phaseStart);
+		trace.endMerge(mergeEvent, stats, result != null);
+		boolean fallback = result == null;
+		fallbackUsed = fallback;
+		if (result == null) {
+			// Fallback: return the fastest path found by plain time Dijkstra when labeling yields nothing
+			progress.enterPhase(QueryProgress.Phase.FALLBACK);
+			phaseStart = System.nanoTime();
+			result = fallbackFastestPath(source, destination, budget, start_departure_time);
+			SolverMetrics.recordPhase(SolverMetrics.Phase.FALLBACK, System.nanoTime() - phaseStart);
+			SolverMetrics.fallbackUsed();
+			if (result != null) {
+				trace.log("[Query] Fallback fastest-path returned due to empty label merge.");
+			}
+		}
+		if (result != null) {
+			result.setRoutingMode(routingMode);
+			result.setSearchStats(stats);
+		}
+		trace.log("[Query] Result built, returning to caller.");
+		stats.allocatedSince(allocStart);
+		SolverMetrics.recordQuery(System.nanoTime() - queryStart);
+		trace.finish(source, destination, budget, String.valueOf(routingMode), stats, result != null, fallback);
+		return result;
+	}
+
+	/**
+	 * Initial forward label at {@code source} with arrival and width functions
+	 * over the departure window.
+	 */
+	static Label sourceLabel(GraphSnapshot graph, int source, double start_departure_time, double end_departure_time) {
+		List<Double> forward_arrival_time_series = new ArrayList<Double>();
+		forward_arrival_time_series.add(start_departure_time);
+		
+		List<Double> forward_tmp_time_series = graph.getArrivalTimeSeries(start_departure_time, end_departure_time);
+		
+		forward_arrival_time_series.addAll(forward_tmp_time_series);
+		forward_arrival_time_series.add(end_departure_time);
+		
+		List<BreakPoint> forward_arrival_break_points = createArrivalBreakpoints(forward_arrival_time_series);
+		
+		List<Double> forward_wide_distance_time_series = new ArrayList<Double>();
+		forward_wide_distance_time_series.add(start_departure_time);
+		
+		List<Double> forward_tmp_wide_distance_time_series = graph.getWidthTimeSeries(start_departure_time, end_departure_time);
+		
+		forward_wide_distance_time_series.addAll(forward_tmp_wide_distance_time_series);
+		forward_wide_distance_time_series.add(end_departure_time);
+		List<BreakPoint> forward_wide_distance_break_points = createScoreBreakpoints(forward_wide_distance_time_series);
+		
+		Function forward_arrival_time = new Function(forward_arrival_break_points, -1);
+		Function forward_wide_distance = new Function(forward_wide_distance_break_points, 0);
+		
+		Label sourceLabel = new Label(source, forward_arrival_time, forward_wide_distance, 0, 0.0);
+		//sourceLabel.initializeLists();
+		sourceLabel.setVisited(source, -1);
+		
+		return sourceLabel;
+	}
+
+	/**
+	 * Initial backward label at {@code destination}. Its window starts after
+	 * the fastest lower-bound travel time from the source.
+	 */
+	static Label destinationLabel(GraphSnapshot graph, int destination, double start_departure_time,
+			double end_departure_time, double budget, double fastest_path_cost) {
+		List<Double> backward_arrival_time_series = new ArrayList<Double>();
+		backward_arrival_time_series.add(start_departure_time+fastest_path_cost);
+		
+		List<Double> backward_tmp_time_series = graph.getArrivalTimeSeries(start_departure_time+fastest_path_cost, end_departure_time+budget);
+		
+		backward_arrival_time_series.addAll(backward_tmp_time_series);
+		backward_arrival_time_series.add(end_departure_time);
+		
+		List<BreakPoint> backward_arrival_break_points = createArrivalBreakpoints(backward_arrival_time_series);
+		
+		List<Double> backward_wide_distance_time_series = new ArrayList<Double>();
+		backward_wide_distance_time_series.add(start_departure_time+fastest_path_cost);
+		
+		List<Double> backward_tmp_wide_distance_time_series = graph.getWidthTimeSeries(start_departure_time+fastest_path_cost, end_departure_time+budget);
+		
+		backward_wide_distance_time_series.addAll(backward_tmp_wide_distance_time_series);
+		backward_wide_distance_time_series.add(end_departure_time);
+		List<BreakPoint> backward_wide_distance_break_points = createScoreBreakpoints(backward_wide_distance_time_series);
+		
+		Function backward_arrival_time = new Function(backward_arrival_break_points, -1);
+		Function backward_wide_distance = new Function(backward_wide_distance_break_points, 0);
+		
+		Label destinationLabel = new Label(destination, backward_arrival_time, backward_wide_distance, 0, 0.0);
+		//sourceLabel.initializeLists();
+		destinationLabel.setVisited(destination, -1);
+		return destinationLabel;
+	}
+
+	/**
+	 * Finish this query on top of forward labels that {@link OneToManyDriver}
+	 * already expanded from the same source. Only the backward labeling runs
+	 * here, against {@code targetBounds}. Its labels are joined with the shared
+	 * forward ones and merged as in {@link #driver()}. The forward label sets are
+	 * only read.
+	 */
+	Result completeFromForward(SharedState forward, QueryBounds targetBounds) {
+		trace.log("[Query] Joining " + source + " -> " + destination + " with shared forward labels");
+		long queryStart = System.nanoTime();
+		long allocStart = SearchStats.threadAllocatedBytes();
+		stats = new SearchStats();
+		bounds = targetBounds;
+		stats.boundsSettled(0, bounds.backwardSettledCount());
+		if (!bounds.isFeasible(source)) {
+			stats.allocatedSince(allocStart);
+			SolverMetrics.recordQuery(System.nanoTime() - queryStart);
+			trace.finish(source, destination, budget, String.valueOf(routingMode), stats, false, false);
+			return null;
+		}
+		SharedState shared = new SharedState(graph, bounds, progress, stats, pruning);
+		shared.forwardVisited = forward.forwardVisited;
+		this.shared = shared;
+
+		Label destinationLabel = destinationLabel(graph, destination, start_departure_time, end_departure_time, budget,
+				bounds.forwardTime(destination));
+		BidirectionalLabeling backward_task = new BidirectionalLabeling(source, budget/2, destinationLabel, shared, false);
+		long phaseStart = System.nanoTime();
+		SolverEvents.LabelingEvent backwardEvent = trace.beginLabeling(false);
+		stats.labelRetained();
+		try {
+			BidirectionalAstar.pool.submit(backward_task).join();
+		} catch(Exception e) {
+			System.out.println("[ERROR] Backward task exception: " + e.getMessage());
+			e.printStackTrace();
+		}
+		trace.endLabeling(backwardEvent);
+		SolverMetrics.recordPhase(SolverMetrics.Phase.LABELING, System.nanoTime() - phaseStart);
+		stats.labeledNodes(0, shared.backwardVisited.size());
+		trace.log("[Query] Backward labels generated at " + shared.backwardVisited.size() + " nodes, intersections="
+				+ shared.intersectionNodes.size());
+
+		// Shared forward labels may have run through this destination on their way to another one;
+		// joining those would route through the destination and back, so only the others are merged.
+		ConcurrentHashMap<Integer, PriorityBlockingQueue<Label>> joinable = new ConcurrentHashMap<>();
+		for (Iterator<Integer> it = shared.intersectionNodes.iterator(); it.hasNext(); ) {
+			int node = it.next();
+			PriorityBlockingQueue<Label> labels = new PriorityBlockingQueue<>(INITIAL_JOIN_CAPACITY, shared.worstFirstComparator);
+			for (Label label : forward.forwardVisited.get(node)) {
+				if (node == destination || !label.getVisited(destination)) {
+					labels.offer(label);
 				}
 			}
-			if (result != null) {
-				result.setRoutingMode(routingMode);
+			if (labels.isEmpty()) {
+				it.remove();
+			} else {
+				joinable.put(node, labels);
 			}
-			System.out.println("[Query] Result built, returning to caller.");
-			return result;
 		}
-		System.out.println("[Query] Source not feasible after A*; returning null.");
-		return null;
+		shared.forwardVisited = joinable;
+		return merge(shared, queryStart, allocStart);
+	}
+
+	/**
+	 * Lower bounds computed by the last {@link #driver()} call, or {@code null}
+	 * before the driver has run.
+	 */
+	public QueryBounds getBounds() {
+		return bounds;
+	}
+
+	/**
+	 * Work counters of the last {@link #driver()} call. Also attached to the
+	 * returned {@link Result}; this accessor covers the infeasible case where
+	 * no result is produced.
+	 */
+	public SearchStats getSearchStats() {
+		return stats;
+	}
+
+	/**
+	 * Label sets of the last {@link #driver()} call, or {@code null} when
+	 * labeling did not run. Used by the benchmark harnesses to replay the
+	 * merge phase on real label sets.
+	 */
+	SharedState getSharedState() {
+		return shared;
+	}
+
+	/**
+	 * Pruning settings for the next {@link #driver()} call. Defaults to
+	 * {@link PruningConfig#defaults()} as of construction.
+	 */
+	public void setPruning(PruningConfig pruning) {
+		this.pruning = pruning != null ? pruning : PruningConfig.defaults();
+	}
+
+	/**
+	 * Whether the last {@link #driver()} call answered with the fastest-path
+	 * fallback because the label merge produced nothing.
+	 */
+	public boolean isFallbackUsed() {
+		return fallbackUsed;
 	}
 
 	private Result formOutputLabels1(Set<Integer> intersectionNodes, ConcurrentHashMap<Integer, PriorityBlockingQueue<Label>> forwardVisited, ConcurrentHashMap<Integer, PriorityBlockingQueue<Label>> backwardVisited) {
@@ -242,7 +518,9 @@ public class BidirectionalDriver {
 			PriorityBlockingQueue<Label> current_backward_labels = backwardVisited.get(current_join_node);
 			PriorityBlockingQueue<Label> current_forward_labels = forwardVisited.get(current_join_node);
 			printLabel(current_join_node, current_forward_labels, current_backward_labels);
-			System.out.println("Node: " + current_join_node + ", Forward: " + current_forward_labels.size() + ", Backward: " + current_backward_labels.size() + ", Total: " + (long)current_forward_labels.size()*(long)current_backward_labels.size());
+			if (trace.isDetailed()) {
+				trace.log("Node: " + current_join_node + ", Forward: " + current_forward_labels.size() + ", Backward: " + current_backward_labels.size() + ", Total: " + (long)current_forward_labels.size()*(long)current_backward_labels.size());
+			}
 			long i=0;
 			for(Label current_backward_label:current_backward_labels) {
 				for(Label current_forward_label:current_forward_labels) {
@@ -262,7 +540,9 @@ public class BidirectionalDriver {
 					
 				}
 			}
-			System.out.println(i);
+			if (trace.isDetailed()) {
+				trace.log(String.valueOf(i));
+			}
 			
 		}
 		return finalResult;
@@ -408,7 +688,7 @@ public class BidirectionalDriver {
 	/**
 	 * Main entry point for forming output labels based on routing mode
 	 */
-	private Result formOutputLabels(
+	Result formOutputLabels(
 	        Set<Integer> intersectionNodes,
 	        ConcurrentHashMap<Integer, PriorityBlockingQueue<Label>> forwardVisited,
 	        ConcurrentHashMap<Integer, PriorityBlockingQueue<Label>> backwardVisited,
@@ -519,11 +799,13 @@ public class BidirectionalDriver {
 	        mainResult.addParetoPath(paretoSet.get(i));
 	    }
 	    
-	    System.out.println("[Query] Found " + paretoSet.size() + " Pareto optimal paths");
-	    for (Result r : paretoSet) {
-	        System.out.println("  - Score: " + String.format("%.1f%%", r.get_score()) + 
-	                           ", Turns: " + r.get_right_turns() + 
-	                           ", Travel: " + String.format("%.1f", r.get_travel_time()) + "min");
+	    trace.log("[Query] Found " + paretoSet.size() + " Pareto optimal paths");
+	    if (trace.isDetailed()) {
+	        for (Result r : paretoSet) {
+	            trace.log("  - Score: " + String.format("%.1f%%", r.get_score()) + 
+	                               ", Turns: " + r.get_right_turns() + 
+	                               ", Travel: " + String.format("%.1f", r.get_travel_time()) + "min");
+	        }
 	    }
 	    
 	    return mainResult;
@@ -587,8 +869,19 @@ public class BidirectionalDriver {
 
 	private Result getResult(Label current_forward_label, Label current_backward_label) {
 		
-		double dep_time = -1;
-		double scr = -1;
+		stats.candidateJoin();
+		long allocStart = SearchStats.threadAllocatedBytes();
+		try {
+			return joinLabels(current_forward_label, current_backward_label);
+		} finally {
+			stats.allocatedSince(allocStart);
+		}
+	}
+
+	private Result joinLabels(Label current_forward_label, Label current_backward_label) {
+		double[] best = bestDeparture(current_forward_label, current_backward_label);
+		double dep_time = best[0];
+		double scr = best[1];
 
 		
 					
@@ -605,32 +898,6 @@ public class BidirectionalDriver {
 //		for(int i:path)
 //			writer3.write(i+",");
 //		writer3.write("\n");
-		//writer2.write("[");
-		Function forward_score_function = current_forward_label.get_wide_distance();
-		Function current_arrival_function = current_forward_label.get_arrivalTime();
-		double forward_distance = current_forward_label.getDistance();
-		double backward_distance = current_backward_label.getDistance();
-		
-		while(forward_score_function != null) {
-			List<BreakPoint> score_breakpoints = forward_score_function.getBreakpoints();
-			List<BreakPoint> arrival_time_breakpoints = current_arrival_function.getBreakpoints();
-			for(int i =0;i<score_breakpoints.size();i++) {
-				double forward_score = score_breakpoints.get(i).getY();
-				double tmp_dep_time = arrival_time_breakpoints.get(i).getY();
-				double backward_score = current_backward_label.get_wide_distance(tmp_dep_time);
-				
-				//writer2.write("("+ score_breakpoints.get(i).getX()+","+score_breakpoints.get(i).getY()+"), ");
-				if((forward_score+backward_score)*100/(forward_distance+backward_distance)>scr) {
-					
-					scr = (forward_score+backward_score)*100/(forward_distance+backward_distance);
-					dep_time = tmp_dep_time;
-				}
-			}
-			
-			forward_score_function = forward_score_function.getNextFunction();
-			current_arrival_function = current_arrival_function.getNextFunction();
-		}
-		//writer2.write("],\n");
 //			/int i= (int) start_departure_time;
 //			if(destination_label.get_arrivalTime().getBreakpoints().get(0).getX() >= i)
 //				i= (int) Math.ceil(destination_label.get_arrivalTime().getBreakpoints().get(0).getX());
@@ -661,6 +928,40 @@ public class BidirectionalDriver {
 		return new Result(dep_time, scr, total_right_turns, info.sharpTurns, info.travelTime, path, info.wideEdgeIndices);
 	}
 
+	/**
+	 * Best combined wideness percentage over the forward label's breakpoints,
+	 * returned as {departure time, score}. Shared by result construction and
+	 * the best-so-far progress reports.
+	 */
+	private static double[] bestDeparture(Label current_forward_label, Label current_backward_label) {
+		double dep_time = -1;
+		double scr = -1;
+		Function forward_score_function = current_forward_label.get_wide_distance();
+		Function current_arrival_function = current_forward_label.get_arrivalTime();
+		double forward_distance = current_forward_label.getDistance();
+		double backward_distance = current_backward_label.getDistance();
+		
+		while(forward_score_function != null) {
+			List<BreakPoint> score_breakpoints = forward_score_function.getBreakpoints();
+			List<BreakPoint> arrival_time_breakpoints = current_arrival_function.getBreakpoints();
+			for(int i =0;i<score_breakpoints.size();i++) {
+				double forward_score = score_breakpoints.get(i).getY();
+				double tmp_dep_time = arrival_time_breakpoints.get(i).getY();
+				double backward_score = current_backward_label.get_wide_distance(tmp_dep_time);
+				
+				if((forward_score+backward_score)*100/(forward_distance+backward_distance)>scr) {
+					
+					scr = (forward_score+backward_score)*100/(forward_distance+backward_distance);
+					dep_time = tmp_dep_time;
+				}
+			}
+			
+			forward_score_function = forward_score_function.getNextFunction();
+			current_arrival_function = current_arrival_function.getNextFunction();
+		}
+		return new double[]{dep_time, scr};
+	}
+
 	private List<Integer> buildPath(Label forwardLabel, Label backwardLabel) {
 		int meet = forwardLabel.get_nodeID();
 		List<Integer> forwardPath = new ArrayList<Integer>();
@@ -712,11 +1013,11 @@ public class BidirectionalDriver {
 			int u = path.get(i);
 			int v = path.get(i + 1);
 			Edge edge = null;
-			Node from = Graph.get_node(u);
+			Node from = graph.get_node(u);
 			if (from != null && from.get_outgoing_edges().containsKey(v)) {
 				edge = from.get_outgoing_edges().get(v);
 			} else {
-				Node alt = Graph.get_node(v);
+				Node alt = graph.get_node(v);
 				if (alt != null && alt.get_outgoing_edges().containsKey(u)) {
 					edge = alt.get_outgoing_edges().get(u);
 				}
@@ -728,9 +1029,9 @@ public class BidirectionalDriver {
 				}
 			}
 			if (i > 0) {
-				Node prev = Graph.get_node(path.get(i - 1));
+				Node prev = graph.get_node(path.get(i - 1));
 				Node cur = from;
-				Node nxt = Graph.get_node(v);
+				Node nxt = graph.get_node(v);
 				if (prev != null && cur != null && nxt != null && Graph.isSharpRightTurn(prev, cur, nxt)) {
 					sharp++;
 				}
@@ -783,7 +1084,7 @@ public class BidirectionalDriver {
 			if (cur.cost > dist.getOrDefault(cur.node, Double.MAX_VALUE)) continue; // stale
 			if (cur.node == dest) break; // reached destination with shortest known cost
 
-			Node node = Graph.get_node(cur.node);
+			Node node = graph.get_node(cur.node);
 			if (node == null) continue;
 			for (Map.Entry<Integer, Edge> entry : node.get_outgoing_edges().entrySet()) {
 				Edge edge = entry.getValue();
@@ -822,7 +1123,7 @@ public class BidirectionalDriver {
 		for (int i = 0; i < path.size() - 1; i++) {
 			int u = path.get(i);
 			int v = path.get(i + 1);
-			Node from = Graph.get_node(u);
+			Node from = graph.get_node(u);
 			Edge edge = from != null ? from.get_outgoing_edges().get(v) : null;
 			if (edge != null) {
 				if (!edge.is_clearway() && edge.get_width(0) >= BidirectionalAstar.WIDENESS_THRESHOLD) {
@@ -830,9 +1131,9 @@ public class BidirectionalDriver {
 				}
 			}
 			if (i > 0) {
-				Node prevNode = Graph.get_node(path.get(i - 1));
+				Node prevNode = graph.get_node(path.get(i - 1));
 				Node curNode = from;
-				Node nextNode = Graph.get_node(v);
+				Node nextNode = graph.get_node(v);
 				if (prevNode != null && curNode != null && nextNode != null) {
 					if (Graph.isSharpRightTurn(prevNode, curNode, nextNode)) {
 						sharpTurns++;
@@ -15,39 +15,16 @@ public class BidirectionalLabeling implements Runnable{
         private boolean isForward;
         private boolean master = false;
 
-        // Direction-aware caches to avoid exploring labels that are obviously weaker than
-        // the best heuristic seen for a node. Lower scores are better.
-        private static final ConcurrentHashMap<Integer, Double> forwardBestScore = new ConcurrentHashMap<>();
-        private static final ConcurrentHashMap<Integer, Double> backwardBestScore = new ConcurrentHashMap<>();
-        
-        // Track search progress to enable progressive pruning
-        private static final ConcurrentHashMap<Integer, Double> forwardMinCost = new ConcurrentHashMap<>();
-        private static final ConcurrentHashMap<Integer, Double> backwardMinCost = new ConcurrentHashMap<>();
-        
         // Dynamic pruning: only prune when frontier exceeds this threshold
-        // Configurable based on heuristic mode: Aggressive (10) or Balanced (50)
+        // Configurable based on heuristic mode: Aggressive (10) or Balanced (50).
+        // Used by PruningConfig.defaults(); the weights and prune factors live in PruningConfig.
         private static int FRONTIER_THRESHOLD = 10; // Default: Aggressive
         
-        // Track frontier sizes for dynamic pruning decision
-        private static final ConcurrentHashMap<Integer, Integer> forwardFrontierCount = new ConcurrentHashMap<>();
-        private static final ConcurrentHashMap<Integer, Integer> backwardFrontierCount = new ConcurrentHashMap<>();
-        
         // Heuristic modes
         public static void setAggressiveMode() { FRONTIER_THRESHOLD = 10; }
         public static void setBalancedMode() { FRONTIER_THRESHOLD = 50; }
         public static int getFrontierThreshold() { return FRONTIER_THRESHOLD; }
 
-        // Refined baseline weights for the adaptive heuristic. These ensure admissibility while
-        // providing strong guidance. Distance weight is higher to prioritize budget satisfaction.
-        private static final double BASE_DISTANCE_WEIGHT = 0.40;  // Balanced for budget awareness
-        private static final double BASE_WIDTH_WEIGHT = 0.20;     // Reduced penalty
-        private static final double BASE_TURN_WEIGHT = 0.10;      // Lower penalty to allow exploration
-        private static final double BASE_SHARP_TURN_WEIGHT = 0.05; // Minimal penalty
-        
-        // Progressive pruning - more lenient thresholds to allow bidirectional search to meet
-        private static final double INITIAL_PRUNE_THRESHOLD = 1.30; // 30% tolerance initially
-        private static final double STRICT_PRUNE_THRESHOLD = 1.10;  // 10% tolerance when established
-
         public BidirectionalLabeling(int goal, double b, Label label, BidirectionalDriver.SharedState shared, boolean is_forward){
                 this.goal = goal;
                 this.topLabel = label;
@@ -58,10 +35,15 @@ public class BidirectionalLabeling implements Runnable{
 
 	@Override
 	public void run(){
+		if(shared.progress.isCancelled()) {
+			shared.stats.labelReleased();
+			return; // stop expanding; the driver reports the cancellation
+		}
+		long allocStart = SearchStats.threadAllocatedBytes();
 	
 		List<ForkJoinTask<?>> labelQueue = new ArrayList<ForkJoinTask<?>>();
 		int current_vertex = topLabel.get_nodeID();
-		Node node = Graph.get_node(current_vertex);
+		Node node = shared.graph.get_node(current_vertex);
 		
 		if(isForward) {
 			Map<Integer, Edge> temp_outgoing_edge = node.get_outgoing_edges();
@@ -71,14 +53,15 @@ public class BidirectionalLabeling implements Runnable{
 				int j = edge.get_destination();
 				double distance = edge.get_distance();
 
-                                if(Graph.get_node(j).isFeasible() && !topLabel.getVisited(j)) {
-                                        Node nextNode = Graph.get_node(j);
+                                if(shared.bounds.isFeasible(j) && !topLabel.getVisited(j)) {
+                                        Node nextNode = shared.graph.get_node(j);
                                         if(shouldPrune(nextNode, edge, j)) {
+                                                shared.stats.labelPruned(isForward);
                                                 continue;
                                         }
                                         
                                         // Track frontier expansion for dynamic pruning
-                                        forwardFrontierCount.merge(j, 1, Integer::sum);
+                                        shared.forwardFrontierCount.merge(j, 1, Integer::sum);
                                         
                                         Function current_arrivaltime_function = topLabel.get_arrivalTime();//current function at node i
                                         Function current_width_function = topLabel.get_wide_distance();
@@ -112,7 +95,7 @@ public class BidirectionalLabeling implements Runnable{
 							double new_width;
 							
 							//to reach j to d
-							double min_required_budget = Graph.get_node(j).get_backward_hTime();
+							double min_required_budget = shared.bounds.backwardTime(j);
 							//new breakpoints at node j
 							BreakPoint new_arrival_breakpoint = new BreakPoint(arrival_time_breakpoint.getX(), new_arrival_time);
 							if((new_arrival_time - arrival_time_breakpoint.getX())<=budget && (new_arrival_time + min_required_budget - arrival_time_breakpoint.getX())<=2*budget)	{
@@ -166,6 +149,7 @@ public class BidirectionalLabeling implements Runnable{
 							else {
 								previous_status = false;
 								//TODO inside to outside....split function
+								shared.stats.functionSplit();
 								double x1 = arrival_time_breakpoints.get(arrival_time_breakpoints.size()-1).getX();
 								double y1 = arrival_time_breakpoints.get(arrival_time_breakpoints.size()-1).getY();
 								double x2 = new_arrival_breakpoint.getX();
@@ -236,7 +220,7 @@ public class BidirectionalLabeling implements Runnable{
 						double current_distance = topLabel.getDistance();
 						HashMap<Integer, Integer> current_visitedList = topLabel.getVisitedList();
 						int current_right_turns= topLabel.getRightTurns();
-						if (current_distance!=0 && Graph.isSharpRightTurn(Graph.get_node(current_visitedList.get(current_vertex)), node, Graph.get_node(j))) {
+						if (current_distance!=0 && Graph.isSharpRightTurn(shared.graph.get_node(current_visitedList.get(current_vertex)), node, shared.graph.get_node(j))) {
 							current_right_turns++;
 						}
 							
@@ -252,11 +236,15 @@ public class BidirectionalLabeling implements Runnable{
 //							label_list.add(newLabel);
 							shared.addForwardLabel(j, newLabel);
 //						}
+						shared.progress.labelCreated(true);
+						shared.stats.labelCreated(true);
 						if(shared.isIntersection(j)) {
 							shared.addIntersectionNode(j);
+							shared.offerMeeting(newLabel, true);
 						}
 						if(j!=goal) {
 							BidirectionalLabeling newthread = new BidirectionalLabeling(goal, budget, newLabel, shared, isForward);
+							shared.stats.labelRetained();
 							ForkJoinTask<?> task = BidirectionalAstar.pool.submit(newthread);
 							labelQueue.add(task);
 							//newthread.run();
@@ -274,14 +262,15 @@ public class BidirectionalLabeling implements Runnable{
 				int j = edge.get_source();
 				double distance = edge.get_distance();
 
-                                if(Graph.get_node(j).isFeasible() && !topLabel.getVisited(j)) {
-                                        Node nextNode = Graph.get_node(j);
+                                if(shared.bounds.isFeasible(j) && !topLabel.getVisited(j)) {
+                                        Node nextNode = shared.graph.get_node(j);
                                         if(shouldPrune(nextNode, edge, j)) {
+                                                shared.stats.labelPruned(isForward);
                                                 continue;
                                         }
                                         
                                         // Track frontier expansion for dynamic pruning
-                                        backwardFrontierCount.merge(j, 1, Integer::sum);
+                                        shared.backwardFrontierCount.merge(j, 1, Integer::sum);
                                         
                                         Function current_arrivaltime_function = topLabel.get_arrivalTime();//current function at node i
                                         Function current_width_function = topLabel.get_wide_distance();
@@ -316,7 +305,7 @@ public class BidirectionalLabeling implements Runnable{
 							double new_width;
 							
 							//to reach j to d
-							double min_required_budget = Graph.get_node(j).get_forward_hTime();
+							double min_required_budget = shared.bounds.forwardTime(j);
 							//new breakpoints at node j
 							BreakPoint new_arrival_breakpoint = new BreakPoint(new_departure_time, arrival_time_breakpoint.getY());
 							if((arrival_time_breakpoint.getY() - new_departure_time)<=budget && (arrival_time_breakpoint.getY() + min_required_budget - new_departure_time)<=2*budget)	{
@@ -373,6 +362,7 @@ public class BidirectionalLabeling implements Runnable{
 							else {
 								previous_status = false;
 								//TODO inside to outside....split function
+								shared.stats.functionSplit();
 								double x1 = arrival_time_breakpoints.get(arrival_time_breakpoints.size()-1).getX();
 								double y1 = arrival_time_breakpoints.get(arrival_time_breakpoints.size()-1).getY();
 								double x2 = new_arrival_breakpoint.getX();
@@ -443,7 +433,7 @@ public class BidirectionalLabeling implements Runnable{
 						double current_distance = topLabel.getDistance();
 						HashMap<Integer, Integer> current_visitedList = topLabel.getVisitedList();
 						int current_right_turns= topLabel.getRightTurns();
-						if (current_distance!=0 && Graph.isSharpRightTurn(Graph.get_node(j), node, Graph.get_node(current_visitedList.get(current_vertex)))) {
+						if (current_distance!=0 && Graph.isSharpRightTurn(shared.graph.get_node(j), node, shared.graph.get_node(current_visitedList.get(current_vertex)))) {
 							current_right_turns++;
 						}
 						
@@ -459,11 +449,15 @@ public class BidirectionalLabeling implements Runnable{
 //							label_list.add(newLabel);
 							shared.addBackwardLabel(j, newLabel);
 						//}
+						shared.progress.labelCreated(false);
+						shared.stats.labelCreated(false);
 						if(shared.isIntersection(j)) {
 							shared.addIntersectionNode(j);
+							shared.offerMeeting(newLabel, false);
 						}
 						if(j!= goal) {
 							BidirectionalLabeling newthread = new BidirectionalLabeling(goal, budget, newLabel, shared, isForward);
+							shared.stats.labelRetained();
 							ForkJoinTask<?> task = BidirectionalAstar.pool.submit(newthread);
 							labelQueue.add(task);
 							//newthread.run();
@@ -474,10 +468,8 @@ public class BidirectionalLabeling implements Runnable{
 			}
 		}
 		
-                if(master) {
-                        if(!BidirectionalAstar.isMemoryUpdated())
-                                BidirectionalAstar.updateMemory();
-                }
+                // Account allocation before joining: a joining worker may run tasks of other queries.
+                shared.stats.allocatedSince(allocStart);
                 if(labelQueue.size()>0) {
 			for(ForkJoinTask<?> task : labelQueue) {
 				//while(!x.isDone()) continue;
@@ -491,31 +483,36 @@ public class BidirectionalLabeling implements Runnable{
 			//nodeWiselabels.clear();
                         labelQueue.clear();
                 }
+                shared.stats.labelReleased();
         }
 
         private boolean shouldPrune(Node nextNode, Edge edge, int nextNodeId) {
+                PruningConfig pruning = shared.pruning;
+                if(!pruning.pruningEnabled) {
+                        return false;
+                }
                 // Dynamic pruning: only activate when frontier size exceeds threshold
-                ConcurrentHashMap<Integer, Integer> frontierCount = isForward ? forwardFrontierCount : backwardFrontierCount;
+                ConcurrentHashMap<Integer, Integer> frontierCount = isForward ? shared.forwardFrontierCount : shared.backwardFrontierCount;
                 int currentFrontierSize = frontierCount.values().stream().mapToInt(Integer::intValue).sum();
                 
                 // If frontier is small, don't prune - allow exploration
-                if(currentFrontierSize <= FRONTIER_THRESHOLD) {
+                if(currentFrontierSize <= pruning.frontierThreshold) {
                         return false;
                 }
                 
                 // Frontier exceeded threshold - apply aggressive pruning to keep top candidates
-                double heuristicScore = computeHeuristicScore(nextNode, edge);
-                ConcurrentHashMap<Integer, Double> scoreCache = isForward ? forwardBestScore : backwardBestScore;
-                ConcurrentHashMap<Integer, Double> costCache = isForward ? forwardMinCost : backwardMinCost;
+                double heuristicScore = computeHeuristicScore(nextNode, nextNodeId, edge);
+                ConcurrentHashMap<Integer, Double> scoreCache = isForward ? shared.forwardBestScore : shared.backwardBestScore;
+                ConcurrentHashMap<Integer, Double> costCache = isForward ? shared.forwardMinCost : shared.backwardMinCost;
 
                 // Progressive pruning: use stricter threshold as we find better paths
                 double pathCost = topLabel.getDistance() + edge.get_distance();
                 Double globalMinCost = isForward ? 
-                        forwardMinCost.values().stream().min(Double::compare).orElse(Double.MAX_VALUE) :
-                        backwardMinCost.values().stream().min(Double::compare).orElse(Double.MAX_VALUE);
+                        shared.forwardMinCost.values().stream().min(Double::compare).orElse(Double.MAX_VALUE) :
+                        shared.backwardMinCost.values().stream().min(Double::compare).orElse(Double.MAX_VALUE);
                 
                 double pruneThreshold = (globalMinCost < Double.MAX_VALUE && pathCost > globalMinCost * 0.8) ?
-                        STRICT_PRUNE_THRESHOLD : INITIAL_PRUNE_THRESHOLD;
+                        pruning.strictPruneThreshold : pruning.initialPruneThreshold;
 
                 // Heuristic-based pruning - keep only top candidates
                 Double best = scoreCache.get(nextNodeId);
@@ -526,7 +523,7 @@ public class BidirectionalLabeling implements Runnable{
                 // Cost-based pruning: if we've seen this node with significantly lower cost, prune
                 // Use more lenient threshold to avoid pruning too many alternatives
                 Double minCost = costCache.get(nextNodeId);
-                if(minCost != null && pathCost >= minCost * 1.50) {
+                if(minCost != null && pathCost >= minCost * pruning.costPruneFactor) {
                         return true;
                 }
 
@@ -535,14 +532,14 @@ public class BidirectionalLabeling implements Runnable{
                 return false;
         }
 
-        private double computeHeuristicScore(Node nextNode, Edge edge) {
+        private double computeHeuristicScore(Node nextNode, int nextNodeId, Edge edge) {
                 double pathDistance = topLabel.getDistance() + edge.get_distance();
-                double estimatedRemainingDistance = isForward ? nextNode.get_backward_hDistance() : nextNode.get_forward_hDistance();
+                double estimatedRemainingDistance = isForward ? shared.bounds.backwardDistance(nextNodeId) : shared.bounds.forwardDistance(nextNodeId);
                 
                 // Handle unreachable or unknown distances with geographic distance fallback
                 if(estimatedRemainingDistance == Double.MAX_VALUE || estimatedRemainingDistance <= 0) {
                         // Use Euclidean distance to goal as heuristic fallback
-                        Node goalNode = Graph.get_node(goal);
+                        Node goalNode = shared.graph.get_node(goal);
                         if(goalNode != null) {
                                 double geographicDistance = nextNode.euclidean_distance(goalNode);
                                 // Scale geographic distance to approximate road distance
@@ -566,7 +563,7 @@ public class BidirectionalLabeling implements Runnable{
                 // Adaptive distance weight increases when budget is tight
                 // But stays admissible by not over-penalizing
                 double budgetPressure = Math.min(2.0, usedBudgetRatio);
-                double adaptiveDistanceWeight = BASE_DISTANCE_WEIGHT * (1.0 + 0.4 * budgetPressure);
+                double adaptiveDistanceWeight = shared.pruning.distanceWeight * (1.0 + 0.4 * budgetPressure);
 
                 // Normalize distance component by budget to keep it bounded
                 double normalizedDistance = totalEstimatedDistance / Math.max(1.0, budget);
@@ -581,30 +578,30 @@ public class BidirectionalLabeling implements Runnable{
                 double combinedWidthPenalty = (accumulatedWidthRatio + edgeWidthPenalty) / 2.0;
                 
                 // Amplify width weight when budget is tight (narrow roads slow us down)
-                double adaptiveWidthWeight = BASE_WIDTH_WEIGHT * (1.0 + 0.3 * Math.min(1.5, budgetPressure));
+                double adaptiveWidthWeight = shared.pruning.widthWeight * (1.0 + 0.3 * Math.min(1.5, budgetPressure));
 
                 // Turn computation with better context awareness
                 Integer predecessorId = topLabel.getVisitedList().get(topLabel.get_nodeID());
                 boolean sharpTurn = false;
                 if(predecessorId != null && predecessorId >= 0) {
-                        Node previousNode = Graph.get_node(predecessorId);
-                        Node currentNode = Graph.get_node(topLabel.get_nodeID());
+                        Node previousNode = shared.graph.get_node(predecessorId);
+                        Node currentNode = shared.graph.get_node(topLabel.get_nodeID());
                         sharpTurn = Graph.isSharpRightTurn(previousNode, currentNode, nextNode);
                 }
 
                 int actualTurns = topLabel.getRightTurns();
                 int projectedTurns = actualTurns + (sharpTurn ? 1 : 0);
-                int estimatedRemainingTurns = isForward ? nextNode.get_backward_hRightTurn() : nextNode.get_forward_hRightTurn();
+                int estimatedRemainingTurns = isForward ? shared.bounds.backwardRightTurns(nextNodeId) : shared.bounds.forwardRightTurns(nextNodeId);
                 int totalEstimatedTurns = projectedTurns + estimatedRemainingTurns;
 
                 // Turn weight adapts based on turn density and remaining budget
                 // High turn density on tight budget is very costly
                 double turnDensity = totalEstimatedTurns / Math.max(1.0, totalEstimatedDistance);
-                double adaptiveTurnWeight = BASE_TURN_WEIGHT * (1.0 + 0.4 * Math.min(1.5, 
+                double adaptiveTurnWeight = shared.pruning.turnWeight * (1.0 + 0.4 * Math.min(1.5, 
                         budgetPressure * turnDensity + combinedWidthPenalty * 0.15));
 
                 // Sharp turn weight increases when budget is critical or path is narrow
-                double adaptiveSharpTurnWeight = BASE_SHARP_TURN_WEIGHT * (1.0 + 0.3 * Math.min(1.8, 
+                double adaptiveSharpTurnWeight = shared.pruning.sharpTurnWeight * (1.0 + 0.3 * Math.min(1.8, 
                         budgetPressure + combinedWidthPenalty * 0.2));
 
                 // Final heuristic combines all factors with adaptive weights
@@ -637,11 +634,11 @@ public class BidirectionalLabeling implements Runnable{
 //		return result;
 //	}
 
-	private void computeAndUpdateBreakpoints(List<BreakPoint> arrival_time_breakpoints, List<BreakPoint> width_breakpoints, int next_vertex, double max_width) {
+	void computeAndUpdateBreakpoints(List<BreakPoint> arrival_time_breakpoints, List<BreakPoint> width_breakpoints, int next_vertex, double max_width) {
 		if(isForward) {
-			List<Double> arrival_time_series = Graph.getArrivalTimeSeries(arrival_time_breakpoints.get(0).getY(), 
+			List<Double> arrival_time_series = shared.graph.getArrivalTimeSeries(arrival_time_breakpoints.get(0).getY(), 
 					arrival_time_breakpoints.get(arrival_time_breakpoints.size()-1).getY());
-			List<Double> width_time_series = Graph.getWidthTimeSeries(arrival_time_breakpoints.get(0).getY(), 
+			List<Double> width_time_series = shared.graph.getWidthTimeSeries(arrival_time_breakpoints.get(0).getY(), 
 					arrival_time_breakpoints.get(arrival_time_breakpoints.size()-1).getY());
 			
 			List<BreakPoint> tmp_arrival_time_breakpoints = new ArrayList<BreakPoint>();
@@ -654,6 +651,7 @@ public class BidirectionalLabeling implements Runnable{
 	            if (arrival_time_breakpoints.get(i).getY() <= arrival_time_series.get(j)) {
 	            	
 	            	if(tmp_arrival_time_breakpoints.size()>0 && arrival_time_breakpoints.get(i).getX()-tmp_arrival_time_breakpoints.get(tmp_arrival_time_breakpoints.size()-1).getX()<BidirectionalAstar.THRESHOLD) {
+	            		shared.stats.breakpointMerged();
 		            	if(k < width_breakpoints.size() && arrival_time_breakpoints.get(i).getX()==width_breakpoints.get(k).getX()) {	
 	            		
 		            		if(width_breakpoints.get(k).getY()>tmp_width_breakpoints.get(tmp_width_breakpoints.size()-1).getY()) {
@@ -679,8 +677,8 @@ public class BidirectionalLabeling implements Runnable{
 	            	if(l < width_time_series.size() && arrival_time_series.get(j)==width_time_series.get(l)) {
 	            		is_width = true;
 	            	}
-	            	Node nextNode = Graph.get_node(tmp_next_vertex);
-	            	Node curNode = Graph.get_node(current_vertex);
+	            	Node nextNode = shared.graph.get_node(tmp_next_vertex);
+	            	Node curNode = shared.graph.get_node(current_vertex);
 	            	Edge edge = (nextNode != null && nextNode.get_outgoing_edges() != null) ? nextNode.get_outgoing_edges().get(current_vertex) : null;
 	            	if(edge == null) {
 	            		j++;
@@ -694,7 +692,7 @@ public class BidirectionalLabeling implements Runnable{
 	            	while(predList.get(current_vertex)!=-1) {
 	            		tmp_next_vertex = current_vertex;
 	            		current_vertex = predList.get(tmp_next_vertex);
-	            		Node tmpNode = Graph.get_node(tmp_next_vertex);
+	            		Node tmpNode = shared.graph.get_node(tmp_next_vertex);
 	            		Edge incoming = (tmpNode != null && tmpNode.get_incoming_edges() != null) ? tmpNode.get_incoming_edges().get(current_vertex) : null;
 	            		if(incoming == null) {
 	            			pathValid = false;
@@ -710,6 +708,7 @@ public class BidirectionalLabeling implements Runnable{
 	            	}
 	            	
 	            	if(dep_time - arrival_time_breakpoints.get(i).getX()<BidirectionalAstar.THRESHOLD) {
+	            		shared.stats.breakpointMerged();
 	            		if(is_width && k < width_breakpoints.size() && tmp_width_breakpoints.size() > 0) {
 	            			if(width>width_breakpoints.get(k).getY())
 	            				tmp_width_breakpoints.get(tmp_width_breakpoints.size()-1).updateY(width);
@@ -719,6 +718,7 @@ public class BidirectionalLabeling implements Runnable{
 	            	else {
 	            		BreakPoint new_arrival_time_breakpoint = new BreakPoint(dep_time, arrival_time_series.get(j));
 	            		tmp_arrival_time_breakpoints.add(new_arrival_time_breakpoint);
+	            		shared.stats.breakpointCreated();
 	            		
 	            		if(is_width) {
 	            			BreakPoint new_width_breakpoint = new BreakPoint(dep_time, width);
@@ -748,9 +748,9 @@ public class BidirectionalLabeling implements Runnable{
 	        width_breakpoints.addAll(tmp_width_breakpoints);
 		}
 		else {
-			List<Double> arrival_time_series = Graph.getArrivalTimeSeries(arrival_time_breakpoints.get(0).getX(), 
+			List<Double> arrival_time_series = shared.graph.getArrivalTimeSeries(arrival_time_breakpoints.get(0).getX(), 
 					arrival_time_breakpoints.get(arrival_time_breakpoints.size()-1).getX());
-			List<Double> width_time_series = Graph.getWidthTimeSeries(arrival_time_breakpoints.get(0).getX(), 
+			List<Double> width_time_series = shared.graph.getWidthTimeSeries(arrival_time_breakpoints.get(0).getX(), 
 					arrival_time_breakpoints.get(arrival_time_breakpoints.size()-1).getX());
 			
 			List<BreakPoint> tmp_arrival_time_breakpoints = new ArrayList<BreakPoint>();
@@ -763,6 +763,7 @@ public class BidirectionalLabeling implements Runnable{
 	            if (arrival_time_breakpoints.get(i).getX() <= arrival_time_series.get(j)) {
 	            	if(tmp_arrival_time_breakpoints.size()>0 && arrival_time_breakpoints.get(i).getY()-
 	            			tmp_arrival_time_breakpoints.get(tmp_arrival_time_breakpoints.size()-1).getY()<BidirectionalAstar.THRESHOLD) {
+	            		shared.stats.breakpointMerged();
 	            		
 	            		if(k < width_breakpoints.size() && arrival_time_breakpoints.get(i).getX()==width_breakpoints.get(k).getX()) {	
 	            			
@@ -786,7 +787,7 @@ public class BidirectionalLabeling implements Runnable{
 		            	boolean is_width = false;
 	            	if(l < width_time_series.size() && arrival_time_series.get(j)==width_time_series.get(l)) {
 	            		is_width = true;
-	            	}		            	Node nextNode = Graph.get_node(tmp_next_vertex);
+	            	}		            	Node nextNode = shared.graph.get_node(tmp_next_vertex);
 		            	Edge edge = (nextNode != null && nextNode.get_outgoing_edges() != null) ? nextNode.get_outgoing_edges().get(current_vertex) : null;
 		            	if(edge == null) {
 		            		j++;
@@ -800,7 +801,7 @@ public class BidirectionalLabeling implements Runnable{
 		            	while(successorList.get(current_vertex)!=-1) {
 		            		tmp_next_vertex = current_vertex;
 		            		current_vertex = successorList.get(tmp_next_vertex);
-		            		Node tmpNode = Graph.get_node(tmp_next_vertex);
+		            		Node tmpNode = shared.graph.get_node(tmp_next_vertex);
 		            		Edge outgoing = (tmpNode != null && tmpNode.get_outgoing_edges() != null) ? tmpNode.get_outgoing_edges().get(current_vertex) : null;
 		            		if(outgoing == null) {
 		            			pathValid = false;
@@ -816,6 +817,7 @@ public class BidirectionalLabeling implements Runnable{
 		            	}
 		            	
 	            	if(arr_time - arrival_time_breakpoints.get(i).getY()<BidirectionalAstar.THRESHOLD) {
+	            		shared.stats.breakpointMerged();
 	            		if(is_width) {
 	            			
 		            		if(k < width_breakpoints.size() && width>width_breakpoints.get(k).getY())
@@ -826,6 +828,7 @@ public class BidirectionalLabeling implements Runnable{
 	            	else {
 	            		BreakPoint new_arrival_time_breakpoint = new BreakPoint(arrival_time_series.get(j), arr_time);
 	            		tmp_arrival_time_breakpoints.add(new_arrival_time_breakpoint);
+	            		shared.stats.breakpointCreated();
 	            		
 	            		if(is_width) {
 		            		BreakPoint new_width_breakpoint = new BreakPoint(width_time_series.get(l), width);
@@ -0,0 +1,339 @@
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable fastest-path lower-bound tree rooted at a single node.
+ * <p>
+ * The bound searches in {@link Graph} only depend on the static lowest edge
+ * costs, never on the departure time, so a tree computed once can serve every
+ * later query that shares its root. Entries are stored as parallel primitive
+ * arrays in settle order, which means the arrays are sorted by time and the
+ * tree for a smaller budget is simply a prefix of the tree for a larger one.
+ */
+public final class BoundTree {
+
+    private final int root;
+    private final boolean forward;
+    private final double ceiling;
+    private final long graphVersion;
+    private final double widenessThreshold;
+    private final int sharpThreshold;
+    private final int[] nodes;
+    private final double[] time;
+    private final double[] wideDistance;
+    private final double[] distance;
+    private final int[] rightTurns;
+
+    private BoundTree(int root, boolean forward, double ceiling, long graphVersion, int size, int[] nodes,
+            double[] time, double[] wideDistance, double[] distance, int[] rightTurns) {
+        this.root = root;
+        this.forward = forward;
+        this.ceiling = ceiling;
+        this.graphVersion = graphVersion;
+        this.widenessThreshold = BidirectionalAstar.WIDENESS_THRESHOLD;
+        this.sharpThreshold = BidirectionalAstar.SHARP_THRESHOLD;
+        this.nodes = Arrays.copyOf(nodes, size);
+        this.time = Arrays.copyOf(time, size);
+        this.wideDistance = Arrays.copyOf(wideDistance, size);
+        this.distance = Arrays.copyOf(distance, size);
+        this.rightTurns = Arrays.copyOf(rightTurns, size);
+    }
+
+    private BoundTree(BoundTree other, long graphVersion) {
+        this.root = other.root;
+        this.forward = other.forward;
+        this.ceiling = other.ceiling;
+        this.graphVersion = graphVersion;
+        this.widenessThreshold = other.widenessThreshold;
+        this.sharpThreshold = other.sharpThreshold;
+        this.nodes = other.nodes;
+        this.time = other.time;
+        this.wideDistance = other.wideDistance;
+        this.distance = other.distance;
+        this.rightTurns = other.rightTurns;
+    }
+
+    public int getRoot() {
+        return root;
+    }
+
+    public boolean isForward() {
+        return forward;
+    }
+
+    /**
+     * Largest budget this tree was expanded for; any budget up to this value
+     * can be answered by filtering.
+     */
+    public double getCeiling() {
+        return ceiling;
+    }
+
+    /** {@link GraphSnapshot#getVersion() Version} of the network the tree was expanded on. */
+    public long getGraphVersion() {
+        return graphVersion;
+    }
+
+    /** The same tree, stamped for a later graph version it is still valid for. */
+    BoundTree withGraphVersion(long version) {
+        return new BoundTree(this, version);
+    }
+
+    /** Whether any of {@code ids} was settled in this tree. */
+    boolean containsAny(Set<Integer> ids) {
+        if (ids.isEmpty()) {
+            return false;
+        }
+        for (int node : nodes) {
+            if (ids.contains(node)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public int size() {
+        return nodes.length;
+    }
+
+    public int nodeAt(int index) {
+        return nodes[index];
+    }
+
+    public double timeAt(int index) {
+        return time[index];
+    }
+
+    public double wideDistanceAt(int index) {
+        return wideDistance[index];
+    }
+
+    public double distanceAt(int index) {
+        return distance[index];
+    }
+
+    public int rightTurnsAt(int index) {
+        return rightTurns[index];
+    }
+
+    /**
+     * Number of leading entries whose bound time fits inside {@code budget}.
+     */
+    public int countWithin(double budget) {
+        int lo = 0;
+        int hi = time.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (time[mid] <= budget) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Whether the tree was built under the solver thresholds that are active
+     * right now. Thresholds are tunable statics, so a tree computed before a
+     * change must not be reused afterwards.
+     */
+    boolean matchesCurrentThresholds() {
+        return widenessThreshold == BidirectionalAstar.WIDENESS_THRESHOLD
+                && sharpThreshold == BidirectionalAstar.SHARP_THRESHOLD;
+    }
+
+    /**
+     * Rough retained size in bytes, used by the cache to enforce its budget.
+     */
+    long footprint() {
+        return 64L + (long) nodes.length * (Integer.BYTES * 2 + Double.BYTES * 3);
+    }
+
+    /**
+     * Expand a bounded Dijkstra over lowest edge costs from {@code root}. The
+     * forward tree follows outgoing edges, the backward tree follows incoming
+     * edges towards the root. Right turns are counted against the predecessor
+     * in the tree so the bound mirrors the path it was measured on.
+     */
+    static BoundTree compute(GraphSnapshot graph, int root, boolean forward, double ceiling) {
+        Map<Integer, Integer> slotOf = new HashMap<>();
+        int capacity = 64;
+        int[] nodes = new int[capacity];
+        int[] parent = new int[capacity];
+        double[] time = new double[capacity];
+        double[] wide = new double[capacity];
+        double[] dist = new double[capacity];
+        int[] turns = new int[capacity];
+        boolean[] settled = new boolean[capacity];
+        int slots = 0;
+
+        int[] order = new int[capacity];
+        int settledCount = 0;
+
+        MinHeap heap = new MinHeap();
+        slotOf.put(root, 0);
+        nodes[0] = root;
+        parent[0] = -1;
+        slots = 1;
+        heap.push(0.0, 0);
+
+        while (!heap.isEmpty()) {
+            double key = heap.peekKey();
+            int slot = heap.pop();
+            if (settled[slot] || key > time[slot]) {
+                continue;
+            }
+            settled[slot] = true;
+            if (settledCount == order.length) {
+                order = Arrays.copyOf(order, order.length * 2);
+            }
+            order[settledCount++] = slot;
+
+            int current = nodes[slot];
+            Node node = graph.get_node(current);
+            if (node == null) {
+                continue;
+            }
+            Node previous = parent[slot] >= 0 ? graph.get_node(nodes[parent[slot]]) : null;
+            Map<Integer, Edge> edges = forward ? node.get_outgoing_edges() : node.get_incoming_edges();
+
+            for (Edge edge : edges.values()) {
+                int next = forward ? edge.get_destination() : edge.get_source();
+                double nextTime = time[slot] + edge.getLowestCost();
+                if (nextTime > ceiling) {
+                    continue;
+                }
+                Integer existing = slotOf.get(next);
+                if (existing != null && (settled[existing] || time[existing] <= nextTime)) {
+                    continue;
+                }
+
+                double nextWide = wide[slot];
+                if (!edge.is_clearway() && edge.get_width(0) >= BidirectionalAstar.WIDENESS_THRESHOLD) {
+                    nextWide += edge.get_distance();
+                }
+                int nextTurns = turns[slot];
+                Node nextNode = graph.get_node(next);
+                if (previous != null && nextNode != null) {
+                    boolean sharp = forward
+                            ? Graph.isSharpRightTurn(previous, node, nextNode)
+                            : Graph.isSharpRightTurn(nextNode, node, previous);
+                    if (sharp) {
+                        nextTurns++;
+                    }
+                }
+
+                int target;
+                if (existing == null) {
+                    if (slots == nodes.length) {
+                        int grown = nodes.length * 2;
+                        nodes = Arrays.copyOf(nodes, grown);
+                        parent = Arrays.copyOf(parent, grown);
+                        time = Arrays.copyOf(time, grown);
+                        wide = Arrays.copyOf(wide, grown);
+                        dist = Arrays.copyOf(dist, grown);
+                        turns = Arrays.copyOf(turns, grown);
+                        settled = Arrays.copyOf(settled, grown);
+                    }
+                    target = slots++;
+                    slotOf.put(next, target);
+                    nodes[target] = next;
+                } else {
+                    target = existing;
+                }
+                parent[target] = slot;
+                time[target] = nextTime;
+                wide[target] = nextWide;
+                dist[target] = dist[slot] + edge.get_distance();
+                turns[target] = nextTurns;
+                heap.push(nextTime, target);
+            }
+        }
+
+        int[] outNodes = new int[settledCount];
+        double[] outTime = new double[settledCount];
+        double[] outWide = new double[settledCount];
+        double[] outDist = new double[settledCount];
+        int[] outTurns = new int[settledCount];
+        for (int i = 0; i < settledCount; i++) {
+            int slot = order[i];
+            outNodes[i] = nodes[slot];
+            outTime[i] = time[slot];
+            outWide[i] = wide[slot];
+            outDist[i] = dist[slot];
+            outTurns[i] = turns[slot];
+        }
+        return new BoundTree(root, forward, ceiling, graph.getVersion(), settledCount, outNodes, outTime, outWide,
+                outDist, outTurns);
+    }
+
+    /**
+     * Binary min-heap over (time, slot) pairs kept in primitive arrays so the
+     * bound search does not box a {@code Double} per relaxation. Stale entries
+     * are skipped on pop instead of being decreased in place. Also used by
+     * {@link Isochrone}.
+     */
+    static final class MinHeap {
+        private double[] keys = new double[64];
+        private int[] values = new int[64];
+        private int size;
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        double peekKey() {
+            return keys[0];
+        }
+
+        void push(double key, int value) {
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                values = Arrays.copyOf(values, size * 2);
+            }
+            int i = size++;
+            while (i > 0) {
+                int p = (i - 1) >>> 1;
+                if (keys[p] <= key) {
+                    break;
+                }
+                keys[i] = keys[p];
+                values[i] = values[p];
+                i = p;
+            }
+            keys[i] = key;
+            values[i] = value;
+        }
+
+        int pop() {
+            int top = values[0];
+            size--;
+            if (size > 0) {
+                double key = keys[size];
+                int value = values[size];
+                int i = 0;
+                while (true) {
+                    int c = 2 * i + 1;
+                    if (c >= size) {
+                        break;
+                    }
+                    if (c + 1 < size && keys[c + 1] < keys[c]) {
+                        c++;
+                    }
+                    if (keys[c] >= key) {
+                        break;
+                    }
+                    keys[i] = keys[c];
+                    values[i] = values[c];
+                    i = c;
+                }
+                keys[i] = key;
+                values[i] = value;
+            }
+            return top;
+        }
+    }
+}
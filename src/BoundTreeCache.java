@@ -0,0 +1,298 @@
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Size-bounded LRU cache of {@link BoundTree}s.
+ * <p>
+ * Forward trees are keyed by source and backward trees by destination; each
+ * entry remembers the budget ceiling it was expanded for. A request with a
+ * smaller budget reuses the cached tree by filtering its prefix, while a larger
+ * budget recomputes the tree with a rounded-up ceiling and replaces the entry.
+ * The cache is bounded by the approximate bytes held in its trees rather than
+ * by entry count because tree sizes vary by orders of magnitude.
+ * <p>
+ * Concurrent misses for the same root are coalesced: while one caller expands
+ * a tree, others whose budget it will cover wait for it instead of expanding
+ * their own copy. A batch that knows its workload up front can register the
+ * largest budget per root with {@link #hintBudget(int, boolean, double)} so
+ * the first expansion already covers every later query on that root.
+ */
+public final class BoundTreeCache {
+
+    /** Budgets are rounded up to this step so nearby budgets share a tree. */
+    private static final double CEILING_STEP_MINUTES = 15.0;
+    private static final long DEFAULT_MAX_BYTES = 256L * 1024 * 1024;
+
+    private static final LinkedHashMap<Long, BoundTree> trees = new LinkedHashMap<>(64, 0.75f, true);
+    private static long maxBytes = DEFAULT_MAX_BYTES;
+    private static long currentBytes;
+    private static final Map<Long, Expansion> inFlight = new HashMap<>();
+    private static final Map<Long, Double> budgetHints = new HashMap<>();
+
+    private static final AtomicLong hits = new AtomicLong();
+    private static final AtomicLong misses = new AtomicLong();
+    private static final AtomicLong coalesced = new AtomicLong();
+    private static final AtomicLong evictions = new AtomicLong();
+    private static final AtomicLong carriedOver = new AtomicLong();
+
+    private BoundTreeCache() {
+        // Static utility class; do not instantiate.
+    }
+
+    /**
+     * Forward lower-bound tree from {@code source} in {@code graph} covering
+     * at least {@code budget}.
+     */
+    static BoundTree forward(GraphSnapshot graph, int source, double budget) {
+        return lookup(graph, source, true, budget);
+    }
+
+    /**
+     * Backward lower-bound tree towards {@code destination} in {@code graph}
+     * covering at least {@code budget}.
+     */
+    static BoundTree backward(GraphSnapshot graph, int destination, double budget) {
+        return lookup(graph, destination, false, budget);
+    }
+
+    /** A tree being expanded by one caller, for others to wait on. */
+    private static final class Expansion {
+        final double ceiling;
+        final long graphVersion;
+        final CompletableFuture<BoundTree> future = new CompletableFuture<>();
+
+        Expansion(double ceiling, long graphVersion) {
+            this.ceiling = ceiling;
+            this.graphVersion = graphVersion;
+        }
+    }
+
+    /**
+     * Trees are only shared between lookups on the same graph version. A query
+     * that started before a reload keeps expanding its own trees on the old
+     * snapshot, and those are not cached.
+     */
+    private static BoundTree lookup(GraphSnapshot graph, int root, boolean forward, double budget) {
+        long version = graph.getVersion();
+        long key = key(graph.getNamespace(), root, forward);
+        SolverEvents.CacheLookupEvent event = new SolverEvents.CacheLookupEvent();
+        event.begin();
+        Expansion pending;
+        Expansion own = null;
+        double ceiling = Math.ceil(budget / CEILING_STEP_MINUTES) * CEILING_STEP_MINUTES;
+        synchronized (BoundTreeCache.class) {
+            BoundTree cached = trees.get(key);
+            if (cached != null && cached.getCeiling() >= budget && cached.matchesCurrentThresholds()
+                    && cached.getGraphVersion() == version) {
+                hits.incrementAndGet();
+                commitLookup(event, root, forward, "hit", cached);
+                return cached;
+            }
+            ceiling = Math.max(Math.max(ceiling, budget), budgetHints.getOrDefault(key, 0.0));
+            pending = inFlight.get(key);
+            if (pending == null || pending.ceiling < budget || pending.graphVersion != version) {
+                own = new Expansion(ceiling, version);
+                if (pending == null) {
+                    inFlight.put(key, own);
+                }
+            }
+        }
+
+        if (own == null) {
+            BoundTree shared = pending.future.join();
+            coalesced.incrementAndGet();
+            commitLookup(event, root, forward, "coalesced", shared);
+            return shared;
+        }
+
+        misses.incrementAndGet();
+        BoundTree computed;
+        try {
+            computed = BoundTree.compute(graph, root, forward, ceiling);
+        } catch (RuntimeException | Error e) {
+            synchronized (BoundTreeCache.class) {
+                inFlight.remove(key, own);
+            }
+            own.future.completeExceptionally(e);
+            throw e;
+        }
+        commitLookup(event, root, forward, "miss", computed);
+
+        synchronized (BoundTreeCache.class) {
+            inFlight.remove(key, own);
+            BoundTree previous = trees.get(key);
+            if (Graph.isCurrent(graph) && (previous == null || previous.getCeiling() <= computed.getCeiling()
+                    || !previous.matchesCurrentThresholds() || previous.getGraphVersion() != version)) {
+                trees.put(key, computed);
+                if (previous != null) {
+                    currentBytes -= previous.footprint();
+                }
+                currentBytes += computed.footprint();
+                evictToCapacity(key);
+            }
+        }
+        own.future.complete(computed);
+        return computed;
+    }
+
+    private static void commitLookup(SolverEvents.CacheLookupEvent event, int root, boolean forward,
+            String outcome, BoundTree tree) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.cache = forward ? "bound-forward" : "bound-backward";
+            event.key = Integer.toString(root);
+            event.outcome = outcome;
+            event.entryBytes = tree.footprint();
+            event.commit();
+        }
+    }
+
+    private static void evictToCapacity(long keep) {
+        Iterator<Map.Entry<Long, BoundTree>> it = trees.entrySet().iterator();
+        while (currentBytes > maxBytes && it.hasNext()) {
+            Map.Entry<Long, BoundTree> eldest = it.next();
+            if (eldest.getKey() == keep) {
+                continue;
+            }
+            currentBytes -= eldest.getValue().footprint();
+            it.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    /** Namespace in the bits above the root, so hosted networks never share an entry. */
+    private static long key(int namespace, int root, boolean forward) {
+        return ((long) namespace << 33) | ((long) root << 1) | (forward ? 1L : 0L);
+    }
+
+    private static int namespace(long key) {
+        return (int) (key >>> 33);
+    }
+
+    /**
+     * Drop every cached tree. Called whenever the graph is cleared or reloaded
+     * because the trees reference node ids and edge costs of the old network.
+     */
+    public static synchronized void invalidate() {
+        trees.clear();
+        currentBytes = 0;
+    }
+
+    /**
+     * Drop the trees of one {@link GraphSnapshot#getNamespace() namespace},
+     * when that network is reloaded or unloaded. Other networks keep theirs.
+     */
+    static synchronized void invalidate(int namespace) {
+        for (Iterator<Map.Entry<Long, BoundTree>> it = trees.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<Long, BoundTree> entry = it.next();
+            if (namespace(entry.getKey()) == namespace) {
+                currentBytes -= entry.getValue().footprint();
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Move the trees of {@code namespace} from graph version {@code from} to
+     * {@code to} after a traffic update. A forward tree that settled none of
+     * {@code changedSources} never relaxed a changed edge, and likewise a
+     * backward tree that settled none of {@code changedDestinations}; those
+     * are still exact and are re-stamped for the new version. The rest, and
+     * trees of any other version or built under other thresholds, are
+     * dropped. Trees of other namespaces are left alone. Returns the number
+     * kept.
+     */
+    static synchronized int carryOver(int namespace, long from, long to, Set<Integer> changedSources,
+            Set<Integer> changedDestinations) {
+        int kept = 0;
+        for (Iterator<Map.Entry<Long, BoundTree>> it = trees.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<Long, BoundTree> entry = it.next();
+            if (namespace(entry.getKey()) != namespace) {
+                continue;
+            }
+            BoundTree tree = entry.getValue();
+            Set<Integer> changed = tree.isForward() ? changedSources : changedDestinations;
+            if (tree.getGraphVersion() == from && tree.matchesCurrentThresholds() && !tree.containsAny(changed)) {
+                entry.setValue(tree.withGraphVersion(to));
+                kept++;
+            } else {
+                currentBytes -= tree.footprint();
+                it.remove();
+            }
+        }
+        carriedOver.addAndGet(kept);
+        return kept;
+    }
+
+    /**
+     * Expand the tree for {@code root} to at least {@code budget} the next time
+     * it misses, so later lookups with budgets up to that value hit. Hints
+     * survive {@link #invalidate()} and stay until {@link #clearBudgetHints()}.
+     * They apply to the network served through {@link Graph} only.
+     */
+    public static synchronized void hintBudget(int root, boolean forward, double budget) {
+        budgetHints.merge(key(0, root, forward), budget, Math::max);
+    }
+
+    public static synchronized void clearBudgetHints() {
+        budgetHints.clear();
+    }
+
+    public static synchronized void setMaxBytes(long bytes) {
+        maxBytes = Math.max(0, bytes);
+        evictToCapacity(Long.MIN_VALUE);
+    }
+
+    public static synchronized long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public static synchronized int size() {
+        return trees.size();
+    }
+
+    public static synchronized long getCurrentBytes() {
+        return currentBytes;
+    }
+
+    public static long getHits() {
+        return hits.get();
+    }
+
+    public static long getMisses() {
+        return misses.get();
+    }
+
+    /** Lookups that waited for a concurrent expansion of the same tree. */
+    public static long getCoalesced() {
+        return coalesced.get();
+    }
+
+    public static long getEvictions() {
+        return evictions.get();
+    }
+
+    /** Trees kept across traffic updates by {@link #carryOver}. */
+    public static long getCarriedOver() {
+        return carriedOver.get();
+    }
+
+    public static double getHitRate() {
+        long h = hits.get() + coalesced.get();
+        long total = h + misses.get();
+        return total > 0 ? (double) h / total : 0.0;
+    }
+
+    public static void resetCounters() {
+        hits.set(0);
+        misses.set(0);
+        coalesced.set(0);
+        evictions.set(0);
+        carriedOver.set(0);
+    }
+}
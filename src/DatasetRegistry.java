@@ -0,0 +1,277 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Road networks hosted next to the one behind {@link Graph}, each addressed
+ * by a dataset id.
+ * <p>
+ * Datasets are registered with a directory in the usual
+ * {@code nodes_N.txt}/{@code edges_N.txt} layout and loaded on their first
+ * query, each into its own {@link GraphSnapshot} that {@link Graph#host hosts}
+ * under a namespace of its own. Bound trees of all datasets share the one
+ * {@link BoundTreeCache}, keyed apart by namespace; each dataset has its own
+ * result cache and spatial index.
+ * <p>
+ * Every loaded dataset's {@link GraphSnapshot#footprint() estimated size}
+ * counts against a heap budget. When a load takes the total over it, the
+ * least recently queried other datasets are unloaded until it fits again.
+ * An unloaded dataset is loaded again on its next query. Queries still
+ * running on an unloaded snapshot finish on it.
+ * <p>
+ * {@code DATASETS} registers datasets at startup as
+ * {@code id=directory,id=directory}; {@code DATASET_HEAP_BUDGET_MB} sets the
+ * budget (default 60% of the maximum heap).
+ */
+final class DatasetRegistry {
+
+    private static final int RESULT_CACHE_SIZE = 512;
+    private static final long RESULT_CACHE_TTL_MS = 10 * 60 * 1000L;
+    private static final double DEFAULT_BUDGET_SHARE = 0.6;
+
+    private static final Map<String, Dataset> datasets = new LinkedHashMap<>();
+    private static int nextNamespace = 1;
+    private static long budgetBytes = defaultBudget();
+
+    private DatasetRegistry() { }
+
+    /** One registered network and, while loaded, its snapshot and caches. */
+    static final class Dataset {
+        final String id;
+        final String directory;
+        final int namespace;
+        final QueryResultCache results;
+        private final Object loadLock = new Object();
+        private volatile GraphSnapshot graph;
+        private volatile SpatialIndex spatialIndex;
+        private volatile long lastUsed;
+        private volatile long footprint;
+        private volatile String error;
+        private int loads;
+
+        private Dataset(String id, String directory, int namespace) {
+            this.id = id;
+            this.directory = directory;
+            this.namespace = namespace;
+            this.results = new QueryResultCache(RESULT_CACHE_SIZE, RESULT_CACHE_TTL_MS, this::version);
+        }
+
+        /** Version of the loaded snapshot, or 0 while unloaded. */
+        long version() {
+            GraphSnapshot loaded = graph;
+            return loaded != null ? loaded.getVersion() : 0;
+        }
+
+        boolean isLoaded() {
+            return graph != null;
+        }
+
+        /** Spatial index over the given snapshot of this dataset, built once per layout. */
+        SpatialIndex spatialIndex(GraphSnapshot snapshot) {
+            SpatialIndex index = spatialIndex;
+            if (index == null || index.getGeneration() != snapshot.getLayoutVersion()) {
+                synchronized (loadLock) {
+                    index = spatialIndex;
+                    if (index == null || index.getGeneration() != snapshot.getLayoutVersion()) {
+                        index = SpatialIndex.build(snapshot);
+                        spatialIndex = index;
+                    }
+                }
+            }
+            return index;
+        }
+
+        String toJson() {
+            String failure = error;
+            return String.format(Locale.ROOT,
+                    "{\"id\":%s,\"directory\":%s,\"state\":\"%s\",\"version\":%d,\"estimatedMb\":%.1f,"
+                            + "\"loads\":%d,\"lastUsed\":%d%s}",
+                    JsonStreamWriter.quote(id), JsonStreamWriter.quote(directory),
+                    isLoaded() ? "loaded" : failure != null ? "failed" : "unloaded", version(),
+                    footprint / (1024.0 * 1024.0), loads, lastUsed,
+                    failure == null ? "" : ",\"error\":" + JsonStreamWriter.quote(failure));
+        }
+    }
+
+    private static long defaultBudget() {
+        String configured = System.getenv("DATASET_HEAP_BUDGET_MB");
+        if (configured != null && !configured.isBlank()) {
+            try {
+                return Long.parseLong(configured.trim()) * 1024 * 1024;
+            } catch (NumberFormatException e) {
+                System.err.println("[Datasets] Ignoring DATASET_HEAP_BUDGET_MB=" + configured);
+            }
+        }
+        return (long) (Runtime.getRuntime().maxMemory() * DEFAULT_BUDGET_SHARE);
+    }
+
+    /** Register the datasets listed in {@code DATASETS}. Returns how many were registered. */
+    static int registerConfigured() {
+        String configured = System.getenv("DATASETS");
+        if (configured == null || configured.isBlank()) {
+            return 0;
+        }
+        int registered = 0;
+        for (String entry : configured.split(",")) {
+            int split = entry.indexOf('=');
+            if (split <= 0 || split == entry.length() - 1) {
+                System.err.println("[Datasets] Expected id=directory, got '" + entry.trim() + "'");
+                continue;
+            }
+            try {
+                register(entry.substring(0, split).trim(), entry.substring(split + 1).trim());
+                registered++;
+            } catch (IllegalArgumentException e) {
+                System.err.println("[Datasets] " + e.getMessage());
+            }
+        }
+        return registered;
+    }
+
+    /**
+     * Register dataset {@code id} in {@code directory} without loading it.
+     * Ids are path segments of the dataset routes, so they are limited to
+     * letters, digits, {@code -} and {@code _}.
+     */
+    static synchronized Dataset register(String id, String directory) {
+        if (!id.matches("[A-Za-z0-9_-]+")) {
+            throw new IllegalArgumentException("Invalid dataset id '" + id + "'");
+        }
+        if (datasets.containsKey(id)) {
+            throw new IllegalArgumentException("Dataset '" + id + "' is already registered");
+        }
+        if (!new File(directory).isDirectory()) {
+            throw new IllegalArgumentException("Dataset '" + id + "': " + directory + " is not a directory");
+        }
+        Dataset dataset = new Dataset(id, directory, nextNamespace++);
+        datasets.put(id, dataset);
+        System.out.println("[Datasets] Registered " + id + " at " + directory);
+        return dataset;
+    }
+
+    static synchronized Dataset get(String id) {
+        return datasets.get(id);
+    }
+
+    static synchronized Collection<Dataset> all() {
+        return new ArrayList<>(datasets.values());
+    }
+
+    /**
+     * The current snapshot of {@code dataset}, loading it first if needed,
+     * and mark the dataset as just used. Concurrent first queries wait for
+     * one load.
+     */
+    static GraphSnapshot acquire(Dataset dataset) throws IOException {
+        dataset.lastUsed = System.currentTimeMillis();
+        GraphSnapshot graph = dataset.graph;
+        if (graph != null) {
+            return graph;
+        }
+        synchronized (dataset.loadLock) {
+            graph = dataset.graph;
+            if (graph != null) {
+                return graph;
+            }
+            long start = System.currentTimeMillis();
+            try {
+                int vertexCount = BidirectionalAstar.detectVertexCount(dataset.directory);
+                if (vertexCount <= 0) {
+                    throw new IOException("No nodes_N.txt in " + dataset.directory);
+                }
+                graph = Graph.host(dataset.namespace, BidirectionalAstar.readNetwork(dataset.directory, vertexCount));
+            } catch (IOException | RuntimeException e) {
+                dataset.error = e.getMessage();
+                throw e;
+            }
+            dataset.error = null;
+            dataset.footprint = graph.footprint();
+            dataset.loads++;
+            dataset.graph = graph;
+            System.out.println(String.format(Locale.ROOT, "[Datasets] Loaded %s: %d nodes, ~%.1f MB in %d ms",
+                    dataset.id, graph.get_nodes().size(), dataset.footprint / (1024.0 * 1024.0),
+                    System.currentTimeMillis() - start));
+        }
+        enforceBudget(dataset);
+        return graph;
+    }
+
+    /**
+     * Unload the least recently used datasets other than {@code keep} until
+     * the loaded ones fit the budget. A single dataset larger than the budget
+     * stays loaded on its own.
+     */
+    private static synchronized void enforceBudget(Dataset keep) {
+        List<Dataset> loaded = new ArrayList<>();
+        long total = 0;
+        for (Dataset dataset : datasets.values()) {
+            if (dataset.isLoaded()) {
+                loaded.add(dataset);
+                total += dataset.footprint;
+            }
+        }
+        loaded.sort((a, b) -> Long.compare(a.lastUsed, b.lastUsed));
+        for (Dataset dataset : loaded) {
+            if (total <= budgetBytes) {
+                break;
+            }
+            if (dataset != keep) {
+                total -= dataset.footprint;
+                unload(dataset);
+            }
+        }
+    }
+
+    /** Drop {@code dataset}'s snapshot and everything derived from it. */
+    static void unload(Dataset dataset) {
+        synchronized (dataset.loadLock) {
+            if (dataset.graph == null) {
+                return;
+            }
+            dataset.graph = null;
+            dataset.spatialIndex = null;
+            dataset.footprint = 0;
+            Graph.unhost(dataset.namespace);
+            dataset.results.clear();
+        }
+        System.out.println("[Datasets] Unloaded " + dataset.id + " to stay within the heap budget");
+    }
+
+    static synchronized long getBudgetBytes() {
+        return budgetBytes;
+    }
+
+    static synchronized void setBudgetBytes(long bytes) {
+        budgetBytes = Math.max(0, bytes);
+    }
+
+    /** Estimated bytes held by the loaded datasets. */
+    static synchronized long getLoadedBytes() {
+        long total = 0;
+        for (Dataset dataset : datasets.values()) {
+            total += dataset.footprint;
+        }
+        return total;
+    }
+
+    /** {@code GET /api/datasets} body: budget, usage and one entry per dataset. */
+    static synchronized String toJson() {
+        StringBuilder json = new StringBuilder(128 + 192 * datasets.size());
+        json.append(String.format(Locale.ROOT, "{\"budgetMb\":%.1f,\"loadedMb\":%.1f,\"datasets\":[",
+                budgetBytes / (1024.0 * 1024.0), getLoadedBytes() / (1024.0 * 1024.0)));
+        boolean first = true;
+        for (Dataset dataset : datasets.values()) {
+            if (!first) {
+                json.append(',');
+            }
+            json.append(dataset.toJson());
+            first = false;
+        }
+        return json.append("]}").toString();
+    }
+}
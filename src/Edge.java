@@ -2,6 +2,7 @@
  * 
  */
 
+import java.util.Arrays;
 import java.util.NavigableMap;
 import java.util.TreeMap;
 import java.util.Map.Entry;
@@ -21,6 +22,12 @@ public class Edge {
 	private double width;
 	private double baseWidth; // Width during non-rush hours
 	private double rushWidth; // Width during rush hours
+	// Compact storage (see compact()): slot departure times shared between edges,
+	// and each slot's travel cost as costBase + (slotCosts[i] & 0xFFFF) * costScale.
+	private int[] slotTimes;
+	private short[] slotCosts;
+	private float costBase;
+	private float costScale;
 	
 	public int get_source(){
 		return this.source;
@@ -79,7 +86,217 @@ public class Edge {
                 this(src, dest, 1.0, 1.0);
         }
 
+	/**
+	 * Copy of {@code other} between renumbered endpoints. The time-dependent
+	 * properties are shared, not copied.
+	 */
+	Edge(Edge other, int src, int dest) {
+		this.source = src;
+		this.destination = dest;
+		this.isClearway = other.isClearway;
+		this.time_property = other.time_property;
+		this.wideness_property = other.wideness_property;
+		this.slotTimes = other.slotTimes;
+		this.slotCosts = other.slotCosts;
+		this.costBase = other.costBase;
+		this.costScale = other.costScale;
+		this.lowest_cost = other.lowest_cost;
+		this.distance = other.distance;
+		this.width = other.width;
+		this.baseWidth = other.baseWidth;
+		this.rushWidth = other.rushWidth;
+	}
+
+	/**
+	 * Replace the travel cost map with 16-bit quantized costs: each slot
+	 * stores its offset from the edge's cheapest slot in steps of
+	 * (most expensive - cheapest) / 65535. The slot times are interned, so
+	 * edges loaded against the same time series share one array. Decoded
+	 * costs are within half a step of the originals. Lookups behave as
+	 * before. Does nothing if the edge has no travel costs or is already
+	 * compact.
+	 */
+	void compact() {
+		if (slotCosts != null || time_property == null || time_property.isEmpty()) {
+			return;
+		}
+		int n = time_property.size();
+		int[] times = new int[n];
+		double[] costs = new double[n];
+		double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+		int i = 0;
+		for (Entry<Integer, Properties> element : time_property.entrySet()) {
+			times[i] = element.getKey();
+			costs[i] = element.getValue().get_value();
+			min = Math.min(min, costs[i]);
+			max = Math.max(max, costs[i]);
+			i++;
+		}
+		this.slotTimes = internSlotTimes(times);
+		quantize(costs, min, max);
+		this.time_property = null;
+	}
+
+	private void quantize(double[] costs, double min, double max) {
+		float base = (float) min;
+		float scale = max > base ? (float) ((max - base) / 0xFFFF) : 0f;
+		short[] quantized = new short[costs.length];
+		for (int i = 0; i < costs.length; i++) {
+			long step = scale > 0 ? Math.round((costs[i] - base) / scale) : 0;
+			quantized[i] = (short) Math.max(0, Math.min(0xFFFF, step));
+		}
+		this.slotCosts = quantized;
+		this.costBase = base;
+		this.costScale = scale;
+	}
+
+	/**
+	 * Copy of this edge that owns its travel costs, for a live traffic update.
+	 * Snapshots that still share the original are unaffected by
+	 * {@link #setSlotCost(int, double)} on the copy.
+	 */
+	Edge copyForUpdate() {
+		Edge copy = new Edge(this, source, destination);
+		if (time_property != null) {
+			copy.time_property = new TreeMap<Integer, Properties>(time_property);
+		}
+		return copy;
+	}
+
+	/**
+	 * Set the travel cost of the slot starting at {@code slotTime}. Returns
+	 * false if the edge has no such slot. Compact edges are requantized so the
+	 * new cost may fall outside the old range. Only for an edge from
+	 * {@link #copyForUpdate()} that is not published yet.
+	 */
+	boolean setSlotCost(int slotTime, double cost) {
+		if (slotCosts == null) {
+			if (time_property == null || !time_property.containsKey(slotTime)) {
+				return false;
+			}
+			time_property.put(slotTime, new Properties(cost));
+			return true;
+		}
+		int slot = Arrays.binarySearch(slotTimes, slotTime);
+		if (slot < 0) {
+			return false;
+		}
+		double[] costs = new double[slotCosts.length];
+		double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+		for (int i = 0; i < costs.length; i++) {
+			costs[i] = i == slot ? cost : slotCost(i);
+			min = Math.min(min, costs[i]);
+			max = Math.max(max, costs[i]);
+		}
+		quantize(costs, min, max);
+		return true;
+	}
+
+	/**
+	 * Reset {@link #getLowestCost()} to the cheapest slot after
+	 * {@link #setSlotCost(int, double)}, so bound trees built on it remain
+	 * lower bounds for every departure. A compact edge decodes its costs to
+	 * within half a quantization step, so its minimum is rounded down by one
+	 * step, and a value already between that and the decoded minimum is kept
+	 * so an untouched minimum does not look changed.
+	 */
+	void refreshLowestCost() {
+		double min = Double.POSITIVE_INFINITY;
+		double step = 0;
+		if (slotCosts != null) {
+			for (int i = 0; i < slotCosts.length; i++) {
+				min = Math.min(min, slotCost(i));
+			}
+			step = costScale + Math.ulp(costBase); // the float base is itself rounded
+		}
+		else if (time_property != null) {
+			for (Properties properties : time_property.values()) {
+				min = Math.min(min, properties.get_value());
+			}
+		}
+		if (min == Double.POSITIVE_INFINITY) {
+			return;
+		}
+		double floor = Math.min(min, Math.max(0, min - step));
+		if (lowest_cost > min || lowest_cost < floor) {
+			this.lowest_cost = floor;
+		}
+	}
+
+	/**
+	 * Travel cost of every slot in slot order, decoded if the edge is
+	 * compact: the travel cost column of the edges file.
+	 */
+	double[] getSlotCosts() {
+		if (slotCosts != null) {
+			double[] costs = new double[slotCosts.length];
+			for (int i = 0; i < costs.length; i++) {
+				costs[i] = slotCost(i);
+			}
+			return costs;
+		}
+		if (time_property == null) {
+			return new double[0];
+		}
+		double[] costs = new double[time_property.size()];
+		int i = 0;
+		for (Properties properties : time_property.values()) {
+			costs[i++] = properties.get_value();
+		}
+		return costs;
+	}
+
+	/** Whether {@link #compact()} replaced the travel cost map. */
+	public boolean isCompact() {
+		return slotCosts != null;
+	}
+
+	/**
+	 * Approximate heap bytes held by this edge: the object, its entries in
+	 * both endpoints' edge maps and its travel costs, boxed (a tree map
+	 * entry, key and {@link Properties} per slot) or compact (two bytes per
+	 * slot, slot times shared).
+	 */
+	long footprint() {
+		long bytes = 216;
+		if (slotCosts != null) {
+			bytes += 16 + 2L * slotCosts.length;
+		} else if (time_property != null) {
+			bytes += 48 + 72L * time_property.size();
+		}
+		if (wideness_property != null) {
+			bytes += 48 + 72L * wideness_property.size();
+		}
+		return bytes;
+	}
+
+	private static int[] sharedSlotTimes;
+
+	private static synchronized int[] internSlotTimes(int[] times) {
+		if (!Arrays.equals(sharedSlotTimes, times)) {
+			sharedSlotTimes = times;
+		}
+		return sharedSlotTimes;
+	}
+
+	private double slotCost(int slot) {
+		return costBase + (slotCosts[slot] & 0xFFFF) * (double) costScale;
+	}
+
+	/** Index of the last slot starting at or before {@code time}, or -1. */
+	private int floorSlot(double time) {
+		if (!(time >= slotTimes[0])) {
+			return -1; // also NaN
+		}
+		// Slot times are whole minutes, so flooring the key keeps "starts at or before"
+		int slot = Arrays.binarySearch(slotTimes, (int) Math.floor(time));
+		return slot >= 0 ? slot : -slot - 2;
+	}
+
 	public double get_arrival_time(double departure_time){
+		if (slotCosts != null) {
+			return compact_arrival_time(departure_time);
+		}
 		double x1, x2, y1, y2;
 		Entry<Integer, Properties> element = get_itr(departure_time);
 		if(element == null) {
@@ -101,6 +318,9 @@ public class Edge {
 	}
 
 	public double get_departure_time(double arrival_time){
+		if (slotCosts != null) {
+			return compact_departure_time(arrival_time);
+		}
 		double x1, x2, y1, y2;
 		Entry<Integer, Properties> element = get_itr(arrival_time);
 		
@@ -129,8 +349,58 @@ public class Edge {
 		return linear_function(y1, y2, x1, x2, arrival_time);
 	}
 
+	private double compact_arrival_time(double departure_time){
+		int slot = floorSlot(departure_time);
+		if (slot < 0) {
+			return departure_time;
+		}
+		double x1 = slotTimes[slot];
+		double y1 = x1 + slotCost(slot);
+		double x2, y2;
+		if (slot + 1 < slotTimes.length) {
+			x2 = slotTimes[slot + 1];
+			y2 = x2 + slotCost(slot + 1);
+		}
+		else {
+			x2 = 24*60;
+			y2 = 24*60 + slotCost(0);
+		}
+		return linear_function(x1, x2, y1, y2, departure_time);
+	}
+
+	private double compact_departure_time(double arrival_time){
+		int slot = floorSlot(arrival_time);
+		if (slot < 0) {
+			return arrival_time;
+		}
+		double x1, x2, y1, y2;
+		if (arrival_time == slotTimes[slot] && slot > 0) {
+			x2 = slotTimes[slot];
+			y2 = x2 + slotCost(slot);
+			x1 = slotTimes[slot - 1];
+			y1 = x1 + slotCost(slot - 1);
+		}
+		else if (slot + 1 < slotTimes.length) {
+			x1 = slotTimes[slot];
+			y1 = x1 + slotCost(slot);
+			x2 = slotTimes[slot + 1];
+			y2 = x2 + slotCost(slot + 1);
+		}
+		else {
+			x1 = slotTimes[slot];
+			y1 = x1 + slotCost(slot);
+			x2 = 24*60;
+			y2 = 24*60 + slotCost(0);
+		}
+		return linear_function(y1, y2, x1, x2, arrival_time);
+	}
+
 	public double get_width(double departure_time){
 		if(isClearway) {
+			if (slotCosts != null) {
+				int slot = floorSlot(departure_time);
+				return slotCost(Math.max(slot, 0));
+			}
 			Entry<Integer, Properties> element = get_itr(departure_time);
 			return element.getValue().get_value();
 		}
@@ -1,10 +1,8 @@
-import java.util.ArrayList;
-import java.util.Comparator;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
-import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Central registry for the in-memory road network.
@@ -16,141 +14,261 @@ import java.util.PriorityQueue;
  * routines for directional math and A* search. Extensive comments walk through
  * the intent of each step so future refactors can reason about the state
  * transitions without reverse-engineering the algorithm.
+ * <p>
+ * The network itself lives in a {@link GraphSnapshot}. The static accessors
+ * read whichever snapshot is published at the time of the call, and
+ * {@link #publish(GraphSnapshot)} swaps in a new one atomically. Code that
+ * must see one consistent version across many calls, such as a query, takes
+ * {@link #snapshot()} once and keeps using it.
  */
 public final class Graph {
 
-    private static int n_vertexes;
-    private static final Map<Integer, Node> adjacency_list = new HashMap<>();
-    private static final Map<Integer, Cluster> clusters = new HashMap<>();
-    private static double[] arrivalTimeSeries;
-    private static double[] widthTimeSeries;
+    private static final AtomicLong generation = new AtomicLong();
+    private static volatile GraphSnapshot current = stamped(new GraphSnapshot());
+    private static final Map<Integer, GraphSnapshot> hosted = new ConcurrentHashMap<>();
+    private static volatile boolean compactStorage = "compact".equalsIgnoreCase(System.getenv("GRAPH_STORAGE"));
 
     private Graph() {
         // Static utility class; do not instantiate.
     }
 
+    private static GraphSnapshot stamped(GraphSnapshot snapshot) {
+        snapshot.setVersion(generation.incrementAndGet());
+        snapshot.setLayoutVersion(snapshot.getVersion());
+        return snapshot;
+    }
+
+    /**
+     * The currently published network. Hold on to it for the duration of a
+     * query so a concurrent {@link #publish(GraphSnapshot)} cannot change the
+     * nodes underneath.
+     */
+    static GraphSnapshot snapshot() {
+        return current;
+    }
+
+    /**
+     * Make {@code snapshot} the current network in one step and give it a new
+     * version. Queries already running keep the snapshot they started with.
+     * Bound trees and cached results of older versions are no longer served.
+     */
+    static synchronized void publish(GraphSnapshot snapshot) {
+        snapshot.setNamespace(0);
+        current = stamped(snapshot);
+        BoundTreeCache.invalidate(0);
+    }
+
+    /**
+     * Serve {@code snapshot} as the current version of hosted network
+     * {@code namespace} (see {@link DatasetRegistry}), next to the one
+     * behind the static accessors. It gets a version from the same sequence,
+     * so versions never collide across networks, and the namespace's cached
+     * bound trees are dropped. Returns {@code snapshot}.
+     */
+    static synchronized GraphSnapshot host(int namespace, GraphSnapshot snapshot) {
+        if (namespace <= 0) {
+            throw new IllegalArgumentException("Namespace 0 is published through publish()");
+        }
+        snapshot.setNamespace(namespace);
+        hosted.put(namespace, stamped(snapshot));
+        BoundTreeCache.invalidate(namespace);
+        return snapshot;
+    }
+
+    /**
+     * Stop serving hosted network {@code namespace} and drop its bound
+     * trees. Queries that still hold one of its snapshots finish on it.
+     */
+    static synchronized void unhost(int namespace) {
+        hosted.remove(namespace);
+        BoundTreeCache.invalidate(namespace);
+    }
+
+    /**
+     * Give {@code snapshot}, which is never published, a version of its own,
+     * so bound searches on it are neither shared with nor served from those
+     * of any published network. Returns {@code snapshot}.
+     */
+    static GraphSnapshot versioned(GraphSnapshot snapshot) {
+        return stamped(snapshot);
+    }
+
+    /**
+     * Whether {@code snapshot} is the version currently served for its
+     * namespace, so trees and results derived from it may be cached.
+     */
+    static boolean isCurrent(GraphSnapshot snapshot) {
+        GraphSnapshot served = snapshot.getNamespace() == 0 ? current : hosted.get(snapshot.getNamespace());
+        return served != null && served.getVersion() == snapshot.getVersion();
+    }
+
+    /**
+     * Publish {@code next}, a {@link GraphSnapshot#withPrivateEdges copy} of
+     * {@code base} with some edges changed, if {@code base} is still current.
+     * Unlike {@link #publish(GraphSnapshot)} this keeps the layout version and
+     * carries bound trees that no changed edge can reach over to the new
+     * version (see {@link BoundTreeCache#carryOver}). Returns the number of
+     * trees kept, or -1 without publishing if another load got in first.
+     */
+    static synchronized int publishUpdate(GraphSnapshot base, GraphSnapshot next,
+            Set<Integer> changedSources, Set<Integer> changedDestinations) {
+        if (current != base) {
+            return -1;
+        }
+        next.setVersion(generation.incrementAndGet());
+        next.setLayoutVersion(base.getLayoutVersion());
+        current = next;
+        return BoundTreeCache.carryOver(0, base.getVersion(), next.getVersion(), changedSources, changedDestinations);
+    }
+
     /**
      * Number of vertices expected in the network (mirrors dataset header).
      */
     public static int get_vertex_count() {
-        return n_vertexes;
+        return current.get_vertex_count();
     }
 
     /**
      * Seed the expected vertex count. This does not mutate adjacency entries.
      */
     public static void set_vertex_count(int n) {
-        n_vertexes = n;
+        current.set_vertex_count(n);
     }
 
     /**
-     * Insert or replace a node in the adjacency list.
+     * Insert or replace a node in the adjacency list. Like the other mutators
+     * this edits the published snapshot in place, which is only safe while no
+     * queries run; loaders build a fresh {@link GraphSnapshot} instead.
      */
     public static void add_node(int node_id, Node node) {
-        adjacency_list.put(node_id, node);
+        current.add_node(node_id, node);
     }
 
     /**
      * Lightweight existence check used by validation routines.
      */
     public static boolean contains_node(int node_id) {
-        return adjacency_list.containsKey(node_id);
+        return current.contains_node(node_id);
     }
 
     /**
      * Retrieve a node from the adjacency list, or {@code null} when absent.
      */
     public static Node get_node(int node_id) {
-        return adjacency_list.get(node_id);
+        return current.get_node(node_id);
     }
 
     /**
      * Read-only view of nodes for iteration-heavy routines.
      */
     public static Map<Integer, Node> get_nodes() {
-        return adjacency_list;
+        return current.get_nodes();
     }
 
     /**
-     * Reset per-query state on every node so repeated solver invocations start
-     * from a clean slate without reallocating the graph structure.
+     * Drop all graph state. Useful when hot-reloading a new dataset without
+     * restarting the JVM. Publishes an empty snapshot, so queries that are
+     * still running finish on the old one.
      */
-    public static void reset() {
-        for (Entry<Integer, Node> entry : adjacency_list.entrySet()) {
-            entry.getValue().reset();
-        }
+    public static void clear() {
+        publish(new GraphSnapshot());
     }
 
     /**
-     * Drop all graph state. Useful when hot-reloading a new dataset without
-     * restarting the JVM.
+     * Monotonic id of the currently loaded network. Anything derived from the
+     * graph (bound trees, query results) records the generation it was built
+     * against and is discarded once the id moves on. This is the
+     * {@link GraphSnapshot#getVersion() version} of the current snapshot.
      */
-    public static void clear() {
-        adjacency_list.clear();
-        clusters.clear();
-        n_vertexes = 0;
-        arrivalTimeSeries = null;
-        widthTimeSeries = null;
+    public static long getGeneration() {
+        return current.getVersion();
     }
 
-    public static void updateArrivalTimeSeries(String[] time_series) {
-        arrivalTimeSeries = new double[time_series.length];
-        for (int i = 0; i < time_series.length; i++) {
-            arrivalTimeSeries[i] = Double.parseDouble(time_series[i]);
-        }
-
+    /**
+     * Signal that the network contents changed wholesale. Loaders call this
+     * once parsing is complete so derived caches never outlive the data they
+     * were computed from.
+     */
+    public static synchronized void markReloaded() {
+        stamped(current);
+        BoundTreeCache.invalidate(0);
     }
 
-    public static void updateWidthTimeSeries(String[] time_series) {
-        widthTimeSeries = new double[time_series.length];
-        for (int i = 0; i < time_series.length; i++) {
-            widthTimeSeries[i] = Double.parseDouble(time_series[i]);
-        }
-
+    /**
+     * Renumber the loaded network so that node {@code order[i]} becomes node
+     * {@code i}. Nodes and edges are re-created in the new order, so
+     * neighbours under a locality-preserving order (see {@link NodeOrdering})
+     * also sit close together in memory. {@link #get_node(int)} becomes a
+     * plain array lookup. {@code order} must be a permutation of the current
+     * node ids.
+     * <p>
+     * Solver code only sees internal ids from then on. Anything that exchanges
+     * ids with the outside (query files, the API) translates with
+     * {@link #toInternal(int)} and {@link #toExternal(int)}.
+     */
+    public static void renumber(int[] order) {
+        current.renumber(order);
+        markReloaded();
     }
 
-    public static double[] getArrivalTimeSeries() {
-        return arrivalTimeSeries;
+    /**
+     * Whether loaders store travel costs in {@link Edge#compact() compact}
+     * form: 16-bit quantized slots instead of a map of boxed values per edge.
+     * Off unless {@code GRAPH_STORAGE=compact}; takes effect on the next load.
+     */
+    public static boolean isCompactStorage() {
+        return compactStorage;
     }
 
-    public static double[] getWidthTimeSeries() {
-        return widthTimeSeries;
+    public static void setCompactStorage(boolean compact) {
+        compactStorage = compact;
     }
 
-    public static List<Double> getArrivalTimeSeries(double start_departure_time, double end_departure_time) {
-        List<Double> time_series = new ArrayList<>();
+    /** Whether {@link #renumber(int[])} replaced the dataset's node ids. */
+    public static boolean isRenumbered() {
+        return current.isRenumbered();
+    }
 
-        for (double time_point : arrivalTimeSeries) {
+    /**
+     * Internal id of the dataset node {@code externalId}, or -1 when the
+     * network has no such node. The identity unless the graph was renumbered.
+     */
+    public static int toInternal(int externalId) {
+        return current.toInternal(externalId);
+    }
 
-            if (time_point == start_departure_time || time_point == end_departure_time)
-                continue;
+    /** Dataset id of internal node {@code internalId}; the inverse of {@link #toInternal(int)}. */
+    public static int toExternal(int internalId) {
+        return current.toExternal(internalId);
+    }
 
-            if (time_point > start_departure_time && time_point < end_departure_time) {
-                time_series.add(time_point);
-            } else if (time_point > end_departure_time) {
-                break; // No need to continue as the list is sorted
-            }
-        }
+    /** {@link #toExternal(int)} over a path, or {@code null} for {@code null}. */
+    public static List<Integer> toExternal(List<Integer> internalIds) {
+        return current.toExternal(internalIds);
+    }
 
-        return time_series;
+    public static void updateArrivalTimeSeries(String[] time_series) {
+        current.updateArrivalTimeSeries(time_series);
     }
 
-    public static List<Double> getWidthTimeSeries(double start_departure_time, double end_departure_time) {
-        List<Double> time_series = new ArrayList<>();
+    public static void updateWidthTimeSeries(String[] time_series) {
+        current.updateWidthTimeSeries(time_series);
+    }
 
-        for (double time_point : widthTimeSeries) {
+    public static double[] getArrivalTimeSeries() {
+        return current.getArrivalTimeSeries();
+    }
 
-            if (time_point == start_departure_time || time_point == end_departure_time)
-                continue;
+    public static double[] getWidthTimeSeries() {
+        return current.getWidthTimeSeries();
+    }
 
-            if (time_point > start_departure_time && time_point < end_departure_time) {
-                time_series.add(time_point);
-            } else if (time_point > end_departure_time) {
-                break; // No need to continue as the list is sorted
-            }
-        }
+    public static List<Double> getArrivalTimeSeries(double start_departure_time, double end_departure_time) {
+        return current.getArrivalTimeSeries(start_departure_time, end_departure_time);
+    }
 
-        return time_series;
+    public static List<Double> getWidthTimeSeries(double start_departure_time, double end_departure_time) {
+        return current.getWidthTimeSeries(start_departure_time, end_departure_time);
     }
 
     public static boolean isSharpRightTurn(Node previous_node, Node current_node, Node next_node) {
@@ -182,245 +300,38 @@ public final class Graph {
 
     /**
      * Forward search pass that estimates time, distance, and right turns from
-     * the source. The implementation intentionally avoids clever heuristics in
-     * favor of readability: the queues are annotated, and every state mutation
-     * is accompanied by descriptive variable names and comments.
+     * the source. The bound tree itself is independent of the departure time,
+     * so it is served from {@link BoundTreeCache}; only the entries within the
+     * query budget are recorded in the caller's {@link QueryBounds}.
      */
-    public static void forwardAstar(int source, int destination, double budget) {
-        Map<Integer, Double> gTime = new HashMap<>();
-        Map<Integer, Double> gWideDistance = new HashMap<>();
-        Map<Integer, Double> gDistance = new HashMap<>();
-        Map<Integer, Integer> gRightTurn = new HashMap<>();
-        int prevoious_node = source;
-
-        PriorityQueue<Integer> pQueue = new PriorityQueue<>(get_vertex_count(), new Comparator<Integer>() {
-            @Override
-            public int compare(Integer i, Integer j) {
-                try {
-                    Double iTime = gTime.get(i);
-                    Double jTime = gTime.get(j);
-                    if(iTime == null || jTime == null) {
-                        return 0;
-                    }
-                    if (iTime > jTime) {
-                        return 1;
-                    } else if (iTime < jTime) {
-                        return -1;
-                    }
-                    return 0;
-                } catch(Exception e) {
-                    return 0;
-                }
-            }
-        });
-
-
-        gTime.put(source, 0.0);
-        gWideDistance.put(source, 0.0);
-        gDistance.put(source, 0.0);
-        gRightTurn.put(source, 0);
-        get_node(source).setForwardReachebility();
-        pQueue.add(source);
-
-        while (!pQueue.isEmpty()) {
-
-            int current_vertex = pQueue.poll();
-            // System.out.println("[ForwardA*] Polled " + current_vertex + ", queue size now=" + pQueue.size());
-            if (pQueue.size() % 5000 == 0) {
-                // System.out.println("[ForwardA*] queue size=" + pQueue.size());
-            }
-
-            Node node = get_node(current_vertex);
-
-            // Defensive: guards against missing bookkeeping entries that would NPE on auto-unboxing.
-            Double currentCostObj = gTime.get(current_vertex);
-            Double currentWideObj = gWideDistance.get(current_vertex);
-            Double currentDistObj = gDistance.get(current_vertex);
-            Integer currentRightTurnObj = gRightTurn.get(current_vertex);
-
-            if (currentCostObj == null || currentWideObj == null || currentDistObj == null || currentRightTurnObj == null) {
-                System.err.println("[BackwardA*] Missing state for node " + current_vertex + " (gTime=" + currentCostObj + ", gWide=" + currentWideObj + ", gDist=" + currentDistObj + ", gRT=" + currentRightTurnObj + ") – skipping");
-                continue;
-            }
-
-            double current_cost = currentCostObj;
-            double current_wide_distance = currentWideObj;
-            double current_distance = currentDistObj;
-            int current_right_turn = currentRightTurnObj;
-
-            Map<Integer, Edge> temp_outgoing_edge = node.get_outgoing_edges();
-
-            for (Entry<Integer, Edge> entry : temp_outgoing_edge.entrySet()) {
-
-                Edge edge = entry.getValue();
-                int j = edge.get_destination();
-                double cost_j = edge.getLowestCost();
-                double g_time = current_cost + cost_j;
-                
-                double distance = edge.get_distance();
-                double g_wide_distance = current_wide_distance;
-
-                if (!edge.is_clearway() && (edge.get_width(0) >= BidirectionalAstar.WIDENESS_THRESHOLD)) {
-                    g_wide_distance += distance;
-                }
-
-                double g_distance = current_distance + distance;
-                int g_right_turn = current_right_turn;
-                if (current_vertex != source && isSharpRightTurn(get_node(prevoious_node), node, get_node(j))) {
-                    g_right_turn++;
-                }
-
-                if (g_time <= budget) {
-                    if (!gTime.containsKey(j)) {
-                        get_node(j).setForwardReachebility();
-                        gTime.put(j, g_time);
-                        gWideDistance.put(j, g_wide_distance);
-                        gDistance.put(j, g_distance);
-                        gRightTurn.put(j, g_right_turn);
-                        if (j != destination) {
-                            pQueue.add(j);
-                        }
-                    }
-
-                    else if (gTime.get(j) > g_time) {
-                        gTime.replace(j, g_time);
-                        gWideDistance.replace(j, g_wide_distance);
-                        gDistance.replace(j, g_distance);
-                        gRightTurn.replace(j, g_right_turn);
-                    }
-                }
-            }
-        }
-
-        for (Entry<Integer, Double> entry : gTime.entrySet()) {
-            int node_id = entry.getKey();
-            Node node = get_node(node_id);
-            node.setForwardHTime(entry.getValue());
-            node.setForwardHWideDistance(gWideDistance.get(node_id));
-            node.setForwardHDistance(gDistance.get(node_id));
-            node.setForwardHRightTurn(gRightTurn.get(node_id));
-        }
+    public static void forwardAstar(int source, int destination, QueryBounds bounds) {
+        current.forwardAstar(source, destination, bounds);
     }
 
-    public static void backwardAstar(int source, int destination, double budget) {
-        Map<Integer, Double> gTime = new HashMap<>();
-        Map<Integer, Double> hTime = new HashMap<>();
-        Map<Integer, Double> gWideDistance = new HashMap<>();
-        Map<Integer, Double> gDistance = new HashMap<>();
-        Map<Integer, Integer> gRightTurn = new HashMap<>();
-        int next_node = destination;
-
-        PriorityQueue<Integer> pQueue = new PriorityQueue<>(get_vertex_count(), new Comparator<Integer>() {
-            @Override
-            public int compare(Integer i, Integer j) {
-                try {
-                    Double iTime = hTime.get(i);
-                    Double jTime = hTime.get(j);
-                    if(iTime == null || jTime == null) {
-                        return 0;
-                    }
-                    if (iTime > jTime) {
-                        return 1;
-                    } else if (iTime < jTime) {
-                        return -1;
-                    }
-                    return 0;
-                } catch(Exception e) {
-                    return 0;
-                }
-            }
-        });
-
-        if (get_node(destination).isForwardReacheble()) {
-            gTime.put(destination, 0.0);
-            hTime.put(destination, get_node(destination).get_forward_hTime());
-            gWideDistance.put(destination, 0.0);
-            gDistance.put(destination, 0.0);
-            gRightTurn.put(destination, 0);
-            get_node(destination).setBackwardReachebility();
-            pQueue.add(destination);
-        }
-
-        while (!pQueue.isEmpty()) {
-
-            int current_vertex = pQueue.poll();
-            Node node = get_node(current_vertex);
-            double current_cost = gTime.get(current_vertex);
-            double current_wide_distance = gWideDistance.get(current_vertex);
-            double current_distance = gDistance.get(current_vertex);
-            int current_right_turn = gRightTurn.get(current_vertex);
-
-            Map<Integer, Edge> temp_incoming_edge = node.get_incoming_edges();
-
-            for (Entry<Integer, Edge> entry : temp_incoming_edge.entrySet()) {
-
-                Edge edge = entry.getValue();
-                int j = edge.get_source();
-                if (!get_node(j).isForwardReacheble())
-                    continue;
-
-                double cost_j = edge.getLowestCost();
-                double g_time = current_cost + cost_j;
-                double f_time = get_node(j).get_forward_hTime();
-                double distance = edge.get_distance();
-                double g_wide_distance = current_wide_distance;
-
-                if (!edge.is_clearway() && (edge.get_width(0) >= BidirectionalAstar.WIDENESS_THRESHOLD)) {
-                    g_wide_distance += distance;
-                }
-
-                double g_distance = current_distance + distance;
-                int g_right_turn = current_right_turn;
-                if (current_vertex != destination && isSharpRightTurn(get_node(j), node, get_node(next_node))) {
-                    g_right_turn++;
-                }
-
-                if (g_time + f_time <= budget) {
-                    if (!hTime.containsKey(j)) {
-                        get_node(j).setBackwardReachebility();
-                        gTime.put(j, g_time);
-                        hTime.put(j, g_time + f_time);
-                        gWideDistance.put(j, g_wide_distance);
-                        gDistance.put(j, g_distance);
-                        gRightTurn.put(j, g_right_turn);
-                        if (j != source) pQueue.add(j);
-                    }
-
-                    else if (gTime.get(j) > g_time) {
-                        gTime.replace(j, g_time);
-                        hTime.replace(j, g_time + f_time);
-                        gWideDistance.replace(j, g_wide_distance);
-                        gDistance.replace(j, g_distance);
-                        gRightTurn.replace(j, g_right_turn);
-                    }
-                }
-            }
-
-        }
-
-        for (Entry<Integer, Double> entry : gTime.entrySet()) {
-            int node_id = entry.getKey();
-            Node node = get_node(node_id);
-            node.setBackwardHTime(entry.getValue());
-            node.setBackwardHWideDistance(gWideDistance.get(node_id));
-            node.setBackwardHDistance(gDistance.get(node_id));
-            node.setBackwardHRightTurn(gRightTurn.get(node_id));
-        }
+    /**
+     * Backward search pass towards the destination. The cached tree is keyed
+     * by destination alone, so the source-dependent restriction (the node must
+     * be forward reachable and the combined bound must fit in the budget) is
+     * applied by {@link QueryBounds} when the tree is recorded. Must run after
+     * {@link #forwardAstar(int, int, QueryBounds)} for the same bounds.
+     */
+    public static void backwardAstar(int source, int destination, QueryBounds bounds) {
+        current.backwardAstar(source, destination, bounds);
     }
 
     // Add a cluster to the graph
     public static void addCluster(Cluster cluster) {
-        clusters.put(cluster.getClusterId(), cluster);
+        current.addCluster(cluster);
     }
 
     // Get a cluster by its ID
     public static Cluster getCluster(int clusterId) {
-        return clusters.get(clusterId);
+        return current.getCluster(clusterId);
     }
 
     // Get all clusters
     public static Map<Integer, Cluster> getAllClusters() {
-        return clusters;
+        return current.getAllClusters();
     }
 
     // Create a cluster and add nodes to it
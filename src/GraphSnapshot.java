@@ -0,0 +1,389 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * One version of the road network: nodes, clusters, time series and the id
+ * mapping left by {@link #renumber(int[])}.
+ * <p>
+ * A loader fills a fresh snapshot that nothing else can see yet, then
+ * {@link Graph#publish publishes} it in a single reference swap. A query takes
+ * {@link Graph#snapshot()} once when it starts and resolves every node through
+ * that instance. A reload while it runs neither changes the nodes under it nor
+ * mixes two versions. The old snapshot is collected once its last query
+ * finishes.
+ * <p>
+ * A snapshot must not be modified after it is published, except through the
+ * legacy in-place {@link Graph} mutators used while seeding a network before
+ * the server takes traffic.
+ */
+final class GraphSnapshot {
+
+    // Node object, its two edge maps and its entry in the adjacency list.
+    private static final long NODE_BYTES = 250;
+
+    private int n_vertexes;
+    private final Map<Integer, Node> adjacency_list = new HashMap<>();
+    private final Map<Integer, Cluster> clusters = new HashMap<>();
+    private double[] arrivalTimeSeries;
+    private double[] widthTimeSeries;
+    // Set by renumber(): nodes indexed by internal id, and the dataset id of each internal id.
+    private Node[] dense;
+    private int[] externalIds;
+    private Map<Integer, Integer> internalIds;
+    private NodeOrdering.Strategy nodeOrder = NodeOrdering.Strategy.NONE;
+    private volatile long version;
+    private volatile long layoutVersion;
+    private int namespace;
+
+    GraphSnapshot() {
+    }
+
+    /**
+     * Copy of {@code base} for a traffic update; see {@link #withPrivateEdges}.
+     * The node map is copied, the nodes, edges, time series and id mapping are
+     * shared.
+     */
+    private GraphSnapshot(GraphSnapshot base) {
+        n_vertexes = base.n_vertexes;
+        base.adjacency_list.forEach(adjacency_list::put); // same iteration order as the base, see Node(Node)
+        clusters.putAll(base.clusters);
+        arrivalTimeSeries = base.arrivalTimeSeries;
+        widthTimeSeries = base.widthTimeSeries;
+        dense = base.dense != null ? base.dense.clone() : null;
+        externalIds = base.externalIds;
+        internalIds = base.internalIds;
+        nodeOrder = base.nodeOrder;
+        layoutVersion = base.layoutVersion;
+        namespace = base.namespace;
+    }
+
+    /**
+     * Version stamped by {@link Graph#publish}; derived data (bound trees,
+     * cached results, spatial indexes) records it and is only reused against a
+     * snapshot with the same version. 0 until published.
+     */
+    long getVersion() {
+        return version;
+    }
+
+    void setVersion(long version) {
+        this.version = version;
+    }
+
+    /**
+     * Version of the snapshot that last changed the node set or coordinates.
+     * Traffic updates only change edge costs and widths and keep it, so
+     * indexes over node positions survive them.
+     */
+    long getLayoutVersion() {
+        return layoutVersion;
+    }
+
+    void setLayoutVersion(long layoutVersion) {
+        this.layoutVersion = layoutVersion;
+    }
+
+    /**
+     * Which network this snapshot is a version of: 0 for the one served
+     * through {@link Graph}, or the namespace of a {@link DatasetRegistry}
+     * dataset. Bound trees of different namespaces are cached apart.
+     */
+    int getNamespace() {
+        return namespace;
+    }
+
+    void setNamespace(int namespace) {
+        this.namespace = namespace;
+    }
+
+    /**
+     * Approximate heap bytes held by this snapshot's nodes and edges, for
+     * budgeting how many networks fit in memory at once. Estimated from
+     * object counts and slot storage, not measured.
+     */
+    long footprint() {
+        long bytes = (long) adjacency_list.size() * NODE_BYTES;
+        for (Node node : adjacency_list.values()) {
+            for (Edge edge : node.get_outgoing_edges().values()) {
+                bytes += edge.footprint();
+            }
+        }
+        if (dense != null) {
+            bytes += 16 + 4L * dense.length + 4L * externalIds.length + (long) internalIds.size() * 48;
+        }
+        return bytes;
+    }
+
+    /**
+     * Copy-on-write successor of this snapshot in which each edge
+     * {@code source -> destination} listed in {@code edges} (pairs of internal
+     * ids) is a private {@link Edge#copyForUpdate() copy}, reachable from
+     * fresh copies of both endpoint nodes. Every other node and edge is
+     * shared with this snapshot, which stays unchanged. Pairs without an edge
+     * are skipped. The caller edits the copied edges, then publishes.
+     */
+    GraphSnapshot withPrivateEdges(List<int[]> edges) {
+        GraphSnapshot next = new GraphSnapshot(this);
+        Map<Node, Node> replaced = new IdentityHashMap<>();
+        for (int[] pair : edges) {
+            Node from = get_node(pair[0]);
+            Edge edge = from != null ? from.get_outgoing_edges().get(pair[1]) : null;
+            if (edge == null || get_node(pair[1]) == null) {
+                continue;
+            }
+            Node source = next.own(pair[0], from, replaced);
+            Node destination = next.own(pair[1], get_node(pair[1]), replaced);
+            if (source.get_outgoing_edges().get(pair[1]) != edge) {
+                continue; // listed twice, already copied
+            }
+            Edge copy = edge.copyForUpdate();
+            source.insert_outgoing_edge(copy);
+            destination.insert_incoming_edge(copy);
+        }
+        // Clusters hold node objects, so those with a replaced member are copied as well.
+        Set<Integer> touchedClusters = new HashSet<>();
+        for (Node node : replaced.values()) {
+            if (node.getClusterId() != -1) {
+                touchedClusters.add(node.getClusterId());
+            }
+        }
+        for (int clusterId : touchedClusters) {
+            Cluster shared = next.clusters.get(clusterId);
+            if (shared == null) {
+                continue;
+            }
+            Cluster cluster = new Cluster(clusterId);
+            for (Node member : shared.getNodes()) {
+                cluster.addNode(replaced.getOrDefault(member, member));
+            }
+            next.clusters.put(clusterId, cluster);
+        }
+        return next;
+    }
+
+    /** This snapshot's private copy of {@code original}, node {@code id} of the base snapshot. */
+    private Node own(int id, Node original, Map<Node, Node> replaced) {
+        Node copy = replaced.get(original);
+        if (copy == null) {
+            copy = new Node(original);
+            replaced.put(original, copy);
+            adjacency_list.put(id, copy);
+            if (dense != null) {
+                dense[id] = copy;
+            }
+        }
+        return copy;
+    }
+
+    int get_vertex_count() {
+        return n_vertexes;
+    }
+
+    void set_vertex_count(int n) {
+        n_vertexes = n;
+    }
+
+    void add_node(int node_id, Node node) {
+        adjacency_list.put(node_id, node);
+        dense = null;
+    }
+
+    boolean contains_node(int node_id) {
+        return adjacency_list.containsKey(node_id);
+    }
+
+    Node get_node(int node_id) {
+        Node[] nodes = dense;
+        if (nodes != null) {
+            return node_id >= 0 && node_id < nodes.length ? nodes[node_id] : null;
+        }
+        return adjacency_list.get(node_id);
+    }
+
+    Map<Integer, Node> get_nodes() {
+        return adjacency_list;
+    }
+
+    /** Drop every node, cluster and time series; only for snapshots not yet published. */
+    void clear() {
+        adjacency_list.clear();
+        clusters.clear();
+        dense = null;
+        externalIds = null;
+        internalIds = null;
+        nodeOrder = NodeOrdering.Strategy.NONE;
+        n_vertexes = 0;
+        arrivalTimeSeries = null;
+        widthTimeSeries = null;
+    }
+
+    /** See {@link Graph#renumber(int[])}. */
+    void renumber(int[] order) {
+        int n = order.length;
+        if (n != adjacency_list.size()) {
+            throw new IllegalArgumentException("Order covers " + n + " of " + adjacency_list.size() + " nodes");
+        }
+        Map<Integer, Integer> newId = new HashMap<>(n * 2);
+        for (int i = 0; i < n; i++) {
+            newId.put(order[i], i);
+        }
+        Node[] fresh = new Node[n];
+        for (int i = 0; i < n; i++) {
+            Node old = adjacency_list.get(order[i]);
+            fresh[i] = new Node(old.get_latitude(), old.get_longitude());
+            fresh[i].setClusterId(old.getClusterId());
+        }
+        for (int i = 0; i < n; i++) {
+            for (Edge edge : adjacency_list.get(order[i]).get_outgoing_edges().values()) {
+                Integer to = newId.get(edge.get_destination());
+                if (to == null) {
+                    continue; // dangling edge, unreachable through get_node() either way
+                }
+                Edge copy = new Edge(edge, i, to);
+                fresh[i].insert_outgoing_edge(copy);
+                fresh[to].insert_incoming_edge(copy);
+            }
+        }
+
+        int[] external = new int[n];
+        Map<Integer, Integer> internal = new HashMap<>(n * 2);
+        for (int i = 0; i < n; i++) {
+            external[i] = toExternal(order[i]);
+            internal.put(external[i], i);
+        }
+        adjacency_list.clear();
+        clusters.clear();
+        for (int i = 0; i < n; i++) {
+            adjacency_list.put(i, fresh[i]);
+            int clusterId = fresh[i].getClusterId();
+            if (clusterId != -1) {
+                Cluster cluster = clusters.get(clusterId);
+                if (cluster == null) {
+                    cluster = new Cluster(clusterId);
+                    clusters.put(clusterId, cluster);
+                }
+                cluster.addNode(fresh[i]);
+            }
+        }
+        dense = fresh;
+        externalIds = external;
+        internalIds = internal;
+    }
+
+    boolean isRenumbered() {
+        return externalIds != null;
+    }
+
+    NodeOrdering.Strategy getNodeOrder() {
+        return isRenumbered() ? nodeOrder : NodeOrdering.Strategy.NONE;
+    }
+
+    void setNodeOrder(NodeOrdering.Strategy nodeOrder) {
+        this.nodeOrder = nodeOrder;
+    }
+
+    int toInternal(int externalId) {
+        Map<Integer, Integer> ids = internalIds;
+        if (ids == null) {
+            return externalId;
+        }
+        Integer id = ids.get(externalId);
+        return id != null ? id : -1;
+    }
+
+    int toExternal(int internalId) {
+        int[] ids = externalIds;
+        return ids != null && internalId >= 0 && internalId < ids.length ? ids[internalId] : internalId;
+    }
+
+    List<Integer> toExternal(List<Integer> internalIds) {
+        if (internalIds == null || externalIds == null) {
+            return internalIds;
+        }
+        List<Integer> external = new ArrayList<>(internalIds.size());
+        for (int id : internalIds) {
+            external.add(toExternal(id));
+        }
+        return external;
+    }
+
+    void updateArrivalTimeSeries(String[] time_series) {
+        arrivalTimeSeries = parseTimeSeries(time_series);
+    }
+
+    void updateWidthTimeSeries(String[] time_series) {
+        widthTimeSeries = parseTimeSeries(time_series);
+    }
+
+    private static double[] parseTimeSeries(String[] time_series) {
+        double[] series = new double[time_series.length];
+        for (int i = 0; i < time_series.length; i++) {
+            series[i] = Double.parseDouble(time_series[i]);
+        }
+        return series;
+    }
+
+    double[] getArrivalTimeSeries() {
+        return arrivalTimeSeries;
+    }
+
+    double[] getWidthTimeSeries() {
+        return widthTimeSeries;
+    }
+
+    List<Double> getArrivalTimeSeries(double start_departure_time, double end_departure_time) {
+        return pointsWithin(arrivalTimeSeries, start_departure_time, end_departure_time);
+    }
+
+    List<Double> getWidthTimeSeries(double start_departure_time, double end_departure_time) {
+        return pointsWithin(widthTimeSeries, start_departure_time, end_departure_time);
+    }
+
+    private static List<Double> pointsWithin(double[] series, double start_departure_time, double end_departure_time) {
+        List<Double> time_series = new ArrayList<>();
+
+        for (double time_point : series) {
+
+            if (time_point == start_departure_time || time_point == end_departure_time)
+                continue;
+
+            if (time_point > start_departure_time && time_point < end_departure_time) {
+                time_series.add(time_point);
+            } else if (time_point > end_departure_time) {
+                break; // No need to continue as the list is sorted
+            }
+        }
+
+        return time_series;
+    }
+
+    /** See {@link Graph#forwardAstar(int, int, QueryBounds)}. */
+    void forwardAstar(int source, int destination, QueryBounds bounds) {
+        bounds.applyForward(BoundTreeCache.forward(this, source, bounds.getBudget()));
+    }
+
+    /** See {@link Graph#backwardAstar(int, int, QueryBounds)}. */
+    void backwardAstar(int source, int destination, QueryBounds bounds) {
+        if (!bounds.isForwardReachable(destination)) {
+            return;
+        }
+        bounds.applyBackward(BoundTreeCache.backward(this, destination, bounds.getBudget()));
+    }
+
+    void addCluster(Cluster cluster) {
+        clusters.put(cluster.getClusterId(), cluster);
+    }
+
+    Cluster getCluster(int clusterId) {
+        return clusters.get(clusterId);
+    }
+
+    Map<Integer, Cluster> getAllClusters() {
+        return clusters;
+    }
+}
@@ -114,6 +114,8 @@ public class GuiLauncher extends JFrame {
     
     public GuiLauncher() {
         super(APP_TITLE + " — " + VERSION);
+        // The panels work in raw node ids, so keep the dataset's numbering
+        NodeOrdering.keepDatasetOrder();
         initializeUI();
         loadDataset();
     }
@@ -569,11 +571,14 @@ public class GuiLauncher extends JFrame {
                         .setWideEdgeIndices(finalResult.getWideEdgeIndices())
                         .setExecutionTimeMs((long)finalResult.getExecutionTime())
                         .setSuccess(finalResult.isPathFound())
+                        .setSearchStats(finalResult.getSearchStats() != null
+                            ? finalResult.getSearchStats().toMap() : null)
                         .build();
                     
                     historyManager.addQuery(queryResult);
                     metricsCollector.recordQuery(finalResult.isPathFound(), (long)finalResult.getExecutionTime(), 
-                        finalResult.getPathNodes() != null ? finalResult.getPathNodes().size() : 0);
+                        (int) Math.min(Integer.MAX_VALUE, queryResult.getNodesExplored()));
+                    metricsCollector.recordSearchStats(queryResult.getSearchStats());
                     
                     // Refresh history panel
                     historyPanel.refreshTable();
@@ -0,0 +1,416 @@
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Everything reachable from one source within a travel-time budget, for one
+ * departure or for departures sampled over a window.
+ * <p>
+ * Each departure runs a time-dependent Dijkstra on earliest arrival: an edge
+ * entered at time {@code t} is left at {@link Edge#get_arrival_time(double)},
+ * so the time slots of the edges file shape the result. Travel costs are
+ * interpolated between slots, so arriving earlier never means leaving an
+ * edge later and the earliest arrival at a node is also the best time to
+ * leave it. A node is reachable when some sampled departure reaches it
+ * within the budget, and it keeps the annotations of the departure that
+ * reaches it fastest. Wide distance and sharp right turns are counted along
+ * that fastest path, with the wide-edge and turn rules of {@link BoundTree}.
+ * <p>
+ * Parent links come from the same departure as the rest of a node's
+ * annotations. The parent may itself be reached fastest by another departure,
+ * so with several departures the parent links are not one consistent search
+ * tree: a chain of parents can switch departures part way.
+ * <p>
+ * Nodes are stored as parallel arrays sorted by travel time, so the nodes
+ * within a smaller budget are a prefix.
+ */
+final class Isochrone {
+
+    /** Most departures sampled from one window; the step widens to stay within it. */
+    static final int MAX_DEPARTURES = 97;
+
+    private final int source;
+    private final double budget;
+    private final double[] departures;
+    private final int size;
+    private final int[] nodes;
+    private final int[] parent;
+    private final double[] departure;
+    private final double[] arrival;
+    private final double[] wideDistance;
+    private final double[] distance;
+    private final int[] rightTurns;
+    private final double[] latitude;
+    private final double[] longitude;
+    private final int[] edges;
+
+    private Isochrone(int source, double budget, double[] departures, Reach reached, int[] order,
+            int[] parent, double[] latitude, double[] longitude, int[] edges) {
+        this.source = source;
+        this.budget = budget;
+        this.departures = departures;
+        this.size = order.length;
+        this.nodes = new int[size];
+        this.departure = new double[size];
+        this.arrival = new double[size];
+        this.wideDistance = new double[size];
+        this.distance = new double[size];
+        this.rightTurns = new int[size];
+        for (int i = 0; i < size; i++) {
+            int entry = order[i];
+            nodes[i] = reached.nodes[entry];
+            departure[i] = reached.departure[entry];
+            arrival[i] = reached.arrival[entry];
+            wideDistance[i] = reached.wideDistance[entry];
+            distance[i] = reached.distance[entry];
+            rightTurns[i] = reached.rightTurns[entry];
+        }
+        this.parent = parent;
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.edges = edges;
+    }
+
+    /**
+     * Search from {@code source} for every departure from
+     * {@code startDeparture} to {@code endDeparture} in steps of
+     * {@code step} minutes (just {@code startDeparture} when the window is
+     * empty) and keep what each node's fastest departure reaches within
+     * {@code budget} minutes.
+     */
+    static Isochrone compute(GraphSnapshot graph, int source, double startDeparture, double endDeparture,
+            double step, double budget) {
+        double[] departures = sampleDepartures(startDeparture, endDeparture, step);
+        Map<Integer, Integer> entryOf = new HashMap<>();
+        Reach reached = new Reach();
+        for (double start : departures) {
+            Reach run = search(graph, source, start, budget);
+            for (int i = 0; i < run.size; i++) {
+                Integer existing = entryOf.get(run.nodes[i]);
+                if (existing == null) {
+                    entryOf.put(run.nodes[i], reached.add(run, i));
+                } else if (run.travelTime(i) < reached.travelTime(existing)) {
+                    reached.set(existing, run, i);
+                }
+            }
+        }
+
+        Integer[] sorted = new Integer[reached.size];
+        for (int i = 0; i < sorted.length; i++) {
+            sorted[i] = i;
+        }
+        Arrays.sort(sorted, (a, b) -> Double.compare(reached.travelTime(a), reached.travelTime(b)));
+        int[] order = new int[sorted.length];
+        Map<Integer, Integer> indexOf = new HashMap<>();
+        for (int i = 0; i < order.length; i++) {
+            order[i] = sorted[i];
+            indexOf.put(reached.nodes[order[i]], i);
+        }
+
+        int[] parent = new int[order.length];
+        double[] latitude = new double[order.length];
+        double[] longitude = new double[order.length];
+        int[] edges = new int[64];
+        int edgeCount = 0;
+        for (int i = 0; i < order.length; i++) {
+            int entry = order[i];
+            parent[i] = reached.parent[entry] >= 0 ? indexOf.get(reached.parent[entry]) : -1;
+            Node node = graph.get_node(reached.nodes[entry]);
+            if (node == null) {
+                latitude[i] = Double.NaN;
+                longitude[i] = Double.NaN;
+                continue;
+            }
+            latitude[i] = node.get_latitude();
+            longitude[i] = node.get_longitude();
+            double deadline = reached.departure[entry] + budget;
+            for (Edge edge : node.get_outgoing_edges().values()) {
+                Integer next = indexOf.get(edge.get_destination());
+                if (next == null || edge.get_arrival_time(reached.arrival[entry]) > deadline) {
+                    continue;
+                }
+                if (edgeCount + 2 > edges.length) {
+                    edges = Arrays.copyOf(edges, edges.length * 2);
+                }
+                edges[edgeCount++] = i;
+                edges[edgeCount++] = next;
+            }
+        }
+        return new Isochrone(source, budget, departures, reached, order, parent, latitude, longitude,
+                Arrays.copyOf(edges, edgeCount));
+    }
+
+    /** Number of departures {@link #compute} samples for the same window and step. */
+    static int departureCount(double startDeparture, double endDeparture, double step) {
+        return sampleDepartures(startDeparture, endDeparture, step).length;
+    }
+
+    private static double[] sampleDepartures(double start, double end, double step) {
+        if (!(end > start)) {
+            return new double[] { start };
+        }
+        double width = end - start;
+        step = Math.max(step > 0 ? step : width, width / (MAX_DEPARTURES - 1));
+        int count = (int) Math.floor(width / step + 1e-9) + 1;
+        double[] departures = new double[count];
+        for (int i = 0; i < count; i++) {
+            departures[i] = start + i * step;
+        }
+        return departures;
+    }
+
+    /**
+     * Earliest-arrival search from {@code source} leaving at
+     * {@code departure}, bounded at {@code departure + budget}. Returns the
+     * settled nodes in settle order.
+     */
+    private static Reach search(GraphSnapshot graph, int source, double departure, double budget) {
+        double deadline = departure + budget;
+        Reach slots = new Reach();
+        Map<Integer, Integer> slotOf = new HashMap<>();
+        BitSet settled = new BitSet();
+        int[] order = new int[64];
+        int settledCount = 0;
+
+        BoundTree.MinHeap heap = new BoundTree.MinHeap();
+        slotOf.put(source, slots.add(source, -1, departure, departure, 0, 0, 0));
+        heap.push(departure, 0);
+
+        while (!heap.isEmpty()) {
+            double key = heap.peekKey();
+            int slot = heap.pop();
+            if (settled.get(slot) || key > slots.arrival[slot]) {
+                continue;
+            }
+            settled.set(slot);
+            if (settledCount == order.length) {
+                order = Arrays.copyOf(order, order.length * 2);
+            }
+            order[settledCount++] = slot;
+
+            Node node = graph.get_node(slots.nodes[slot]);
+            if (node == null) {
+                continue;
+            }
+            Node previous = slots.parent[slot] >= 0 ? graph.get_node(slots.parent[slot]) : null;
+            double now = slots.arrival[slot];
+
+            for (Edge edge : node.get_outgoing_edges().values()) {
+                int next = edge.get_destination();
+                double nextArrival = edge.get_arrival_time(now);
+                if (nextArrival > deadline) {
+                    continue;
+                }
+                Integer existing = slotOf.get(next);
+                if (existing != null && (settled.get(existing) || slots.arrival[existing] <= nextArrival)) {
+                    continue;
+                }
+
+                double nextWide = slots.wideDistance[slot];
+                if (!edge.is_clearway() && edge.get_width(0) >= BidirectionalAstar.WIDENESS_THRESHOLD) {
+                    nextWide += edge.get_distance();
+                }
+                int nextTurns = slots.rightTurns[slot];
+                Node nextNode = graph.get_node(next);
+                if (previous != null && nextNode != null && Graph.isSharpRightTurn(previous, node, nextNode)) {
+                    nextTurns++;
+                }
+                double nextDistance = slots.distance[slot] + edge.get_distance();
+
+                if (existing == null) {
+                    int target = slots.add(next, slots.nodes[slot], departure, nextArrival, nextWide, nextDistance,
+                            nextTurns);
+                    slotOf.put(next, target);
+                    heap.push(nextArrival, target);
+                } else {
+                    slots.set(existing, next, slots.nodes[slot], departure, nextArrival, nextWide, nextDistance,
+                            nextTurns);
+                    heap.push(nextArrival, existing);
+                }
+            }
+        }
+        return slots.select(order, settledCount);
+    }
+
+    int getSource() {
+        return source;
+    }
+
+    double getBudget() {
+        return budget;
+    }
+
+    /** The sampled departure times, in minutes. */
+    double[] getDepartures() {
+        return departures.clone();
+    }
+
+    /** Number of reachable nodes, the source included. */
+    int size() {
+        return size;
+    }
+
+    /** Number of nodes reached within {@code minutes}; they are the first ones. */
+    int within(double minutes) {
+        int count = 0;
+        while (count < size && arrival[count] - departure[count] <= minutes) {
+            count++;
+        }
+        return count;
+    }
+
+    int node(int i) {
+        return nodes[i];
+    }
+
+    /** Index of the node {@code i} is reached from, or -1 for the source. */
+    int parent(int i) {
+        return parent[i];
+    }
+
+    /** The sampled departure that reaches node {@code i} fastest. */
+    double departure(int i) {
+        return departure[i];
+    }
+
+    double arrival(int i) {
+        return arrival[i];
+    }
+
+    double travelTime(int i) {
+        return arrival[i] - departure[i];
+    }
+
+    /** Share of the path to node {@code i} driven on wide roads, 0 at the source. */
+    double wideShare(int i) {
+        return distance[i] > 0 ? wideDistance[i] / distance[i] : 0;
+    }
+
+    double distance(int i) {
+        return distance[i];
+    }
+
+    int rightTurns(int i) {
+        return rightTurns[i];
+    }
+
+    /**
+     * Edges between reachable nodes that can be driven end to end within the
+     * budget when entered at their tail's arrival time, as flat pairs of
+     * node indexes. With a single departure every parent link is among them.
+     */
+    int[] getEdges() {
+        return edges.clone();
+    }
+
+    /**
+     * Convex hull of the nodes reached within {@code minutes}, as a closed
+     * counter-clockwise ring of flat longitude/latitude pairs. Fewer than
+     * three distinct nodes come back as they are.
+     */
+    double[] hull(double minutes) {
+        int count = within(minutes);
+        Integer[] points = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            points[i] = i;
+        }
+        Arrays.sort(points, (a, b) -> longitude[a] != longitude[b]
+                ? Double.compare(longitude[a], longitude[b])
+                : Double.compare(latitude[a], latitude[b]));
+        int[] ring = new int[2 * count];
+        int k = 0;
+        for (int p = 0; p < count; p++) {
+            while (k >= 2 && cross(ring[k - 2], ring[k - 1], points[p]) <= 0) {
+                k--;
+            }
+            ring[k++] = points[p];
+        }
+        for (int p = count - 2, lower = k + 1; p >= 0; p--) {
+            while (k >= lower && cross(ring[k - 2], ring[k - 1], points[p]) <= 0) {
+                k--;
+            }
+            ring[k++] = points[p];
+        }
+        if (k < 4) {
+            double[] flat = new double[2 * count];
+            for (int i = 0; i < count; i++) {
+                flat[2 * i] = longitude[points[i]];
+                flat[2 * i + 1] = latitude[points[i]];
+            }
+            return flat;
+        }
+        double[] flat = new double[2 * k];
+        for (int i = 0; i < k; i++) {
+            flat[2 * i] = longitude[ring[i]];
+            flat[2 * i + 1] = latitude[ring[i]];
+        }
+        return flat;
+    }
+
+    private double cross(int o, int a, int b) {
+        return (longitude[a] - longitude[o]) * (latitude[b] - latitude[o])
+                - (latitude[a] - latitude[o]) * (longitude[b] - longitude[o]);
+    }
+
+    /** Growable parallel arrays of reached nodes with their parent node id and path annotations. */
+    private static final class Reach {
+        int size;
+        int[] nodes = new int[64];
+        int[] parent = new int[64];
+        double[] departure = new double[64];
+        double[] arrival = new double[64];
+        double[] wideDistance = new double[64];
+        double[] distance = new double[64];
+        int[] rightTurns = new int[64];
+
+        double travelTime(int i) {
+            return arrival[i] - departure[i];
+        }
+
+        int add(int node, int parentNode, double start, double reachedAt, double wide, double dist, int turns) {
+            if (size == nodes.length) {
+                int grown = size * 2;
+                nodes = Arrays.copyOf(nodes, grown);
+                parent = Arrays.copyOf(parent, grown);
+                departure = Arrays.copyOf(departure, grown);
+                arrival = Arrays.copyOf(arrival, grown);
+                wideDistance = Arrays.copyOf(wideDistance, grown);
+                distance = Arrays.copyOf(distance, grown);
+                rightTurns = Arrays.copyOf(rightTurns, grown);
+            }
+            set(size, node, parentNode, start, reachedAt, wide, dist, turns);
+            return size++;
+        }
+
+        int add(Reach other, int i) {
+            return add(other.nodes[i], other.parent[i], other.departure[i], other.arrival[i],
+                    other.wideDistance[i], other.distance[i], other.rightTurns[i]);
+        }
+
+        void set(int i, int node, int parentNode, double start, double reachedAt, double wide, double dist,
+                int turns) {
+            nodes[i] = node;
+            parent[i] = parentNode;
+            departure[i] = start;
+            arrival[i] = reachedAt;
+            wideDistance[i] = wide;
+            distance[i] = dist;
+            rightTurns[i] = turns;
+        }
+
+        void set(int i, Reach other, int j) {
+            set(i, other.nodes[j], other.parent[j], other.departure[j], other.arrival[j],
+                    other.wideDistance[j], other.distance[j], other.rightTurns[j]);
+        }
+
+        /** The entries at {@code order[0..count)}, in that order. */
+        Reach select(int[] order, int count) {
+            Reach selected = new Reach();
+            for (int i = 0; i < count; i++) {
+                selected.add(this, order[i]);
+            }
+            return selected;
+        }
+    }
+}
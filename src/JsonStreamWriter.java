@@ -0,0 +1,358 @@
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Minimal streaming JSON encoder that writes straight into an
+ * {@link OutputStream} through a fixed byte buffer.
+ * <p>
+ * Numbers are rendered digit by digit into the buffer instead of going
+ * through {@code String.format} or {@code Double.toString}, so emitting a
+ * node or an edge allocates nothing. Separators are tracked per nesting level,
+ * so callers only open and close containers and write names and values.
+ * Non-finite doubles are written as {@code null} because JSON has no literal
+ * for them.
+ */
+public final class JsonStreamWriter implements Closeable {
+
+    private static final int BUFFER_SIZE = 16 * 1024;
+    private static final int MAX_DEPTH = 64;
+    private static final long[] POWERS_OF_TEN = {
+            1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L, 10_000_000L, 100_000_000L, 1_000_000_000L
+    };
+    private static final byte[] DIGITS = "0123456789abcdef".getBytes();
+
+    private final OutputStream out;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int position;
+
+    // hasValue[depth] is true once the container at that depth holds an element
+    private final boolean[] hasValue = new boolean[MAX_DEPTH];
+    private int depth;
+    private boolean afterName;
+
+    public JsonStreamWriter(OutputStream out) {
+        this.out = out;
+    }
+
+    public JsonStreamWriter beginObject() throws IOException {
+        separate();
+        open('{');
+        return this;
+    }
+
+    public JsonStreamWriter endObject() throws IOException {
+        close('}');
+        return this;
+    }
+
+    public JsonStreamWriter beginArray() throws IOException {
+        separate();
+        open('[');
+        return this;
+    }
+
+    public JsonStreamWriter endArray() throws IOException {
+        close(']');
+        return this;
+    }
+
+    /**
+     * Write an object member name. Names are expected to be plain ASCII
+     * identifiers and are not escaped.
+     */
+    public JsonStreamWriter name(String name) throws IOException {
+        separate();
+        ensure(name.length() + 3);
+        buffer[position++] = '"';
+        for (int i = 0; i < name.length(); i++) {
+            buffer[position++] = (byte) name.charAt(i);
+        }
+        buffer[position++] = '"';
+        buffer[position++] = ':';
+        afterName = true;
+        return this;
+    }
+
+    public JsonStreamWriter value(long value) throws IOException {
+        separate();
+        writeLong(value);
+        return this;
+    }
+
+    public JsonStreamWriter value(boolean value) throws IOException {
+        separate();
+        writeAscii(value ? "true" : "false");
+        return this;
+    }
+
+    public JsonStreamWriter nullValue() throws IOException {
+        separate();
+        writeAscii("null");
+        return this;
+    }
+
+    /**
+     * Write {@code value} rounded to {@code decimals} fraction digits (at most
+     * nine), keeping trailing zeros like {@code %.6f} does.
+     */
+    public JsonStreamWriter value(double value, int decimals) throws IOException {
+        separate();
+        writeFixed(value, Math.max(0, Math.min(decimals, POWERS_OF_TEN.length - 1)));
+        return this;
+    }
+
+    /**
+     * {@code value} as a quoted JSON string, escaped as {@link #value(String)}
+     * escapes it, for responses assembled as text rather than streamed.
+     */
+    static String quote(String value) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(value.length() + 2);
+        try (JsonStreamWriter json = new JsonStreamWriter(bytes)) {
+            json.value(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toString(StandardCharsets.UTF_8);
+    }
+
+    public JsonStreamWriter value(String value) throws IOException {
+        separate();
+        if (value == null) {
+            writeAscii("null");
+            return this;
+        }
+        ensure(1);
+        buffer[position++] = '"';
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                ensure(2);
+                buffer[position++] = '\\';
+                buffer[position++] = (byte) c;
+            } else if (c < 0x20) {
+                ensure(6);
+                buffer[position++] = '\\';
+                buffer[position++] = 'u';
+                buffer[position++] = '0';
+                buffer[position++] = '0';
+                buffer[position++] = DIGITS[c >> 4];
+                buffer[position++] = DIGITS[c & 0xF];
+            } else if (c < 0x80) {
+                ensure(1);
+                buffer[position++] = (byte) c;
+            } else if (c < 0x800) {
+                ensure(2);
+                buffer[position++] = (byte) (0xC0 | (c >> 6));
+                buffer[position++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                ensure(4);
+                buffer[position++] = (byte) (0xF0 | (codePoint >> 18));
+                buffer[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                buffer[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                buffer[position++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else {
+                ensure(3);
+                buffer[position++] = (byte) (0xE0 | (c >> 12));
+                buffer[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buffer[position++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        ensure(1);
+        buffer[position++] = '"';
+        return this;
+    }
+
+    /** Push buffered bytes to the underlying stream. */
+    public void flush() throws IOException {
+        if (position > 0) {
+            out.write(buffer, 0, position);
+            position = 0;
+        }
+        out.flush();
+    }
+
+    /** Flush and close the underlying stream. */
+    @Override
+    public void close() throws IOException {
+        try {
+            if (position > 0) {
+                out.write(buffer, 0, position);
+                position = 0;
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    private void open(char bracket) throws IOException {
+        if (depth + 1 >= MAX_DEPTH) {
+            throw new IllegalStateException("JSON nesting deeper than " + MAX_DEPTH);
+        }
+        ensure(1);
+        buffer[position++] = (byte) bracket;
+        hasValue[++depth] = false;
+    }
+
+    private void close(char bracket) throws IOException {
+        ensure(1);
+        buffer[position++] = (byte) bracket;
+        depth--;
+    }
+
+    /**
+     * Emit the comma before a value or name when needed. A value directly
+     * after its name never takes a comma.
+     */
+    private void separate() throws IOException {
+        if (afterName) {
+            afterName = false;
+            return;
+        }
+        if (hasValue[depth]) {
+            ensure(1);
+            buffer[position++] = ',';
+        }
+        hasValue[depth] = true;
+    }
+
+    private void writeFixed(double value, int decimals) throws IOException {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            writeAscii("null");
+            return;
+        }
+        long scale = POWERS_OF_TEN[decimals];
+        double scaled = Math.abs(value) * scale;
+        if (scaled >= Long.MAX_VALUE / 10.0) {
+            writeAscii(Double.toString(value)); // far outside coordinate ranges; allocation is acceptable here
+            return;
+        }
+        long rounded = Math.round(scaled);
+        if (value < 0 && rounded != 0) {
+            ensure(1);
+            buffer[position++] = '-';
+        }
+        writeLong(rounded / scale);
+        if (decimals > 0) {
+            long fraction = rounded % scale;
+            ensure(decimals + 1);
+            buffer[position++] = '.';
+            for (int i = decimals - 1; i >= 0; i--) {
+                buffer[position + i] = DIGITS[(int) (fraction % 10)];
+                fraction /= 10;
+            }
+            position += decimals;
+        }
+    }
+
+    private void writeLong(long value) throws IOException {
+        ensure(20);
+        if (value == Long.MIN_VALUE) {
+            writeAscii("-9223372036854775808");
+            return;
+        }
+        if (value < 0) {
+            buffer[position++] = '-';
+            value = -value;
+        }
+        int digits = 1;
+        for (long v = value; v >= 10; v /= 10) {
+            digits++;
+        }
+        for (int i = digits - 1; i >= 0; i--) {
+            buffer[position + i] = DIGITS[(int) (value % 10)];
+            value /= 10;
+        }
+        position += digits;
+    }
+
+    private void writeAscii(String text) throws IOException {
+        ensure(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            buffer[position++] = (byte) text.charAt(i);
+        }
+    }
+
+    private void ensure(int bytes) throws IOException {
+        if (position + bytes > buffer.length) {
+            out.write(buffer, 0, position);
+            position = 0;
+        }
+    }
+
+    /**
+     * Open-addressing set of {@code long} keys. Used for edge dedup so that a
+     * {@code from->to} pair costs eight bytes instead of a boxed string.
+     */
+    public static final class LongHashSet {
+        private static final long EMPTY = Long.MIN_VALUE;
+
+        private long[] slots;
+        private int size;
+        private boolean containsEmpty;
+
+        public LongHashSet(int expected) {
+            int capacity = Integer.highestOneBit(Math.max(16, expected * 2 - 1)) << 1;
+            slots = new long[capacity];
+            Arrays.fill(slots, EMPTY);
+        }
+
+        /** Add {@code key}; returns false if it was already present. */
+        public boolean add(long key) {
+            if (key == EMPTY) {
+                boolean added = !containsEmpty;
+                containsEmpty = true;
+                if (added) {
+                    size++;
+                }
+                return added;
+            }
+            if ((size + 1) * 2 > slots.length) {
+                rehash(slots.length * 2);
+            }
+            int mask = slots.length - 1;
+            int i = mix(key) & mask;
+            while (slots[i] != EMPTY) {
+                if (slots[i] == key) {
+                    return false;
+                }
+                i = (i + 1) & mask;
+            }
+            slots[i] = key;
+            size++;
+            return true;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        private void rehash(int capacity) {
+            long[] old = slots;
+            slots = new long[capacity];
+            Arrays.fill(slots, EMPTY);
+            int mask = capacity - 1;
+            for (long key : old) {
+                if (key == EMPTY) {
+                    continue;
+                }
+                int i = mix(key) & mask;
+                while (slots[i] != EMPTY) {
+                    i = (i + 1) & mask;
+                }
+                slots[i] = key;
+            }
+        }
+
+        private static int mix(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+}
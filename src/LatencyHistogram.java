@@ -0,0 +1,150 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram with HDR-style log-linear buckets.
+ * <p>
+ * Values are kept in microseconds. Each power-of-two range is split into
+ * {@value #SUB_BUCKETS} equal buckets, so any recorded value is known to
+ * within about 6%, from 1 µs up to roughly 12 days. Recording is one
+ * {@code getAndIncrement} on a fixed array plus two adders, which is cheap
+ * enough to leave on in production. Reads are not atomic snapshots: a
+ * percentile taken while other threads record may include some of their
+ * values and not others, which is fine for monitoring.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_OCTAVE = 40;
+    private static final int BUCKETS = (MAX_OCTAVE - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sumMicros = new LongAdder();
+    private final AtomicLong maxMicros = new AtomicLong();
+
+    public void recordNanos(long nanos) {
+        recordMicros(nanos / 1_000);
+    }
+
+    public void recordMicros(long micros) {
+        long value = Math.max(0, micros);
+        counts.getAndIncrement(bucketIndex(value));
+        count.increment();
+        sumMicros.add(value);
+        if (value > maxMicros.get()) {
+            maxMicros.accumulateAndGet(value, Math::max);
+        }
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getSumMicros() {
+        return sumMicros.sum();
+    }
+
+    public long getMaxMicros() {
+        return maxMicros.get();
+    }
+
+    /**
+     * Upper edge, in microseconds, of the bucket holding the given percentile
+     * (0-100), or 0 when nothing has been recorded.
+     */
+    public long percentileMicros(double percentile) {
+        long total = 0;
+        long[] snapshot = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(total * Math.min(100.0, Math.max(0.0, percentile)) / 100.0));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return Math.min(bucketUpperBound(i), getMaxMicros());
+            }
+        }
+        return getMaxMicros();
+    }
+
+    /**
+     * Number of recorded values below {@code 2^octave} microseconds. Octave
+     * boundaries coincide with bucket boundaries, so this is exact.
+     */
+    public long countBelowPowerOfTwo(int octave) {
+        int end = octave <= SUB_BUCKET_BITS
+                ? Math.min(SUB_BUCKETS, 1 << Math.max(0, octave))
+                : Math.min(BUCKETS, (octave - SUB_BUCKET_BITS + 1) * SUB_BUCKETS);
+        long seen = 0;
+        for (int i = 0; i < end; i++) {
+            seen += counts.get(i);
+        }
+        return seen;
+    }
+
+    /**
+     * Append this histogram in Prometheus text format as {@code name} in
+     * seconds, with one cumulative bucket per power of two between
+     * {@code 2^minOctave} and {@code 2^maxOctave} microseconds. The caller
+     * writes the {@code # TYPE} line once per metric family; {@code labels}
+     * is either empty or a comma-terminated label list such as
+     * {@code phase="merge",}.
+     */
+    public void appendPrometheus(StringBuilder out, String name, String labels, int minOctave, int maxOctave) {
+        for (int octave = minOctave; octave <= maxOctave; octave++) {
+            out.append(name).append("_bucket{").append(labels).append("le=\"")
+                    .append(formatSeconds(1L << octave)).append("\"} ")
+                    .append(countBelowPowerOfTwo(octave)).append('\n');
+        }
+        long total = getCount();
+        out.append(name).append("_bucket{").append(labels).append("le=\"+Inf\"} ").append(total).append('\n');
+        String plainLabels = labels.isEmpty() ? "" : "{" + labels.substring(0, labels.length() - 1) + "}";
+        out.append(name).append("_sum").append(plainLabels).append(' ')
+                .append(formatSeconds(getSumMicros())).append('\n');
+        out.append(name).append("_count").append(plainLabels).append(' ').append(total).append('\n');
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        count.reset();
+        sumMicros.reset();
+        maxMicros.set(0);
+    }
+
+    static String formatSeconds(long micros) {
+        return Double.toString(micros / 1_000_000.0);
+    }
+
+    private static int bucketIndex(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) micros;
+        }
+        int octave = Math.min(MAX_OCTAVE, 63 - Long.numberOfLeadingZeros(micros));
+        int sub = (int) ((micros >>> (octave - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1));
+        if (octave == MAX_OCTAVE && micros >= (1L << (MAX_OCTAVE + 1))) {
+            sub = SUB_BUCKETS - 1; // clamp anything beyond the top octave into its last bucket
+        }
+        return (octave - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    private static long bucketUpperBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index + 1;
+        }
+        int octave = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        int sub = index % SUB_BUCKETS;
+        long width = 1L << (octave - SUB_BUCKET_BITS);
+        return ((long) (SUB_BUCKETS + sub) << (octave - SUB_BUCKET_BITS)) + width;
+    }
+}
@@ -0,0 +1,541 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import models.RoutingMode;
+
+/**
+ * End-to-end benchmark: solves a seeded query workload once per
+ * {@link RoutingMode} and records throughput, latency percentiles, allocation
+ * and labels per query, and result quality in a JSON baseline.
+ * <p>
+ * <pre>
+ * java -cp target/classes MacroBenchmark run [--data DIR] [--queries FILE | --generate N]
+ *         [--seed S] [--limit N] [--interval MIN] [--overhead PCT] [--modes A,B]
+ *         [--warmup N] [--node-order none|hilbert|bfs] [--storage default|compact] [--out FILE]
+ *         [--baseline FILE] [--tolerance PCT]
+ * java -cp target/classes MacroBenchmark compare BASELINE CURRENT [--tolerance PCT]
+ * </pre>
+ * {@code run} reads the workload from a {@code Src-dest_N.txt} file (shuffled
+ * with the seed and cut to {@code --limit}) or generates it with
+ * {@link BidirectionalAstar#generateQueries}. Each mode starts from an empty
+ * bound tree cache and solves {@code --warmup} queries before the measured
+ * pass. Queries run one at a time, so throughput is the inverse of mean
+ * latency with each query still using the whole labeling pool. With
+ * {@code --baseline} the fresh results are compared right away. The process
+ * exits with status 1 when a comparison flags a regression, so CI can gate on
+ * it.
+ * <p>
+ * {@code --node-order} renumbers the graph after loading (see
+ * {@link NodeOrdering}) in place of {@code NODE_ORDER}, so runs with
+ * different orders can be compared against one baseline. Query files hold
+ * dataset ids and generated workloads are drawn in dataset order, so every
+ * order solves the same queries. {@code --storage compact} loads travel
+ * costs in {@link Edge#compact() compact} form in place of
+ * {@code GRAPH_STORAGE}; the report then records heap use after loading so
+ * the two storage modes can be compared.
+ */
+public final class MacroBenchmark {
+
+    static final String FORMAT = "flexroute-macro-benchmark";
+    static final int FORMAT_VERSION = 1;
+
+    private static final double DEFAULT_TOLERANCE_PERCENT = 10;
+    private static final int DEFAULT_GENERATED_QUERIES = 200;
+    private static final int DEFAULT_WARMUP = 20;
+    private static final double DEFAULT_INTERVAL = 60;
+    private static final double DEFAULT_OVERHEAD_PERCENT = 30;
+    private static final Pattern FLAT_OBJECT = Pattern.compile("\"(\\w+)\"\\s*:\\s*(\\{[^{}]*\\})");
+    private static final Pattern NUMERIC_FIELD = Pattern.compile("\"(\\w+)\"\\s*:\\s*(-?[0-9.eE+-]+)");
+
+    /**
+     * Metrics compared between runs, with whether a larger value is better.
+     * Everything else in a mode report is informational.
+     */
+    static final Map<String, Boolean> COMPARED = new LinkedHashMap<>();
+
+    static {
+        COMPARED.put("throughputQps", true);
+        COMPARED.put("meanMs", false);
+        COMPARED.put("p50Ms", false);
+        COMPARED.put("p90Ms", false);
+        COMPARED.put("p99Ms", false);
+        COMPARED.put("allocatedBytesPerQuery", false);
+        COMPARED.put("labelsPerQuery", false);
+        COMPARED.put("foundFraction", true);
+        COMPARED.put("fallbackFraction", false);
+        COMPARED.put("meanScore", true);
+        COMPARED.put("meanRightTurns", false);
+    }
+
+    private MacroBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) {
+            usage();
+            System.exit(2);
+        }
+        Map<String, String> options = parseOptions(args, 1);
+        double tolerance = Double.parseDouble(options.getOrDefault("tolerance", String.valueOf(DEFAULT_TOLERANCE_PERCENT)));
+        switch (args[0]) {
+            case "run": {
+                String report = run(options);
+                String out = options.get("out");
+                if (out != null) {
+                    System.out.println("[Bench] Baseline written to " + out);
+                }
+                String baseline = options.get("baseline");
+                if (baseline != null) {
+                    List<String> regressions = compare(Files.readString(Path.of(baseline)), report, tolerance);
+                    System.exit(regressions.isEmpty() ? 0 : 1);
+                }
+                System.exit(0);
+                break;
+            }
+            case "compare": {
+                List<String> positional = positional(args, 1);
+                if (positional.size() != 2) {
+                    usage();
+                    System.exit(2);
+                }
+                List<String> regressions = compare(Files.readString(Path.of(positional.get(0))),
+                        Files.readString(Path.of(positional.get(1))), tolerance);
+                System.exit(regressions.isEmpty() ? 0 : 1);
+                break;
+            }
+            default:
+                usage();
+                System.exit(2);
+        }
+    }
+
+    private static void usage() {
+        System.err.println("Usage: MacroBenchmark run [--data DIR] [--queries FILE | --generate N] [--seed S] [--limit N]");
+        System.err.println("                         [--interval MIN] [--overhead PCT] [--modes A,B] [--warmup N]");
+        System.err.println("                         [--node-order none|hilbert|bfs] [--storage default|compact]");
+        System.err.println("                         [--out FILE] [--baseline FILE] [--tolerance PCT]");
+        System.err.println("       MacroBenchmark compare BASELINE CURRENT [--tolerance PCT]");
+    }
+
+    /** {@code --name value} pairs after {@code from}; a trailing flag without a value maps to "true". */
+    static Map<String, String> parseOptions(String[] args, int from) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = from; i < args.length; i++) {
+            if (args[i].startsWith("--")) {
+                String name = args[i].substring(2);
+                boolean hasValue = i + 1 < args.length && !args[i + 1].startsWith("--");
+                options.put(name, hasValue ? args[++i] : "true");
+            }
+        }
+        return options;
+    }
+
+    private static List<String> positional(String[] args, int from) {
+        List<String> values = new ArrayList<>();
+        for (int i = from; i < args.length; i++) {
+            if (args[i].startsWith("--")) {
+                i++;
+            } else {
+                values.add(args[i]);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Solver thresholds as {@code ApiServer} sets them, then the graph from
+     * {@code --data} or the configured dataset directory, stored as
+     * {@code --storage} says and renumbered by {@code --node-order} if given.
+     */
+    static void loadGraph(Map<String, String> options) {
+        configureSolver();
+        if (options.containsKey("storage")) {
+            Graph.setCompactStorage("compact".equalsIgnoreCase(options.get("storage")));
+        }
+        if (!BidirectionalAstar.loadGraphFromDisk(options.get("data"), null)) {
+            throw new IllegalStateException("Could not load a graph; pass --data with nodes_N.txt and edges_N.txt");
+        }
+        String order = options.get("node-order");
+        if (order != null) {
+            if (NodeOrdering.applied() != NodeOrdering.Strategy.NONE) {
+                System.err.println("[Bench] Graph already renumbered by NODE_ORDER; ignoring --node-order " + order);
+            } else {
+                NodeOrdering.apply(NodeOrdering.parse(order));
+            }
+        }
+    }
+
+    /** Solver thresholds and labeling pool as {@code ApiServer} sets them. */
+    static void configureSolver() {
+        BidirectionalAstar.THRESHOLD = 10;
+        BidirectionalAstar.SHARP_THRESHOLD = 60;
+        BidirectionalAstar.WIDENESS_THRESHOLD = 12.8;
+        BidirectionalAstar.TIME_LIMIT = 5;
+        BidirectionalAstar.pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    }
+
+    /** The workload described by {@code --queries}/{@code --generate}, {@code --seed} and {@code --limit}. */
+    static List<Query> loadWorkload(Map<String, String> options, long seed, double interval) throws IOException {
+        String file = options.get("queries");
+        int limit = Integer.parseInt(options.getOrDefault("limit", "0"));
+        List<Query> workload;
+        if (file != null) {
+            workload = BidirectionalAstar.readQueryFile(Path.of(file), interval);
+            Collections.shuffle(workload, new Random(seed));
+        } else {
+            int count = Integer.parseInt(options.getOrDefault("generate",
+                    String.valueOf(limit > 0 ? limit : DEFAULT_GENERATED_QUERIES)));
+            double overhead = Double.parseDouble(options.getOrDefault("overhead", String.valueOf(DEFAULT_OVERHEAD_PERCENT)));
+            workload = BidirectionalAstar.generateQueries(count, seed, interval, overhead);
+        }
+        if (limit > 0 && workload.size() > limit) {
+            workload = new ArrayList<>(workload.subList(0, limit));
+        }
+        if (workload.isEmpty()) {
+            throw new IllegalStateException("Workload is empty");
+        }
+        return workload;
+    }
+
+    static List<RoutingMode> parseModes(String value) {
+        if (value == null || value.isBlank()) {
+            return Arrays.asList(RoutingMode.values());
+        }
+        List<RoutingMode> modes = new ArrayList<>();
+        for (String name : value.split(",")) {
+            modes.add(RoutingMode.valueOf(name.trim().toUpperCase(Locale.ROOT)));
+        }
+        return modes;
+    }
+
+    private static String run(Map<String, String> options) throws IOException {
+        long seed = Long.parseLong(options.getOrDefault("seed", "42"));
+        double interval = Double.parseDouble(options.getOrDefault("interval", String.valueOf(DEFAULT_INTERVAL)));
+        int warmup = Integer.parseInt(options.getOrDefault("warmup", String.valueOf(DEFAULT_WARMUP)));
+        List<RoutingMode> modes = parseModes(options.get("modes"));
+
+        loadGraph(options);
+        long graphHeap = usedHeapBytes();
+        System.out.println(String.format(Locale.ROOT, "[Bench] Graph loaded with %s storage, %.1f MB heap in use",
+                Graph.isCompactStorage() ? "compact" : "default", graphHeap / (1024.0 * 1024.0)));
+        List<Query> workload = loadWorkload(options, seed, interval);
+        System.out.println("[Bench] " + workload.size() + " queries, " + warmup + " warm-up per mode, modes " + modes.stream().map(Enum::name).toList());
+
+        Map<RoutingMode, ModeReport> reports = new LinkedHashMap<>();
+        for (RoutingMode mode : modes) {
+            BoundTreeCache.invalidate();
+            for (int i = 0; i < warmup; i++) {
+                solve(workload.get(i % workload.size()), mode);
+            }
+            ModeReport report = new ModeReport(workload.size());
+            long started = System.nanoTime();
+            for (Query query : workload) {
+                report.add(solve(query, mode));
+            }
+            report.finish(System.nanoTime() - started);
+            reports.put(mode, report);
+            System.out.println(String.format(Locale.ROOT,
+                    "[Bench] %-18s %7.2f q/s  p50 %8.2f ms  p99 %8.2f ms  %7.1f MB/q  %9.0f labels/q  found %5.1f%%  score %.2f",
+                    mode.name(), report.throughputQps(), report.percentileMs(50), report.percentileMs(99),
+                    report.allocatedBytesPerQuery() / (1024.0 * 1024.0), report.labelsPerQuery(),
+                    report.foundFraction() * 100, report.meanScore()));
+        }
+
+        String workloadName = options.containsKey("queries") ? "file:" + Path.of(options.get("queries")).getFileName()
+                : "generated";
+        byte[] json = toJson(workloadName, seed, workload.size(), warmup, interval, graphHeap, reports);
+        String out = options.get("out");
+        if (out != null) {
+            Files.write(Path.of(out), json);
+        }
+        return new String(json, StandardCharsets.UTF_8);
+    }
+
+    /** Heap in use after a full collection, which is mostly the loaded graph right after loading. */
+    static long usedHeapBytes() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /** Outcome of one solved query. */
+    static final class Sample {
+        final long nanos;
+        final boolean found;
+        final boolean fallback;
+        final boolean failed;
+        final double score;
+        final int rightTurns;
+        final long allocatedBytes;
+        final long labels;
+
+        Sample(long nanos, Result result, BidirectionalDriver driver, boolean failed) {
+            SearchStats stats = driver.getSearchStats();
+            this.nanos = nanos;
+            this.found = result != null;
+            this.fallback = result != null && driver.isFallbackUsed();
+            this.failed = failed;
+            this.score = result != null ? result.get_score() : 0;
+            this.rightTurns = result != null ? result.get_right_turns() : 0;
+            this.allocatedBytes = stats.getAllocatedBytes();
+            this.labels = stats.getLabelsCreated(true) + stats.getLabelsCreated(false);
+        }
+    }
+
+    static Sample solve(Query query, RoutingMode mode) {
+        Query modeQuery = new Query(query.get_source(), query.get_destination(), query.get_start_departure_time(),
+                query.get_end_departure_time(), query.get_budget(), mode);
+        BidirectionalDriver driver = new BidirectionalDriver(modeQuery, query.get_budget());
+        long start = System.nanoTime();
+        Result result = null;
+        boolean failed = false;
+        try {
+            result = driver.driver();
+        } catch (Exception e) {
+            failed = true;
+            System.err.println("[Bench] Query " + query.get_source() + " -> " + query.get_destination() + " failed: " + e);
+        }
+        return new Sample(System.nanoTime() - start, result, driver, failed);
+    }
+
+    /** Aggregates for one routing mode. */
+    static final class ModeReport {
+        private final long[] nanos;
+        private int count;
+        private int found;
+        private int fallbacks;
+        private int failures;
+        private double scoreSum;
+        private long rightTurnSum;
+        private long allocatedSum;
+        private long labelSum;
+        private long wallNanos;
+
+        ModeReport(int capacity) {
+            this.nanos = new long[capacity];
+        }
+
+        void add(Sample sample) {
+            nanos[count++] = sample.nanos;
+            allocatedSum += sample.allocatedBytes;
+            labelSum += sample.labels;
+            if (sample.failed) {
+                failures++;
+            }
+            if (sample.found) {
+                found++;
+                scoreSum += sample.score;
+                rightTurnSum += sample.rightTurns;
+                if (sample.fallback) {
+                    fallbacks++;
+                }
+            }
+        }
+
+        void finish(long wallNanos) {
+            this.wallNanos = wallNanos;
+            Arrays.sort(nanos, 0, count);
+        }
+
+        int count() {
+            return count;
+        }
+
+        double throughputQps() {
+            return wallNanos > 0 ? count / (wallNanos / 1e9) : 0;
+        }
+
+        double meanMs() {
+            long sum = 0;
+            for (int i = 0; i < count; i++) {
+                sum += nanos[i];
+            }
+            return count > 0 ? sum / (double) count / 1e6 : 0;
+        }
+
+        /** Nearest-rank percentile over the sorted latencies. */
+        double percentileMs(double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            int rank = (int) Math.ceil(percentile / 100.0 * count);
+            return nanos[Math.min(count, Math.max(1, rank)) - 1] / 1e6;
+        }
+
+        double allocatedBytesPerQuery() {
+            return count > 0 ? allocatedSum / (double) count : 0;
+        }
+
+        double labelsPerQuery() {
+            return count > 0 ? labelSum / (double) count : 0;
+        }
+
+        double foundFraction() {
+            return count > 0 ? found / (double) count : 0;
+        }
+
+        double fallbackFraction() {
+            return count > 0 ? fallbacks / (double) count : 0;
+        }
+
+        /** Mean score over the queries that produced a route. */
+        double meanScore() {
+            return found > 0 ? scoreSum / found : 0;
+        }
+
+        double meanRightTurns() {
+            return found > 0 ? rightTurnSum / (double) found : 0;
+        }
+
+        int failures() {
+            return failures;
+        }
+    }
+
+    private static byte[] toJson(String workloadName, long seed, int queries, int warmup, double interval,
+            long graphHeap, Map<RoutingMode, ModeReport> reports) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (JsonStreamWriter json = new JsonStreamWriter(buffer)) {
+            json.beginObject();
+            json.name("format").value(FORMAT);
+            json.name("version").value(FORMAT_VERSION);
+            json.name("createdAt").value(Instant.now().toString());
+            json.name("environment").beginObject()
+                    .name("java").value(System.getProperty("java.version"))
+                    .name("cores").value(Runtime.getRuntime().availableProcessors())
+                    .name("poolParallelism").value(BidirectionalAstar.pool.getParallelism())
+                    .endObject();
+            json.name("graph").beginObject()
+                    .name("nodes").value(Graph.get_nodes().size())
+                    .name("nodeOrder").value(NodeOrdering.applied().name().toLowerCase(Locale.ROOT))
+                    .name("storage").value(Graph.isCompactStorage() ? "compact" : "default")
+                    .name("heapBytesAfterLoad").value(graphHeap)
+                    .name("threshold").value(BidirectionalAstar.THRESHOLD, 3)
+                    .endObject();
+            json.name("workload").beginObject()
+                    .name("source").value(workloadName)
+                    .name("seed").value(seed)
+                    .name("queries").value(queries)
+                    .name("warmup").value(warmup)
+                    .name("interval").value(interval, 3)
+                    .endObject();
+            json.name("modes").beginObject();
+            for (Map.Entry<RoutingMode, ModeReport> entry : reports.entrySet()) {
+                ModeReport report = entry.getValue();
+                json.name(entry.getKey().name()).beginObject()
+                        .name("queries").value(report.count())
+                        .name("failures").value(report.failures())
+                        .name("throughputQps").value(report.throughputQps(), 4)
+                        .name("meanMs").value(report.meanMs(), 3)
+                        .name("p50Ms").value(report.percentileMs(50), 3)
+                        .name("p90Ms").value(report.percentileMs(90), 3)
+                        .name("p99Ms").value(report.percentileMs(99), 3)
+                        .name("maxMs").value(report.percentileMs(100), 3)
+                        .name("allocatedBytesPerQuery").value(Math.round(report.allocatedBytesPerQuery()))
+                        .name("labelsPerQuery").value(report.labelsPerQuery(), 1)
+                        .name("foundFraction").value(report.foundFraction(), 4)
+                        .name("fallbackFraction").value(report.fallbackFraction(), 4)
+                        .name("meanScore").value(report.meanScore(), 4)
+                        .name("meanRightTurns").value(report.meanRightTurns(), 3)
+                        .endObject();
+            }
+            json.endObject();
+            json.endObject();
+        }
+        return buffer.toByteArray();
+    }
+
+    /** Per-mode metric maps from a baseline document, keyed by mode name. */
+    static Map<String, Map<String, Double>> readModes(String json) {
+        int modesAt = json.indexOf("\"modes\"");
+        Map<String, Map<String, Double>> modes = new LinkedHashMap<>();
+        if (modesAt < 0) {
+            return modes;
+        }
+        Matcher objects = FLAT_OBJECT.matcher(json);
+        objects.region(modesAt, json.length());
+        while (objects.find()) {
+            Map<String, Double> metrics = new LinkedHashMap<>();
+            Matcher fields = NUMERIC_FIELD.matcher(objects.group(2));
+            while (fields.find()) {
+                metrics.put(fields.group(1), Double.parseDouble(fields.group(2)));
+            }
+            modes.put(objects.group(1), metrics);
+        }
+        return modes;
+    }
+
+    /**
+     * Print a per-mode comparison of {@link #COMPARED} metrics and return the
+     * regressions: changes in the worse direction by more than
+     * {@code tolerancePercent} of the baseline value. A zero baseline is
+     * compared in absolute terms, so a fraction going from 0 to 0.2 still
+     * counts at a 10% tolerance.
+     */
+    static List<String> compare(String baselineJson, String currentJson, double tolerancePercent) {
+        Map<String, Map<String, Double>> baseline = readModes(baselineJson);
+        Map<String, Map<String, Double>> current = readModes(currentJson);
+        List<String> regressions = new ArrayList<>();
+        String baselineWorkload = workloadKey(baselineJson);
+        if (!baselineWorkload.equals(workloadKey(currentJson))) {
+            System.out.println("[Compare] Warning: workloads differ (" + baselineWorkload + " vs "
+                    + workloadKey(currentJson) + "); quality deltas are not like for like.");
+        }
+        for (Map.Entry<String, Map<String, Double>> mode : baseline.entrySet()) {
+            Map<String, Double> now = current.get(mode.getKey());
+            if (now == null) {
+                System.out.println("[Compare] " + mode.getKey() + ": not in current run, skipped");
+                continue;
+            }
+            System.out.println("[Compare] " + mode.getKey());
+            for (Map.Entry<String, Boolean> metric : COMPARED.entrySet()) {
+                Double before = mode.getValue().get(metric.getKey());
+                Double after = now.get(metric.getKey());
+                if (before == null || after == null) {
+                    continue;
+                }
+                double change = after - before;
+                double relative = before != 0 ? change / Math.abs(before) : change;
+                boolean worse = metric.getValue() ? change < 0 : change > 0;
+                boolean regressed = worse && Math.abs(relative) * 100 > tolerancePercent;
+                String line = String.format(Locale.ROOT, "  %-24s %14.4f -> %14.4f  %+8.2f%%%s",
+                        metric.getKey(), before, after, relative * 100, regressed ? "  REGRESSION" : "");
+                System.out.println(line);
+                if (regressed) {
+                    regressions.add(mode.getKey() + "." + metric.getKey());
+                }
+            }
+        }
+        System.out.println(regressions.isEmpty()
+                ? "[Compare] No regressions beyond " + tolerancePercent + "%"
+                : "[Compare] " + regressions.size() + " regression(s) beyond " + tolerancePercent + "%: " + regressions);
+        return regressions;
+    }
+
+    private static String workloadKey(String json) {
+        Matcher matcher = Pattern.compile("\"workload\"\\s*:\\s*(\\{[^{}]*\\})").matcher(json);
+        if (!matcher.find()) {
+            return "unknown";
+        }
+        String workload = matcher.group(1);
+        return workload.replaceAll("\\s", "");
+    }
+}
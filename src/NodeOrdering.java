@@ -0,0 +1,205 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Locality-improving node orders for {@link GraphSnapshot#renumber(int[])}.
+ * <p>
+ * Dataset ids follow however the extract was produced, so a node's
+ * neighbours are often loaded far apart. Both the bound searches and the
+ * labeling then touch nodes, edge maps and time series scattered across the
+ * heap. Renumbering re-creates nodes and edges in the chosen order, so nodes
+ * that are close in the network are also allocated close together:
+ * <ul>
+ *   <li>{@link Strategy#HILBERT}: position along a Hilbert curve over the
+ *   node coordinates. Nearby nodes get nearby ids.</li>
+ *   <li>{@link Strategy#BFS}: reverse Cuthill–McKee, a breadth-first order
+ *   from a low-degree node of each component that keeps every edge's
+ *   endpoints within a narrow id band.</li>
+ * </ul>
+ * {@code NODE_ORDER} ({@code none}, {@code hilbert} or {@code bfs}; default
+ * {@code none}) selects the order applied at load time. The desktop GUI
+ * always keeps dataset order.
+ */
+final class NodeOrdering {
+
+    enum Strategy { NONE, HILBERT, BFS }
+
+    private static final int HILBERT_BITS = 16;
+
+    private static volatile boolean datasetOrderOnly;
+
+    private NodeOrdering() { }
+
+    /**
+     * Ignore {@code NODE_ORDER} for the rest of the process. For front ends
+     * such as the desktop GUI that show and accept node ids without going
+     * through {@link Graph#toExternal}/{@link Graph#toInternal}.
+     */
+    static void keepDatasetOrder() {
+        datasetOrderOnly = true;
+    }
+
+    /**
+     * The strategy named by {@code NODE_ORDER}, or {@link Strategy#NONE}, also
+     * after {@link #keepDatasetOrder()}.
+     */
+    static Strategy configured() {
+        Strategy strategy = parse(System.getenv("NODE_ORDER"));
+        if (datasetOrderOnly && strategy != Strategy.NONE) {
+            System.out.println("[Load] NODE_ORDER=" + strategy.name().toLowerCase(Locale.ROOT)
+                    + " ignored; this front end uses dataset node ids");
+            return Strategy.NONE;
+        }
+        return strategy;
+    }
+
+    static Strategy parse(String value) {
+        if (value == null || value.isBlank()) {
+            return Strategy.NONE;
+        }
+        try {
+            return Strategy.valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            System.err.println("[Load] Unknown node order '" + value + "', keeping dataset order");
+            return Strategy.NONE;
+        }
+    }
+
+    /** Strategy the current graph was renumbered with. */
+    static Strategy applied() {
+        return Graph.snapshot().getNodeOrder();
+    }
+
+    /** Renumber the published graph in place; only while no queries run. */
+    static void apply(Strategy strategy) {
+        apply(Graph.snapshot(), strategy);
+        Graph.markReloaded();
+    }
+
+    /** Renumber {@code graph}, typically a snapshot that is still being loaded. */
+    static void apply(GraphSnapshot graph, Strategy strategy) {
+        if (strategy == Strategy.NONE || graph.get_nodes().isEmpty()) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        int[] order = strategy == Strategy.HILBERT ? hilbertOrder(graph) : bfsOrder(graph);
+        graph.renumber(order);
+        graph.setNodeOrder(strategy);
+        System.out.println("[Load] Nodes renumbered in " + strategy.name().toLowerCase(Locale.ROOT)
+                + " order in " + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    /** Current node ids sorted by their distance along a Hilbert curve over lat/lon. */
+    static int[] hilbertOrder(GraphSnapshot graph) {
+        Map<Integer, Node> nodes = graph.get_nodes();
+        double minLat = Double.POSITIVE_INFINITY, maxLat = Double.NEGATIVE_INFINITY;
+        double minLon = Double.POSITIVE_INFINITY, maxLon = Double.NEGATIVE_INFINITY;
+        for (Node node : nodes.values()) {
+            minLat = Math.min(minLat, node.get_latitude());
+            maxLat = Math.max(maxLat, node.get_latitude());
+            minLon = Math.min(minLon, node.get_longitude());
+            maxLon = Math.max(maxLon, node.get_longitude());
+        }
+        int side = 1 << HILBERT_BITS;
+        double latScale = maxLat > minLat ? (side - 1) / (maxLat - minLat) : 0;
+        double lonScale = maxLon > minLon ? (side - 1) / (maxLon - minLon) : 0;
+
+        int[] ids = sortedIds(graph);
+        long[] keys = new long[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            Node node = nodes.get(ids[i]);
+            int x = (int) ((node.get_longitude() - minLon) * lonScale);
+            int y = (int) ((node.get_latitude() - minLat) * latScale);
+            // Curve position in the high bits, index in the low bits: ties keep dataset order.
+            keys[i] = hilbertIndex(side, x, y) << 32 | i;
+        }
+        Arrays.sort(keys);
+        int[] order = new int[ids.length];
+        for (int i = 0; i < keys.length; i++) {
+            order[i] = ids[(int) keys[i]];
+        }
+        return order;
+    }
+
+    /** Distance of cell (x, y) along the Hilbert curve filling a side × side grid. */
+    static long hilbertIndex(int side, int x, int y) {
+        long d = 0;
+        for (int s = side / 2; s > 0; s /= 2) {
+            int rx = (x & s) > 0 ? 1 : 0;
+            int ry = (y & s) > 0 ? 1 : 0;
+            d += (long) s * s * ((3 * rx) ^ ry);
+            if (ry == 0) {
+                if (rx == 1) {
+                    x = side - 1 - x;
+                    y = side - 1 - y;
+                }
+                int t = x;
+                x = y;
+                y = t;
+            }
+        }
+        return d;
+    }
+
+    /**
+     * Reverse Cuthill–McKee order over the undirected road network. Each
+     * component starts from its lowest-degree node and visits neighbours by
+     * increasing degree.
+     */
+    static int[] bfsOrder(GraphSnapshot graph) {
+        Map<Integer, Node> nodes = graph.get_nodes();
+        Map<Integer, List<Integer>> neighbours = new HashMap<>(nodes.size() * 2);
+        for (Map.Entry<Integer, Node> entry : nodes.entrySet()) {
+            Set<Integer> adjacent = new HashSet<>(entry.getValue().get_outgoing_edges().keySet());
+            adjacent.addAll(entry.getValue().get_incoming_edges().keySet());
+            adjacent.remove(entry.getKey());
+            adjacent.retainAll(nodes.keySet());
+            neighbours.put(entry.getKey(), new ArrayList<>(adjacent));
+        }
+        Comparator<Integer> byDegree = Comparator.<Integer>comparingInt(id -> neighbours.get(id).size())
+                .thenComparingInt(id -> id);
+        for (List<Integer> adjacent : neighbours.values()) {
+            adjacent.sort(byDegree);
+        }
+
+        Integer[] starts = Arrays.stream(sortedIds(graph)).boxed().toArray(Integer[]::new);
+        Arrays.sort(starts, byDegree);
+        int[] order = new int[nodes.size()];
+        int filled = 0;
+        Set<Integer> seen = new HashSet<>(nodes.size() * 2);
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int start : starts) {
+            if (!seen.add(start)) {
+                continue;
+            }
+            queue.add(start);
+            while (!queue.isEmpty()) {
+                int id = queue.poll();
+                order[filled++] = id;
+                for (int next : neighbours.get(id)) {
+                    if (seen.add(next)) {
+                        queue.add(next);
+                    }
+                }
+            }
+        }
+        for (int i = 0, j = order.length - 1; i < j; i++, j--) {
+            int t = order[i];
+            order[i] = order[j];
+            order[j] = t;
+        }
+        return order;
+    }
+
+    private static int[] sortedIds(GraphSnapshot graph) {
+        return graph.get_nodes().keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+    }
+}
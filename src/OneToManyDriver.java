@@ -0,0 +1,127 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import models.RoutingMode;
+
+/**
+ * Routes from one source to many destinations with a shared departure window
+ * and budget.
+ * <p>
+ * Independent {@link BidirectionalDriver#driver()} calls would repeat the
+ * forward bound search and the whole forward labeling from the same source
+ * label once per destination. Here the forward bound tree is recorded once,
+ * and each destination only adds its backward bound tree. The forward labeling
+ * then runs once against the {@link QueryBounds#union union} of the
+ * destinations' feasible regions. A node is expanded if it can still lead to
+ * some destination, and the budget and pruning checks use the tightest
+ * backward bound at that node. Last, each destination runs its own backward
+ * labeling, which joins with the shared forward labels and merges as a
+ * single query would
+ * ({@link BidirectionalDriver#completeFromForward}).
+ * <p>
+ * Results are exact up to the heuristic pruning, which scores forward labels
+ * against the closest destination instead of the real one. Label set bounds
+ * and {@link PruningConfig} apply as usual. The shared forward labeling
+ * covers the union of the feasible regions, so one far-flung destination makes
+ * it larger for all the others.
+ */
+public class OneToManyDriver {
+
+    private final int source;
+    private final List<Integer> destinations;
+    private final double startDeparture;
+    private final double endDeparture;
+    private final double budget;
+    private final RoutingMode routingMode;
+    private PruningConfig pruning = PruningConfig.defaults();
+    private SearchStats forwardStats = new SearchStats();
+    private final GraphSnapshot graph;
+
+    public OneToManyDriver(int source, List<Integer> destinations, double startDeparture, double endDeparture,
+            double budget, RoutingMode routingMode) {
+        this(Graph.snapshot(), source, destinations, startDeparture, endDeparture, budget, routingMode);
+    }
+
+    /** Driver that searches {@code graph} rather than the published network. */
+    OneToManyDriver(GraphSnapshot graph, int source, List<Integer> destinations, double startDeparture,
+            double endDeparture, double budget, RoutingMode routingMode) {
+        this.graph = graph;
+        this.source = source;
+        this.destinations = new ArrayList<>(destinations);
+        this.startDeparture = startDeparture;
+        this.endDeparture = endDeparture;
+        this.budget = budget;
+        this.routingMode = routingMode != null ? routingMode : RoutingMode.ALL_OBJECTIVES;
+    }
+
+    public void setPruning(PruningConfig pruning) {
+        this.pruning = pruning != null ? pruning : PruningConfig.defaults();
+    }
+
+    /**
+     * Work counters of the shared forward search of the last {@link #solve()}
+     * call. Each result carries only the counters of its own backward part.
+     */
+    public SearchStats getForwardStats() {
+        return forwardStats;
+    }
+
+    /**
+     * One result per destination, in the order given; {@code null} where no
+     * route fits the budget.
+     */
+    public List<Result> solve() {
+        forwardStats = new SearchStats();
+        long allocStart = SearchStats.threadAllocatedBytes();
+        QueryBounds forwardBounds = new QueryBounds(budget);
+        long phaseStart = System.nanoTime();
+        graph.forwardAstar(source, source, forwardBounds);
+        SolverMetrics.recordPhase(SolverMetrics.Phase.FORWARD_BOUND, System.nanoTime() - phaseStart);
+
+        List<QueryBounds> targetBounds = new ArrayList<>(destinations.size());
+        List<QueryBounds> feasible = new ArrayList<>();
+        phaseStart = System.nanoTime();
+        for (int destination : destinations) {
+            QueryBounds bounds = forwardBounds.sharingForward();
+            graph.backwardAstar(source, destination, bounds);
+            targetBounds.add(bounds);
+            if (bounds.isFeasible(source)) {
+                feasible.add(bounds);
+            }
+        }
+        SolverMetrics.recordPhase(SolverMetrics.Phase.BACKWARD_BOUND, System.nanoTime() - phaseStart);
+        if (feasible.isEmpty()) {
+            forwardStats.allocatedSince(allocStart);
+            return new ArrayList<>(Collections.nCopies(destinations.size(), (Result) null));
+        }
+
+        QueryBounds union = QueryBounds.union(forwardBounds, feasible);
+        forwardStats.boundsSettled(forwardBounds.forwardSettledCount(), union.backwardSettledCount());
+        BidirectionalDriver.SharedState forward = new BidirectionalDriver.SharedState(graph, union,
+                QueryProgress.NONE, forwardStats, pruning);
+        Label sourceLabel = BidirectionalDriver.sourceLabel(graph, source, startDeparture, endDeparture);
+        // No goal: labels keep expanding through a destination towards the ones behind it.
+        BidirectionalLabeling forwardTask = new BidirectionalLabeling(-1, budget / 2, sourceLabel, forward, true);
+        phaseStart = System.nanoTime();
+        forwardStats.labelRetained();
+        try {
+            BidirectionalAstar.pool.submit(forwardTask).join();
+        } catch (Exception e) {
+            System.out.println("[ERROR] Forward task exception: " + e.getMessage());
+            e.printStackTrace();
+        }
+        SolverMetrics.recordPhase(SolverMetrics.Phase.LABELING, System.nanoTime() - phaseStart);
+        forwardStats.labeledNodes(forward.forwardVisited.size(), 0);
+        forwardStats.allocatedSince(allocStart);
+
+        List<Result> results = new ArrayList<>(destinations.size());
+        for (int i = 0; i < destinations.size(); i++) {
+            Query query = new Query(source, destinations.get(i), startDeparture, endDeparture, budget, routingMode);
+            BidirectionalDriver driver = new BidirectionalDriver(query, budget, graph);
+            driver.setPruning(pruning);
+            results.add(driver.completeFromForward(forward, targetBounds.get(i)));
+        }
+        return results;
+    }
+}
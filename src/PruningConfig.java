@@ -0,0 +1,143 @@
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Heuristic pruning settings for one query.
+ * <p>
+ * {@link BidirectionalLabeling#shouldPrune} skips a label extension once the
+ * frontier holds more than {@code frontierThreshold} labels and the extension
+ * scores worse than the best seen at that node by the initial or strict
+ * factor, or costs {@code costPruneFactor} times the cheapest distance there.
+ * The score mixes distance, width, turn and sharp-turn terms with the four
+ * base weights. Per-node label sets keep at most {@code maxLabelsPerNode}
+ * labels.
+ * <p>
+ * {@link #EXACT} switches the heuristic off and leaves label sets unbounded,
+ * so only budget feasibility limits the search. It is the reference for
+ * measuring what the other settings give up, and can be far slower on large
+ * budgets.
+ * <p>
+ * Instances are immutable. A driver without an explicit config uses
+ * {@link #defaults()}, which follows the frontier threshold picked by
+ * {@link BidirectionalLabeling#setAggressiveMode()} or
+ * {@link BidirectionalLabeling#setBalancedMode()}.
+ */
+public final class PruningConfig {
+
+    /** The hand-tuned production settings with the aggressive frontier threshold. */
+    public static final PruningConfig PRODUCTION = new PruningConfig(true, 10, 1.30, 1.10, 1.50,
+            0.40, 0.20, 0.10, 0.05, 10);
+
+    /** No heuristic pruning and unbounded label sets. */
+    public static final PruningConfig EXACT = new PruningConfig(false, Integer.MAX_VALUE, Double.POSITIVE_INFINITY,
+            Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, 0.40, 0.20, 0.10, 0.05, Integer.MAX_VALUE);
+
+    final boolean pruningEnabled;
+    final int frontierThreshold;
+    final double initialPruneThreshold;
+    final double strictPruneThreshold;
+    final double costPruneFactor;
+    final double distanceWeight;
+    final double widthWeight;
+    final double turnWeight;
+    final double sharpTurnWeight;
+    final int maxLabelsPerNode;
+
+    private PruningConfig(boolean pruningEnabled, int frontierThreshold, double initialPruneThreshold,
+            double strictPruneThreshold, double costPruneFactor, double distanceWeight, double widthWeight,
+            double turnWeight, double sharpTurnWeight, int maxLabelsPerNode) {
+        this.pruningEnabled = pruningEnabled;
+        this.frontierThreshold = frontierThreshold;
+        this.initialPruneThreshold = initialPruneThreshold;
+        this.strictPruneThreshold = strictPruneThreshold;
+        this.costPruneFactor = costPruneFactor;
+        this.distanceWeight = distanceWeight;
+        this.widthWeight = widthWeight;
+        this.turnWeight = turnWeight;
+        this.sharpTurnWeight = sharpTurnWeight;
+        this.maxLabelsPerNode = maxLabelsPerNode;
+    }
+
+    /** {@link #PRODUCTION} with the frontier threshold of the current heuristic mode. */
+    public static PruningConfig defaults() {
+        int frontier = BidirectionalLabeling.getFrontierThreshold();
+        return frontier == PRODUCTION.frontierThreshold ? PRODUCTION : PRODUCTION.with("frontier", frontier);
+    }
+
+    public boolean isExact() {
+        return !pruningEnabled && maxLabelsPerNode == Integer.MAX_VALUE;
+    }
+
+    /**
+     * Copy with one setting replaced. Keys are the ones listed by
+     * {@link #toMap()}; {@code pruning} takes 0 or 1 and {@code labels} 0 for
+     * unbounded.
+     */
+    public PruningConfig with(String key, double value) {
+        boolean pruning = pruningEnabled;
+        int frontier = frontierThreshold;
+        double initial = initialPruneThreshold;
+        double strict = strictPruneThreshold;
+        double cost = costPruneFactor;
+        double wDistance = distanceWeight;
+        double wWidth = widthWeight;
+        double wTurn = turnWeight;
+        double wSharp = sharpTurnWeight;
+        int labels = maxLabelsPerNode;
+        switch (key) {
+            case "pruning": pruning = value != 0; break;
+            case "frontier": frontier = (int) value; break;
+            case "initial": initial = value; break;
+            case "strict": strict = value; break;
+            case "cost": cost = value; break;
+            case "wDistance": wDistance = value; break;
+            case "wWidth": wWidth = value; break;
+            case "wTurn": wTurn = value; break;
+            case "wSharp": wSharp = value; break;
+            case "labels": labels = value <= 0 ? Integer.MAX_VALUE : (int) value; break;
+            default: throw new IllegalArgumentException("Unknown pruning setting: " + key);
+        }
+        return new PruningConfig(pruning, frontier, initial, strict, cost, wDistance, wWidth, wTurn, wSharp, labels);
+    }
+
+    public Map<String, Double> toMap() {
+        Map<String, Double> map = new LinkedHashMap<>();
+        map.put("pruning", pruningEnabled ? 1.0 : 0.0);
+        map.put("frontier", (double) frontierThreshold);
+        map.put("initial", initialPruneThreshold);
+        map.put("strict", strictPruneThreshold);
+        map.put("cost", costPruneFactor);
+        map.put("wDistance", distanceWeight);
+        map.put("wWidth", widthWeight);
+        map.put("wTurn", turnWeight);
+        map.put("wSharp", sharpTurnWeight);
+        map.put("labels", maxLabelsPerNode == Integer.MAX_VALUE ? 0.0 : maxLabelsPerNode);
+        return map;
+    }
+
+    /** Settings that differ from {@link #PRODUCTION}, e.g. {@code frontier=50 strict=1.05}. */
+    public String describe() {
+        if (isExact()) {
+            return "exact";
+        }
+        StringBuilder text = new StringBuilder();
+        Map<String, Double> base = PRODUCTION.toMap();
+        for (Map.Entry<String, Double> entry : toMap().entrySet()) {
+            if (!entry.getValue().equals(base.get(entry.getKey()))) {
+                if (text.length() > 0) {
+                    text.append(' ');
+                }
+                double v = entry.getValue();
+                text.append(entry.getKey()).append('=')
+                        .append(v == Math.rint(v) ? String.valueOf((long) v) : String.format(Locale.ROOT, "%.3f", v));
+            }
+        }
+        return text.length() == 0 ? "production" : text.toString();
+    }
+
+    @Override
+    public String toString() {
+        return "PruningConfig{" + describe() + "}";
+    }
+}
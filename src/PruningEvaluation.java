@@ -0,0 +1,353 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import models.RoutingMode;
+
+/**
+ * Quality-vs-speed evaluation of heuristic pruning settings.
+ * <p>
+ * <pre>
+ * java -cp target/classes PruningEvaluation [--data DIR] [--queries FILE | --generate N] [--seed S]
+ *         [--limit N] [--mode MODE] [--warmup N] [--timeout-ms MS]
+ *         [--configs "production;balanced;frontier=50,strict=1.05"]
+ *         [--sweep "frontier=10,50,200;strict=1.05,1.10;labels=5,10,20"]
+ *         [--slo-ms MS] [--out FILE]
+ * </pre>
+ * The workload is solved once with {@link PruningConfig#EXACT}, then once per
+ * configuration. {@code --configs} lists settings separated by {@code ;},
+ * each a preset ({@code production}, {@code balanced}) or comma-separated
+ * overrides of {@link PruningConfig#PRODUCTION}. {@code --sweep} adds the
+ * cartesian product of the listed values, also on top of production. Without
+ * either, production and balanced are evaluated.
+ * <p>
+ * Per configuration the report gives the speedup against exact (total solve
+ * time over the queries exact finished), mean and p95 latency, labels per
+ * query, the mean relative score gap and right-turn gap on queries both runs
+ * answered, and the fraction of queries where the optimum was lost. A query
+ * loses its optimum when exact found a route and the configuration found none
+ * or a worse one for the routing mode's objectives: a lower score for
+ * wideness, more right turns for turns, either for the combined modes. Exact
+ * runs that exceed {@code --timeout-ms} are cancelled and their queries left
+ * out of every comparison.
+ * <p>
+ * With {@code --slo-ms} the configuration that loses the optimum least often
+ * while keeping p95 latency within the SLO is recommended, ties going to the
+ * faster one.
+ */
+public final class PruningEvaluation {
+
+    private static final int DEFAULT_WARMUP = 10;
+    private static final long DEFAULT_TIMEOUT_MS = 120_000;
+    private static final double SCORE_EPSILON = 1e-6;
+
+    private PruningEvaluation() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = MacroBenchmark.parseOptions(args, 0);
+        long seed = Long.parseLong(options.getOrDefault("seed", "42"));
+        double interval = Double.parseDouble(options.getOrDefault("interval", "60"));
+        RoutingMode mode = RoutingMode.valueOf(options.getOrDefault("mode", RoutingMode.ALL_OBJECTIVES.name())
+                .trim().toUpperCase(Locale.ROOT));
+        int warmup = Integer.parseInt(options.getOrDefault("warmup", String.valueOf(DEFAULT_WARMUP)));
+        long timeoutMs = Long.parseLong(options.getOrDefault("timeout-ms", String.valueOf(DEFAULT_TIMEOUT_MS)));
+        List<PruningConfig> configs = parseConfigs(options.get("configs"), options.get("sweep"));
+
+        MacroBenchmark.loadGraph(options);
+        List<Query> workload = MacroBenchmark.loadWorkload(options, seed, interval);
+        System.out.println("[Eval] " + workload.size() + " queries, mode " + mode.name() + ", "
+                + configs.size() + " configurations against exact");
+
+        ScheduledExecutorService deadlines = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "pruning-eval-deadline");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            for (int i = 0; i < warmup; i++) {
+                solve(workload.get(i % workload.size()), mode, PruningConfig.PRODUCTION, deadlines, timeoutMs);
+            }
+            Outcome[] exact = runAll(workload, mode, PruningConfig.EXACT, deadlines, timeoutMs);
+            int finished = 0;
+            for (Outcome outcome : exact) {
+                if (!outcome.timedOut) {
+                    finished++;
+                }
+            }
+            System.out.println("[Eval] Exact finished " + finished + "/" + exact.length + " queries");
+
+            List<Evaluation> evaluations = new ArrayList<>();
+            for (PruningConfig config : configs) {
+                Evaluation evaluation = new Evaluation(config, mode, exact,
+                        runAll(workload, mode, config, deadlines, timeoutMs));
+                evaluations.add(evaluation);
+                System.out.println(evaluation.summaryLine());
+            }
+
+            String slo = options.get("slo-ms");
+            if (slo != null) {
+                Evaluation pick = recommend(evaluations, Double.parseDouble(slo));
+                System.out.println(pick == null
+                        ? "[Eval] No configuration meets p95 <= " + slo + " ms"
+                        : "[Eval] Recommended for p95 <= " + slo + " ms: " + pick.config.describe());
+            }
+            String out = options.get("out");
+            if (out != null) {
+                Files.write(Path.of(out), toJson(mode, workload.size(), finished, evaluations));
+                System.out.println("[Eval] Report written to " + out);
+            }
+        } finally {
+            deadlines.shutdownNow();
+        }
+        System.exit(0);
+    }
+
+    /** Configurations from {@code --configs} and {@code --sweep}; production and balanced when neither is given. */
+    static List<PruningConfig> parseConfigs(String configs, String sweep) {
+        List<PruningConfig> parsed = new ArrayList<>();
+        if (configs != null) {
+            for (String spec : configs.split(";")) {
+                if (!spec.isBlank()) {
+                    parsed.add(parseConfig(spec.trim()));
+                }
+            }
+        }
+        if (sweep != null) {
+            List<PruningConfig> product = new ArrayList<>();
+            product.add(PruningConfig.PRODUCTION);
+            for (String axis : sweep.split(";")) {
+                if (axis.isBlank()) {
+                    continue;
+                }
+                String[] keyValues = axis.split("=", 2);
+                List<PruningConfig> next = new ArrayList<>();
+                for (PruningConfig base : product) {
+                    for (String value : keyValues[1].split(",")) {
+                        next.add(base.with(keyValues[0].trim(), Double.parseDouble(value.trim())));
+                    }
+                }
+                product = next;
+            }
+            parsed.addAll(product);
+        }
+        if (parsed.isEmpty()) {
+            parsed.add(PruningConfig.PRODUCTION);
+            parsed.add(parseConfig("balanced"));
+        }
+        return parsed;
+    }
+
+    private static PruningConfig parseConfig(String spec) {
+        switch (spec) {
+            case "production":
+                return PruningConfig.PRODUCTION;
+            case "balanced":
+                return PruningConfig.PRODUCTION.with("frontier", 50);
+            default:
+                PruningConfig config = PruningConfig.PRODUCTION;
+                for (String override : spec.split(",")) {
+                    String[] keyValue = override.split("=", 2);
+                    config = config.with(keyValue[0].trim(), Double.parseDouble(keyValue[1].trim()));
+                }
+                return config;
+        }
+    }
+
+    /** One query under one configuration. */
+    static final class Outcome {
+        final long nanos;
+        final boolean timedOut;
+        final boolean found;
+        final double score;
+        final int rightTurns;
+        final long labels;
+
+        Outcome(long nanos, boolean timedOut, Result result, SearchStats stats) {
+            this.nanos = nanos;
+            this.timedOut = timedOut;
+            this.found = result != null;
+            this.score = result != null ? result.get_score() : 0;
+            this.rightTurns = result != null ? result.get_right_turns() : 0;
+            this.labels = stats.getLabelsCreated(true) + stats.getLabelsCreated(false);
+        }
+    }
+
+    private static Outcome[] runAll(List<Query> workload, RoutingMode mode, PruningConfig config,
+            ScheduledExecutorService deadlines, long timeoutMs) {
+        Outcome[] outcomes = new Outcome[workload.size()];
+        BoundTreeCache.invalidate();
+        for (int i = 0; i < outcomes.length; i++) {
+            outcomes[i] = solve(workload.get(i), mode, config, deadlines, timeoutMs);
+        }
+        return outcomes;
+    }
+
+    static Outcome solve(Query query, RoutingMode mode, PruningConfig config,
+            ScheduledExecutorService deadlines, long timeoutMs) {
+        Query modeQuery = new Query(query.get_source(), query.get_destination(), query.get_start_departure_time(),
+                query.get_end_departure_time(), query.get_budget(), mode);
+        BidirectionalDriver driver = new BidirectionalDriver(modeQuery, query.get_budget());
+        driver.setPruning(config);
+        QueryProgress progress = QueryProgress.cancellable();
+        driver.setProgress(progress);
+        ScheduledFuture<?> deadline = deadlines.schedule(progress::cancel, timeoutMs, TimeUnit.MILLISECONDS);
+        long start = System.nanoTime();
+        Result result = null;
+        boolean timedOut = false;
+        try {
+            result = driver.driver();
+        } catch (CancellationException e) {
+            timedOut = true;
+        } catch (Exception e) {
+            System.err.println("[Eval] Query " + query.get_source() + " -> " + query.get_destination()
+                    + " failed under " + config.describe() + ": " + e);
+        } finally {
+            deadline.cancel(false);
+        }
+        return new Outcome(System.nanoTime() - start, timedOut || progress.isCancelled(), result,
+                driver.getSearchStats());
+    }
+
+    /** A configuration's outcomes scored against exact. */
+    static final class Evaluation {
+        final PruningConfig config;
+        int compared;
+        int timeouts;
+        double exactMs;
+        double configMs;
+        double meanMs;
+        double p95Ms;
+        double labelsPerQuery;
+        double scoreGapPercent;
+        double rightTurnGap;
+        double optimumLostFraction;
+
+        Evaluation(PruningConfig config, RoutingMode mode, Outcome[] exact, Outcome[] outcomes) {
+            this.config = config;
+            long[] nanos = new long[outcomes.length];
+            int gapCount = 0;
+            int lost = 0;
+            long labels = 0;
+            for (int i = 0; i < outcomes.length; i++) {
+                Outcome reference = exact[i];
+                Outcome outcome = outcomes[i];
+                if (outcome.timedOut) {
+                    timeouts++;
+                }
+                if (reference.timedOut) {
+                    continue;
+                }
+                nanos[compared++] = outcome.nanos;
+                labels += outcome.labels;
+                exactMs += reference.nanos / 1e6;
+                configMs += outcome.nanos / 1e6;
+                if (!reference.found) {
+                    continue;
+                }
+                if (!outcome.found) {
+                    lost++;
+                    continue;
+                }
+                if (reference.score != 0) {
+                    scoreGapPercent += (reference.score - outcome.score) / Math.abs(reference.score) * 100;
+                }
+                rightTurnGap += outcome.rightTurns - reference.rightTurns;
+                gapCount++;
+                if (lostOptimum(mode, reference, outcome)) {
+                    lost++;
+                }
+            }
+            Arrays.sort(nanos, 0, compared);
+            meanMs = compared > 0 ? configMs / compared : 0;
+            p95Ms = compared > 0 ? nanos[Math.max(0, (int) Math.ceil(0.95 * compared) - 1)] / 1e6 : 0;
+            labelsPerQuery = compared > 0 ? labels / (double) compared : 0;
+            scoreGapPercent = gapCount > 0 ? scoreGapPercent / gapCount : 0;
+            rightTurnGap = gapCount > 0 ? rightTurnGap / gapCount : 0;
+            optimumLostFraction = compared > 0 ? lost / (double) compared : 0;
+        }
+
+        double speedup() {
+            return configMs > 0 ? exactMs / configMs : 0;
+        }
+
+        String summaryLine() {
+            return String.format(Locale.ROOT,
+                    "[Eval] %-36s speedup %6.2fx  mean %8.2f ms  p95 %8.2f ms  %8.0f labels/q  score gap %6.2f%%  turn gap %+5.2f  lost %5.1f%%%s",
+                    config.describe(), speedup(), meanMs, p95Ms, labelsPerQuery, scoreGapPercent, rightTurnGap,
+                    optimumLostFraction * 100, timeouts > 0 ? "  (" + timeouts + " timed out)" : "");
+        }
+    }
+
+    private static boolean lostOptimum(RoutingMode mode, Outcome exact, Outcome outcome) {
+        boolean worseScore = outcome.score < exact.score - SCORE_EPSILON * Math.max(1, Math.abs(exact.score));
+        boolean moreTurns = outcome.rightTurns > exact.rightTurns;
+        switch (mode) {
+            case WIDENESS_ONLY:
+                return worseScore;
+            case MIN_TURNS_ONLY:
+                return moreTurns;
+            default:
+                return worseScore || moreTurns;
+        }
+    }
+
+    static Evaluation recommend(List<Evaluation> evaluations, double sloMs) {
+        Evaluation best = null;
+        for (Evaluation evaluation : evaluations) {
+            if (evaluation.p95Ms > sloMs) {
+                continue;
+            }
+            if (best == null || evaluation.optimumLostFraction < best.optimumLostFraction
+                    || (evaluation.optimumLostFraction == best.optimumLostFraction && evaluation.meanMs < best.meanMs)) {
+                best = evaluation;
+            }
+        }
+        return best;
+    }
+
+    private static byte[] toJson(RoutingMode mode, int queries, int exactFinished, List<Evaluation> evaluations)
+            throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (JsonStreamWriter json = new JsonStreamWriter(buffer)) {
+            json.beginObject();
+            json.name("mode").value(mode.name());
+            json.name("queries").value(queries);
+            json.name("exactFinished").value(exactFinished);
+            json.name("configurations").beginArray();
+            for (Evaluation evaluation : evaluations) {
+                json.beginObject();
+                json.name("name").value(evaluation.config.describe());
+                json.name("settings").beginObject();
+                for (Map.Entry<String, Double> setting : evaluation.config.toMap().entrySet()) {
+                    json.name(setting.getKey()).value(setting.getValue(), 4);
+                }
+                json.endObject();
+                json.name("compared").value(evaluation.compared)
+                        .name("timeouts").value(evaluation.timeouts)
+                        .name("speedup").value(evaluation.speedup(), 3)
+                        .name("meanMs").value(evaluation.meanMs, 3)
+                        .name("p95Ms").value(evaluation.p95Ms, 3)
+                        .name("labelsPerQuery").value(evaluation.labelsPerQuery, 1)
+                        .name("scoreGapPercent").value(evaluation.scoreGapPercent, 4)
+                        .name("rightTurnGap").value(evaluation.rightTurnGap, 4)
+                        .name("optimumLostFraction").value(evaluation.optimumLostFraction, 4);
+                json.endObject();
+            }
+            json.endArray();
+            json.endObject();
+        }
+        return buffer.toByteArray();
+    }
+}
@@ -64,6 +64,43 @@ public class Query {
 		this.routingMode = mode != null ? mode : RoutingMode.ALL_OBJECTIVES;
 	}
 
+	/**
+	 * Two queries are equal when they ask for the same route under the same
+	 * mode. Times are compared at 1/100 minute resolution so requests that only
+	 * differ by floating-point noise from the client are treated as identical.
+	 */
+	@Override
+	public boolean equals(Object other) {
+		if (this == other) {
+			return true;
+		}
+		if (!(other instanceof Query)) {
+			return false;
+		}
+		Query that = (Query) other;
+		return source == that.source
+				&& destination == that.destination
+				&& quantize(start_departure_time) == quantize(that.start_departure_time)
+				&& quantize(end_departure_time) == quantize(that.end_departure_time)
+				&& quantize(budget) == quantize(that.budget)
+				&& routingMode == that.routingMode;
+	}
+
+	@Override
+	public int hashCode() {
+		int h = Integer.hashCode(source);
+		h = 31 * h + Integer.hashCode(destination);
+		h = 31 * h + Long.hashCode(quantize(start_departure_time));
+		h = 31 * h + Long.hashCode(quantize(end_departure_time));
+		h = 31 * h + Long.hashCode(quantize(budget));
+		h = 31 * h + (routingMode != null ? routingMode.hashCode() : 0);
+		return h;
+	}
+
+	private static long quantize(double minutes) {
+		return Math.round(minutes * 100);
+	}
+
 	@Override
 	public String toString() {
 		return String.format("Query{%d->%d, dep=%.0f-%.0f, budget=%.0f, mode=%s}",
@@ -0,0 +1,238 @@
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Per-query view of the fastest-path lower bounds.
+ * <p>
+ * The bound trees themselves are shared and immutable (see
+ * {@link BoundTreeCache}); this object only records which entries of those
+ * trees fall inside the current query's budget. Keeping the view per query,
+ * instead of writing the bounds onto the shared {@link Node} objects, is what
+ * allows several queries to run against the same graph at once.
+ * <p>
+ * A one-to-many query records its forward tree once and takes a
+ * {@link #sharingForward() view per destination}; the shared forward labeling
+ * runs against the {@link #union(QueryBounds, List) union} of those views.
+ */
+public class QueryBounds {
+
+    private final double budget;
+    private BoundTree forwardTree;
+    private BoundTree backwardTree;
+    private final Map<Integer, Integer> forwardIndex;
+    private final Map<Integer, Integer> backwardIndex = new HashMap<>();
+    private int forwardSettled;
+    private int backwardSettled;
+
+    public QueryBounds(double budget) {
+        this.budget = budget;
+        this.forwardIndex = new HashMap<>();
+    }
+
+    private QueryBounds(QueryBounds forward) {
+        this.budget = forward.budget;
+        this.forwardTree = forward.forwardTree;
+        this.forwardIndex = forward.forwardIndex;
+        this.forwardSettled = forward.forwardSettled;
+    }
+
+    /**
+     * Fresh bounds with this object's forward side and no backward side yet,
+     * for another destination from the same source. The forward index is
+     * shared, not copied, so it must not be re-applied afterwards.
+     */
+    QueryBounds sharingForward() {
+        return new QueryBounds(this);
+    }
+
+    /**
+     * Bounds for a forward search towards any of several destinations: a node
+     * is feasible when it is feasible for at least one of {@code targets},
+     * and each backward bound is the smallest over the targets that reach it.
+     * All targets must share {@code forward}'s forward side.
+     */
+    static QueryBounds union(QueryBounds forward, List<QueryBounds> targets) {
+        return new Union(forward, targets);
+    }
+
+    public double getBudget() {
+        return budget;
+    }
+
+    /**
+     * Record every forward tree entry within the budget as forward reachable.
+     */
+    void applyForward(BoundTree tree) {
+        this.forwardTree = tree;
+        forwardIndex.clear();
+        int limit = tree.countWithin(budget);
+        forwardSettled = limit;
+        for (int i = 0; i < limit; i++) {
+            forwardIndex.put(tree.nodeAt(i), i);
+        }
+    }
+
+    /**
+     * Record backward tree entries that are forward reachable and whose
+     * combined forward and backward bound fits the budget. Those are exactly
+     * the nodes a feasible route may pass through.
+     */
+    void applyBackward(BoundTree tree) {
+        this.backwardTree = tree;
+        backwardIndex.clear();
+        int limit = tree.countWithin(budget);
+        backwardSettled = limit;
+        for (int i = 0; i < limit; i++) {
+            int node = tree.nodeAt(i);
+            Integer f = forwardIndex.get(node);
+            if (f == null) {
+                continue;
+            }
+            if (tree.timeAt(i) + forwardTree.timeAt(f) > budget) {
+                continue;
+            }
+            backwardIndex.put(node, i);
+        }
+    }
+
+    public boolean isForwardReachable(int node) {
+        return forwardIndex.containsKey(node);
+    }
+
+    /**
+     * A node is feasible when it lies on some route from source to
+     * destination whose lower-bound time fits the budget.
+     */
+    public boolean isFeasible(int node) {
+        return backwardIndex.containsKey(node);
+    }
+
+    public int forwardReachableCount() {
+        return forwardIndex.size();
+    }
+
+    public int feasibleCount() {
+        return backwardIndex.size();
+    }
+
+    /**
+     * Nodes a budget-limited forward search settles: every tree entry within
+     * the budget, whether or not it later proves feasible.
+     */
+    public int forwardSettledCount() {
+        return forwardSettled;
+    }
+
+    /** Backward counterpart of {@link #forwardSettledCount()}. */
+    public int backwardSettledCount() {
+        return backwardSettled;
+    }
+
+    public double forwardTime(int node) {
+        Integer i = forwardIndex.get(node);
+        return i != null ? forwardTree.timeAt(i) : Double.MAX_VALUE;
+    }
+
+    public double forwardWideDistance(int node) {
+        Integer i = forwardIndex.get(node);
+        return i != null ? forwardTree.wideDistanceAt(i) : Double.MAX_VALUE;
+    }
+
+    public double forwardDistance(int node) {
+        Integer i = forwardIndex.get(node);
+        return i != null ? forwardTree.distanceAt(i) : Double.MAX_VALUE;
+    }
+
+    public int forwardRightTurns(int node) {
+        Integer i = forwardIndex.get(node);
+        return i != null ? forwardTree.rightTurnsAt(i) : Integer.MAX_VALUE;
+    }
+
+    public double backwardTime(int node) {
+        Integer i = backwardIndex.get(node);
+        return i != null ? backwardTree.timeAt(i) : Double.MAX_VALUE;
+    }
+
+    public double backwardWideDistance(int node) {
+        Integer i = backwardIndex.get(node);
+        return i != null ? backwardTree.wideDistanceAt(i) : Double.MAX_VALUE;
+    }
+
+    public double backwardDistance(int node) {
+        Integer i = backwardIndex.get(node);
+        return i != null ? backwardTree.distanceAt(i) : Double.MAX_VALUE;
+    }
+
+    public int backwardRightTurns(int node) {
+        Integer i = backwardIndex.get(node);
+        return i != null ? backwardTree.rightTurnsAt(i) : Integer.MAX_VALUE;
+    }
+
+    /** Backward side answered from per-node minima over several destinations. */
+    private static final class Union extends QueryBounds {
+
+        private static final int TIME = 0;
+        private static final int WIDE_DISTANCE = 1;
+        private static final int DISTANCE = 2;
+        private static final int RIGHT_TURNS = 3;
+
+        private final Map<Integer, double[]> minima = new HashMap<>();
+        private int settled;
+
+        Union(QueryBounds forward, List<QueryBounds> targets) {
+            super(forward);
+            for (QueryBounds target : targets) {
+                settled += target.backwardSettled;
+                for (Map.Entry<Integer, Integer> entry : target.backwardIndex.entrySet()) {
+                    int i = entry.getValue();
+                    double[] min = minima.computeIfAbsent(entry.getKey(), k -> new double[] {
+                            Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE });
+                    min[TIME] = Math.min(min[TIME], target.backwardTree.timeAt(i));
+                    min[WIDE_DISTANCE] = Math.min(min[WIDE_DISTANCE], target.backwardTree.wideDistanceAt(i));
+                    min[DISTANCE] = Math.min(min[DISTANCE], target.backwardTree.distanceAt(i));
+                    min[RIGHT_TURNS] = Math.min(min[RIGHT_TURNS], target.backwardTree.rightTurnsAt(i));
+                }
+            }
+        }
+
+        @Override
+        public boolean isFeasible(int node) {
+            return minima.containsKey(node);
+        }
+
+        @Override
+        public int feasibleCount() {
+            return minima.size();
+        }
+
+        @Override
+        public int backwardSettledCount() {
+            return settled;
+        }
+
+        @Override
+        public double backwardTime(int node) {
+            double[] min = minima.get(node);
+            return min != null ? min[TIME] : Double.MAX_VALUE;
+        }
+
+        @Override
+        public double backwardWideDistance(int node) {
+            double[] min = minima.get(node);
+            return min != null ? min[WIDE_DISTANCE] : Double.MAX_VALUE;
+        }
+
+        @Override
+        public double backwardDistance(int node) {
+            double[] min = minima.get(node);
+            return min != null ? min[DISTANCE] : Double.MAX_VALUE;
+        }
+
+        @Override
+        public int backwardRightTurns(int node) {
+            double[] min = minima.get(node);
+            return min != null ? (int) min[RIGHT_TURNS] : Integer.MAX_VALUE;
+        }
+    }
+}
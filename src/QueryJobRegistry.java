@@ -0,0 +1,225 @@
+import java.util.Iterator;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Asynchronous query jobs for the HTTP API.
+ * <p>
+ * A job is submitted to the {@link SolverExecutor} without blocking the
+ * caller and is then looked up by id to watch its {@link QueryProgress},
+ * fetch its result, or cancel it. Completed results go into the shared
+ * {@link QueryResultCache}, and a job whose query is already cached finishes
+ * at once. Jobs do not coalesce with in-flight solves from other requests,
+ * because cancelling one job must never fail somebody else's query.
+ * Finished jobs are kept for a retention window so a client that reconnects
+ * can still read the outcome.
+ */
+public final class QueryJobRegistry {
+
+    public enum Status {
+        QUEUED, RUNNING, DONE, FAILED, CANCELLED
+    }
+
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+    private final long retainMillis;
+
+    public QueryJobRegistry(long retainMillis) {
+        this.retainMillis = retainMillis;
+    }
+
+    /**
+     * One submitted query. Outcome fields are written once by the completing
+     * thread before {@link #isFinished()} turns true.
+     */
+    public static final class Job {
+        private final String id = UUID.randomUUID().toString();
+        private final Query query;
+        private final GraphSnapshot graph;
+        private final QueryProgress progress = new QueryProgress();
+        private final long createdAt = System.currentTimeMillis();
+        private volatile CompletableFuture<SolverExecutor.Execution<Result>> future;
+        private volatile Status status = Status.QUEUED;
+        private volatile long finishedAt;
+        private volatile Result result;
+        private volatile boolean cacheHit;
+        private volatile long queueWaitMillis;
+        private volatile long solveMillis;
+        private volatile int errorStatus;
+        private volatile String error;
+
+        Job(Query query, GraphSnapshot graph) {
+            this.query = query;
+            this.graph = graph;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public Query getQuery() {
+            return query;
+        }
+
+        /** The network the query is solved against; its ids are internal ids of it. */
+        GraphSnapshot getGraph() {
+            return graph;
+        }
+
+        public QueryProgress getProgress() {
+            return progress;
+        }
+
+        public long getCreatedAt() {
+            return createdAt;
+        }
+
+        public Status getStatus() {
+            Status current = status;
+            if (current == Status.QUEUED && progress.getPhase() != QueryProgress.Phase.QUEUED) {
+                return Status.RUNNING;
+            }
+            return current;
+        }
+
+        public boolean isFinished() {
+            return finishedAt != 0;
+        }
+
+        public long getElapsedMillis() {
+            return (finishedAt != 0 ? finishedAt : System.currentTimeMillis()) - createdAt;
+        }
+
+        public Result getResult() {
+            return result;
+        }
+
+        public boolean isCacheHit() {
+            return cacheHit;
+        }
+
+        public long getQueueWaitMillis() {
+            return queueWaitMillis;
+        }
+
+        public long getSolveMillis() {
+            return solveMillis;
+        }
+
+        /** HTTP status describing the failure, or 0 when the job did not fail. */
+        public int getErrorStatus() {
+            return errorStatus;
+        }
+
+        public String getError() {
+            return error;
+        }
+
+        private void succeed(Result result, boolean cacheHit, long queueWaitMillis, long solveMillis) {
+            this.result = result;
+            this.cacheHit = cacheHit;
+            this.queueWaitMillis = queueWaitMillis;
+            this.solveMillis = solveMillis;
+            finish(Status.DONE, QueryProgress.Phase.DONE);
+        }
+
+        private void fail(Status status, int errorStatus, String error) {
+            this.errorStatus = errorStatus;
+            this.error = error;
+            finish(status, status == Status.CANCELLED ? QueryProgress.Phase.CANCELLED : QueryProgress.Phase.FAILED);
+        }
+
+        private void finish(Status status, QueryProgress.Phase phase) {
+            this.status = status;
+            this.finishedAt = System.currentTimeMillis();
+            // Enter the terminal phase after the outcome is stored so watchers
+            // woken by it always find the result.
+            progress.finish(phase);
+        }
+    }
+
+    /**
+     * Create a job for {@code query}, whose ids are internal ids of
+     * {@code graph}, and queue it on {@code executor} to solve against that
+     * snapshot. Throws
+     * {@link SolverExecutor.OverloadedException} when the executor refuses it,
+     * in which case no job is registered.
+     */
+    public Job submit(Query query, GraphSnapshot graph, SolverExecutor executor, QueryResultCache cache) {
+        purgeExpired();
+        Job job = new Job(query, graph);
+        Result cached = cache.getIfPresent(query, graph.getVersion());
+        if (cached != null) {
+            job.succeed(cached, true, 0, 0);
+            jobs.put(job.id, job);
+            return job;
+        }
+
+        CompletableFuture<SolverExecutor.Execution<Result>> future = executor.submit(
+                () -> BidirectionalAstar.runSingleQuery(graph, query.get_source(), query.get_destination(),
+                        query.get_start_departure_time(),
+                        query.get_end_departure_time() - query.get_start_departure_time(),
+                        query.get_budget(), query.getRoutingMode(), job.progress));
+        job.future = future;
+        jobs.put(job.id, job);
+        future.whenComplete((run, failure) -> {
+            if (failure == null) {
+                cache.put(query, run.getResult(), graph.getVersion());
+                job.succeed(run.getResult(), false, run.getQueueWaitMillis(), run.getSolveMillis());
+                return;
+            }
+            Throwable cause = failure instanceof CompletionException && failure.getCause() != null
+                    ? failure.getCause() : failure;
+            if (cause instanceof CancellationException || job.progress.isCancelled()) {
+                job.fail(Status.CANCELLED, 499, "Query cancelled.");
+            } else if (cause instanceof SolverExecutor.OverloadedException) {
+                job.fail(Status.FAILED, ((SolverExecutor.OverloadedException) cause).getStatusCode(), cause.getMessage());
+            } else {
+                job.fail(Status.FAILED, 500, String.valueOf(cause.getMessage()));
+            }
+        });
+        return job;
+    }
+
+    public Job get(String id) {
+        return jobs.get(id);
+    }
+
+    /**
+     * Cancel the job. A queued job is dropped before it reaches a solver
+     * thread; a running one stops expanding labels and aborts at its next
+     * phase boundary. Returns false if the job had already finished.
+     */
+    public boolean cancel(Job job) {
+        if (job.isFinished() || !job.progress.cancel()) {
+            return false;
+        }
+        CompletableFuture<SolverExecutor.Execution<Result>> future = job.future;
+        if (future != null) {
+            future.cancel(false);
+        }
+        return true;
+    }
+
+    public int size() {
+        return jobs.size();
+    }
+
+    public long getActiveCount() {
+        return jobs.values().stream().filter(job -> !job.isFinished()).count();
+    }
+
+    private void purgeExpired() {
+        long cutoff = System.currentTimeMillis() - retainMillis;
+        Iterator<Job> it = jobs.values().iterator();
+        while (it.hasNext()) {
+            Job job = it.next();
+            if (job.isFinished() && job.finishedAt < cutoff) {
+                it.remove();
+            }
+        }
+    }
+}
@@ -0,0 +1,217 @@
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Live progress of one solver run, written by {@link BidirectionalDriver} and
+ * {@link BidirectionalLabeling} and read by whoever is watching the query.
+ * <p>
+ * Label and intersection counts are plain atomics bumped from the labeling
+ * tasks; phase changes additionally wake threads blocked in
+ * {@link #awaitPhaseChange(long, long)} so watchers see them immediately. The
+ * object also carries the cancellation flag: labeling tasks stop expanding
+ * once it is set and the driver aborts at its next phase boundary.
+ */
+public final class QueryProgress {
+
+    public enum Phase {
+        QUEUED, FORWARD_ASTAR, BACKWARD_ASTAR, LABELING, MERGING, FALLBACK, DONE, FAILED, CANCELLED;
+
+        /** Whether the run is over in this phase. */
+        public boolean isTerminal() {
+            return this == DONE || this == FAILED || this == CANCELLED;
+        }
+    }
+
+    /** Sink for callers that do not observe progress. Never cancelled. */
+    public static final QueryProgress NONE = new QueryProgress(false);
+
+    private final boolean tracking;
+    private volatile Phase phase = Phase.QUEUED;
+    private volatile boolean cancelled;
+    private long phaseVersion;
+
+    private final AtomicLong forwardReachable = new AtomicLong();
+    private final AtomicLong feasible = new AtomicLong();
+    private final AtomicLong forwardLabels = new AtomicLong();
+    private final AtomicLong backwardLabels = new AtomicLong();
+    private final AtomicLong intersections = new AtomicLong();
+    private final AtomicReference<double[]> best = new AtomicReference<>(); // {score, rightTurns}
+
+    public QueryProgress() {
+        this(true);
+    }
+
+    private QueryProgress(boolean tracking) {
+        this.tracking = tracking;
+    }
+
+    /**
+     * Cancellation without progress reporting, for callers that need a
+     * deadline but do not observe the run and should not pay for tracking.
+     */
+    public static QueryProgress cancellable() {
+        return new QueryProgress(false);
+    }
+
+    /**
+     * Whether anyone is watching. Producers skip work that only feeds
+     * progress reports, such as scoring intermediate meeting points, when
+     * this is false.
+     */
+    public boolean isTracking() {
+        return tracking;
+    }
+
+    /**
+     * Move to {@code next}. Ignored once a terminal phase is reached, so a
+     * driver still winding down after its job was cancelled or failed cannot
+     * make the run look alive again.
+     */
+    void enterPhase(Phase next) {
+        if (!tracking) {
+            return;
+        }
+        synchronized (this) {
+            if (phase.isTerminal()) {
+                return;
+            }
+            phase = next;
+            phaseVersion++;
+            notifyAll();
+        }
+    }
+
+    /**
+     * Record the run's outcome as terminal phase {@code outcome} and wake
+     * watchers. For the owner of the run, which stores the result before
+     * calling this; the driver never enters {@link Phase#DONE} itself, so a
+     * watcher that sees it always finds the result.
+     */
+    void finish(Phase outcome) {
+        if (!tracking) {
+            return;
+        }
+        synchronized (this) {
+            phase = outcome;
+            phaseVersion++;
+            notifyAll();
+        }
+    }
+
+    void boundsComputed(int forwardReachableCount, int feasibleCount) {
+        if (tracking) {
+            forwardReachable.set(forwardReachableCount);
+            feasible.set(feasibleCount);
+        }
+    }
+
+    void labelCreated(boolean forward) {
+        if (tracking) {
+            (forward ? forwardLabels : backwardLabels).incrementAndGet();
+        }
+    }
+
+    void intersectionFound() {
+        if (tracking) {
+            intersections.incrementAndGet();
+        }
+    }
+
+    /**
+     * Offer a candidate route found at a meeting node. The best-so-far keeps
+     * the highest wideness score and, independently, the fewest right turns
+     * seen, matching the two objectives the routing modes rank by.
+     */
+    void offerCandidate(double score, int rightTurns) {
+        if (!tracking || Double.isNaN(score) || Double.isInfinite(score)) {
+            return;
+        }
+        best.accumulateAndGet(new double[]{score, rightTurns}, (current, offered) -> current == null ? offered
+                : new double[]{Math.max(current[0], offered[0]), Math.min(current[1], offered[1])});
+    }
+
+    /**
+     * Request cancellation. Returns false when the run had already finished.
+     */
+    public boolean cancel() {
+        if (this == NONE) {
+            return false;
+        }
+        if (phase.isTerminal()) {
+            return false;
+        }
+        cancelled = true;
+        return true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Throw {@link CancellationException} if cancellation was requested.
+     * Called by the driver between phases.
+     */
+    void checkCancelled() {
+        if (cancelled) {
+            throw new CancellationException("Query cancelled");
+        }
+    }
+
+    public boolean isFinished() {
+        return phase.isTerminal();
+    }
+
+    /**
+     * Block until the phase moves past {@code seenVersion} or the timeout
+     * elapses, and return the current phase version.
+     */
+    public synchronized long awaitPhaseChange(long seenVersion, long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (phaseVersion == seenVersion) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                break;
+            }
+            wait(remaining);
+        }
+        return phaseVersion;
+    }
+
+    public Phase getPhase() {
+        return phase;
+    }
+
+    public long getForwardReachable() {
+        return forwardReachable.get();
+    }
+
+    public long getFeasible() {
+        return feasible.get();
+    }
+
+    public long getForwardLabels() {
+        return forwardLabels.get();
+    }
+
+    public long getBackwardLabels() {
+        return backwardLabels.get();
+    }
+
+    public long getIntersections() {
+        return intersections.get();
+    }
+
+    /** Best wideness score seen so far, or NaN before the first meeting. */
+    public double getBestScore() {
+        double[] current = best.get();
+        return current != null ? current[0] : Double.NaN;
+    }
+
+    /** Fewest right turns seen so far, or -1 before the first meeting. */
+    public int getBestRightTurns() {
+        double[] current = best.get();
+        return current != null ? (int) current[1] : -1;
+    }
+}
@@ -0,0 +1,300 @@
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Cache of complete query results with single-flight coalescing.
+ * <p>
+ * Entries are keyed on the normalized {@link Query} (which includes the
+ * {@link models.RoutingMode}) together with the {@link Graph#getGeneration()
+ * graph generation} they were solved against, so a reload silently retires
+ * every older result. Each entry holds a future: the first caller for a key
+ * runs the solver, and identical requests arriving while it is still running
+ * wait on the same future instead of starting a second solve. Entries expire
+ * after a fixed TTL and the least recently used ones are evicted once the
+ * size limit is reached.
+ * <p>
+ * Callers that pinned a {@link GraphSnapshot} pass its version explicitly, so
+ * the key always matches the network that is actually solved even if a reload
+ * lands mid-request. Versions only move forward: a newer one retires the
+ * cached entries, and a lookup pinned to an older one is solved uncached.
+ */
+public final class QueryResultCache {
+
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private final LongSupplier graphVersion;
+    private long generation;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public QueryResultCache(int maxEntries, long ttlMillis) {
+        this(maxEntries, ttlMillis, Graph::getGeneration);
+    }
+
+    /**
+     * Cache for a network other than the one behind {@link Graph}, whose
+     * current version {@code graphVersion} reports.
+     */
+    QueryResultCache(int maxEntries, long ttlMillis, LongSupplier graphVersion) {
+        this.maxEntries = Math.max(1, maxEntries);
+        this.ttlMillis = ttlMillis;
+        this.graphVersion = graphVersion;
+        this.generation = graphVersion.getAsLong();
+    }
+
+    /**
+     * Outcome of a lookup: the result plus how it was obtained, so callers can
+     * surface cache behaviour in their diagnostics.
+     */
+    public static final class Outcome {
+        private final Result result;
+        private final boolean hit;
+        private final boolean coalesced;
+
+        Outcome(Result result, boolean hit, boolean coalesced) {
+            this.result = result;
+            this.hit = hit;
+            this.coalesced = coalesced;
+        }
+
+        public Result getResult() {
+            return result;
+        }
+
+        /** The result was already cached (completed or in flight) when requested. */
+        public boolean isHit() {
+            return hit;
+        }
+
+        /** The caller waited on a solve started by another concurrent request. */
+        public boolean isCoalesced() {
+            return coalesced;
+        }
+    }
+
+    private static final class Key {
+        final Query query;
+        final long generation;
+
+        Key(Query query, long generation) {
+            this.query = query;
+            this.generation = generation;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            Key that = (Key) other;
+            return generation == that.generation && query.equals(that.query);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * query.hashCode() + Long.hashCode(generation);
+        }
+    }
+
+    private static final class Entry {
+        final CompletableFuture<Result> future = new CompletableFuture<>();
+        final long createdAt = System.currentTimeMillis();
+    }
+
+    /**
+     * Return the cached result for {@code query}, or run {@code solver} exactly
+     * once across all concurrent callers and cache what it returns. Failures,
+     * {@link Error}s included, are propagated to every waiter and are not cached.
+     */
+    public Outcome getOrCompute(Query query, Callable<Result> solver) throws InterruptedException, ExecutionException {
+        return getOrCompute(query, graphVersion.getAsLong(), solver);
+    }
+
+    /**
+     * {@link #getOrCompute(Query, Callable)} for a query solved against the
+     * network at {@code version}, typically {@link GraphSnapshot#getVersion()}
+     * of the snapshot {@code solver} runs on.
+     */
+    public Outcome getOrCompute(Query query, long version, Callable<Result> solver)
+            throws InterruptedException, ExecutionException {
+        Key key = new Key(query, version);
+        Entry entry;
+        boolean owner = false;
+
+        synchronized (this) {
+            if (!admit(version)) {
+                entry = null;
+            } else {
+                entry = entries.get(key);
+                if (entry != null && ttlMillis > 0 && System.currentTimeMillis() - entry.createdAt > ttlMillis) {
+                    entries.remove(key);
+                    entry = null;
+                }
+                if (entry == null) {
+                    entry = new Entry();
+                    entries.put(key, entry);
+                    owner = true;
+                    evictToCapacity();
+                }
+            }
+        }
+
+        if (entry == null) {
+            misses.incrementAndGet(); // pinned to a network the cache has moved past
+            return new Outcome(call(solver), false, false);
+        }
+        if (!owner) {
+            boolean inFlight = !entry.future.isDone();
+            if (inFlight) {
+                coalesced.incrementAndGet();
+            }
+            hits.incrementAndGet();
+            return new Outcome(entry.future.get(), true, inFlight);
+        }
+
+        misses.incrementAndGet();
+        try {
+            Result result = solver.call();
+            entry.future.complete(result);
+            return new Outcome(result, false, false);
+        } catch (Throwable t) {
+            // Errors too (out of memory, deep label expansion): waiters must never be left on the future
+            synchronized (this) {
+                entries.remove(key, entry);
+            }
+            entry.future.completeExceptionally(t);
+            if (t instanceof Error) {
+                throw (Error) t;
+            }
+            throw rethrow((Exception) t);
+        }
+    }
+
+    private static Result call(Callable<Result> solver) throws InterruptedException, ExecutionException {
+        try {
+            return solver.call();
+        } catch (Exception e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static ExecutionException rethrow(Exception e) throws InterruptedException {
+        if (e instanceof InterruptedException) {
+            throw (InterruptedException) e;
+        }
+        return e instanceof ExecutionException ? (ExecutionException) e : new ExecutionException(e);
+    }
+
+    /**
+     * Return the completed result for {@code query} without starting a solve,
+     * or {@code null}. In-flight entries count as a miss. Callers that solve
+     * on a miss hand the result back through {@link #put(Query, Result, long)}.
+     */
+    public Result getIfPresent(Query query) {
+        return getIfPresent(query, graphVersion.getAsLong());
+    }
+
+    /** {@link #getIfPresent(Query)} for the network at {@code version}. */
+    public Result getIfPresent(Query query, long version) {
+        Entry entry;
+        synchronized (this) {
+            Key key = new Key(query, version);
+            entry = admit(version) ? entries.get(key) : null;
+            if (entry != null && ttlMillis > 0 && System.currentTimeMillis() - entry.createdAt > ttlMillis) {
+                entries.remove(key);
+                entry = null;
+            }
+        }
+        if (entry != null && entry.future.isDone() && !entry.future.isCompletedExceptionally()) {
+            hits.incrementAndGet();
+            return entry.future.join();
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Store a result solved outside {@link #getOrCompute}. An entry that is
+     * already present, finished or in flight, is left alone.
+     */
+    public void put(Query query, Result result, long solvedGeneration) {
+        synchronized (this) {
+            if (!admit(solvedGeneration)) {
+                return; // the cache already serves a newer network
+            }
+            Key key = new Key(query, solvedGeneration);
+            if (entries.containsKey(key)) {
+                return;
+            }
+            Entry entry = new Entry();
+            entry.future.complete(result);
+            entries.put(key, entry);
+            evictToCapacity();
+        }
+    }
+
+    /**
+     * Move the cache to {@code version} if it is newer, dropping every entry
+     * of the previous one. False when {@code version} is older than the cached
+     * one. Caller holds the lock.
+     */
+    private boolean admit(long version) {
+        if (version > generation) {
+            entries.clear();
+            generation = version;
+        }
+        return version == generation;
+    }
+
+    private void evictToCapacity() {
+        Iterator<Map.Entry<Key, Entry>> it = entries.entrySet().iterator();
+        while (entries.size() > maxEntries && it.hasNext()) {
+            Map.Entry<Key, Entry> eldest = it.next();
+            if (!eldest.getValue().future.isDone()) {
+                continue; // never drop a solve other callers may be waiting on
+            }
+            it.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getCoalesced() {
+        return coalesced.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    public double getHitRate() {
+        long h = hits.get();
+        long total = h + misses.get();
+        return total > 0 ? (double) h / total : 0.0;
+    }
+}
@@ -0,0 +1,222 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import jdk.jfr.Event;
+
+/**
+ * Detail trace of one solver query: its JFR events and console log lines.
+ * <p>
+ * Nothing is emitted while the query runs. Events and log lines are held
+ * until {@link #finish}, and then committed and printed only if the query
+ * took at least {@code SOLVER_TRACE_THRESHOLD_MS} (default
+ * {@value #DEFAULT_THRESHOLD_MS} ms). A threshold of 0 traces every query; a
+ * negative one turns tracing off, in which case no events are allocated and
+ * {@link #log} is a no-op. This keeps {@code System.out} off the hot path
+ * while still explaining the queries worth looking at.
+ * <p>
+ * A query buffers at most {@value #MAX_LINES} lines; later ones are only
+ * counted. Lines per join node or per route are only worth building when
+ * {@code SOLVER_TRACE_DETAIL} is set, which callers check with
+ * {@link #isDetailed()} before formatting them.
+ */
+final class QueryTrace {
+
+    private static final int DEFAULT_THRESHOLD_MS = 500;
+    private static final int MAX_LINES = 200;
+    private static final long THRESHOLD_NANOS;
+    private static final boolean DETAILED;
+    private static final AtomicLong NEXT_ID = new AtomicLong();
+
+    static {
+        long ms = DEFAULT_THRESHOLD_MS;
+        String value = System.getenv("SOLVER_TRACE_THRESHOLD_MS");
+        if (value != null && !value.isBlank()) {
+            try {
+                ms = Long.parseLong(value.trim());
+            } catch (NumberFormatException ignored) { }
+        }
+        THRESHOLD_NANOS = ms < 0 ? -1 : ms * 1_000_000L;
+        String detail = System.getenv("SOLVER_TRACE_DETAIL");
+        DETAILED = detail != null && !detail.isBlank() && !"0".equals(detail.trim())
+                && !"false".equalsIgnoreCase(detail.trim());
+    }
+
+    private final long id = NEXT_ID.incrementAndGet();
+    private final long startNanos = System.nanoTime();
+    private final List<Event> events = new ArrayList<>();
+    private final List<String> lines = new ArrayList<>();
+    private int droppedLines;
+    private final SolverEvents.QueryEvent queryEvent;
+
+    QueryTrace() {
+        if (isEnabled()) {
+            queryEvent = new SolverEvents.QueryEvent();
+            queryEvent.queryId = id;
+            queryEvent.begin();
+        } else {
+            queryEvent = null;
+        }
+    }
+
+    static boolean isEnabled() {
+        return THRESHOLD_NANOS >= 0;
+    }
+
+    long getId() {
+        return id;
+    }
+
+    /**
+     * Whether this query's trace wants per-node and per-route lines. Cheap
+     * enough to guard every such line before it is built.
+     */
+    boolean isDetailed() {
+        return DETAILED && queryEvent != null;
+    }
+
+    /**
+     * Buffer a console line, printed with the query id if the query turns out
+     * slow. Past {@value #MAX_LINES} lines only the count is kept.
+     */
+    synchronized void log(String line) {
+        if (queryEvent == null) {
+            return;
+        }
+        if (lines.size() < MAX_LINES) {
+            lines.add(line);
+        } else {
+            droppedLines++;
+        }
+    }
+
+    SolverEvents.BoundSearchEvent beginBoundSearch(boolean forward, int root) {
+        if (queryEvent == null) {
+            return null;
+        }
+        SolverEvents.BoundSearchEvent event = new SolverEvents.BoundSearchEvent();
+        event.queryId = id;
+        event.direction = forward ? "forward" : "backward";
+        event.root = root;
+        event.begin();
+        return event;
+    }
+
+    synchronized void endBoundSearch(SolverEvents.BoundSearchEvent event, int settledNodes) {
+        if (event == null) {
+            return;
+        }
+        event.end();
+        event.settledNodes = settledNodes;
+        events.add(event);
+    }
+
+    SolverEvents.LabelingEvent beginLabeling(boolean forward) {
+        if (queryEvent == null) {
+            return null;
+        }
+        SolverEvents.LabelingEvent event = new SolverEvents.LabelingEvent();
+        event.queryId = id;
+        event.direction = forward ? "forward" : "backward";
+        event.begin();
+        return event;
+    }
+
+    /** Close a labeling event once its direction has been joined. */
+    synchronized void endLabeling(SolverEvents.LabelingEvent event) {
+        if (event != null) {
+            event.end();
+        }
+    }
+
+    /**
+     * Fill in the counters of both labeling events. Called once both
+     * directions are done because the labeled node counts are only final then.
+     */
+    synchronized void labelingDone(SolverEvents.LabelingEvent forward, SolverEvents.LabelingEvent backward,
+            SearchStats stats, int forwardNodes, int backwardNodes) {
+        if (forward == null || backward == null) {
+            return;
+        }
+        fillLabeling(forward, stats, true, forwardNodes);
+        fillLabeling(backward, stats, false, backwardNodes);
+        events.add(forward);
+        events.add(backward);
+    }
+
+    private static void fillLabeling(SolverEvents.LabelingEvent event, SearchStats stats, boolean forward, int nodes) {
+        event.labelsCreated = stats.getLabelsCreated(forward);
+        event.labelsPruned = stats.getLabelsPruned(forward);
+        event.labelsEvicted = stats.getLabelsEvicted(forward);
+        event.labeledNodes = nodes;
+    }
+
+    SolverEvents.MergeEvent beginMerge(String routingMode) {
+        if (queryEvent == null) {
+            return null;
+        }
+        SolverEvents.MergeEvent event = new SolverEvents.MergeEvent();
+        event.queryId = id;
+        event.routingMode = routingMode;
+        event.begin();
+        return event;
+    }
+
+    synchronized void endMerge(SolverEvents.MergeEvent event, SearchStats stats, boolean routeFound) {
+        if (event == null) {
+            return;
+        }
+        event.end();
+        event.intersectionNodes = stats.getIntersectionNodes();
+        event.candidateJoins = stats.getCandidateJoins();
+        event.routeFound = routeFound;
+        events.add(event);
+    }
+
+    /**
+     * End the query. If it ran past the threshold, commit its events and
+     * print the buffered log lines; otherwise drop both.
+     */
+    synchronized void finish(int source, int destination, double budget, String routingMode,
+            SearchStats stats, boolean routeFound, boolean fallback) {
+        if (queryEvent == null) {
+            return;
+        }
+        queryEvent.end();
+        if (System.nanoTime() - startNanos < THRESHOLD_NANOS) {
+            events.clear();
+            lines.clear();
+            droppedLines = 0;
+            return;
+        }
+        queryEvent.source = source;
+        queryEvent.destination = destination;
+        queryEvent.budget = budget;
+        queryEvent.routingMode = routingMode;
+        queryEvent.routeFound = routeFound;
+        queryEvent.fallback = fallback;
+        queryEvent.nodesExplored = stats.nodesExplored();
+        queryEvent.labelsCreated = stats.getLabelsCreated(true) + stats.getLabelsCreated(false);
+        queryEvent.labelsPruned = stats.getLabelsPruned(true) + stats.getLabelsPruned(false);
+        queryEvent.labelsEvicted = stats.getLabelsEvicted(true) + stats.getLabelsEvicted(false);
+        queryEvent.breakpointsCreated = stats.getBreakpointsCreated();
+        queryEvent.intersectionNodes = stats.getIntersectionNodes();
+        queryEvent.candidateJoins = stats.getCandidateJoins();
+        for (Event event : events) {
+            event.commit();
+        }
+        queryEvent.commit();
+        events.clear();
+
+        StringBuilder out = new StringBuilder();
+        for (String line : lines) {
+            out.append("[q").append(id).append("] ").append(line).append('\n');
+        }
+        if (droppedLines > 0) {
+            out.append("[q").append(id).append("] ... ").append(droppedLines).append(" more lines dropped\n");
+        }
+        lines.clear();
+        droppedLines = 0;
+        System.out.print(out);
+    }
+}
@@ -32,6 +32,9 @@ public class Result {
 	private RoutingMode routingMode;
 	private int paretoPathIndex = -1; // -1 means this is the main result, >=0 means this is a pareto path
 	
+	// Work counters of the query that produced this result (null for cached copies built elsewhere)
+	private SearchStats searchStats;
+	
 	public Result(double dep_time, double scr, int turns, int sharpTurns, double travelTime,
 			List<Integer> pathNodes, List<Integer> wideEdgeIndices) {
 		this.departure_time = dep_time;
@@ -219,6 +222,14 @@ public class Result {
 		return routingMode;
 	}
 	
+	public void setSearchStats(SearchStats stats) {
+		this.searchStats = stats;
+	}
+	
+	public SearchStats getSearchStats() {
+		return searchStats;
+	}
+	
 	/**
 	 * Check if this result dominates another in Pareto sense
 	 * A dominates B if A is better or equal in all objectives and strictly better in at least one
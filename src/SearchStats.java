@@ -0,0 +1,245 @@
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Work done by a single query, broken down by search phase.
+ * <p>
+ * One instance is created per {@link BidirectionalDriver#driver()} call and
+ * shared by every labeling task of that query, so the counters are
+ * {@link LongAdder}s. Each event is also forwarded to the process-wide
+ * {@link SolverMetrics}, which lets the hot paths record through this object
+ * alone. The finished stats travel with the {@link Result} and are rendered
+ * with {@link #toMap()} / {@link #toJson()} for the GUI and API.
+ * <p>
+ * Memory is accounted without touching the collector. Allocation is the sum
+ * of {@code ThreadMXBean} allocated-byte deltas taken around the work each
+ * thread does for this query, so it stays per query even when several
+ * queries share the solver pool. Live labels are estimated from the solver's
+ * own bookkeeping: a label counts as live while it sits in a per-node label
+ * set or while the task expanding it is running. A label that is both is
+ * counted twice, so the peak is an upper bound.
+ */
+public final class SearchStats {
+
+    private static final com.sun.management.ThreadMXBean THREADS = allocationBean();
+
+    private volatile int forwardBoundSettled;
+    private volatile int backwardBoundSettled;
+    private volatile int forwardLabeledNodes;
+    private volatile int backwardLabeledNodes;
+
+    private final LongAdder forwardLabelsCreated = new LongAdder();
+    private final LongAdder backwardLabelsCreated = new LongAdder();
+    private final LongAdder forwardLabelsPruned = new LongAdder();
+    private final LongAdder backwardLabelsPruned = new LongAdder();
+    private final LongAdder forwardLabelsEvicted = new LongAdder();
+    private final LongAdder backwardLabelsEvicted = new LongAdder();
+    private final LongAdder breakpointsCreated = new LongAdder();
+    private final LongAdder breakpointsMerged = new LongAdder();
+    private final LongAdder functionSplits = new LongAdder();
+    private final LongAdder intersectionNodes = new LongAdder();
+    private final LongAdder candidateJoins = new LongAdder();
+    private final LongAdder allocatedBytes = new LongAdder();
+    private final AtomicLong liveLabels = new AtomicLong();
+    private final AtomicLong peakLiveLabels = new AtomicLong();
+
+    private static com.sun.management.ThreadMXBean allocationBean() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+            if (sunBean.isThreadAllocatedMemorySupported()) {
+                if (!sunBean.isThreadAllocatedMemoryEnabled()) {
+                    sunBean.setThreadAllocatedMemoryEnabled(true);
+                }
+                return sunBean;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Bytes allocated so far by the calling thread, or 0 when the JVM cannot
+     * tell. Only differences between two calls on the same thread mean anything.
+     */
+    static long threadAllocatedBytes() {
+        return THREADS != null ? THREADS.getCurrentThreadAllocatedBytes() : 0L;
+    }
+
+    /** Add the calling thread's allocation since {@code startBytes} to this query. */
+    void allocatedSince(long startBytes) {
+        if (THREADS != null) {
+            allocatedBytes.add(Math.max(0L, THREADS.getCurrentThreadAllocatedBytes() - startBytes));
+        }
+    }
+
+    /** A label entered a label set or started being expanded. */
+    void labelRetained() {
+        long live = liveLabels.incrementAndGet();
+        if (live > peakLiveLabels.get()) {
+            peakLiveLabels.accumulateAndGet(live, Math::max);
+        }
+    }
+
+    /** A label left a label set or its expansion task finished. */
+    void labelReleased() {
+        liveLabels.decrementAndGet();
+    }
+
+    /**
+     * Nodes settled by the forward and backward lower-bound searches, i.e.
+     * the bound tree entries that fall inside the query budget.
+     */
+    void boundsSettled(int forward, int backward) {
+        this.forwardBoundSettled = forward;
+        this.backwardBoundSettled = backward;
+    }
+
+    /** Distinct nodes holding at least one label once labeling has finished. */
+    void labeledNodes(int forward, int backward) {
+        this.forwardLabeledNodes = forward;
+        this.backwardLabeledNodes = backward;
+    }
+
+    void labelCreated(boolean forward) {
+        (forward ? forwardLabelsCreated : backwardLabelsCreated).increment();
+        SolverMetrics.labelCreated(forward);
+    }
+
+    void labelPruned(boolean forward) {
+        (forward ? forwardLabelsPruned : backwardLabelsPruned).increment();
+        SolverMetrics.labelPruned(forward);
+    }
+
+    /** A label, new or old, that lost its place in a full per-node label set. */
+    void labelEvicted(boolean forward) {
+        (forward ? forwardLabelsEvicted : backwardLabelsEvicted).increment();
+        SolverMetrics.labelDominated(forward);
+    }
+
+    void breakpointCreated() {
+        breakpointsCreated.increment();
+        SolverMetrics.breakpointsGenerated(1);
+    }
+
+    /** A breakpoint folded into its neighbour because they were closer than the threshold. */
+    void breakpointMerged() {
+        breakpointsMerged.increment();
+    }
+
+    /** An arrival-time function cut where it leaves the budget. */
+    void functionSplit() {
+        functionSplits.increment();
+    }
+
+    void intersectionNode() {
+        intersectionNodes.increment();
+        SolverMetrics.intersectionNode();
+    }
+
+    /** One forward/backward label pair scored while merging. */
+    void candidateJoin() {
+        candidateJoins.increment();
+    }
+
+    public int getForwardBoundSettled() {
+        return forwardBoundSettled;
+    }
+
+    public int getBackwardBoundSettled() {
+        return backwardBoundSettled;
+    }
+
+    public long getLabelsCreated(boolean forward) {
+        return (forward ? forwardLabelsCreated : backwardLabelsCreated).sum();
+    }
+
+    public long getLabelsPruned(boolean forward) {
+        return (forward ? forwardLabelsPruned : backwardLabelsPruned).sum();
+    }
+
+    public long getLabelsEvicted(boolean forward) {
+        return (forward ? forwardLabelsEvicted : backwardLabelsEvicted).sum();
+    }
+
+    public long getBreakpointsCreated() {
+        return breakpointsCreated.sum();
+    }
+
+    public long getBreakpointsMerged() {
+        return breakpointsMerged.sum();
+    }
+
+    public long getFunctionSplits() {
+        return functionSplits.sum();
+    }
+
+    public long getIntersectionNodes() {
+        return intersectionNodes.sum();
+    }
+
+    public long getCandidateJoins() {
+        return candidateJoins.sum();
+    }
+
+    public long getAllocatedBytes() {
+        return allocatedBytes.sum();
+    }
+
+    public long getPeakLiveLabels() {
+        return peakLiveLabels.get();
+    }
+
+    /**
+     * Nodes touched by the query: settled by either bound search plus those
+     * reached by either labeling direction.
+     */
+    public long nodesExplored() {
+        return (long) forwardBoundSettled + backwardBoundSettled + forwardLabeledNodes + backwardLabeledNodes;
+    }
+
+    /**
+     * Flat, ordered snapshot of every counter. Used by the GUI, which cannot
+     * see this class from its own packages.
+     */
+    public Map<String, Long> toMap() {
+        Map<String, Long> map = new LinkedHashMap<>();
+        map.put("nodesExplored", nodesExplored());
+        map.put("forwardBoundSettled", (long) forwardBoundSettled);
+        map.put("backwardBoundSettled", (long) backwardBoundSettled);
+        map.put("forwardLabeledNodes", (long) forwardLabeledNodes);
+        map.put("backwardLabeledNodes", (long) backwardLabeledNodes);
+        map.put("forwardLabelsCreated", forwardLabelsCreated.sum());
+        map.put("backwardLabelsCreated", backwardLabelsCreated.sum());
+        map.put("forwardLabelsPruned", forwardLabelsPruned.sum());
+        map.put("backwardLabelsPruned", backwardLabelsPruned.sum());
+        map.put("forwardLabelsEvicted", forwardLabelsEvicted.sum());
+        map.put("backwardLabelsEvicted", backwardLabelsEvicted.sum());
+        map.put("breakpointsCreated", breakpointsCreated.sum());
+        map.put("breakpointsMerged", breakpointsMerged.sum());
+        map.put("functionSplits", functionSplits.sum());
+        map.put("intersectionNodes", intersectionNodes.sum());
+        map.put("candidateJoins", candidateJoins.sum());
+        map.put("allocatedBytes", allocatedBytes.sum());
+        map.put("peakLiveLabels", peakLiveLabels.get());
+        return map;
+    }
+
+    public String toJson() {
+        StringBuilder json = new StringBuilder("{");
+        for (Map.Entry<String, Long> entry : toMap().entrySet()) {
+            if (json.length() > 1) {
+                json.append(',');
+            }
+            json.append('"').append(entry.getKey()).append("\":").append(entry.getValue());
+        }
+        return json.append('}').toString();
+    }
+
+    @Override
+    public String toString() {
+        return "SearchStats" + toJson();
+    }
+}
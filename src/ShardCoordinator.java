@@ -0,0 +1,412 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Runs queries against a network split across {@link ShardWorker} processes,
+ * so no single heap has to hold all of it.
+ * <p>
+ * A query only ever touches nodes whose forward bound from the source plus
+ * backward bound to the destination fits its budget (see
+ * {@link QueryBounds}). The coordinator finds that corridor with the two bound
+ * searches run across the shards: each worker settles the nodes it owns from
+ * the labels it was given and reports the labels it reached on border nodes
+ * of other shards, which become the seeds of their owners in the next round,
+ * until no label improves. It then fetches the corridor's nodes and their
+ * edges from their owners into a private {@link GraphSnapshot} and runs the
+ * regular bidirectional labeling on it. Shortest paths to corridor nodes stay
+ * inside the corridor, so its bound times, and hence the feasible nodes, are
+ * the same as on the whole network.
+ * <p>
+ * Workers are addressed as {@code host:port}, or started here as child JVMs
+ * on the loopback interface with {@link #spawn(String, int)}.
+ */
+final class ShardCoordinator implements Closeable {
+
+    private static final Pattern LISTENING = Pattern.compile("listening on port (\\d+)");
+    // Slack on the corridor test so rounding in the summed bounds never drops a node.
+    private static final double CORRIDOR_EPSILON = 1e-9;
+
+    private final Connection[] workers;
+    private final List<Process> processes;
+    private final int vertexCount;
+    private final String[] arrivalSeries;
+    private final String[] widthSeries;
+    private final ExecutorService rounds = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final AtomicLong corridors = new AtomicLong();
+    private final AtomicLong corridorNodes = new AtomicLong();
+    private final AtomicLong boundRounds = new AtomicLong();
+    private final AtomicLong borderLabels = new AtomicLong();
+
+    private ShardCoordinator(List<Connection> connections, List<Process> processes) throws IOException {
+        this.processes = processes;
+        this.workers = new Connection[connections.size()];
+        String[] hello = null;
+        for (Connection connection : connections) {
+            String[] reply = connection.hello();
+            int shard = Integer.parseInt(reply[1]);
+            if (Integer.parseInt(reply[2]) != workers.length || workers[shard] != null) {
+                throw new IOException("Worker " + connection + " is shard " + shard + " of " + reply[2]
+                        + ", expected distinct shards of " + workers.length);
+            }
+            workers[shard] = connection;
+            hello = reply;
+        }
+        if (hello == null) {
+            throw new IOException("No workers");
+        }
+        this.vertexCount = Integer.parseInt(hello[4]);
+        this.arrivalSeries = workers[0].arrivalSeries.split(" ");
+        this.widthSeries = workers[0].widthSeries.split(" ");
+    }
+
+    /** Coordinator for the workers listening at {@code addresses} ({@code host:port}). */
+    static ShardCoordinator connect(List<String> addresses) throws IOException {
+        List<Connection> connections = new ArrayList<>();
+        for (String address : addresses) {
+            int colon = address.lastIndexOf(':');
+            connections.add(new Connection(address.substring(0, colon), Integer.parseInt(address.substring(colon + 1))));
+        }
+        return new ShardCoordinator(connections, List.of());
+    }
+
+    /**
+     * Start {@code shards} worker JVMs over the network in {@code directory},
+     * with this JVM's class path, and connect to them. The workers are
+     * stopped by {@link #close()} or when this JVM exits.
+     */
+    static ShardCoordinator spawn(String directory, int shards) throws IOException {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        List<Process> processes = new ArrayList<>();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> processes.forEach(Process::destroy)));
+        List<Connection> connections = new ArrayList<>();
+        for (int shard = 0; shard < shards; shard++) {
+            Process process = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"), "ShardWorker",
+                    "--data", directory, "--shard", String.valueOf(shard), "--shards", String.valueOf(shards))
+                    .redirectError(ProcessBuilder.Redirect.INHERIT)
+                    .start();
+            processes.add(process);
+            BufferedReader output = new BufferedReader(
+                    new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+            int port = -1;
+            String line;
+            while (port < 0 && (line = output.readLine()) != null) {
+                System.out.println(line);
+                Matcher matcher = LISTENING.matcher(line);
+                if (matcher.find()) {
+                    port = Integer.parseInt(matcher.group(1));
+                }
+            }
+            if (port < 0) {
+                processes.forEach(Process::destroy);
+                throw new IOException("Shard worker " + shard + " exited before listening");
+            }
+            Thread.ofPlatform().daemon().name("shard-" + shard + "-output").start(() -> {
+                try {
+                    for (String rest; (rest = output.readLine()) != null; ) {
+                        System.out.println(rest);
+                    }
+                } catch (IOException ignored) { }
+            });
+            connections.add(new Connection(InetAddress.getLoopbackAddress().getHostAddress(), port));
+        }
+        return new ShardCoordinator(connections, processes);
+    }
+
+    /**
+     * Coordinator for {@code --workers HOST:PORT,...}, or for {@code --shards K}
+     * workers spawned over {@code --data}; {@code null} if neither is given.
+     */
+    static ShardCoordinator fromOptions(Map<String, String> options) throws IOException {
+        if (options.containsKey("workers")) {
+            return connect(List.of(options.get("workers").split(",")));
+        }
+        if (options.containsKey("shards")) {
+            String directory = options.get("data");
+            if (directory == null) {
+                throw new IllegalArgumentException("--shards needs --data with nodes_N.txt and edges_N.txt");
+            }
+            return spawn(directory, Integer.parseInt(options.get("shards")));
+        }
+        return null;
+    }
+
+    /**
+     * The part of the network {@code query} can use, fetched from the shards
+     * into a snapshot of its own. Query ids are dataset ids, and so are the
+     * snapshot's.
+     *
+     * @throws IllegalArgumentException if no shard holds the source or destination
+     * @throws UncheckedIOException if a worker cannot be reached
+     */
+    GraphSnapshot corridor(Query query) {
+        int source = query.get_source();
+        int destination = query.get_destination();
+        double budget = query.get_budget();
+        Map<Integer, Integer> owners = new HashMap<>();
+        Map<Integer, Double> forward = bound(source, true, budget, owners);
+        Map<Integer, Double> backward = bound(destination, false, budget, owners);
+        if (!owners.containsKey(source) || !owners.containsKey(destination)) {
+            throw new IllegalArgumentException("No shard holds node " + (owners.containsKey(source) ? destination : source));
+        }
+
+        List<List<Integer>> byShard = new ArrayList<>();
+        for (int i = 0; i < workers.length; i++) {
+            byShard.add(new ArrayList<>());
+        }
+        forward.forEach((id, time) -> {
+            Double remaining = backward.get(id);
+            if (remaining != null && time + remaining <= budget + CORRIDOR_EPSILON) {
+                byShard.get(owners.get(id)).add(id);
+            }
+        });
+
+        GraphSnapshot corridor = new GraphSnapshot();
+        corridor.set_vertex_count(vertexCount);
+        corridor.updateArrivalTimeSeries(arrivalSeries);
+        corridor.updateWidthTimeSeries(widthSeries);
+        List<Future<List<Connection.NodeRecord>>> replies = new ArrayList<>();
+        for (int shard = 0; shard < workers.length; shard++) {
+            if (!byShard.get(shard).isEmpty()) {
+                Connection worker = workers[shard];
+                List<Integer> ids = byShard.get(shard);
+                replies.add(rounds.submit(() -> worker.nodes(ids)));
+            }
+        }
+        // Each edge is one object, reachable from both endpoints as on a fully loaded network.
+        Map<Long, Edge> edges = new HashMap<>();
+        int nodes = 0;
+        for (Future<List<Connection.NodeRecord>> reply : replies) {
+            for (Connection.NodeRecord record : await(reply)) {
+                Node node = new Node(record.latitude, record.longitude);
+                node.setClusterId(record.cluster);
+                for (String line : record.outgoing) {
+                    node.insert_outgoing_edge(shared(edges, line));
+                }
+                for (String line : record.incoming) {
+                    node.insert_incoming_edge(shared(edges, line));
+                }
+                corridor.add_node(record.id, node);
+                nodes++;
+            }
+        }
+        corridors.incrementAndGet();
+        corridorNodes.addAndGet(nodes);
+        return Graph.versioned(corridor);
+    }
+
+    private Edge shared(Map<Long, Edge> edges, String line) {
+        int first = line.indexOf(' ');
+        int second = line.indexOf(' ', first + 1);
+        long key = Long.parseLong(line.substring(0, first)) << 32 | Integer.parseInt(line.substring(first + 1, second));
+        return edges.computeIfAbsent(key, k -> BidirectionalAstar.parse_edge(line, arrivalSeries));
+    }
+
+    /**
+     * Lowest-cost times from (or, backward, to) {@code root} up to
+     * {@code ceiling} over all shards, recording the owner of every node
+     * seen in {@code owners}. Each round sends every shard the labels that
+     * improved on its nodes since it last ran.
+     */
+    private Map<Integer, Double> bound(int root, boolean forward, double ceiling, Map<Integer, Integer> owners) {
+        Map<Integer, Double> best = new HashMap<>();
+        best.put(root, 0.0);
+        Map<Integer, Map<Integer, Double>> seeds = new LinkedHashMap<>();
+        for (int shard = 0; shard < workers.length; shard++) {
+            seeds.put(shard, Map.of(root, 0.0)); // the owner of the root is not known yet
+        }
+        while (!seeds.isEmpty()) {
+            boundRounds.incrementAndGet();
+            Map<Integer, Future<List<double[]>>> replies = new LinkedHashMap<>();
+            seeds.forEach((shard, labels) ->
+                    replies.put(shard, rounds.submit(() -> workers[shard].bound(labels, forward, ceiling))));
+            seeds = new LinkedHashMap<>();
+            for (Map.Entry<Integer, Future<List<double[]>>> reply : replies.entrySet()) {
+                int shard = reply.getKey();
+                for (double[] label : await(reply.getValue())) {
+                    int id = (int) label[0];
+                    int owner = (int) label[2];
+                    owners.put(id, owner);
+                    if (label[1] < best.getOrDefault(id, Double.POSITIVE_INFINITY)) {
+                        best.put(id, label[1]);
+                        if (owner != shard && owner >= 0) {
+                            seeds.computeIfAbsent(owner, k -> new HashMap<>()).put(id, label[1]);
+                            borderLabels.incrementAndGet();
+                        }
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    private static <T> T await(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a shard", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw new UncheckedIOException((IOException) e.getCause());
+            }
+            throw new IllegalStateException("Shard request failed", e.getCause());
+        }
+    }
+
+    int getShardCount() {
+        return workers.length;
+    }
+
+    /** Corridors built, their average size, and the bound search rounds and border labels exchanged. */
+    String describe() {
+        long built = Math.max(1, corridors.get());
+        return String.format(Locale.ROOT,
+                "%d shards, %d corridors of %.0f nodes on average, %.1f bound rounds and %.0f border labels per query",
+                workers.length, corridors.get(), corridorNodes.get() / (double) built,
+                boundRounds.get() / (double) built, borderLabels.get() / (double) built);
+    }
+
+    @Override
+    public void close() {
+        for (Connection worker : workers) {
+            worker.close();
+        }
+        rounds.shutdownNow();
+        processes.forEach(Process::destroy);
+    }
+
+    /** One socket to one worker; requests on it are serialized. */
+    private static final class Connection {
+        private final String address;
+        private final Socket socket;
+        private final BufferedReader in;
+        private final Writer out;
+        String arrivalSeries;
+        String widthSeries;
+
+        Connection(String host, int port) throws IOException {
+            this.address = host + ":" + port;
+            this.socket = new Socket(host, port);
+            socket.setTcpNoDelay(true);
+            this.in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            this.out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8),
+                    1 << 16);
+        }
+
+        synchronized String[] hello() throws IOException {
+            out.write("HELLO\n");
+            out.flush();
+            String[] reply = expectOk();
+            arrivalSeries = in.readLine();
+            widthSeries = in.readLine();
+            return reply;
+        }
+
+        /** Labels as {@code {node, time, owner}}. */
+        synchronized List<double[]> bound(Map<Integer, Double> seeds, boolean forward, double ceiling)
+                throws IOException {
+            StringBuilder request = new StringBuilder(32 + 24 * seeds.size());
+            request.append("BOUND ").append(forward ? 'F' : 'B').append(' ').append(ceiling).append(' ')
+                    .append(seeds.size()).append('\n');
+            seeds.forEach((id, time) -> request.append(id).append(' ').append(time).append('\n'));
+            out.write(request.toString());
+            out.flush();
+            int n = Integer.parseInt(expectOk()[1]);
+            List<double[]> labels = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                String[] label = in.readLine().split(" ");
+                labels.add(new double[] {
+                        Integer.parseInt(label[0]), Double.parseDouble(label[1]), Integer.parseInt(label[2]) });
+            }
+            return labels;
+        }
+
+        /** A node and its edges as the worker sent them. */
+        static final class NodeRecord {
+            int id;
+            double latitude;
+            double longitude;
+            int cluster;
+            final List<String> outgoing = new ArrayList<>();
+            final List<String> incoming = new ArrayList<>();
+        }
+
+        synchronized List<NodeRecord> nodes(List<Integer> ids) throws IOException {
+            StringBuilder request = new StringBuilder(16 + 8 * ids.size());
+            request.append("NODES ").append(ids.size()).append('\n');
+            for (int id : ids) {
+                request.append(id).append('\n');
+            }
+            out.write(request.toString());
+            out.flush();
+            int n = Integer.parseInt(expectOk()[1]);
+            List<NodeRecord> records = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                String[] header = in.readLine().split(" ");
+                NodeRecord record = new NodeRecord();
+                record.id = Integer.parseInt(header[1]);
+                record.latitude = Double.parseDouble(header[2]);
+                record.longitude = Double.parseDouble(header[3]);
+                record.cluster = Integer.parseInt(header[4]);
+                int outgoing = Integer.parseInt(header[5]);
+                int incoming = Integer.parseInt(header[6]);
+                for (int j = 0; j < outgoing; j++) {
+                    record.outgoing.add(in.readLine());
+                }
+                for (int j = 0; j < incoming; j++) {
+                    record.incoming.add(in.readLine());
+                }
+                records.add(record);
+            }
+            return records;
+        }
+
+        private String[] expectOk() throws IOException {
+            String line = in.readLine();
+            if (line == null) {
+                throw new IOException("Worker " + address + " closed the connection");
+            }
+            if (!line.startsWith("OK")) {
+                throw new IOException("Worker " + address + ": " + line);
+            }
+            return line.split(" ");
+        }
+
+        synchronized void close() {
+            try {
+                out.write("QUIT\n");
+                out.flush();
+                socket.close();
+            } catch (IOException ignored) { }
+        }
+
+        @Override
+        public String toString() {
+            return address;
+        }
+    }
+}
@@ -0,0 +1,324 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * One process of a network split by cluster across several JVMs; see
+ * {@link ShardCoordinator}.
+ * <p>
+ * Shard {@code i} of {@code k} owns every node whose cluster id (the fourth
+ * column of {@code nodes_N.txt}, or the node id where that is missing) is
+ * {@code i} modulo {@code k}. It keeps those nodes, every edge that starts or
+ * ends at one of them, and the owning shard of every node id, so it can tell
+ * the coordinator where a border edge leads. Nodes of other shards are not
+ * held. Memory therefore scales with the shard, not with the network.
+ * <p>
+ * The worker answers a line-based protocol on a local socket, one request
+ * at a time per connection:
+ * <ul>
+ *   <li>{@code HELLO}: {@code OK shard shards ownedNodes vertexCount}, then
+ *   the arrival and width time series lines of the edges file.</li>
+ *   <li>{@code BOUND F|B ceiling n}, then {@code n} lines {@code node time}:
+ *   a Dijkstra over lowest edge costs inside the shard from the given seeds,
+ *   forward along outgoing or backward along incoming edges, up to
+ *   {@code ceiling}. Seeds on nodes of other shards are ignored. Answers
+ *   {@code OK m} and {@code m} lines {@code node time owner}: every owned
+ *   node settled and every border node of another shard reached.</li>
+ *   <li>{@code NODES n}, then {@code n} node ids: {@code OK m}, then for each
+ *   requested node this shard owns a line
+ *   {@code N id lat lon cluster outgoing incoming}, followed by its outgoing
+ *   and then its incoming edges as edges file lines, in the iteration order
+ *   of its edge maps.</li>
+ *   <li>{@code QUIT} closes the connection.</li>
+ * </ul>
+ * Failures are answered with {@code ERR message}.
+ * <pre>
+ * java -cp target/classes ShardWorker --data DIR --shard I --shards K [--port P]
+ * </pre>
+ * Prints {@code [Shard] Worker I/K listening on port P} once it accepts
+ * connections; port 0 (the default) picks a free port.
+ */
+final class ShardWorker {
+
+    private final int shard;
+    private final int shards;
+    private final int vertexCount;
+    private final GraphSnapshot graph = new GraphSnapshot();
+    private int[] owners;
+    private String arrivalSeriesLine = "";
+    private String widthSeriesLine = "";
+    private long edgeCount;
+
+    ShardWorker(String directory, int shard, int shards) throws IOException {
+        if (shards <= 0 || shard < 0 || shard >= shards) {
+            throw new IllegalArgumentException("Shard " + shard + " of " + shards + " does not exist");
+        }
+        this.shard = shard;
+        this.shards = shards;
+        this.vertexCount = BidirectionalAstar.detectVertexCount(directory);
+        if (vertexCount <= 0) {
+            throw new IOException("No nodes_N.txt in " + directory);
+        }
+        graph.set_vertex_count(vertexCount);
+        readNodes(Path.of(directory, "nodes_" + vertexCount + ".txt"));
+        readEdges(Path.of(directory, "edges_" + vertexCount + ".txt"));
+    }
+
+    /** Shard of a node in cluster {@code clusterId} ({@code -1} if none) among {@code shards}. */
+    static int shardOf(int nodeId, int clusterId, int shards) {
+        return Math.floorMod(clusterId >= 0 ? clusterId : nodeId, shards);
+    }
+
+    private void readNodes(Path file) throws IOException {
+        owners = new int[vertexCount];
+        Arrays.fill(owners, -1);
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] entries = line.trim().split(" ");
+                if (entries.length < 3) {
+                    continue;
+                }
+                int id = Integer.parseInt(entries[0]);
+                int cluster = -1;
+                if (entries.length >= 4) {
+                    try {
+                        cluster = Integer.parseInt(entries[3]);
+                    } catch (NumberFormatException ignored) { }
+                }
+                if (id >= owners.length) {
+                    int size = owners.length;
+                    owners = Arrays.copyOf(owners, Math.max(id + 1, size * 2));
+                    Arrays.fill(owners, size, owners.length, -1);
+                }
+                owners[id] = shardOf(id, cluster, shards);
+                if (owners[id] == shard) {
+                    Node node = new Node(Double.parseDouble(entries[1]), Double.parseDouble(entries[2]));
+                    node.setClusterId(cluster);
+                    graph.add_node(id, node);
+                }
+            }
+        }
+    }
+
+    private void readEdges(Path file) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line = reader.readLine();
+            if (line == null) {
+                return;
+            }
+            arrivalSeriesLine = line.trim();
+            line = reader.readLine();
+            widthSeriesLine = line != null ? line.trim() : "";
+            String[] arrivalSeries = arrivalSeriesLine.split(" ");
+            graph.updateArrivalTimeSeries(arrivalSeries);
+            graph.updateWidthTimeSeries(widthSeriesLine.split(" "));
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty()) {
+                    continue;
+                }
+                int first = line.indexOf(' ');
+                int second = line.indexOf(' ', first + 1);
+                Node from = graph.get_node(Integer.parseInt(line.substring(0, first)));
+                Node to = graph.get_node(Integer.parseInt(line.substring(first + 1, second)));
+                if (from == null && to == null) {
+                    continue;
+                }
+                Edge edge = BidirectionalAstar.parse_edge(line, arrivalSeries);
+                if (Graph.isCompactStorage()) {
+                    edge.compact();
+                }
+                if (from != null) {
+                    from.insert_outgoing_edge(edge);
+                }
+                if (to != null) {
+                    to.insert_incoming_edge(edge);
+                }
+                edgeCount++;
+            }
+        }
+    }
+
+    private int ownerOf(int id) {
+        return id >= 0 && id < owners.length ? owners[id] : -1;
+    }
+
+    /**
+     * Lowest-cost times from {@code seeds} inside this shard, up to
+     * {@code ceiling}: owned nodes are settled and expanded, nodes of other
+     * shards keep the best time an edge into them gave. Seeds this shard
+     * does not own are ignored.
+     */
+    Map<Integer, Double> bound(Map<Integer, Double> seeds, boolean forward, double ceiling) {
+        Map<Integer, Double> time = new HashMap<>();
+        Set<Integer> settled = new HashSet<>();
+        PriorityQueue<double[]> queue = new PriorityQueue<>(Comparator.comparingDouble(entry -> entry[0]));
+        seeds.forEach((id, t) -> {
+            if (graph.get_node(id) != null && t <= ceiling && t < time.getOrDefault(id, Double.POSITIVE_INFINITY)) {
+                time.put(id, t);
+                queue.add(new double[] { t, id });
+            }
+        });
+        while (!queue.isEmpty()) {
+            double[] top = queue.poll();
+            int id = (int) top[1];
+            if (top[0] > time.get(id) || !settled.add(id)) {
+                continue;
+            }
+            Node node = graph.get_node(id);
+            for (Edge edge : (forward ? node.get_outgoing_edges() : node.get_incoming_edges()).values()) {
+                int next = forward ? edge.get_destination() : edge.get_source();
+                double nextTime = top[0] + edge.getLowestCost();
+                if (nextTime > ceiling || nextTime >= time.getOrDefault(next, Double.POSITIVE_INFINITY)) {
+                    continue;
+                }
+                time.put(next, nextTime);
+                if (graph.get_node(next) != null) {
+                    queue.add(new double[] { nextTime, next });
+                }
+            }
+        }
+        return time;
+    }
+
+    /** An edge as a line of the edges file, which {@link BidirectionalAstar#parse_edge} reads back. */
+    static String formatEdge(Edge edge) {
+        StringBuilder line = new StringBuilder(96);
+        line.append(edge.get_source()).append(' ').append(edge.get_destination()).append(' ');
+        double[] costs = edge.getSlotCosts();
+        for (int i = 0; i < costs.length; i++) {
+            if (i > 0) {
+                line.append(',');
+            }
+            line.append(costs[i]);
+        }
+        return line.append(' ').append(edge.getBaseWidth()).append(' ').append(edge.getRushWidth())
+                .append(' ').append(edge.get_distance()).toString();
+    }
+
+    private void serve(Socket socket) {
+        try (socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             Writer out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8),
+                     1 << 16)) {
+            String request;
+            while ((request = in.readLine()) != null) {
+                String[] words = request.trim().split(" ");
+                try {
+                    switch (words[0]) {
+                        case "HELLO":
+                            out.write("OK " + shard + " " + shards + " " + graph.get_nodes().size() + " " + vertexCount
+                                    + "\n" + arrivalSeriesLine + "\n" + widthSeriesLine + "\n");
+                            break;
+                        case "BOUND":
+                            answerBound(words, in, out);
+                            break;
+                        case "NODES":
+                            answerNodes(words, in, out);
+                            break;
+                        case "QUIT":
+                            return;
+                        default:
+                            out.write("ERR Unknown request " + words[0] + "\n");
+                    }
+                } catch (RuntimeException e) {
+                    out.write("ERR " + e + "\n");
+                }
+                out.flush();
+            }
+        } catch (IOException e) {
+            System.err.println("[Shard] Connection closed: " + e.getMessage());
+        }
+    }
+
+    private void answerBound(String[] words, BufferedReader in, Writer out) throws IOException {
+        boolean forward = "F".equals(words[1]);
+        double ceiling = Double.parseDouble(words[2]);
+        int n = Integer.parseInt(words[3]);
+        Map<Integer, Double> seeds = new HashMap<>();
+        for (int i = 0; i < n; i++) {
+            String[] seed = in.readLine().split(" ");
+            seeds.put(Integer.parseInt(seed[0]), Double.parseDouble(seed[1]));
+        }
+        Map<Integer, Double> times = bound(seeds, forward, ceiling);
+        StringBuilder body = new StringBuilder(32 + 32 * times.size());
+        body.append("OK ").append(times.size()).append('\n');
+        times.forEach((id, t) -> body.append(id).append(' ').append(t).append(' ').append(ownerOf(id)).append('\n'));
+        out.write(body.toString());
+    }
+
+    private void answerNodes(String[] words, BufferedReader in, Writer out) throws IOException {
+        int n = Integer.parseInt(words[1]);
+        List<Integer> owned = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            int id = Integer.parseInt(in.readLine().trim());
+            if (graph.get_node(id) != null) {
+                owned.add(id);
+            }
+        }
+        out.write("OK " + owned.size() + "\n");
+        for (int id : owned) {
+            Node node = graph.get_node(id);
+            out.write("N " + id + " " + node.get_latitude() + " " + node.get_longitude() + " " + node.getClusterId()
+                    + " " + node.get_outgoing_edges().size() + " " + node.get_incoming_edges().size() + "\n");
+            for (Edge edge : node.get_outgoing_edges().values()) {
+                out.write(formatEdge(edge));
+                out.write('\n');
+            }
+            for (Edge edge : node.get_incoming_edges().values()) {
+                out.write(formatEdge(edge));
+                out.write('\n');
+            }
+        }
+    }
+
+    /** Accept connections on {@code socket} until the process exits, one virtual thread per connection. */
+    void serve(ServerSocket socket) throws IOException {
+        ExecutorService connections = Executors.newVirtualThreadPerTaskExecutor();
+        while (true) {
+            Socket connection = socket.accept();
+            connection.setTcpNoDelay(true);
+            connections.execute(() -> serve(connection));
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = MacroBenchmark.parseOptions(args, 0);
+        if (!options.containsKey("data") || !options.containsKey("shard") || !options.containsKey("shards")) {
+            System.err.println("Usage: ShardWorker --data DIR --shard I --shards K [--port P]");
+            System.exit(2);
+        }
+        long start = System.currentTimeMillis();
+        int shard = Integer.parseInt(options.get("shard"));
+        int shards = Integer.parseInt(options.get("shards"));
+        ShardWorker worker = new ShardWorker(options.get("data"), shard, shards);
+        ServerSocket socket = new ServerSocket(Integer.parseInt(options.getOrDefault("port", "0")), 50,
+                InetAddress.getLoopbackAddress());
+        System.out.println(String.format(Locale.ROOT, "[Shard] Worker %d/%d holds %d nodes and %d edges, loaded in %d ms",
+                shard, shards, worker.graph.get_nodes().size(), worker.edgeCount, System.currentTimeMillis() - start));
+        System.out.println("[Shard] Worker " + shard + "/" + shards + " listening on port " + socket.getLocalPort());
+        worker.serve(socket);
+    }
+}
@@ -0,0 +1,141 @@
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Java Flight Recorder event types emitted by the solver.
+ * <p>
+ * Per-query events ({@link QueryEvent}, {@link BoundSearchEvent},
+ * {@link LabelingEvent}, {@link MergeEvent}) are buffered by
+ * {@link QueryTrace} and only committed when the whole query took longer than
+ * its detail threshold, so a slow query is recorded in full while fast ones
+ * leave nothing behind. Their JFR thresholds default to zero so that the
+ * trace threshold is the one switch; a recording's settings can still raise
+ * them. {@link CacheLookupEvent} is committed directly and relies on its JFR
+ * threshold to skip cheap hits.
+ * <p>
+ * Enable with e.g. {@code -XX:StartFlightRecording=filename=solver.jfr} and
+ * look under the FlexRoute category.
+ */
+final class SolverEvents {
+
+    private SolverEvents() {
+    }
+
+    @Name("flexroute.Query")
+    @Label("Query")
+    @Category({"FlexRoute", "Solver"})
+    @Description("One solver query from driver start to result.")
+    @Threshold("0 ms")
+    @StackTrace(false)
+    static final class QueryEvent extends Event {
+        @Label("Query Id")
+        long queryId;
+        @Label("Source")
+        int source;
+        @Label("Destination")
+        int destination;
+        @Label("Budget (min)")
+        double budget;
+        @Label("Routing Mode")
+        String routingMode;
+        @Label("Route Found")
+        boolean routeFound;
+        @Label("Fallback Used")
+        boolean fallback;
+        @Label("Nodes Explored")
+        long nodesExplored;
+        @Label("Labels Created")
+        long labelsCreated;
+        @Label("Labels Pruned")
+        long labelsPruned;
+        @Label("Labels Evicted")
+        long labelsEvicted;
+        @Label("Breakpoints Created")
+        long breakpointsCreated;
+        @Label("Intersection Nodes")
+        long intersectionNodes;
+        @Label("Candidate Joins")
+        long candidateJoins;
+    }
+
+    @Name("flexroute.BoundSearch")
+    @Label("Bound Search")
+    @Category({"FlexRoute", "Solver"})
+    @Description("A forward or backward lower-bound pass (Graph.forwardAstar / backwardAstar).")
+    @Threshold("0 ms")
+    @StackTrace(false)
+    static final class BoundSearchEvent extends Event {
+        @Label("Query Id")
+        long queryId;
+        @Label("Direction")
+        String direction;
+        @Label("Root")
+        int root;
+        @Label("Settled Nodes")
+        int settledNodes;
+    }
+
+    @Name("flexroute.Labeling")
+    @Label("Labeling")
+    @Category({"FlexRoute", "Solver"})
+    @Description("One direction of the bidirectional labeling search.")
+    @Threshold("0 ms")
+    @StackTrace(false)
+    static final class LabelingEvent extends Event {
+        @Label("Query Id")
+        long queryId;
+        @Label("Direction")
+        String direction;
+        @Label("Labels Created")
+        long labelsCreated;
+        @Label("Labels Pruned")
+        long labelsPruned;
+        @Label("Labels Evicted")
+        long labelsEvicted;
+        @Label("Labeled Nodes")
+        int labeledNodes;
+    }
+
+    @Name("flexroute.Merge")
+    @Label("Output Formation")
+    @Category({"FlexRoute", "Solver"})
+    @Description("Joining forward and backward labels into the output route.")
+    @Threshold("0 ms")
+    @StackTrace(false)
+    static final class MergeEvent extends Event {
+        @Label("Query Id")
+        long queryId;
+        @Label("Routing Mode")
+        String routingMode;
+        @Label("Intersection Nodes")
+        long intersectionNodes;
+        @Label("Candidate Joins")
+        long candidateJoins;
+        @Label("Route Found")
+        boolean routeFound;
+    }
+
+    @Name("flexroute.CacheLookup")
+    @Label("Cache Lookup")
+    @Category({"FlexRoute", "Cache"})
+    @Description("A bound tree or result cache lookup, including the computation on a miss.")
+    @Threshold("1 ms")
+    @StackTrace(false)
+    static final class CacheLookupEvent extends Event {
+        @Label("Cache")
+        String cache;
+        @Label("Key")
+        String key;
+        @Label("Outcome")
+        String outcome;
+        @Label("Entry Size")
+        @DataAmount
+        long entryBytes;
+    }
+}
@@ -0,0 +1,211 @@
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded executor for solver runs with admission control.
+ * <p>
+ * At most {@code concurrency} queries are solved at once and at most
+ * {@code queueDepth} more may wait. Anything beyond that is rejected
+ * immediately with {@link OverloadedException} so the HTTP layer can answer
+ * 429 instead of letting requests pile up. A query that waited in the queue
+ * longer than {@code maxQueueWaitMillis} is dropped when it reaches the front
+ * (503), because by then the client has most likely given up. Queue wait and
+ * solve time are recorded separately so overload shows up as queueing rather
+ * than as slow solves.
+ */
+public final class SolverExecutor {
+
+    private final int concurrency;
+    private final int queueDepth;
+    private final long maxQueueWaitMillis;
+    private final ThreadPoolExecutor executor;
+
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicLong dequeued = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong expired = new AtomicLong();
+    private final AtomicLong totalQueueWaitMillis = new AtomicLong();
+    private final AtomicLong maxQueueWaitObserved = new AtomicLong();
+    private final AtomicLong totalSolveMillis = new AtomicLong();
+
+    public SolverExecutor(int concurrency, int queueDepth, long maxQueueWaitMillis) {
+        this.concurrency = Math.max(1, concurrency);
+        this.queueDepth = Math.max(0, queueDepth);
+        this.maxQueueWaitMillis = maxQueueWaitMillis;
+        AtomicInteger threadIds = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(this.concurrency, this.concurrency, 0L, TimeUnit.MILLISECONDS,
+                this.queueDepth > 0 ? new ArrayBlockingQueue<>(this.queueDepth) : new SynchronousQueue<>(),
+                r -> {
+                    Thread t = new Thread(r, "solver-" + threadIds.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Raised when a query is not admitted. {@link #getStatusCode()} carries the
+     * HTTP status the caller should answer with.
+     */
+    public static final class OverloadedException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+        private final int statusCode;
+
+        OverloadedException(int statusCode, String message) {
+            super(message);
+            this.statusCode = statusCode;
+        }
+
+        public int getStatusCode() {
+            return statusCode;
+        }
+    }
+
+    /**
+     * A finished solver run together with its timing split.
+     */
+    public static final class Execution<T> {
+        private final T result;
+        private final long queueWaitMillis;
+        private final long solveMillis;
+
+        Execution(T result, long queueWaitMillis, long solveMillis) {
+            this.result = result;
+            this.queueWaitMillis = queueWaitMillis;
+            this.solveMillis = solveMillis;
+        }
+
+        public T getResult() {
+            return result;
+        }
+
+        public long getQueueWaitMillis() {
+            return queueWaitMillis;
+        }
+
+        public long getSolveMillis() {
+            return solveMillis;
+        }
+    }
+
+    /**
+     * Queue {@code task} without blocking. Rejection is reported synchronously
+     * through {@link OverloadedException}; everything else completes the
+     * returned future.
+     */
+    public <T> CompletableFuture<Execution<T>> submit(Callable<T> task) {
+        CompletableFuture<Execution<T>> future = new CompletableFuture<>();
+        long enqueuedAt = System.currentTimeMillis();
+        long enqueuedNanos = System.nanoTime();
+        try {
+            executor.execute(() -> {
+                long startedAt = System.currentTimeMillis();
+                long waited = startedAt - enqueuedAt;
+                recordQueueWait(waited);
+                SolverMetrics.recordQueueWait(System.nanoTime() - enqueuedNanos);
+                if (future.isCancelled()) {
+                    return;
+                }
+                if (maxQueueWaitMillis > 0 && waited > maxQueueWaitMillis) {
+                    expired.incrementAndGet();
+                    future.completeExceptionally(new OverloadedException(503,
+                            "Query waited " + waited + " ms for a solver slot; try again later."));
+                    return;
+                }
+                active.incrementAndGet();
+                try {
+                    T result = task.call();
+                    long solved = System.currentTimeMillis() - startedAt;
+                    totalSolveMillis.addAndGet(solved);
+                    completed.incrementAndGet();
+                    future.complete(new Execution<>(result, waited, solved));
+                } catch (Throwable t) {
+                    future.completeExceptionally(t);
+                } finally {
+                    active.decrementAndGet();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.incrementAndGet();
+            throw new OverloadedException(executor.isShutdown() ? 503 : 429,
+                    "Solver queue is full (" + queueDepth + " waiting); try again later.");
+        }
+        return future;
+    }
+
+    /**
+     * Submit {@code task} and block until it finishes.
+     */
+    public <T> Execution<T> execute(Callable<T> task) throws InterruptedException, ExecutionException {
+        CompletableFuture<Execution<T>> future = submit(task);
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof OverloadedException) {
+                throw (OverloadedException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private void recordQueueWait(long waited) {
+        dequeued.incrementAndGet();
+        totalQueueWaitMillis.addAndGet(waited);
+        maxQueueWaitObserved.accumulateAndGet(waited, Math::max);
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    public int getActiveCount() {
+        return active.get();
+    }
+
+    public int getQueuedCount() {
+        return executor.getQueue().size();
+    }
+
+    public long getCompletedCount() {
+        return completed.get();
+    }
+
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    public long getExpiredCount() {
+        return expired.get();
+    }
+
+    public double getAverageQueueWaitMillis() {
+        long count = dequeued.get();
+        return count > 0 ? (double) totalQueueWaitMillis.get() / count : 0.0;
+    }
+
+    public long getMaxQueueWaitMillis() {
+        return maxQueueWaitObserved.get();
+    }
+
+    public double getAverageSolveMillis() {
+        long done = completed.get();
+        return done > 0 ? (double) totalSolveMillis.get() / done : 0.0;
+    }
+}
@@ -0,0 +1,162 @@
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Process-wide solver telemetry: per-phase latency histograms and work
+ * counters, recorded from the hot paths of {@link BidirectionalDriver},
+ * {@link BidirectionalLabeling} and {@link SolverExecutor}.
+ * <p>
+ * Everything here is a {@link LatencyHistogram} or a {@link LongAdder}, so
+ * recording never takes a lock and contending labeling threads only share
+ * striped cells. {@link #appendPrometheus(StringBuilder)} renders the current
+ * values in Prometheus text exposition format.
+ */
+public final class SolverMetrics {
+
+    /** Timed sections of one query. */
+    public enum Phase {
+        FORWARD_BOUND("forward_bound"),
+        BACKWARD_BOUND("backward_bound"),
+        LABELING("labeling"),
+        MERGE("merge"),
+        FALLBACK("fallback");
+
+        private final String label;
+        private final LatencyHistogram histogram = new LatencyHistogram();
+
+        Phase(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        public LatencyHistogram getHistogram() {
+            return histogram;
+        }
+    }
+
+    // Histogram buckets exported to Prometheus: 2^6 us (64 us) up to 2^27 us (~134 s).
+    private static final int MIN_EXPORT_OCTAVE = 6;
+    private static final int MAX_EXPORT_OCTAVE = 27;
+
+    private static final LatencyHistogram QUERY = new LatencyHistogram();
+    private static final LatencyHistogram QUEUE_WAIT = new LatencyHistogram();
+
+    private static final LongAdder FORWARD_LABELS_CREATED = new LongAdder();
+    private static final LongAdder BACKWARD_LABELS_CREATED = new LongAdder();
+    private static final LongAdder FORWARD_LABELS_PRUNED = new LongAdder();
+    private static final LongAdder BACKWARD_LABELS_PRUNED = new LongAdder();
+    private static final LongAdder FORWARD_LABELS_DOMINATED = new LongAdder();
+    private static final LongAdder BACKWARD_LABELS_DOMINATED = new LongAdder();
+    private static final LongAdder INTERSECTION_NODES = new LongAdder();
+    private static final LongAdder BREAKPOINTS = new LongAdder();
+    private static final LongAdder FALLBACKS = new LongAdder();
+
+    private SolverMetrics() {
+    }
+
+    public static void recordPhase(Phase phase, long nanos) {
+        phase.histogram.recordNanos(nanos);
+    }
+
+    public static void recordQuery(long nanos) {
+        QUERY.recordNanos(nanos);
+    }
+
+    public static void recordQueueWait(long nanos) {
+        QUEUE_WAIT.recordNanos(nanos);
+    }
+
+    public static void labelCreated(boolean forward) {
+        (forward ? FORWARD_LABELS_CREATED : BACKWARD_LABELS_CREATED).increment();
+    }
+
+    /** An expansion cut off by the heuristic before a label was built. */
+    public static void labelPruned(boolean forward) {
+        (forward ? FORWARD_LABELS_PRUNED : BACKWARD_LABELS_PRUNED).increment();
+    }
+
+    /** A label that lost its place in a full per-node label set. */
+    public static void labelDominated(boolean forward) {
+        (forward ? FORWARD_LABELS_DOMINATED : BACKWARD_LABELS_DOMINATED).increment();
+    }
+
+    public static void intersectionNode() {
+        INTERSECTION_NODES.increment();
+    }
+
+    public static void breakpointsGenerated(int count) {
+        BREAKPOINTS.add(count);
+    }
+
+    public static void fallbackUsed() {
+        FALLBACKS.increment();
+    }
+
+    public static LatencyHistogram getQueryHistogram() {
+        return QUERY;
+    }
+
+    public static LatencyHistogram getQueueWaitHistogram() {
+        return QUEUE_WAIT;
+    }
+
+    public static void reset() {
+        for (Phase phase : Phase.values()) {
+            phase.histogram.reset();
+        }
+        QUERY.reset();
+        QUEUE_WAIT.reset();
+        for (LongAdder adder : new LongAdder[]{FORWARD_LABELS_CREATED, BACKWARD_LABELS_CREATED,
+                FORWARD_LABELS_PRUNED, BACKWARD_LABELS_PRUNED, FORWARD_LABELS_DOMINATED,
+                BACKWARD_LABELS_DOMINATED, INTERSECTION_NODES, BREAKPOINTS, FALLBACKS}) {
+            adder.reset();
+        }
+    }
+
+    /**
+     * Append the solver histograms and counters in Prometheus text format.
+     */
+    public static void appendPrometheus(StringBuilder out) {
+        help(out, "solver_phase_duration_seconds", "histogram", "Time spent in each phase of a query.");
+        for (Phase phase : Phase.values()) {
+            phase.histogram.appendPrometheus(out, "solver_phase_duration_seconds",
+                    "phase=\"" + phase.label + "\",", MIN_EXPORT_OCTAVE, MAX_EXPORT_OCTAVE);
+        }
+        help(out, "solver_query_duration_seconds", "histogram", "End-to-end solve time of a query.");
+        QUERY.appendPrometheus(out, "solver_query_duration_seconds", "", MIN_EXPORT_OCTAVE, MAX_EXPORT_OCTAVE);
+        help(out, "solver_queue_wait_seconds", "histogram", "Time a query waited for a solver slot.");
+        QUEUE_WAIT.appendPrometheus(out, "solver_queue_wait_seconds", "", MIN_EXPORT_OCTAVE, MAX_EXPORT_OCTAVE);
+
+        help(out, "solver_labels_created_total", "counter", "Labels created by the labeling search.");
+        directional(out, "solver_labels_created_total", FORWARD_LABELS_CREATED, BACKWARD_LABELS_CREATED);
+        help(out, "solver_labels_pruned_total", "counter", "Expansions cut off by heuristic pruning.");
+        directional(out, "solver_labels_pruned_total", FORWARD_LABELS_PRUNED, BACKWARD_LABELS_PRUNED);
+        help(out, "solver_labels_dominated_total", "counter", "Labels rejected or evicted by a full per-node label set.");
+        directional(out, "solver_labels_dominated_total", FORWARD_LABELS_DOMINATED, BACKWARD_LABELS_DOMINATED);
+        counter(out, "solver_intersection_nodes_total", "Nodes reached by both search directions.", INTERSECTION_NODES.sum());
+        counter(out, "solver_breakpoints_total", "Breakpoints generated for arrival-time functions.", BREAKPOINTS.sum());
+        counter(out, "solver_fallbacks_total", "Queries answered by the fastest-path fallback.", FALLBACKS.sum());
+    }
+
+    static void help(StringBuilder out, String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    static void counter(StringBuilder out, String name, String help, long value) {
+        help(out, name, "counter", help);
+        out.append(name).append(' ').append(value).append('\n');
+    }
+
+    static void gauge(StringBuilder out, String name, String help, long value) {
+        help(out, name, "gauge", help);
+        out.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static void directional(StringBuilder out, String name, LongAdder forward, LongAdder backward) {
+        out.append(name).append("{direction=\"forward\"} ").append(forward.sum()).append('\n');
+        out.append(name).append("{direction=\"backward\"} ").append(backward.sum()).append('\n');
+    }
+}
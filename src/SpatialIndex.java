@@ -0,0 +1,410 @@
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Static KD-tree over the node coordinates of the loaded {@link Graph}, used
+ * to snap a clicked position to a node and to list the nodes in a viewport.
+ * <p>
+ * The tree is packed into two flat arrays: node ids and interleaved
+ * longitude/latitude pairs, ordered so that every range {@code [left, right]}
+ * has its splitting point at the midpoint, splitting on longitude and then
+ * latitude in turn. Ranges of at most {@value #LEAF_SIZE} points are scanned
+ * linearly. There are no per-node objects, so a million nodes cost about
+ * 20 MB and the index is built in a single pass of quickselects.
+ * <p>
+ * Distances are equirectangular metres, which are accurate to well under a
+ * percent at road-network scale. An index belongs to one
+ * {@link GraphSnapshot#getLayoutVersion() layout version}; {@link #current()}
+ * rebuilds it after a reload but not after a traffic update.
+ */
+public final class SpatialIndex {
+
+    private static final int LEAF_SIZE = 64;
+    private static final double METERS_PER_DEGREE = 6_371_008.8 * Math.PI / 180.0;
+
+    private static volatile SpatialIndex current;
+
+    private final long generation;
+    private final int[] ids;
+    private final double[] coords; // lon, lat pairs in tree order
+    // Smallest cos(latitude) in the data, so longitude gaps give a safe lower bound on distance.
+    private final double minLonScale;
+    private final double minLat;
+    private final double minLon;
+    private final double maxLat;
+    private final double maxLon;
+
+    private SpatialIndex(long generation, int[] ids, double[] coords) {
+        this.generation = generation;
+        this.ids = ids;
+        this.coords = coords;
+        double lo = Double.POSITIVE_INFINITY;
+        double hi = Double.NEGATIVE_INFINITY;
+        double west = Double.POSITIVE_INFINITY;
+        double east = Double.NEGATIVE_INFINITY;
+        double maxAbsLat = 0;
+        for (int i = 0; i < ids.length; i++) {
+            double lon = coords[2 * i];
+            double lat = coords[2 * i + 1];
+            lo = Math.min(lo, lat);
+            hi = Math.max(hi, lat);
+            west = Math.min(west, lon);
+            east = Math.max(east, lon);
+            maxAbsLat = Math.max(maxAbsLat, Math.abs(lat));
+        }
+        this.minLat = lo;
+        this.maxLat = hi;
+        this.minLon = west;
+        this.maxLon = east;
+        this.minLonScale = Math.cos(Math.toRadians(Math.min(maxAbsLat, 89.0)));
+    }
+
+    /**
+     * Index for the current node layout, built on first use and rebuilt
+     * after a reload.
+     */
+    public static SpatialIndex current() {
+        SpatialIndex index = current;
+        if (index == null || index.generation != Graph.snapshot().getLayoutVersion()) {
+            synchronized (SpatialIndex.class) {
+                index = current;
+                if (index == null || index.generation != Graph.snapshot().getLayoutVersion()) {
+                    index = build();
+                    current = index;
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Index over the node layout of {@code graph}: the shared {@link #current()}
+     * one when the layouts match, else one built for {@code graph} alone, as
+     * for a request that pinned its snapshot just before a reload.
+     */
+    static SpatialIndex forSnapshot(GraphSnapshot graph) {
+        SpatialIndex index = current();
+        return index.generation == graph.getLayoutVersion() ? index : build(graph);
+    }
+
+    /**
+     * Build an index over the nodes of the current {@link Graph#snapshot()}.
+     */
+    public static SpatialIndex build() {
+        return build(Graph.snapshot());
+    }
+
+    /** Build an index over the nodes of {@code graph}. */
+    static SpatialIndex build(GraphSnapshot graph) {
+        long generation = graph.getLayoutVersion();
+        Map<Integer, Node> nodes = graph.get_nodes();
+        int[] ids = new int[nodes.size()];
+        double[] coords = new double[ids.length * 2];
+        int n = 0;
+        for (Map.Entry<Integer, Node> entry : nodes.entrySet()) {
+            if (n == ids.length) {
+                break; // nodes added while copying belong to the next generation
+            }
+            Node node = entry.getValue();
+            ids[n] = entry.getKey();
+            coords[2 * n] = node.get_longitude();
+            coords[2 * n + 1] = node.get_latitude();
+            n++;
+        }
+        if (n < ids.length) {
+            ids = Arrays.copyOf(ids, n);
+            coords = Arrays.copyOf(coords, 2 * n);
+        }
+        sort(ids, coords, 0, n - 1, 0);
+        return new SpatialIndex(generation, ids, coords);
+    }
+
+    public long getGeneration() {
+        return generation;
+    }
+
+    public int size() {
+        return ids.length;
+    }
+
+    /** Bounding box of the indexed nodes as {@code [minLon, minLat, maxLon, maxLat]}. */
+    public double[] getBounds() {
+        return new double[]{minLon, minLat, maxLon, maxLat};
+    }
+
+    /**
+     * Id of the node closest to the given position, or -1 if the index is
+     * empty.
+     */
+    public int nearest(double lat, double lon) {
+        int[] found = nearest(lat, lon, 1, Double.POSITIVE_INFINITY);
+        return found.length > 0 ? found[0] : -1;
+    }
+
+    /**
+     * Ids of the {@code k} nodes closest to the given position, nearest
+     * first, ignoring nodes more than {@code maxMeters} away.
+     */
+    public int[] nearest(double lat, double lon, int k, double maxMeters) {
+        if (k <= 0 || ids.length == 0) {
+            return new int[0];
+        }
+        k = Math.min(k, ids.length);
+        double lonScale = Math.cos(Math.toRadians(lat));
+        double maxDegrees = maxMeters / METERS_PER_DEGREE;
+        double limit = maxDegrees * maxDegrees;
+        // Max-heap on squared distance (in degrees of latitude) of the best k so far.
+        int[] heapIds = new int[k];
+        double[] heapDist = new double[k];
+        int heapSize = 0;
+
+        int[] stack = new int[3 * 64];
+        int top = 0;
+        stack[top++] = 0;
+        stack[top++] = ids.length - 1;
+        stack[top++] = 0;
+        while (top > 0) {
+            int axis = stack[--top];
+            int right = stack[--top];
+            int left = stack[--top];
+
+            if (right - left <= LEAF_SIZE) {
+                for (int i = left; i <= right; i++) {
+                    double d = squaredDistance(lat, lon, coords[2 * i + 1], coords[2 * i]);
+                    if (heapSize < k && d <= limit) {
+                        heapSize = heapPush(heapIds, heapDist, heapSize, ids[i], d);
+                    } else if (heapSize == k && d < heapDist[0]) {
+                        heapReplaceTop(heapIds, heapDist, heapSize, ids[i], d);
+                    }
+                }
+                continue;
+            }
+
+            int mid = (left + right) >>> 1;
+            double d = squaredDistance(lat, lon, coords[2 * mid + 1], coords[2 * mid]);
+            if (heapSize < k && d <= limit) {
+                heapSize = heapPush(heapIds, heapDist, heapSize, ids[mid], d);
+            } else if (heapSize == k && d < heapDist[0]) {
+                heapReplaceTop(heapIds, heapDist, heapSize, ids[mid], d);
+            }
+            double bound = heapSize == k ? heapDist[0] : limit;
+
+            double split = coords[2 * mid + axis];
+            double gap = (axis == 0 ? lon : lat) - split;
+            double gapDistance = axis == 0 ? gap * Math.min(lonScale, minLonScale) : gap;
+            boolean farReachable = gapDistance * gapDistance <= bound;
+            // Push the far side first so the side containing the query is searched first.
+            stack = ensure(stack, top);
+            if (gap < 0) {
+                if (farReachable) {
+                    top = push(stack, top, mid + 1, right, 1 - axis);
+                }
+                top = push(stack, top, left, mid - 1, 1 - axis);
+            } else {
+                if (farReachable) {
+                    top = push(stack, top, left, mid - 1, 1 - axis);
+                }
+                top = push(stack, top, mid + 1, right, 1 - axis);
+            }
+        }
+
+        // Pop the heap from the back to get nearest-first order.
+        int[] result = new int[heapSize];
+        for (int i = heapSize - 1; i >= 0; i--) {
+            result[i] = heapIds[0];
+            heapIds[0] = heapIds[i];
+            heapDist[0] = heapDist[i];
+            siftDown(heapIds, heapDist, i, 0);
+        }
+        return result;
+    }
+
+    /**
+     * Ids of the nodes inside the box, in no particular order, stopping after
+     * {@code limit} matches.
+     */
+    public int[] within(double minLat, double minLon, double maxLat, double maxLon, int limit) {
+        if (limit <= 0 || ids.length == 0) {
+            return new int[0];
+        }
+        int[] found = new int[Math.min(limit, 1024)];
+        int count = 0;
+        int[] stack = new int[3 * 64];
+        int top = 0;
+        stack[top++] = 0;
+        stack[top++] = ids.length - 1;
+        stack[top++] = 0;
+        while (top > 0 && count < limit) {
+            int axis = stack[--top];
+            int right = stack[--top];
+            int left = stack[--top];
+
+            if (right - left <= LEAF_SIZE) {
+                for (int i = left; i <= right && count < limit; i++) {
+                    if (inside(i, minLat, minLon, maxLat, maxLon)) {
+                        if (count == found.length) {
+                            found = Arrays.copyOf(found, Math.min(limit, found.length * 2));
+                        }
+                        found[count++] = ids[i];
+                    }
+                }
+                continue;
+            }
+
+            int mid = (left + right) >>> 1;
+            if (inside(mid, minLat, minLon, maxLat, maxLon)) {
+                if (count == found.length) {
+                    found = Arrays.copyOf(found, Math.min(limit, found.length * 2));
+                }
+                found[count++] = ids[mid];
+            }
+            double split = coords[2 * mid + axis];
+            stack = ensure(stack, top);
+            if ((axis == 0 ? minLon : minLat) <= split) {
+                top = push(stack, top, left, mid - 1, 1 - axis);
+            }
+            if ((axis == 0 ? maxLon : maxLat) >= split) {
+                top = push(stack, top, mid + 1, right, 1 - axis);
+            }
+        }
+        return count == found.length ? found : Arrays.copyOf(found, count);
+    }
+
+    /**
+     * Equirectangular distance in metres between two positions.
+     */
+    public static double distanceMeters(double lat1, double lon1, double lat2, double lon2) {
+        return Math.sqrt(squaredDistance(lat1, lon1, lat2, lon2)) * METERS_PER_DEGREE;
+    }
+
+    private boolean inside(int i, double minLat, double minLon, double maxLat, double maxLon) {
+        double lon = coords[2 * i];
+        double lat = coords[2 * i + 1];
+        return lon >= minLon && lon <= maxLon && lat >= minLat && lat <= maxLat;
+    }
+
+    /** Squared distance in degrees of latitude, longitude scaled at the mean latitude. */
+    private static double squaredDistance(double lat1, double lon1, double lat2, double lon2) {
+        double dLon = (lon2 - lon1) * Math.cos(Math.toRadians((lat1 + lat2) * 0.5));
+        double dLat = lat2 - lat1;
+        return dLon * dLon + dLat * dLat;
+    }
+
+    private static int push(int[] stack, int top, int left, int right, int axis) {
+        stack[top++] = left;
+        stack[top++] = right;
+        stack[top++] = axis;
+        return top;
+    }
+
+    /** Grow the stack so that two more ranges fit. */
+    private static int[] ensure(int[] stack, int top) {
+        return top + 6 > stack.length ? Arrays.copyOf(stack, stack.length * 2) : stack;
+    }
+
+    private static int heapPush(int[] heapIds, double[] heapDist, int size, int id, double d) {
+        int i = size;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (heapDist[parent] >= d) {
+                break;
+            }
+            heapIds[i] = heapIds[parent];
+            heapDist[i] = heapDist[parent];
+            i = parent;
+        }
+        heapIds[i] = id;
+        heapDist[i] = d;
+        return size + 1;
+    }
+
+    private static void heapReplaceTop(int[] heapIds, double[] heapDist, int size, int id, double d) {
+        heapIds[0] = id;
+        heapDist[0] = d;
+        siftDown(heapIds, heapDist, size, 0);
+    }
+
+    private static void siftDown(int[] heapIds, double[] heapDist, int size, int i) {
+        int id = heapIds[i];
+        double d = heapDist[i];
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && heapDist[child + 1] > heapDist[child]) {
+                child++;
+            }
+            if (heapDist[child] <= d) {
+                break;
+            }
+            heapIds[i] = heapIds[child];
+            heapDist[i] = heapDist[child];
+            i = child;
+        }
+        heapIds[i] = id;
+        heapDist[i] = d;
+    }
+
+    /**
+     * Arrange {@code [left, right]} so its midpoint splits on {@code axis},
+     * then recurse into both halves on the other axis.
+     */
+    private static void sort(int[] ids, double[] coords, int left, int right, int axis) {
+        while (right - left > LEAF_SIZE) {
+            int mid = (left + right) >>> 1;
+            select(ids, coords, mid, left, right, axis);
+            // Recurse into the smaller half and loop on the larger to bound stack depth.
+            if (mid - left < right - mid) {
+                sort(ids, coords, left, mid - 1, 1 - axis);
+                left = mid + 1;
+            } else {
+                sort(ids, coords, mid + 1, right, 1 - axis);
+                right = mid - 1;
+            }
+            axis = 1 - axis;
+        }
+    }
+
+    /** Quickselect: put the k-th smallest value on {@code axis} at position k. */
+    private static void select(int[] ids, double[] coords, int k, int left, int right, int axis) {
+        while (right > left) {
+            // Median of three as the pivot keeps sorted inputs linear.
+            int mid = (left + right) >>> 1;
+            if (coords[2 * mid + axis] < coords[2 * left + axis]) swap(ids, coords, mid, left);
+            if (coords[2 * right + axis] < coords[2 * left + axis]) swap(ids, coords, right, left);
+            if (coords[2 * right + axis] < coords[2 * mid + axis]) swap(ids, coords, right, mid);
+            double pivot = coords[2 * mid + axis];
+            int i = left;
+            int j = right;
+            while (i <= j) {
+                while (coords[2 * i + axis] < pivot) i++;
+                while (coords[2 * j + axis] > pivot) j--;
+                if (i <= j) {
+                    swap(ids, coords, i, j);
+                    i++;
+                    j--;
+                }
+            }
+            if (k <= j) {
+                right = j;
+            } else if (k >= i) {
+                left = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private static void swap(int[] ids, double[] coords, int i, int j) {
+        int id = ids[i];
+        ids[i] = ids[j];
+        ids[j] = id;
+        double lon = coords[2 * i];
+        double lat = coords[2 * i + 1];
+        coords[2 * i] = coords[2 * j];
+        coords[2 * i + 1] = coords[2 * j + 1];
+        coords[2 * j] = lon;
+        coords[2 * j + 1] = lat;
+    }
+}
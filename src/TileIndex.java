@@ -0,0 +1,456 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * Web-mercator tile index over the loaded {@link Graph}.
+ * <p>
+ * Every edge is bucketed once, by the {@value #INDEX_ZOOM}-level tile of its
+ * midpoint, and the buckets are kept as arrays sorted by Morton (Z-order)
+ * code. Any tile at zoom {@value #INDEX_ZOOM} or below then covers one
+ * contiguous run of codes, so finding its edges is two binary searches rather
+ * than a scan. Each edge belongs to exactly one tile at every zoom, so a
+ * client can merge neighbouring tiles without duplicates.
+ * <p>
+ * Tiles are simplified per zoom level. Below {@value #DETAIL_ZOOM} only wide
+ * roads are included. Coordinates are snapped to a {@value #EXTENT}-unit
+ * grid per tile; segments that collapse to a point or repeat an existing
+ * segment are dropped, and the coordinate precision drops with the zoom
+ * level. Nodes appear from {@value #NODE_ZOOM} up. Rendered tiles are kept
+ * in a byte-bounded LRU cache with a content ETag. An index renders from the
+ * {@link GraphSnapshot} it was built over and is rebuilt once a reload
+ * publishes a new version.
+ */
+public final class TileIndex {
+
+    public static final int MAX_ZOOM = 22;
+    static final int INDEX_ZOOM = 16;
+    static final int DETAIL_ZOOM = 12;
+    static final int NODE_ZOOM = 14;
+    private static final int EXTENT = 4096;
+    private static final int MAX_TILE_EDGES = 50_000;
+    private static final long DEFAULT_CACHE_BYTES = 64L * 1024 * 1024;
+
+    private final GraphSnapshot graph;
+    private final long generation;
+
+    // All edges in Morton order of their midpoint, as parallel arrays.
+    private final long[] edgeCodes;
+    private final int[] edgeFrom;
+    private final int[] edgeTo;
+    private final boolean[] edgeWide;
+    // Wide edges only, as positions into the arrays above, same order.
+    private final long[] wideCodes;
+    private final int[] widePositions;
+    // Nodes in Morton order.
+    private final long[] nodeCodes;
+    private final int[] nodeIds;
+
+    private final LinkedHashMap<Long, Tile> cache = new LinkedHashMap<>(256, 0.75f, true);
+    private final long maxCacheBytes;
+    private long cacheBytes;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * A rendered tile: the JSON payload and its strong ETag.
+     */
+    public static final class Tile {
+        private final byte[] body;
+        private final String etag;
+        private final int edgeCount;
+
+        Tile(byte[] body, String etag, int edgeCount) {
+            this.body = body;
+            this.etag = etag;
+            this.edgeCount = edgeCount;
+        }
+
+        public byte[] getBody() {
+            return body;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+
+        public int getEdgeCount() {
+            return edgeCount;
+        }
+    }
+
+    private TileIndex(GraphSnapshot graph, long generation, long[] edgeCodes, int[] edgeFrom, int[] edgeTo, boolean[] edgeWide,
+            long[] wideCodes, int[] widePositions, long[] nodeCodes, int[] nodeIds, long maxCacheBytes) {
+        this.graph = graph;
+        this.generation = generation;
+        this.edgeCodes = edgeCodes;
+        this.edgeFrom = edgeFrom;
+        this.edgeTo = edgeTo;
+        this.edgeWide = edgeWide;
+        this.wideCodes = wideCodes;
+        this.widePositions = widePositions;
+        this.nodeCodes = nodeCodes;
+        this.nodeIds = nodeIds;
+        this.maxCacheBytes = maxCacheBytes;
+    }
+
+    /**
+     * Bucket the current graph. A road stored in both directions is indexed
+     * once; the tile does not need to draw it twice.
+     */
+    public static TileIndex build() {
+        return build(DEFAULT_CACHE_BYTES);
+    }
+
+    public static TileIndex build(long maxCacheBytes) {
+        GraphSnapshot graph = Graph.snapshot();
+        long generation = graph.getVersion();
+        Map<Integer, Node> nodes = graph.get_nodes();
+
+        long[] nodeKeys = new long[nodes.size()];
+        int nodeCount = 0;
+        int edgeCapacity = 0;
+        for (Map.Entry<Integer, Node> entry : nodes.entrySet()) {
+            Node node = entry.getValue();
+            edgeCapacity += node.get_outgoing_edges().size();
+            long code = cellCode(node.get_longitude(), node.get_latitude());
+            nodeKeys[nodeCount++] = (code << 31) | (entry.getKey() & 0x7FFFFFFFL);
+        }
+        Arrays.sort(nodeKeys, 0, nodeCount);
+        long[] nodeCodes = new long[nodeCount];
+        int[] nodeIds = new int[nodeCount];
+        for (int i = 0; i < nodeCount; i++) {
+            nodeCodes[i] = nodeKeys[i] >>> 31;
+            nodeIds[i] = (int) (nodeKeys[i] & 0x7FFFFFFFL);
+        }
+
+        int[] from = new int[edgeCapacity];
+        int[] to = new int[edgeCapacity];
+        boolean[] wide = new boolean[edgeCapacity];
+        long[] keys = new long[edgeCapacity];
+        int edgeCount = 0;
+        for (Map.Entry<Integer, Node> entry : nodes.entrySet()) {
+            int u = entry.getKey();
+            Node source = entry.getValue();
+            for (Edge edge : source.get_outgoing_edges().values()) {
+                int v = edge.get_destination();
+                Node target = graph.get_node(v);
+                if (target == null || u == v) {
+                    continue;
+                }
+                if (u > v && target.get_outgoing_edges().containsKey(u)) {
+                    continue; // the reverse direction carries this road
+                }
+                long code = cellCode((source.get_longitude() + target.get_longitude()) / 2,
+                        (source.get_latitude() + target.get_latitude()) / 2);
+                from[edgeCount] = u;
+                to[edgeCount] = v;
+                wide[edgeCount] = !edge.is_clearway() && edge.get_width(0) >= BidirectionalAstar.WIDENESS_THRESHOLD;
+                keys[edgeCount] = (code << 31) | edgeCount;
+                edgeCount++;
+            }
+        }
+        Arrays.sort(keys, 0, edgeCount);
+
+        long[] edgeCodes = new long[edgeCount];
+        int[] edgeFrom = new int[edgeCount];
+        int[] edgeTo = new int[edgeCount];
+        boolean[] edgeWide = new boolean[edgeCount];
+        int wideCount = 0;
+        for (int i = 0; i < edgeCount; i++) {
+            int original = (int) (keys[i] & 0x7FFFFFFFL);
+            edgeCodes[i] = keys[i] >>> 31;
+            edgeFrom[i] = from[original];
+            edgeTo[i] = to[original];
+            edgeWide[i] = wide[original];
+            if (edgeWide[i]) {
+                wideCount++;
+            }
+        }
+        long[] wideCodes = new long[wideCount];
+        int[] widePositions = new int[wideCount];
+        for (int i = 0, w = 0; i < edgeCount; i++) {
+            if (edgeWide[i]) {
+                wideCodes[w] = edgeCodes[i];
+                widePositions[w++] = i;
+            }
+        }
+        return new TileIndex(graph, generation, edgeCodes, edgeFrom, edgeTo, edgeWide, wideCodes, widePositions,
+                nodeCodes, nodeIds, maxCacheBytes);
+    }
+
+    public long getGeneration() {
+        return generation;
+    }
+
+    public int getEdgeCount() {
+        return edgeCodes.length;
+    }
+
+    public int getWideEdgeCount() {
+        return wideCodes.length;
+    }
+
+    /**
+     * Return tile {@code z/x/y}, rendering and caching it on first use.
+     * Coordinates must be valid for the zoom level.
+     */
+    public Tile tile(int z, int x, int y) {
+        long key = tileKey(z, x, y);
+        synchronized (cache) {
+            Tile cached = cache.get(key);
+            if (cached != null) {
+                hits.incrementAndGet();
+                return cached;
+            }
+        }
+        misses.incrementAndGet();
+        Tile rendered = render(z, x, y);
+        synchronized (cache) {
+            Tile previous = cache.put(key, rendered);
+            if (previous != null) {
+                cacheBytes -= previous.body.length;
+            }
+            cacheBytes += rendered.body.length;
+            Iterator<Map.Entry<Long, Tile>> it = cache.entrySet().iterator();
+            while (cacheBytes > maxCacheBytes && it.hasNext()) {
+                Map.Entry<Long, Tile> eldest = it.next();
+                if (eldest.getKey() == key) {
+                    continue;
+                }
+                cacheBytes -= eldest.getValue().body.length;
+                it.remove();
+            }
+        }
+        return rendered;
+    }
+
+    /**
+     * Render every non-empty tile up to {@code maxZoom} into the cache, so
+     * the first clients to pan the map do not pay for rendering. Returns the
+     * number of tiles rendered.
+     */
+    public int precompute(int maxZoom) {
+        int rendered = 0;
+        for (int z = 0; z <= Math.min(maxZoom, INDEX_ZOOM); z++) {
+            long[] codes = z < DETAIL_ZOOM ? wideCodes : edgeCodes;
+            int shift = 2 * (INDEX_ZOOM - z);
+            long previous = -1;
+            for (long code : codes) {
+                long tile = code >>> shift;
+                if (tile == previous) {
+                    continue;
+                }
+                previous = tile;
+                tile(z, deinterleave(tile), deinterleave(tile >>> 1));
+                rendered++;
+            }
+        }
+        return rendered;
+    }
+
+    private Tile render(int z, int x, int y) {
+        boolean detailed = z >= DETAIL_ZOOM;
+        long[] codes = detailed ? edgeCodes : wideCodes;
+        long lo;
+        long hi;
+        if (z <= INDEX_ZOOM) {
+            int shift = 2 * (INDEX_ZOOM - z);
+            lo = interleave(x, y) << shift;
+            hi = (interleave(x, y) + 1) << shift;
+        } else {
+            int shift = z - INDEX_ZOOM;
+            lo = interleave(x >>> shift, y >>> shift);
+            hi = lo + 1;
+        }
+        int start = lowerBound(codes, lo);
+        int end = lowerBound(codes, hi);
+
+        double scale = 1 << z;
+        int decimals = z < 8 ? 3 : z < DETAIL_ZOOM ? 4 : z < 15 ? 5 : 6;
+        JsonStreamWriter.LongHashSet seen = new JsonStreamWriter.LongHashSet(Math.min(end - start, 1 << 14));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(Math.max(256, (end - start) * 48));
+        int emitted = 0;
+        boolean truncated = false;
+        try (JsonStreamWriter json = new JsonStreamWriter(bytes)) {
+            json.beginObject()
+                    .name("z").value(z).name("x").value(x).name("y").value(y)
+                    .name("generation").value(generation);
+            // Each edge is [from, to, wide (0/1), lon1, lat1, lon2, lat2].
+            json.name("edges").beginArray();
+            for (int i = start; i < end; i++) {
+                int position = detailed ? i : widePositions[i];
+                Node a = graph.get_node(edgeFrom[position]);
+                Node b = graph.get_node(edgeTo[position]);
+                if (a == null || b == null) {
+                    continue;
+                }
+                if (z > INDEX_ZOOM && !midpointInTile(a, b, z, x, y)) {
+                    continue;
+                }
+                long pa = snap(a, scale, x, y);
+                long pb = snap(b, scale, x, y);
+                if (pa == pb) {
+                    continue; // shorter than one grid unit at this zoom
+                }
+                long segment = pa < pb ? (pa << 28) | pb : (pb << 28) | pa;
+                if (!seen.add(segment)) {
+                    continue;
+                }
+                if (emitted == MAX_TILE_EDGES) {
+                    truncated = true;
+                    break;
+                }
+                emitted++;
+                json.beginArray()
+                        .value(graph.toExternal(edgeFrom[position])).value(graph.toExternal(edgeTo[position]))
+                        .value(edgeWide[position] ? 1 : 0)
+                        .value(a.get_longitude(), decimals).value(a.get_latitude(), decimals)
+                        .value(b.get_longitude(), decimals).value(b.get_latitude(), decimals)
+                        .endArray();
+            }
+            json.endArray();
+
+            // Each node is [id, lon, lat].
+            json.name("nodes").beginArray();
+            if (z >= NODE_ZOOM) {
+                long nodeLo = z <= INDEX_ZOOM ? lo : interleave(x >>> (z - INDEX_ZOOM), y >>> (z - INDEX_ZOOM));
+                long nodeHi = z <= INDEX_ZOOM ? hi : nodeLo + 1;
+                for (int i = lowerBound(nodeCodes, nodeLo), n = lowerBound(nodeCodes, nodeHi); i < n; i++) {
+                    Node node = graph.get_node(nodeIds[i]);
+                    if (node == null || (z > INDEX_ZOOM
+                            && (tileX(node.get_longitude(), z) != x || tileY(node.get_latitude(), z) != y))) {
+                        continue;
+                    }
+                    json.beginArray().value(graph.toExternal(nodeIds[i]))
+                            .value(node.get_longitude(), decimals).value(node.get_latitude(), decimals)
+                            .endArray();
+                }
+            }
+            json.endArray();
+            json.name("truncated").value(truncated);
+            json.endObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // ByteArrayOutputStream does not throw
+        }
+
+        byte[] body = bytes.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        String etag = "\"" + generation + "-" + z + "-" + x + "-" + y + "-" + Long.toHexString(crc.getValue()) + "\"";
+        return new Tile(body, etag, emitted);
+    }
+
+    private static boolean midpointInTile(Node a, Node b, int z, int x, int y) {
+        double lon = (a.get_longitude() + b.get_longitude()) / 2;
+        double lat = (a.get_latitude() + b.get_latitude()) / 2;
+        return tileX(lon, z) == x && tileY(lat, z) == y;
+    }
+
+    /**
+     * Node position on the tile's {@value #EXTENT}-unit grid, packed as two
+     * 14-bit fields. The midpoint rule lets endpoints fall up to one tile
+     * outside, so the grid spans [-EXTENT, 3 * EXTENT) and is clamped beyond.
+     */
+    private static long snap(Node node, double scale, int x, int y) {
+        long px = Math.round((mercatorX(node.get_longitude()) * scale - x) * EXTENT) + EXTENT;
+        long py = Math.round((mercatorY(node.get_latitude()) * scale - y) * EXTENT) + EXTENT;
+        px = Math.max(0, Math.min(4 * EXTENT - 1, px));
+        py = Math.max(0, Math.min(4 * EXTENT - 1, py));
+        return (px << 14) | py;
+    }
+
+    private static int lowerBound(long[] codes, long key) {
+        int lo = 0;
+        int hi = codes.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (codes[mid] < key) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private static long cellCode(double lon, double lat) {
+        return interleave(tileX(lon, INDEX_ZOOM), tileY(lat, INDEX_ZOOM));
+    }
+
+    static int tileX(double lon, int z) {
+        int n = 1 << z;
+        return Math.max(0, Math.min(n - 1, (int) Math.floor(mercatorX(lon) * n)));
+    }
+
+    static int tileY(double lat, int z) {
+        int n = 1 << z;
+        return Math.max(0, Math.min(n - 1, (int) Math.floor(mercatorY(lat) * n)));
+    }
+
+    private static double mercatorX(double lon) {
+        return (lon + 180.0) / 360.0;
+    }
+
+    private static double mercatorY(double lat) {
+        double clamped = Math.max(-85.05112878, Math.min(85.05112878, lat));
+        double rad = Math.toRadians(clamped);
+        return (1.0 - Math.log(Math.tan(rad) + 1.0 / Math.cos(rad)) / Math.PI) / 2.0;
+    }
+
+    /** Morton code with x in the even bits and y in the odd bits. */
+    private static long interleave(int x, int y) {
+        return spread(x) | (spread(y) << 1);
+    }
+
+    private static long spread(int value) {
+        long v = value & 0xFFFFFFFFL;
+        v = (v | (v << 16)) & 0x0000FFFF0000FFFFL;
+        v = (v | (v << 8)) & 0x00FF00FF00FF00FFL;
+        v = (v | (v << 4)) & 0x0F0F0F0F0F0F0F0FL;
+        v = (v | (v << 2)) & 0x3333333333333333L;
+        v = (v | (v << 1)) & 0x5555555555555555L;
+        return v;
+    }
+
+    /** Inverse of {@link #spread(int)}: collect the even bits of {@code code}. */
+    private static int deinterleave(long code) {
+        long v = code & 0x5555555555555555L;
+        v = (v | (v >>> 1)) & 0x3333333333333333L;
+        v = (v | (v >>> 2)) & 0x0F0F0F0F0F0F0F0FL;
+        v = (v | (v >>> 4)) & 0x00FF00FF00FF00FFL;
+        v = (v | (v >>> 8)) & 0x0000FFFF0000FFFFL;
+        v = (v | (v >>> 16)) & 0x00000000FFFFFFFFL;
+        return (int) v;
+    }
+
+    private static long tileKey(int z, int x, int y) {
+        return ((long) z << 58) | ((long) x << 29) | y;
+    }
+
+    public int cachedTileCount() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    public long cachedBytes() {
+        synchronized (cache) {
+            return cacheBytes;
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+}
@@ -0,0 +1,301 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Live traffic updates to the loaded network without a reload.
+ * <p>
+ * A batch of {@link EdgeChange}s sets single travel-cost slots, base widths
+ * or rush-hour widths of existing edges. The batch is applied to a
+ * {@link GraphSnapshot#withPrivateEdges copy-on-write} successor of the
+ * current snapshot, in which only the changed edges and their endpoint nodes
+ * are new objects. The successor is then published in one step, so a query
+ * sees either none or all of a batch. Changed edges keep
+ * {@link Edge#getLowestCost()} at their cheapest slot.
+ * <p>
+ * Bound trees only read lowest costs and widths. An edge whose lowest cost
+ * and wideness are unchanged affects no tree. Otherwise only the forward
+ * trees that settled its source and the backward trees that settled its
+ * destination are dropped, and every other cached tree carries over to the
+ * new version. Cached query results are not carried over, since a result
+ * depends on every edge its search touched.
+ * <p>
+ * Batches arrive over {@code POST /api/traffic/updates} or as files in a
+ * drop directory (see {@link #watch(Path, long)}). A reload replaces every
+ * update applied before it.
+ */
+final class TrafficFeed {
+
+    private static final AtomicLong batches = new AtomicLong();
+    private static final AtomicLong edgesUpdated = new AtomicLong();
+    private static final AtomicLong changesRejected = new AtomicLong();
+
+    private TrafficFeed() { }
+
+    /** One change to one edge, addressed by dataset ids. */
+    static final class EdgeChange {
+
+        enum Field { COST, WIDTH, RUSH_WIDTH }
+
+        final int source;
+        final int destination;
+        final Field field;
+        final int slot;
+        final double value;
+
+        private EdgeChange(int source, int destination, Field field, int slot, double value) {
+            if (!Double.isFinite(value) || value < 0 || (field == Field.COST && value == 0)) {
+                throw new IllegalArgumentException("Invalid " + field.name().toLowerCase(Locale.ROOT) + " " + value
+                        + " for edge " + source + " -> " + destination);
+            }
+            this.source = source;
+            this.destination = destination;
+            this.field = field;
+            this.slot = slot;
+            this.value = value;
+        }
+
+        /** Travel cost in minutes for departures in the slot starting at minute {@code slot}. */
+        static EdgeChange cost(int source, int destination, int slot, double minutes) {
+            return new EdgeChange(source, destination, Field.COST, slot, minutes);
+        }
+
+        static EdgeChange width(int source, int destination, double width) {
+            return new EdgeChange(source, destination, Field.WIDTH, -1, width);
+        }
+
+        static EdgeChange rushWidth(int source, int destination, double width) {
+            return new EdgeChange(source, destination, Field.RUSH_WIDTH, -1, width);
+        }
+
+        /**
+         * Parse one line of a drop file: {@code src dst slot minutes},
+         * {@code src dst width metres} or {@code src dst rushWidth metres},
+         * where {@code slot} is a slot start time from the edges file header.
+         */
+        static EdgeChange parse(String line) {
+            String[] entries = line.trim().split("\\s+");
+            if (entries.length != 4) {
+                throw new IllegalArgumentException("Expected 'src dst slot|width|rushWidth value': " + line);
+            }
+            try {
+                int source = Integer.parseInt(entries[0]);
+                int destination = Integer.parseInt(entries[1]);
+                double value = Double.parseDouble(entries[3]);
+                switch (entries[2]) {
+                    case "width":
+                        return width(source, destination, value);
+                    case "rushWidth":
+                        return rushWidth(source, destination, value);
+                    default:
+                        return cost(source, destination, Integer.parseInt(entries[2]), value);
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Malformed update: " + line);
+            }
+        }
+    }
+
+    /** What a batch did. */
+    static final class Applied {
+        final long version;
+        final int edgesUpdated;
+        final int rejected;
+        final int boundTreesKept;
+
+        Applied(long version, int edgesUpdated, int rejected, int boundTreesKept) {
+            this.version = version;
+            this.edgesUpdated = edgesUpdated;
+            this.rejected = rejected;
+            this.boundTreesKept = boundTreesKept;
+        }
+
+        String toJson() {
+            return String.format(Locale.ROOT,
+                    "{\"version\":%d,\"edgesUpdated\":%d,\"rejected\":%d,\"boundTreesKept\":%d}",
+                    version, edgesUpdated, rejected, boundTreesKept);
+        }
+    }
+
+    /**
+     * Apply {@code changes} as one published update. Changes to edges or
+     * slots the network does not have are counted as rejected and skipped.
+     * Batches are applied one at a time. A batch that loses the race against
+     * a reload is re-applied to the reloaded network.
+     */
+    static synchronized Applied apply(List<EdgeChange> changes) {
+        while (true) {
+            GraphSnapshot base = Graph.snapshot();
+            int rejected = 0;
+            Map<Long, List<EdgeChange>> byEdge = new LinkedHashMap<>();
+            for (EdgeChange change : changes) {
+                int source = base.toInternal(change.source);
+                int destination = base.toInternal(change.destination);
+                Node node = source >= 0 ? base.get_node(source) : null;
+                if (node == null || destination < 0 || !node.get_outgoing_edges().containsKey(destination)) {
+                    rejected++;
+                    continue;
+                }
+                byEdge.computeIfAbsent((long) source << 32 | destination, k -> new ArrayList<>()).add(change);
+            }
+            if (byEdge.isEmpty()) {
+                changesRejected.addAndGet(rejected);
+                return new Applied(base.getVersion(), 0, rejected, 0);
+            }
+
+            List<int[]> pairs = new ArrayList<>(byEdge.size());
+            for (long key : byEdge.keySet()) {
+                pairs.add(new int[] { (int) (key >>> 32), (int) key });
+            }
+            GraphSnapshot next = base.withPrivateEdges(pairs);
+            Set<Integer> changedSources = new HashSet<>();
+            Set<Integer> changedDestinations = new HashSet<>();
+            int updated = 0;
+            for (int[] pair : pairs) {
+                Edge edge = next.get_node(pair[0]).get_outgoing_edges().get(pair[1]);
+                double lowest = edge.getLowestCost();
+                boolean wide = isWide(edge);
+                boolean costChanged = false;
+                boolean any = false;
+                for (EdgeChange change : byEdge.get((long) pair[0] << 32 | pair[1])) {
+                    switch (change.field) {
+                        case COST:
+                            if (edge.setSlotCost(change.slot, change.value)) {
+                                costChanged = true;
+                                any = true;
+                            } else {
+                                rejected++;
+                            }
+                            break;
+                        case WIDTH:
+                            edge.setWidth(change.value);
+                            edge.setBaseWidth(change.value);
+                            any = true;
+                            break;
+                        case RUSH_WIDTH:
+                            edge.setRushWidth(change.value);
+                            any = true;
+                            break;
+                    }
+                }
+                if (costChanged) {
+                    edge.refreshLowestCost();
+                }
+                if (edge.getLowestCost() != lowest || isWide(edge) != wide) {
+                    changedSources.add(pair[0]);
+                    changedDestinations.add(pair[1]);
+                }
+                if (any) {
+                    updated++;
+                }
+            }
+            int kept = Graph.publishUpdate(base, next, changedSources, changedDestinations);
+            if (kept >= 0) {
+                batches.incrementAndGet();
+                edgesUpdated.addAndGet(updated);
+                changesRejected.addAndGet(rejected);
+                return new Applied(next.getVersion(), updated, rejected, kept);
+            }
+            // A reload was published in the meantime; apply the batch to that network instead.
+        }
+    }
+
+    /** The wideness test of {@link BoundTree#compute}. */
+    private static boolean isWide(Edge edge) {
+        return !edge.is_clearway() && edge.get_width(0) >= BidirectionalAstar.WIDENESS_THRESHOLD;
+    }
+
+    /**
+     * Start a daemon thread that looks for {@code *.txt} files in
+     * {@code directory} every {@code intervalMillis}. Each file is one batch
+     * in the {@link EdgeChange#parse(String)} line format; blank lines and
+     * lines starting with {@code #} are skipped. Files are applied in name
+     * order and then moved to {@code applied/}, or to {@code failed/} if they
+     * could not be read or parsed. Producers should write under another name
+     * and rename the finished file to {@code .txt}.
+     */
+    static Thread watch(Path directory, long intervalMillis) {
+        Thread thread = new Thread(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                try {
+                    drain(directory);
+                    Thread.sleep(intervalMillis);
+                } catch (InterruptedException e) {
+                    return;
+                } catch (IOException | RuntimeException e) {
+                    System.err.println("[Traffic] Drop directory " + directory + ": " + e.getMessage());
+                    try {
+                        Thread.sleep(intervalMillis);
+                    } catch (InterruptedException interrupted) {
+                        return;
+                    }
+                }
+            }
+        }, "traffic-drop");
+        thread.setDaemon(true);
+        thread.start();
+        System.out.println("[Traffic] Watching " + directory + " for updates every " + intervalMillis + " ms");
+        return thread;
+    }
+
+    /** Apply every pending drop file once, in name order. Returns the number of files applied. */
+    static int drain(Path directory) throws IOException {
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(directory)) {
+            files = listing.filter(path -> path.getFileName().toString().endsWith(".txt"))
+                    .filter(Files::isRegularFile)
+                    .sorted()
+                    .toList();
+        }
+        int applied = 0;
+        for (Path file : files) {
+            List<EdgeChange> changes = new ArrayList<>();
+            try {
+                for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                    String trimmed = line.trim();
+                    if (!trimmed.isEmpty() && !trimmed.startsWith("#")) {
+                        changes.add(EdgeChange.parse(trimmed));
+                    }
+                }
+            } catch (IOException | IllegalArgumentException e) {
+                System.err.println("[Traffic] Skipping " + file.getFileName() + ": " + e.getMessage());
+                moveTo(file, directory.resolve("failed"));
+                continue;
+            }
+            Applied result = apply(changes);
+            System.out.println("[Traffic] " + file.getFileName() + ": " + result.edgesUpdated + " edges updated, "
+                    + result.rejected + " changes rejected, network version " + result.version);
+            moveTo(file, directory.resolve("applied"));
+            applied++;
+        }
+        return applied;
+    }
+
+    private static void moveTo(Path file, Path target) throws IOException {
+        Files.createDirectories(target);
+        Files.move(file, target.resolve(file.getFileName()), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    static long getBatches() {
+        return batches.get();
+    }
+
+    static long getEdgesUpdated() {
+        return edgesUpdated.get();
+    }
+
+    static long getChangesRejected() {
+        return changesRejected.get();
+    }
+}
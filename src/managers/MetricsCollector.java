@@ -1,7 +1,12 @@
 package managers;
 
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Collects and provides real-time metrics
@@ -12,6 +17,9 @@ public class MetricsCollector {
     private final AtomicInteger successfulQueries = new AtomicInteger(0);
     private final AtomicInteger failedQueries = new AtomicInteger(0);
     private final AtomicLong totalNodesExplored = new AtomicLong(0);
+    private final Map<String, AtomicLong> searchStatTotals = new ConcurrentHashMap<>();
+    private final AtomicReference<Map<String, Long>> lastSearchStats =
+            new AtomicReference<>(Collections.emptyMap());
 
     public void recordQuery(boolean success, long executionTimeMs, int nodesExplored) {
         totalQueriesExecuted.incrementAndGet();
@@ -24,6 +32,29 @@ public class MetricsCollector {
         totalNodesExplored.addAndGet(nodesExplored);
     }
 
+    /**
+     * Record the per-query search counters of a finished query. Totals are
+     * accumulated per counter name; the latest set is kept for display.
+     */
+    public void recordSearchStats(Map<String, Long> stats) {
+        if (stats == null || stats.isEmpty()) {
+            return;
+        }
+        for (Map.Entry<String, Long> entry : stats.entrySet()) {
+            searchStatTotals.computeIfAbsent(entry.getKey(), k -> new AtomicLong()).addAndGet(entry.getValue());
+        }
+        lastSearchStats.set(Collections.unmodifiableMap(new LinkedHashMap<>(stats)));
+    }
+
+    public Map<String, Long> getLastSearchStats() {
+        return lastSearchStats.get();
+    }
+
+    public long getSearchStatTotal(String name) {
+        AtomicLong total = searchStatTotals.get(name);
+        return total != null ? total.get() : 0L;
+    }
+
     public long getTotalQueries() {
         return totalQueriesExecuted.get();
     }
@@ -56,5 +87,7 @@ public class MetricsCollector {
         successfulQueries.set(0);
         failedQueries.set(0);
         totalNodesExplored.set(0);
+        searchStatTotals.clear();
+        lastSearchStats.set(Collections.emptyMap());
     }
 }
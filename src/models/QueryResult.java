@@ -1,7 +1,10 @@
 package models;
 
 import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Immutable data class representing a query result with all metrics
@@ -23,6 +26,7 @@ public class QueryResult {
     private final LocalDateTime timestamp;
     private final boolean success;
     private final String errorMessage;
+    private final Map<String, Long> searchStats;
 
     private QueryResult(Builder builder) {
         this.sourceNode = builder.sourceNode;
@@ -41,6 +45,7 @@ public class QueryResult {
         this.timestamp = builder.timestamp;
         this.success = builder.success;
         this.errorMessage = builder.errorMessage;
+        this.searchStats = Collections.unmodifiableMap(new LinkedHashMap<>(builder.searchStats));
     }
 
     // Getters
@@ -60,6 +65,9 @@ public class QueryResult {
     public LocalDateTime getTimestamp() { return timestamp; }
     public boolean isSuccess() { return success; }
     public String getErrorMessage() { return errorMessage; }
+    /** Search work counters by name, in solver order; empty when the solver reported none. */
+    public Map<String, Long> getSearchStats() { return searchStats; }
+    public long getNodesExplored() { return searchStats.getOrDefault("nodesExplored", 0L); }
 
     public static class Builder {
         private int sourceNode;
@@ -78,6 +86,7 @@ public class QueryResult {
         private LocalDateTime timestamp = LocalDateTime.now();
         private boolean success = true;
         private String errorMessage = "";
+        private Map<String, Long> searchStats = Collections.emptyMap();
 
         public Builder setSourceNode(int sourceNode) {
             this.sourceNode = sourceNode;
@@ -154,6 +163,11 @@ public class QueryResult {
             return this;
         }
 
+        public Builder setSearchStats(Map<String, Long> searchStats) {
+            this.searchStats = searchStats != null ? searchStats : Collections.emptyMap();
+            return this;
+        }
+
         public QueryResult build() {
             return new QueryResult(this);
         }
@@ -11,9 +11,13 @@ import java.awt.FontMetrics;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.RenderingHints;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseMotionAdapter;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import javax.swing.BorderFactory;
 import javax.swing.Box;
@@ -65,6 +69,10 @@ public class AdvancedMapPanel extends JPanel {
     private boolean showFullGraph = false;
     private static final int MAX_GRAPH_SIZE = 6000; // Maximum nodes to visualize
     private List<Integer> graphNodesToShow = new ArrayList<>();
+    private transient Set<Integer> graphNodeSet = new HashSet<>();
+    // {minLat, maxLat, minLon, maxLon, width, height, padding} of the last graph sample render, for hit-testing
+    private double[] graphSampleView = null;
+    private static final int HOVER_RADIUS = 8;
     
     // Query preview fields
     private Integer querySourceNode = null;
@@ -237,6 +245,12 @@ public class AdvancedMapPanel extends JPanel {
         };
         canvas.setBackground(Color.WHITE);
         canvas.setPreferredSize(new Dimension(800, 600));
+        canvas.addMouseMotionListener(new MouseMotionAdapter() {
+            @Override
+            public void mouseMoved(MouseEvent e) {
+                canvas.setToolTipText(hitTestGraphSample(e.getX(), e.getY()));
+            }
+        });
         
         JScrollPane scrollPane = new JScrollPane(canvas);
         add(scrollPane, BorderLayout.CENTER);
@@ -484,31 +498,34 @@ public class AdvancedMapPanel extends JPanel {
                 return;
             }
             
-            // Check if graph is too large
-            List<Integer> nodeIds = new ArrayList<>(allNodes.keySet());
-            int totalNodes = nodeIds.size();
-            
+            // Large graphs are cut down to the nodes nearest the network centre,
+            // which the spatial index answers without sorting the whole graph
+            int totalNodes = allNodes.size();
+            List<Integer> nodeIds = new ArrayList<>();
             if (totalNodes > MAX_GRAPH_SIZE) {
-                JOptionPane.showMessageDialog(this,
-                    String.format("Graph is too large to visualize!\n\n" +
-                        "Total nodes: %,d\n" +
-                        "Maximum allowed: %,d\n\n" +
-                        "Visualizing such a large graph would be too congested.\n" +
-                        "Please use the query visualization feature instead.",
-                        totalNodes, MAX_GRAPH_SIZE),
-                    "Large Graph Warning",
-                    JOptionPane.WARNING_MESSAGE);
-                return;
+                Object index = Class.forName("SpatialIndex").getMethod("current").invoke(null);
+                double[] bounds = (double[]) index.getClass().getMethod("getBounds").invoke(index);
+                int[] nearest = (int[]) index.getClass()
+                    .getMethod("nearest", double.class, double.class, int.class, double.class)
+                    .invoke(index, (bounds[1] + bounds[3]) / 2, (bounds[0] + bounds[2]) / 2,
+                        MAX_GRAPH_SIZE, Double.POSITIVE_INFINITY);
+                for (int id : nearest) {
+                    nodeIds.add(id);
+                }
+            } else {
+                nodeIds.addAll(allNodes.keySet());
             }
             
-            // Visualize full graph (all nodes)
             graphNodesToShow.clear();
             graphNodesToShow.addAll(nodeIds);
             Collections.sort(graphNodesToShow);
+            graphNodeSet = new HashSet<>(graphNodesToShow);
             
             JOptionPane.showMessageDialog(this,
-                String.format("Visualizing full graph with %d nodes.",
-                    graphNodesToShow.size()),
+                totalNodes > MAX_GRAPH_SIZE
+                    ? String.format("Graph has %,d nodes; visualizing the %,d nearest the network centre.",
+                        totalNodes, graphNodesToShow.size())
+                    : String.format("Visualizing full graph with %d nodes.", graphNodesToShow.size()),
                 "Graph Visualization",
                 JOptionPane.INFORMATION_MESSAGE);
             
@@ -524,6 +541,8 @@ public class AdvancedMapPanel extends JPanel {
     
     private void clearGraphVisualization() {
         graphNodesToShow.clear();
+        graphNodeSet.clear();
+        graphSampleView = null;
         repaint();
     }
     
@@ -572,6 +591,7 @@ public class AdvancedMapPanel extends JPanel {
             int width = getWidth();
             int height = getHeight();
             int padding = 40;
+            graphSampleView = new double[]{minLat, maxLat, minLon, maxLon, width, height, padding};
             
             // Draw nodes
             g2d.setColor(new Color(33, 150, 243, 180));
@@ -606,7 +626,7 @@ public class AdvancedMapPanel extends JPanel {
                     if (outgoingEdges != null) {
                         for (Object edge : outgoingEdges.values()) {
                             Integer targetId = (Integer) edge.getClass().getMethod("get_destination").invoke(edge);
-                            if (graphNodesToShow.contains(targetId)) {
+                            if (graphNodeSet.contains(targetId)) {
                                 Object targetNode = allNodes.get(targetId);
                                 if (targetNode != null) {
                                     double targetLat = (Double) targetNode.getClass().getMethod("get_latitude").invoke(targetNode);
@@ -638,6 +658,42 @@ public class AdvancedMapPanel extends JPanel {
         }
     }
     
+    /**
+     * Tooltip for the graph sample node under the cursor, or null. The cursor
+     * is mapped back to a position and snapped with the spatial index instead
+     * of testing every drawn node.
+     */
+    private String hitTestGraphSample(int x, int y) {
+        double[] view = graphSampleView;
+        if (view == null || graphNodeSet.isEmpty() || !pathNodes.isEmpty()) {
+            return null;
+        }
+        double minLat = view[0], maxLat = view[1], minLon = view[2], maxLon = view[3];
+        double width = view[4], height = view[5], padding = view[6];
+        double lon = minLon + (x - padding) / (width - 2 * padding) * (maxLon - minLon);
+        double lat = minLat + (height - padding - y) / (height - 2 * padding) * (maxLat - minLat);
+        try {
+            Object index = Class.forName("SpatialIndex").getMethod("current").invoke(null);
+            int[] nearest = (int[]) index.getClass()
+                .getMethod("nearest", double.class, double.class, int.class, double.class)
+                .invoke(index, lat, lon, 8, Double.POSITIVE_INFINITY);
+            for (int id : nearest) {
+                if (!graphNodeSet.contains(id)) continue;
+                Object node = Class.forName("Graph").getMethod("get_node", int.class).invoke(null, id);
+                double nodeLat = (Double) node.getClass().getMethod("get_latitude").invoke(node);
+                double nodeLon = (Double) node.getClass().getMethod("get_longitude").invoke(node);
+                double nx = padding + (nodeLon - minLon) / (maxLon - minLon) * (width - 2 * padding);
+                double ny = height - padding - (nodeLat - minLat) / (maxLat - minLat) * (height - 2 * padding);
+                if (Math.hypot(nx - x, ny - y) <= HOVER_RADIUS) {
+                    return String.format("Node %d (%.6f, %.6f)", id, nodeLat, nodeLon);
+                }
+            }
+        } catch (ReflectiveOperationException | LinkageError e) {
+            // No graph loaded; nothing to hit
+        }
+        return null;
+    }
+    
     private void renderQueryPreview(Graphics2D g2d) {
         try {
             // Get nodes from the Graph class using reflection
@@ -33,6 +33,7 @@ public class EnhancedMetricsDashboard extends JPanel {
     private LineChartPanel executionTimeChart;
     private PieChartPanel successPieChart;
     private BarChartPanel queryHistogramChart;
+    private BarChartPanel searchEffortChart;
     
     // Data
     private List<Double> executionTimeHistory = new ArrayList<>();
@@ -145,7 +146,7 @@ public class EnhancedMetricsDashboard extends JPanel {
     }
     
     private void createCharts() {
-        JPanel chartsPanel = new JPanel(new GridLayout(1, 3, 15, 0));
+        JPanel chartsPanel = new JPanel(new GridLayout(1, 4, 15, 0));
         chartsPanel.setOpaque(false);
         
         // Execution Time Line Chart
@@ -164,6 +165,11 @@ public class EnhancedMetricsDashboard extends JPanel {
         chartsPanel.add(successPieChart);
         chartsPanel.add(queryHistogramChart);
         
+        // Search work of the most recent query
+        searchEffortChart = new BarChartPanel("Search Effort (last query)");
+        searchEffortChart.setPreferredSize(new Dimension(400, 300));
+        chartsPanel.add(searchEffortChart);
+        
         add(chartsPanel, BorderLayout.SOUTH);
     }
     
@@ -216,6 +222,34 @@ public class EnhancedMetricsDashboard extends JPanel {
         );
         
         queryHistogramChart.updateData(getQueryDistribution());
+        searchEffortChart.updateData(getSearchEffort());
+    }
+    
+    /**
+     * Condense the last query's search counters into a handful of bars;
+     * directions are summed so the chart stays readable.
+     */
+    private Map<String, Integer> getSearchEffort() {
+        Map<String, Long> stats = metricsCollector.getLastSearchStats();
+        Map<String, Integer> effort = new LinkedHashMap<>();
+        if (stats.isEmpty()) {
+            return effort;
+        }
+        effort.put("Settled", sum(stats, "forwardBoundSettled", "backwardBoundSettled"));
+        effort.put("Labels", sum(stats, "forwardLabelsCreated", "backwardLabelsCreated"));
+        effort.put("Pruned", sum(stats, "forwardLabelsPruned", "backwardLabelsPruned"));
+        effort.put("Evicted", sum(stats, "forwardLabelsEvicted", "backwardLabelsEvicted"));
+        effort.put("Breakpts", sum(stats, "breakpointsCreated"));
+        effort.put("Joins", sum(stats, "candidateJoins"));
+        return effort;
+    }
+    
+    private static int sum(Map<String, Long> stats, String... keys) {
+        long total = 0;
+        for (String key : keys) {
+            total += stats.getOrDefault(key, 0L);
+        }
+        return (int) Math.min(Integer.MAX_VALUE, total);
     }
     
     private long getStartTime() {
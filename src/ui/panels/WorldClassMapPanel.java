@@ -21,6 +21,7 @@ import java.awt.geom.GeneralPath;
 import java.awt.geom.Line2D;
 import java.awt.geom.Point2D;
 import java.awt.geom.QuadCurve2D;
+import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -91,6 +92,11 @@ public class WorldClassMapPanel extends JPanel {
     private double minLat, maxLat, minLon, maxLon;
     private boolean boundsCalculated = false;
     
+    // Graph node under the cursor, found through the spatial index
+    private static final int HOVER_RADIUS = 10;
+    private int hoveredNode = -1;
+    private double[] hoveredCoord = null;
+    
     private static final Color PATH_COLOR = new Color(236, 72, 153);     // Hot Pink
     private static final Color WIDE_PATH_COLOR = new Color(16, 185, 129); // Neon Green  
     private static final Color SOURCE_COLOR = new Color(59, 130, 246);    // Electric Blue
@@ -144,9 +150,76 @@ public class WorldClassMapPanel extends JPanel {
                     repaint();
                 }
             }
+            @Override
+            public void mouseMoved(MouseEvent e) {
+                updateHover(e.getPoint());
+            }
         });
     }
     
+    /**
+     * Hit-test the cursor against the whole graph, not just the drawn path,
+     * by asking the spatial index for the nearest node and keeping it if it
+     * lands within {@link #HOVER_RADIUS} pixels.
+     */
+    private void updateHover(Point screen) {
+        int previous = hoveredNode;
+        hoveredNode = -1;
+        hoveredCoord = null;
+        if (boundsCalculated && !pathCoordinates.isEmpty() && previewSourceCoord == null) {
+            int w = getWidth(), h = getHeight(), pad = 80;
+            Point2D.Double world = toWorld(screen);
+            double lon = minLon + (world.x - pad) / (w - 2 * pad) * Math.max(0.0001, maxLon - minLon);
+            double lat = minLat + (h - pad - world.y) / (h - 2 * pad) * Math.max(0.0001, maxLat - minLat);
+            double[] nearest = nearestGraphNode(lat, lon);
+            if (nearest != null) {
+                Point2D.Double p = toScreen(nearest[1], nearest[2], w, h, pad);
+                if (p.distance(world) * zoomLevel <= HOVER_RADIUS) {
+                    hoveredNode = (int) nearest[0];
+                    hoveredCoord = new double[]{nearest[1], nearest[2]};
+                }
+            }
+        }
+        if (hoveredNode != previous) {
+            setToolTipText(hoveredNode < 0 ? null : String.format("Node %d (%.6f, %.6f)",
+                hoveredNode, hoveredCoord[0], hoveredCoord[1]));
+            repaint();
+        }
+    }
+    
+    /** Undo the pan/zoom transform applied in {@link #paintComponent(Graphics)}. */
+    private Point2D.Double toWorld(Point screen) {
+        int cx = getWidth() / 2, cy = getHeight() / 2;
+        return new Point2D.Double((screen.x - cx - panX) / zoomLevel + cx, (screen.y - cy - panY) / zoomLevel + cy);
+    }
+    
+    /** Visible area in the untransformed drawing space, used to cull off-screen context. */
+    private Rectangle2D.Double visibleWorldBounds() {
+        Point2D.Double topLeft = toWorld(new Point(0, 0));
+        Point2D.Double bottomRight = toWorld(new Point(getWidth(), getHeight()));
+        return new Rectangle2D.Double(topLeft.x, topLeft.y, bottomRight.x - topLeft.x, bottomRight.y - topLeft.y);
+    }
+    
+    /**
+     * Nearest graph node to a position as {id, lat, lon}, or null when no
+     * graph is loaded. The graph classes live in the default package, so this
+     * goes through reflection like the other map panels.
+     */
+    private static double[] nearestGraphNode(double lat, double lon) {
+        try {
+            Object index = Class.forName("SpatialIndex").getMethod("current").invoke(null);
+            int id = (Integer) index.getClass().getMethod("nearest", double.class, double.class).invoke(index, lat, lon);
+            if (id < 0) return null;
+            Object node = Class.forName("Graph").getMethod("get_node", int.class).invoke(null, id);
+            if (node == null) return null;
+            double nodeLat = (Double) node.getClass().getMethod("get_latitude").invoke(node);
+            double nodeLon = (Double) node.getClass().getMethod("get_longitude").invoke(node);
+            return new double[]{id, nodeLat, nodeLon};
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+    
     private void setupAnimation() {
         animationTimer = new Timer(50, e -> {
             pulsePhase += 0.1f;
@@ -361,12 +434,24 @@ public class WorldClassMapPanel extends JPanel {
                 case BLUEPRINT -> renderBlueprintView(g2d);
                 case MINIMAL -> renderMinimalView(g2d);
             }
+            drawHoveredNode(g2d);
         }
         
         if (showSearchProgress) renderProgressOverlay(g2d);
         g2d.dispose();
     }
     
+    private void drawHoveredNode(Graphics2D g2d) {
+        if (hoveredCoord == null) return;
+        Point2D.Double p = toScreen(hoveredCoord[0], hoveredCoord[1], getWidth(), getHeight(), 80);
+        double r = HOVER_RADIUS / zoomLevel;
+        g2d.setColor(new Color(ROYAL_INDIGO.getRed(), ROYAL_INDIGO.getGreen(), ROYAL_INDIGO.getBlue(), 60));
+        g2d.fill(new Ellipse2D.Double(p.x - r, p.y - r, 2 * r, 2 * r));
+        g2d.setColor(ROYAL_INDIGO);
+        g2d.setStroke(new BasicStroke((float) (2 / zoomLevel)));
+        g2d.draw(new Ellipse2D.Double(p.x - r, p.y - r, 2 * r, 2 * r));
+    }
+    
     private void renderEmptyState(Graphics2D g2d) {
         int cx = getWidth() / 2, cy = getHeight() / 2;
         
@@ -425,6 +510,9 @@ public class WorldClassMapPanel extends JPanel {
         
         // Draw graph context (neighboring nodes) in lighter color FIRST (background layer)
         if (showGraphContext && !contextNodeCoordinates.isEmpty()) {
+            // Context can be much larger than the path; skip what is panned or zoomed out of view
+            Rectangle2D.Double visible = visibleWorldBounds();
+            
             // Draw edges from path nodes to context nodes (dashed lines)
             g2d.setColor(new Color(150, 180, 220, 100));
             float[] dash = {5.0f, 5.0f};
@@ -450,13 +538,15 @@ public class WorldClassMapPanel extends JPanel {
                     double[] c2 = contextNodeCoordinates.get(edge[1]);
                     Point2D.Double p1 = toScreen(c1[0], c1[1], w, h, pad);
                     Point2D.Double p2 = toScreen(c2[0], c2[1], w, h, pad);
-                    g2d.draw(new Line2D.Double(p1, p2));
+                    Line2D.Double line = new Line2D.Double(p1, p2);
+                    if (line.intersects(visible)) g2d.draw(line);
                 }
             }
             
             // Draw context nodes in light blue/gray (larger and more visible)
             for (double[] coord : contextNodeCoordinates) {
                 Point2D.Double p = toScreen(coord[0], coord[1], w, h, pad);
+                if (!visible.intersects(p.x - 8, p.y - 8, 16, 16)) continue;
                 // Outer glow
                 g2d.setColor(new Color(150, 180, 220, 40));
                 g2d.fill(new Ellipse2D.Double(p.x - 8, p.y - 8, 16, 16));
@@ -718,6 +808,9 @@ public class WorldClassMapPanel extends JPanel {
         this.contextEdges = new ArrayList<>();
         this.pathToContextEdges = new ArrayList<>();
         this.boundsCalculated = false;
+        this.hoveredNode = -1;
+        this.hoveredCoord = null;
+        setToolTipText(null);
         clearQueryPreview();
         showSearchProgress = false;
         zoomLevel = 1.0;